@@ -0,0 +1,184 @@
+package com.dam.proyectodam;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Pruebas de GpxImporter: lectura de un GPX pequeño (segmentos, puntos sin time, fechas con
+ * zona), continuación de una importación interrumpida y ritmo de importación de un fichero
+ * grande, que se escribe en el log con la etiqueta "Benchmark". Los ficheros grandes se
+ * generan con TrackExporter, así que también se comprueba que lo exportado se puede importar.
+ */
+public class GpxImporterTest extends TestCase {
+
+    private static final int PUNTOS_GRANDE = 500000;
+
+    /**
+     * Almacén en memoria que puede fallar a partir de un lote (como si se cerrara la
+     * aplicación a mitad de la importación).
+     */
+    private static class Almacen implements TrackStore {
+        final TrackBuffer puntos = new TrackBuffer();
+        int lotes = 0;
+        int fallarEnLote = Integer.MAX_VALUE;
+
+        @Override
+        public boolean insertarPosiciones(TrackBuffer lote) {
+            if (++lotes >= fallarEnLote)
+                return false;
+            for (int i = 0; i < lote.tamano(); i++)
+                puntos.anadir(lote.getLatitud(i), lote.getLongitud(i), lote.getDistancia(i),
+                        lote.getVelocidad(i), lote.getInstante(i));
+            return true;
+        }
+
+        @Override
+        public boolean insertarPausa(long inicio, long fin, double latitud, double longitud) {
+            return true;
+        }
+
+        @Override
+        public boolean insertarParciales(SplitEngine parciales) {
+            return true;
+        }
+
+        @Override
+        public boolean borrarPosiciones() {
+            puntos.vaciar();
+            return true;
+        }
+
+        @Override
+        public int recorrerPosiciones(PointCallback receptor) {
+            puntos.recorrer(receptor);
+            return puntos.tamano();
+        }
+
+        @Override
+        public int recorrerPosiciones(long desde, long hasta, PointCallback receptor) {
+            return recorrerPosiciones(receptor);
+        }
+    }
+
+    public void testLeerInstante() {
+        assertEquals(0, GpxImporter.leerInstante("1970-01-01T00:00:00Z"));
+        assertEquals(1445000000, GpxImporter.leerInstante(" 2015-10-16T12:53:20Z\n"));
+        assertEquals(1445000000, GpxImporter.leerInstante("2015-10-16T12:53:20.750Z"));
+        assertEquals(1445000000, GpxImporter.leerInstante("2015-10-16T14:53:20+02:00"));
+        assertEquals(1445000000, GpxImporter.leerInstante("2015-10-16T09:23:20-03:30"));
+        assertEquals(951782400, GpxImporter.leerInstante("2000-02-29T00:00:00Z"));
+        assertEquals(-86400, GpxImporter.leerInstante("1969-12-31T00:00:00Z"));
+        assertEquals(Long.MIN_VALUE, GpxImporter.leerInstante("16/10/2015 12:53:20"));
+        assertEquals(Long.MIN_VALUE, GpxImporter.leerInstante("2015-13-16T12:53:20Z"));
+    }
+
+    public void testImportar() throws IOException {
+        String gpx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" creator=\"prueba\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+                + "<metadata><time>2010-01-01T00:00:00Z</time></metadata>\n"
+                + "<trk><name>Prueba</name><trkseg>\n"
+                + "<trkpt lat=\"37.0\" lon=\"-6.0\"><ele>10</ele><time>2015-10-16T12:53:20Z</time></trkpt>\n"
+                + "<trkpt lat=\"37.001\" lon=\"-6.0\"><time>2015-10-16T12:53:40Z</time></trkpt>\n"
+                + "<trkpt lat=\"37.002\" lon=\"-6.0\"></trkpt>\n"
+                + "</trkseg><trkseg>\n"
+                + "<trkpt lat=\"38.0\" lon=\"-6.0\"><time>2015-10-16T13:53:40Z</time></trkpt>\n"
+                + "</trkseg></trk></gpx>\n";
+        Almacen almacen = new Almacen();
+        GpxImporter importador = new GpxImporter(almacen);
+        assertTrue(importador.importar(new ByteArrayInputStream(gpx.getBytes("UTF-8")), 0));
+
+        TrackBuffer puntos = almacen.puntos;
+        assertEquals(4, puntos.tamano());
+        assertEquals(4, importador.getImportados());
+        assertEquals(1445000000, puntos.getInstante(0));
+        assertEquals(0, puntos.getDistancia(0), 0);
+
+        // 0,001 grados de latitud son unos 111 m; en 20 s, unos 20 km/h.
+        double paso = Geodesic.distanciaRapida(37.0, -6.0, 37.001, -6.0);
+        assertEquals(paso, puntos.getDistancia(1), 1e-3);
+        assertEquals(paso / 20 * 3.6, puntos.getVelocidad(1), 1e-3);
+
+        // El punto sin time se queda con el instante del anterior (y sin velocidad).
+        assertEquals(1445000020, puntos.getInstante(2));
+        assertEquals(0, puntos.getVelocidad(2), 0);
+
+        // El primer punto de un segmento no suma distancia.
+        assertEquals(0, puntos.getDistancia(3), 0);
+        assertEquals(1445003620, puntos.getInstante(3));
+    }
+
+    public void testFicheroMalFormado() throws IOException {
+        String gpx = "<gpx><trk><trkseg><trkpt lat=\"37.0\" lon=\"x\"></trkpt></trkseg></trk></gpx>";
+        Almacen almacen = new Almacen();
+        assertFalse(new GpxImporter(almacen).importar(new ByteArrayInputStream(gpx.getBytes("UTF-8")), 0));
+        assertEquals(0, almacen.puntos.tamano());
+    }
+
+    public void testContinuar() throws IOException {
+        byte[] gpx = generar(3 * GpxImporter.LOTE + 100);
+
+        // Importación completa, de referencia.
+        Almacen referencia = new Almacen();
+        assertTrue(new GpxImporter(referencia).importar(new ByteArrayInputStream(gpx), 0));
+
+        // Se interrumpe al guardar el tercer lote: se quedan los dos primeros.
+        Almacen almacen = new Almacen();
+        almacen.fallarEnLote = 3;
+        GpxImporter primero = new GpxImporter(almacen);
+        assertFalse(primero.importar(new ByteArrayInputStream(gpx), 0));
+        assertEquals(2 * GpxImporter.LOTE, almacen.puntos.tamano());
+
+        // Se continúa saltando lo ya guardado, como hace BBDD.prepararImportacion.
+        almacen.fallarEnLote = Integer.MAX_VALUE;
+        GpxImporter segundo = new GpxImporter(almacen);
+        assertTrue(segundo.importar(new ByteArrayInputStream(gpx), almacen.puntos.tamano()));
+        assertEquals(GpxImporter.LOTE + 100, segundo.getImportados());
+
+        // El resultado es el mismo que sin interrupción, incluida la distancia del primer punto nuevo.
+        assertEquals(referencia.puntos.tamano(), almacen.puntos.tamano());
+        for (int i = 0; i < referencia.puntos.tamano(); i++) {
+            assertEquals(referencia.puntos.getLatitud(i), almacen.puntos.getLatitud(i), 0);
+            assertEquals(referencia.puntos.getDistancia(i), almacen.puntos.getDistancia(i), 0);
+            assertEquals(referencia.puntos.getInstante(i), almacen.puntos.getInstante(i));
+        }
+    }
+
+    public void testRitmo() throws IOException {
+        byte[] gpx = generar(PUNTOS_GRANDE);
+        Almacen almacen = new Almacen();
+        GpxImporter importador = new GpxImporter(almacen);
+        assertTrue(importador.importar(new ByteArrayInputStream(gpx), 0));
+        assertEquals(PUNTOS_GRANDE, almacen.puntos.tamano());
+        assertEquals(PUNTOS_GRANDE / GpxImporter.LOTE + 1, almacen.lotes);
+
+        Log.d("Benchmark", "Importación GPX de " + PUNTOS_GRANDE + " puntos (" + gpx.length / 1024 + " KiB): "
+                + (long) importador.getPuntosPorSegundo() + " puntos/s");
+    }
+
+    /**
+     * Genera un GPX de n puntos, un segundo y unos 3 m entre cada dos.
+     */
+    private static byte[] generar(int n) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(n * 90);
+        Writer escritor = new OutputStreamWriter(bytes, "UTF-8");
+        TrackExporter exportador = new TrackExporter(escritor, TrackExporter.GPX);
+        exportador.empezar(new SessionSummary());
+        Point punto = new Point(0, 0, 0, 0, 0, 0);
+        for (int i = 0; i < n; i++) {
+            punto.setLatitud(37.3891 + i * 2e-5);
+            punto.setLongitud(-5.9845 + (i % 100) * 1e-5);
+            punto.setInstante(1445000000 + i);
+            exportador.procesarPunto(punto);
+        }
+        exportador.terminar();
+        escritor.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,45 @@
+package com.dam.proyectodam;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.Locale;
+
+/**
+ * Mide cuánto tarda HistoryAnalyzer en analizar un historial sintético grande (unos años
+ * de entrenamientos, unos 3 millones de cubos de 10 s) con 1, 2, 4... hilos, hasta el número
+ * de procesadores, y la mejora respecto a un hilo. Los resultados se escriben en el log con
+ * la etiqueta "Benchmark".
+ */
+public class HistoryAnalyzerBenchmark extends TestCase {
+
+    private static final int SESIONES = 1500;
+    private static final int CUBOS_MEDIOS = 1000;
+    private static final int REPETICIONES = 5;
+
+    public void testAceleracion() {
+        HistoryAnalyzer analizador = HistoryAnalyzerTest.historial(SESIONES, CUBOS_MEDIOS, 26);
+        HistoryStats referencia = analizador.analizar(1);
+        int procesadores = Runtime.getRuntime().availableProcessors();
+
+        long nanosUnHilo = 0;
+        for (int hilos = 1; hilos <= Math.max(2, procesadores); hilos *= 2) {
+            // Calentamiento y, después, la mejor de varias medidas.
+            analizador.analizar(hilos);
+            long mejor = Long.MAX_VALUE;
+            for (int r = 0; r < REPETICIONES; r++) {
+                long t0 = System.nanoTime();
+                HistoryStats estadisticas = analizador.analizar(hilos);
+                mejor = Math.min(mejor, System.nanoTime() - t0);
+                assertTrue(referencia.coincideCon(estadisticas));
+            }
+            if (hilos == 1)
+                nanosUnHilo = mejor;
+
+            Log.d("Benchmark", "HistoryAnalyzer: " + SESIONES + " sesiones con " + hilos + " hilos en "
+                    + mejor / 1000000 + " ms (x" + String.format(Locale.US, "%.2f",
+                    (double) nanosUnHilo / mejor) + " respecto a un hilo, " + procesadores + " procesadores)");
+        }
+    }
+}
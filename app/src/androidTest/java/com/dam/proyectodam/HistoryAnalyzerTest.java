@@ -0,0 +1,84 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Pruebas de HistoryAnalyzer y HistoryStats: semanas que empiezan en lunes, récords, y el
+ * análisis en paralelo da lo mismo que el secuencial.
+ */
+public class HistoryAnalyzerTest extends TestCase {
+
+    public void testSemanas() {
+        // Lunes 4/5/2015 a las 0:00 UTC, y el domingo anterior a las 23:59:59.
+        long lunes = 1430697600L;
+        assertEquals(HistoryStats.semana(lunes), HistoryStats.semana(lunes + 7 * 86400 - 1));
+        assertEquals(HistoryStats.semana(lunes) - 1, HistoryStats.semana(lunes - 1));
+        assertEquals(lunes, HistoryStats.inicioSemana(HistoryStats.semana(lunes + 3 * 86400)));
+    }
+
+    public void testRecords() {
+        HistoryAnalyzer analizador = new HistoryAnalyzer();
+        long lunes = 1430697600L;
+        // Sesión 1: 10 km/h durante 1 h el domingo; sesión 2: 20 km/h durante 30 s (no cuenta).
+        analizador.anadirSesion(1, new SessionSummary(360, 10000, 3600, lunes - 3601, lunes - 1),
+                cubos(lunes - 3600, 360, 10, 27.8f));
+        analizador.anadirSesion(2, new SessionSummary(3, 166, 60, lunes + 100, lunes + 130),
+                cubos(lunes + 100, 3, 20, 55.5f));
+
+        HistoryStats estadisticas = analizador.analizar(1);
+        assertEquals(2, estadisticas.getSesiones());
+        assertEquals(1, estadisticas.getSesionMejorVelocidad());
+        assertEquals(10, estadisticas.getMejorVelocidad(), 1e-9);
+        assertEquals(1, estadisticas.getSesionMasLarga());
+        assertEquals(2, estadisticas.getSemanas().size());
+        assertEquals(360 * 27.8, estadisticas.getSemanas().get(HistoryStats.semana(lunes - 1)), 1e-2);
+        assertEquals(3600, estadisticas.getDistribucion()[10]);
+        assertEquals(30, estadisticas.getDistribucion()[20]);
+        assertTrue(estadisticas.informe(8).contains("2015-04-27"));
+    }
+
+    public void testParaleloIgualSecuencial() {
+        HistoryAnalyzer analizador = historial(200, 500, 25);
+        HistoryStats secuencial = analizador.analizar(1);
+        for (int hilos = 2; hilos <= 8; hilos *= 2)
+            assertTrue(secuencial.coincideCon(analizador.analizar(hilos)));
+        assertEquals(200, secuencial.getSesiones());
+    }
+
+    /**
+     * Cubos seguidos de 10 s con la misma velocidad y distancia.
+     */
+    static TrackBuffer cubos(long inicio, int n, float velocidad, float distancia) {
+        TrackBuffer cubos = new TrackBuffer();
+        for (int i = 0; i < n; i++)
+            cubos.anadir(0, 0, distancia, velocidad, inicio + i * 10L);
+        return cubos;
+    }
+
+    /**
+     * Historial sintético: sesiones de hasta 2*cubosMedios cubos, una cada día o dos, con
+     * velocidades de paseo a bicicleta.
+     */
+    static HistoryAnalyzer historial(int sesiones, int cubosMedios, long semilla) {
+        Random aleatorio = new Random(semilla);
+        HistoryAnalyzer analizador = new HistoryAnalyzer();
+        long instante = 1420070400L;
+        for (int s = 1; s <= sesiones; s++) {
+            int n = 1 + aleatorio.nextInt(2 * cubosMedios);
+            TrackBuffer cubos = new TrackBuffer();
+            double distancia = 0, velocidades = 0;
+            for (int i = 0; i < n; i++) {
+                float velocidad = (float) Math.max(0, 12 + aleatorio.nextGaussian() * 8);
+                cubos.anadir(0, 0, velocidad / 0.36f, velocidad, instante + i * 10L);
+                distancia += velocidad / 0.36f;
+                velocidades += velocidad;
+            }
+            analizador.anadirSesion(s, new SessionSummary(n, distancia, velocidades, instante,
+                    instante + n * 10L - 1), cubos);
+            instante += 86400 + aleatorio.nextInt(86400);
+        }
+        return analizador;
+    }
+}
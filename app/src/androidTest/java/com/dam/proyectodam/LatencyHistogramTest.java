@@ -0,0 +1,117 @@
+package com.dam.proyectodam;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pruebas de LatencyHistogram y Metrics: cubetas contiguas, error relativo de los
+ * percentiles, registro desde varios hilos, y que con las métricas desactivadas no se
+ * registra nada. El coste por medida (activas y desactivadas) se escribe en el log con la
+ * etiqueta "Benchmark".
+ */
+public class LatencyHistogramTest extends TestCase {
+
+    private static final int MEDIDAS = 1000000;
+
+    @Override
+    protected void tearDown() throws Exception {
+        Metrics.setActivo(false);
+        super.tearDown();
+    }
+
+    public void testCubetas() {
+        // Cada valor cae en una cubeta cuyo límite superior no es menor que él, sin huecos.
+        long anterior = -1;
+        for (int i = 0; i < 60 * LatencyHistogram.SUBCUBETAS; i++) {
+            long limite = LatencyHistogram.limiteSuperior(i);
+            assertEquals(i, LatencyHistogram.indice(anterior + 1));
+            assertEquals(i, LatencyHistogram.indice(limite));
+            anterior = limite;
+        }
+        assertEquals(Long.MAX_VALUE, anterior);
+    }
+
+    public void testPercentiles() {
+        LatencyHistogram histograma = new LatencyHistogram("prueba");
+        Random aleatorio = new Random(17);
+        long[] valores = new long[100000];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = (long) (Math.exp(aleatorio.nextGaussian() * 2 + 13));
+            histograma.registrar(valores[i]);
+        }
+        Arrays.sort(valores);
+
+        for (double p : new double[] {50, 90, 99, 99.9}) {
+            long exacto = valores[(int) Math.ceil(valores.length * p / 100) - 1];
+            long aproximado = histograma.percentil(p);
+            assertTrue("p" + p, aproximado >= exacto);
+            assertTrue("p" + p, aproximado - exacto <= exacto / LatencyHistogram.SUBCUBETAS);
+        }
+        assertEquals(valores[valores.length - 1], histograma.percentil(100));
+        assertEquals(valores.length, histograma.getCuenta());
+
+        histograma.reiniciar();
+        assertEquals(0, histograma.getCuenta());
+        assertEquals(0, histograma.percentil(50));
+    }
+
+    public void testVariosHilos() throws InterruptedException {
+        final LatencyHistogram histograma = new LatencyHistogram("hilos");
+        Thread[] hilos = new Thread[4];
+        for (int h = 0; h < hilos.length; h++) {
+            final int desplazamiento = h;
+            hilos[h] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++)
+                        histograma.registrar(i + desplazamiento);
+                }
+            });
+            hilos[h].start();
+        }
+        for (Thread hilo : hilos)
+            hilo.join();
+
+        assertEquals(400000, histograma.getCuenta());
+        assertEquals(99999 + 3, histograma.getMaximo());
+    }
+
+    public void testDesactivadas() {
+        LatencyHistogram histograma = Metrics.histograma("prueba.desactivadas");
+        AtomicLong contador = Metrics.contador("prueba.contador");
+        assertSame(histograma, Metrics.histograma("prueba.desactivadas"));
+
+        // Primera pasada de calentamiento, y después la medida.
+        Metrics.setActivo(false);
+        medir(histograma, contador);
+        long nanosDesactivadas = medir(histograma, contador);
+        assertEquals(0, histograma.getCuenta());
+        assertEquals(0, contador.get());
+
+        Metrics.setActivo(true);
+        long nanosActivas = medir(histograma, contador);
+        assertEquals(MEDIDAS, histograma.getCuenta());
+        assertEquals(MEDIDAS, contador.get());
+        assertTrue(Metrics.informe().contains("prueba.desactivadas: n=" + MEDIDAS));
+
+        Log.d("Benchmark", "Métricas: " + (double) nanosDesactivadas / MEDIDAS + " ns por medida desactivadas, "
+                + (double) nanosActivas / MEDIDAS + " ns activas");
+        Metrics.reiniciar();
+        assertEquals(0, histograma.getCuenta());
+    }
+
+    private static long medir(LatencyHistogram histograma, AtomicLong contador) {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < MEDIDAS; i++) {
+            long inicio = Metrics.inicio();
+            Metrics.contar(contador, 1);
+            Metrics.registrar(histograma, inicio);
+        }
+        return System.nanoTime() - t0;
+    }
+}
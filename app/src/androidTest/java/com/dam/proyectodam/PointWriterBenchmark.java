@@ -0,0 +1,75 @@
+package com.dam.proyectodam;
+
+import android.location.Location;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Compara las inserciones por segundo de un punto por transacción (BBDD.insertarPosiciones
+ * con lotes de uno: una apertura y un cierre de la base de datos por punto) con las de
+ * PointWriter (un lote de varios puntos por transacción).
+ * Los resultados se escriben en el log con la etiqueta "Benchmark".
+ */
+public class PointWriterBenchmark extends AndroidTestCase {
+
+    // Número de puntos que se insertan en cada medida.
+    private static final int PUNTOS = 2000;
+
+    private BBDD baseDatos;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDatos = new BBDD(getContext());
+        baseDatos.borrarPosiciones();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        baseDatos.borrarPosiciones();
+        super.tearDown();
+    }
+
+    public void testInsercionesPorSegundo() {
+        Location localizacion = new Location("gps");
+
+        TrackBuffer punto = new TrackBuffer();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < PUNTOS; i++) {
+            mover(localizacion, i);
+            punto.vaciar();
+            punto.anadir(localizacion.getLatitude(), localizacion.getLongitude(), 1.5f,
+                    localizacion.getSpeed()*3.6f, localizacion.getTime()/1000);
+            assertTrue(baseDatos.insertarPosiciones(punto));
+        }
+        long directo = System.nanoTime() - t0;
+
+        baseDatos.borrarPosiciones();
+
+        PointWriter escritor = new PointWriter(baseDatos);
+        t0 = System.nanoTime();
+        for (int i = 0; i < PUNTOS; i++) {
+            mover(localizacion, i);
+            assertTrue(escritor.anadirPosicion(localizacion, 1.5f));
+        }
+        assertTrue(escritor.cerrar());
+        long agrupado = System.nanoTime() - t0;
+
+        assertEquals(PUNTOS, baseDatos.listarPosiciones().size());
+
+        Log.d("Benchmark", "Un punto por lote: " + porSegundo(directo) + " inserciones/s");
+        Log.d("Benchmark", "PointWriter (" + PointWriter.MAX_PUNTOS + " por lote): "
+                + porSegundo(agrupado) + " inserciones/s");
+    }
+
+    private static void mover(Location localizacion, int i) {
+        localizacion.setLatitude(37.3891 + i * 1e-5);
+        localizacion.setLongitude(-5.9845 + i * 1e-5);
+        localizacion.setSpeed(3.0f);
+        localizacion.setTime(1430000000000L + i * 1000L);
+    }
+
+    private static long porSegundo(long nanos) {
+        return PUNTOS * 1000000000L / Math.max(nanos, 1);
+    }
+}
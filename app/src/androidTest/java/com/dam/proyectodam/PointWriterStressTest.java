@@ -0,0 +1,327 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prueba de carga de PointWriter: se añaden miles de puntos por segundo contra un
+ * almacén lento, con una cola pequeña para forzar que crezca, y se comprueba que llegan
+ * todos, en orden y sin repetir. También se comprueba que los lotes que fallan se
+ * reintentan, y que añadir puntos nunca espera al almacén.
+ */
+public class PointWriterStressTest extends TestCase {
+
+    private static final int PUNTOS = 20000;
+
+    /**
+     * Almacén en memoria que tarda un tiempo fijo en escribir cada lote.
+     */
+    private static class AlmacenLento implements TrackStore {
+        final TrackBuffer puntos = new TrackBuffer();
+        final long retardo;
+        int lotes = 0;
+
+        // Pausas recibidas, y puntos que ya se habían escrito al recibir la primera.
+        int pausas = 0;
+        int puntosAntesDePausa = -1;
+
+        // Parciales recibidos, y pausas que ya se habían escrito al recibir los primeros.
+        final SplitEngine parciales = new SplitEngine();
+        int pausasAntesDeParciales = -1;
+
+        /* Lotes que fallarán a continuación (devolviendo false o, si lanzar, con una
+        excepción), y cerrojo que retiene la primera escritura hasta que se abre. */
+        int fallosPendientes = 0;
+        boolean lanzar = false;
+        CountDownLatch bloqueo = new CountDownLatch(0);
+
+        AlmacenLento(long retardo) {
+            this.retardo = retardo;
+        }
+
+        @Override
+        public boolean insertarPosiciones(TrackBuffer lote) {
+            try {
+                bloqueo.await();
+                Thread.sleep(retardo);
+            } catch (InterruptedException e) {
+                return false;
+            }
+            synchronized (this) {
+                if (fallosPendientes > 0) {
+                    fallosPendientes--;
+                    if (lanzar)
+                        throw new IllegalStateException("Fallo simulado del almacén");
+                    return false;
+                }
+                for (int i = 0; i < lote.tamano(); i++)
+                    puntos.anadir(lote.getLatitud(i), lote.getLongitud(i), lote.getDistancia(i),
+                            lote.getVelocidad(i), lote.getInstante(i));
+                lotes++;
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized boolean insertarPausa(long inicio, long fin, double latitud, double longitud) {
+            if (pausas++ == 0)
+                puntosAntesDePausa = puntos.tamano();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean insertarParciales(SplitEngine parciales) {
+            if (this.parciales.getCompletados() == 0)
+                pausasAntesDeParciales = pausas;
+            this.parciales.anadirCompletados(parciales);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean borrarPosiciones() {
+            puntos.vaciar();
+            return true;
+        }
+
+        @Override
+        public synchronized int recorrerPosiciones(PointCallback receptor) {
+            puntos.recorrer(receptor);
+            return puntos.tamano();
+        }
+
+        @Override
+        public int recorrerPosiciones(long desde, long hasta, PointCallback receptor) {
+            return recorrerPosiciones(receptor);
+        }
+
+        synchronized int tamano() {
+            return puntos.tamano();
+        }
+    }
+
+    public void testPausaDetrasDeLosPuntos() {
+        AlmacenLento almacen = new AlmacenLento(2);
+        PointWriter escritor = new PointWriter(almacen);
+
+        // Menos puntos que un lote: la pausa fuerza el volcado, y se escribe tras ellos.
+        for (int i = 0; i < 10; i++)
+            assertTrue(escritor.anadirPosicion(37.0, -5.0, 0, 0, i));
+        assertTrue(escritor.anadirPausa(0, 9, 37.0, -5.0));
+        assertTrue(escritor.volcar());
+        assertEquals(10, almacen.puntosAntesDePausa);
+        assertEquals(1, almacen.pausas);
+
+        assertTrue(escritor.cerrar());
+        assertFalse(escritor.anadirPausa(10, 20, 37.0, -5.0));
+    }
+
+    public void testParcialesEnElHiloEscritor() {
+        AlmacenLento almacen = new AlmacenLento(2);
+        PointWriter escritor = new PointWriter(almacen);
+
+        // Dos parciales de 100 m; el motor se puede vaciar y seguir en cuanto se pasan.
+        SplitEngine parciales = new SplitEngine(100);
+        for (int i = 0; i <= 25; i++)
+            parciales.anadir(10, i * 1000L);
+        assertEquals(2, parciales.getCompletados());
+        assertTrue(escritor.anadirPausa(0, 9, 37.0, -5.0));
+        assertTrue(escritor.anadirParciales(parciales));
+        parciales.vaciar();
+
+        assertTrue(escritor.volcar());
+        assertEquals(2, almacen.parciales.getCompletados());
+        assertEquals(2, almacen.parciales.getNumero(1));
+        assertEquals(20.0, almacen.parciales.getFinal(1), 1e-9);
+        // Se escriben detrás de las pausas que se añadieron antes.
+        assertEquals(1, almacen.pausasAntesDeParciales);
+
+        assertTrue(escritor.cerrar());
+        assertFalse(escritor.anadirParciales(parciales));
+    }
+
+    public void testNoSePierdenPuntosConLaColaLlena() {
+        AlmacenLento almacen = new AlmacenLento(2);
+        PointWriter escritor = new PointWriter(almacen, PointWriter.MAX_PUNTOS,
+                PointWriter.MAX_ESPERA, 256);
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < PUNTOS; i++)
+            assertTrue(escritor.anadirPosicion(37.0 + i * 1e-6, -5.0, 1.0f, 10.0f, i));
+        assertTrue(escritor.cerrar());
+        long nanos = System.nanoTime() - t0;
+
+        assertEquals(PUNTOS, almacen.tamano());
+        for (int i = 0; i < PUNTOS; i++)
+            assertEquals(i, almacen.puntos.getInstante(i));
+        assertTrue(escritor.getAmpliacionesCola() > 0);
+        assertEquals(0, escritor.getPendientes());
+        assertTrue(PUNTOS * 1000000000L / nanos > 1000);
+    }
+
+    public void testNoEsperaAlAlmacen() {
+        AlmacenLento almacen = new AlmacenLento(0);
+        almacen.bloqueo = new CountDownLatch(1);
+        PointWriter escritor = new PointWriter(almacen, PointWriter.MAX_PUNTOS,
+                PointWriter.MAX_ESPERA, 256);
+
+        // Con el almacén parado, la cola crece hasta el máximo y después descarta.
+        int total = 2 * PointWriter.MAX_CAPACIDAD_COLA + 10;
+        long t0 = System.nanoTime();
+        int aceptados = 0;
+        for (int i = 0; i < total; i++)
+            if (escritor.anadirPosicion(0, 0, 0, 0, i))
+                aceptados++;
+        long nanos = System.nanoTime() - t0;
+        assertTrue(nanos < 5000000000L);
+        assertTrue(escritor.getDescartados() > 0);
+        assertEquals(total, aceptados + escritor.getDescartados());
+
+        // Al abrir el almacén llegan todos los aceptados, pero se avisa de los descartados.
+        almacen.bloqueo.countDown();
+        assertFalse(escritor.cerrar());
+        assertEquals(aceptados, almacen.tamano());
+        assertEquals(0, escritor.getPendientes());
+    }
+
+    public void testCerrarSinEsperar() throws InterruptedException {
+        AlmacenLento almacen = new AlmacenLento(0);
+        almacen.bloqueo = new CountDownLatch(1);
+        PointWriter escritor = new PointWriter(almacen);
+        for (int i = 0; i < 1000; i++)
+            assertTrue(escritor.anadirPosicion(0, 0, 0, 0, i));
+
+        // Con el almacén parado, cerrar vuelve en el momento y avisa después.
+        final CountDownLatch aviso = new CountDownLatch(1);
+        final boolean[] resultado = {false};
+        WriteCallback receptor = new WriteCallback() {
+            @Override
+            public void escrituraTerminada(boolean correcto) {
+                resultado[0] = correcto;
+                aviso.countDown();
+            }
+        };
+        long t0 = System.nanoTime();
+        escritor.cerrar(receptor);
+        assertTrue(System.nanoTime() - t0 < 1000000000L);
+        assertEquals(1, aviso.getCount());
+        assertFalse(escritor.anadirPosicion(0, 0, 0, 0, 1000));
+
+        almacen.bloqueo.countDown();
+        assertTrue(aviso.await(10, TimeUnit.SECONDS));
+        assertTrue(resultado[0]);
+        assertEquals(1000, almacen.tamano());
+
+        // Si ya había terminado, avisa en el momento.
+        resultado[0] = false;
+        escritor.cerrar(receptor);
+        assertTrue(resultado[0]);
+    }
+
+    public void testReintentaLoteFallido() {
+        AlmacenLento almacen = new AlmacenLento(0);
+        almacen.fallosPendientes = 2;
+        PointWriter escritor = new PointWriter(almacen);
+
+        for (int i = 0; i < 10; i++)
+            assertTrue(escritor.anadirPosicion(0, 0, 0, 0, i));
+        assertTrue(escritor.anadirPausa(0, 9, 0, 0));
+
+        /* Cada volcado reintenta el lote (como mucho) una vez; mientras falla, no se da por
+        escrito. La pausa ya pide un volcado, así que el primer intento puede ser suyo. */
+        assertFalse(escritor.volcar());
+        assertEquals(11, escritor.getPendientes());
+        for (int i = 0; i < 2 && !escritor.volcar(); i++)
+            assertEquals(11, escritor.getPendientes());
+        assertTrue(escritor.volcar());
+        assertEquals(2, escritor.getFallos());
+
+        // El lote se escribió una sola vez, entero, y la pausa detrás.
+        assertEquals(10, almacen.tamano());
+        assertEquals(1, almacen.lotes);
+        assertEquals(10, almacen.puntosAntesDePausa);
+        assertTrue(escritor.cerrar());
+    }
+
+    public void testExcepcionDelAlmacen() {
+        AlmacenLento almacen = new AlmacenLento(0);
+        almacen.fallosPendientes = 1;
+        almacen.lanzar = true;
+        PointWriter escritor = new PointWriter(almacen);
+
+        escritor.anadirPosicion(0, 0, 0, 0, 1);
+        assertFalse(escritor.volcar());
+
+        // El hilo escritor sigue vivo y, al reintentar, escribe el lote y los nuevos puntos.
+        escritor.anadirPosicion(0, 0, 0, 0, 2);
+        assertTrue(escritor.volcar());
+        assertEquals(2, almacen.tamano());
+        assertEquals(1, almacen.puntos.getInstante(0));
+        assertTrue(escritor.cerrar());
+    }
+
+    public void testFalloAlCerrar() {
+        AlmacenLento almacen = new AlmacenLento(0);
+        almacen.fallosPendientes = Integer.MAX_VALUE;
+        PointWriter escritor = new PointWriter(almacen);
+
+        escritor.anadirPosicion(0, 0, 0, 0, 1);
+        assertFalse(escritor.cerrar());
+        assertEquals(1, escritor.getPendientes());
+    }
+
+    public void testVariosProductores() throws InterruptedException {
+        final AlmacenLento almacen = new AlmacenLento(1);
+        final PointWriter escritor = new PointWriter(almacen, 50, PointWriter.MAX_ESPERA, 512);
+
+        Thread[] hilos = new Thread[4];
+        for (int h = 0; h < hilos.length; h++) {
+            final int base = h * PUNTOS;
+            hilos[h] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < PUNTOS; i++)
+                        escritor.anadirPosicion(0, 0, 0, 0, base + i);
+                }
+            });
+            hilos[h].start();
+        }
+        for (Thread hilo : hilos)
+            hilo.join();
+        assertTrue(escritor.volcar());
+
+        assertEquals(hilos.length * PUNTOS, almacen.tamano());
+        boolean[] vistos = new boolean[hilos.length * PUNTOS];
+        for (int i = 0; i < vistos.length; i++) {
+            int instante = (int) almacen.puntos.getInstante(i);
+            assertFalse(vistos[instante]);
+            vistos[instante] = true;
+        }
+        escritor.cerrar();
+    }
+
+    public void testVolcadoPorTiempo() throws InterruptedException {
+        AlmacenLento almacen = new AlmacenLento(0);
+        PointWriter escritor = new PointWriter(almacen, PointWriter.MAX_PUNTOS, 50);
+
+        for (int i = 0; i < 5; i++)
+            escritor.anadirPosicion(0, 0, 0, 0, i);
+        Thread.sleep(500);
+
+        // Sin llamar a volcar, el hilo escritor ya ha escrito el lote por tiempo.
+        assertEquals(5, almacen.tamano());
+        assertEquals(1, almacen.lotes);
+        escritor.cerrar();
+    }
+
+    public void testNoAceptaPuntosTrasCerrar() {
+        AlmacenLento almacen = new AlmacenLento(0);
+        PointWriter escritor = new PointWriter(almacen);
+
+        escritor.anadirPosicion(0, 0, 0, 0, 1);
+        assertTrue(escritor.cerrar());
+        assertFalse(escritor.anadirPosicion(0, 0, 0, 0, 2));
+        assertEquals(1, almacen.tamano());
+    }
+}
@@ -0,0 +1,107 @@
+package com.dam.proyectodam;
+
+import android.location.Location;
+import android.test.AndroidTestCase;
+
+/**
+ * Comprueba que el resumen que mantiene BBDD con cada inserción coincide con el que se
+ * obtiene recorriendo los puntos, con un punto suelto, con lotes de PointWriter y al borrar un punto, y que
+ * los agregados por cubos de tiempo dan lo mismo que los puntos de cada intervalo.
+ */
+public class SessionSummaryTest extends AndroidTestCase {
+
+    private BBDD baseDatos;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDatos = new BBDD(getContext());
+        baseDatos.borrarPosiciones();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        baseDatos.borrarPosiciones();
+        super.tearDown();
+    }
+
+    public void testResumenIncremental() {
+        assertEquals(0, baseDatos.leerResumen().getPuntos());
+
+        // Un punto suelto (un lote de uno) y luego varios lotes a través de PointWriter.
+        assertTrue(insertarPunto(0, 1430000000L));
+        Location localizacion = new Location("gps");
+
+        PointWriter escritor = new PointWriter(baseDatos, 7, PointWriter.MAX_ESPERA);
+        for (int i = 1; i <= 50; i++) {
+            localizacion.setSpeed(2.0f + i % 3);
+            localizacion.setTime(1430000000000L + i * 1000L);
+            escritor.anadirPosicion(localizacion, 2.5f);
+        }
+        escritor.cerrar();
+
+        SessionSummary resumen = baseDatos.leerResumen();
+        assertEquals(51, resumen.getPuntos());
+        assertEquals(50 * 2.5, resumen.getDistancia(), 1e-6);
+        assertEquals(50, resumen.getDuracion());
+        assertTrue(baseDatos.comprobarResumen());
+
+        // Reconstruir a partir de los puntos da el mismo resultado.
+        assertTrue(resumen.coincideCon(baseDatos.reconstruirResumen()));
+    }
+
+    public void testAgregados() {
+        // Tres horas y media a un punto cada 7 s, en lotes de 13 (no alineados con los cubos).
+        long inicio = 1430000003L;
+        PointWriter escritor = new PointWriter(baseDatos, 13, PointWriter.MAX_ESPERA);
+        for (int i = 0; i < 1800; i++)
+            escritor.anadirPosicion(37.0 + i * 1e-5, -6.0, 20f, i % 17, inicio + i * 7L);
+        escritor.cerrar();
+
+        // Toda la sesión.
+        SessionSummary resumen = baseDatos.leerResumen();
+        TimeRollup total = baseDatos.agregarIntervalo(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertTrue(resumen.coincideCon(total.getResumen()));
+        assertEquals(0, total.getVelocidadMinima(), 1e-9);
+        assertEquals(16, total.getVelocidadMaxima(), 1e-9);
+        assertEquals(37.0, total.getLatitudMinima(), 1e-9);
+
+        // Un intervalo con extremos en cubos de 10 s: igual que recorrer sus puntos.
+        long desde = 1430001230L, hasta = 1430009999L;
+        SessionSummary calculado = new SessionSummary();
+        baseDatos.recorrerPosiciones(desde, hasta, calculado);
+        assertTrue(calculado.coincideCon(baseDatos.agregarIntervalo(desde, hasta).getResumen()));
+
+        // Los cubos de un nivel suman lo mismo que el total.
+        long puntos = 0;
+        for (TimeRollup agregado : baseDatos.leerAgregados(60, inicio, inicio + 1800 * 7L))
+            puntos += agregado.getPuntos();
+        assertEquals(1800, puntos);
+    }
+
+    public void testBorrarPosicionDeOtraSesion() {
+        // Tres puntos en una sesión y dos en otra; la tabla está vacía, así que los _id van de 1 a 5.
+        long primera = baseDatos.crearSesion();
+        for (int i = 0; i < 3; i++)
+            assertTrue(insertarPunto(1.5f, 1430000000L + i));
+        baseDatos.crearSesion();
+        for (int i = 0; i < 2; i++)
+            assertTrue(insertarPunto(1.5f, 1440000000L + i));
+
+        // Se borra un punto de la primera sesión estando en la segunda: cambia la primera.
+        assertTrue(baseDatos.borrarPosicion(2));
+        BBDD anterior = new BBDD(getContext(), primera);
+        assertEquals(2, anterior.leerResumen().getPuntos());
+        assertTrue(anterior.comprobarResumen());
+        assertEquals(2, anterior.agregarIntervalo(Long.MIN_VALUE, Long.MAX_VALUE).getPuntos());
+        assertEquals(2, baseDatos.leerResumen().getPuntos());
+        assertTrue(baseDatos.comprobarResumen());
+    }
+
+    // Inserta un punto suelto, a 2 m/s (7,2 km/h), como un lote de uno.
+    private boolean insertarPunto(float distancia, long instante) {
+        TrackBuffer punto = new TrackBuffer();
+        punto.anadir(0, 0, distancia, 7.2f, instante);
+        return baseDatos.insertarPosiciones(punto);
+    }
+}
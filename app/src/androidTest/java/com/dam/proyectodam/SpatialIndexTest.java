@@ -0,0 +1,136 @@
+package com.dam.proyectodam;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Prueba del índice por zona de BBDD: con cada vez más entrenamientos guardados en la
+ * misma región, recorrerArea devuelve los mismos puntos que filtrar en memoria, y su
+ * latencia se compara con la de una consulta que recorre la tabla entera. Los tiempos se
+ * escriben en el log con la etiqueta "Benchmark".
+ */
+public class SpatialIndexTest extends AndroidTestCase {
+
+    // Puntos por entrenamiento, entrenamientos tras cada medida y consultas por medida.
+    private static final int PUNTOS_SESION = 10000;
+    private static final int[] SESIONES = {1, 10, 40};
+    private static final int CONSULTAS = 50;
+
+    // Región de los entrenamientos (unos 20 km de lado) y lado de cada consulta (1 km).
+    private static final double LAT_REGION = 37.3, LON_REGION = -6.1, LADO_REGION = 0.18;
+    private static final double LADO_CONSULTA = 0.009;
+
+    private final ArrayList<Long> creadas = new ArrayList<>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        BBDD baseDatos = new BBDD(getContext());
+        for (long sesion : creadas)
+            baseDatos.borrarSesion(sesion);
+        super.tearDown();
+    }
+
+    public void testLatenciaFrenteAPuntos() {
+        Random aleatorio = new Random(23);
+
+        // Sesión vacía desde la que se consultan todas las demás, y puntos que ya hubiera.
+        BBDD consulta = new BBDD(getContext());
+        creadas.add(consulta.crearSesion());
+        ArrayList<double[]> rectangulos = new ArrayList<>();
+        int[] previos = new int[CONSULTAS];
+        for (int q = 0; q < CONSULTAS; q++) {
+            double lat = LAT_REGION + aleatorio.nextDouble() * (LADO_REGION - LADO_CONSULTA);
+            double lon = LON_REGION + aleatorio.nextDouble() * (LADO_REGION - LADO_CONSULTA);
+            rectangulos.add(new double[] {lat, lon, lat + LADO_CONSULTA, lon + LADO_CONSULTA});
+            previos[q] = contar(consulta, rectangulos.get(q));
+        }
+
+        TrackBuffer generados = new TrackBuffer();
+        int sesiones = 0;
+        for (int objetivo : SESIONES) {
+            // Se añaden entrenamientos hasta llegar al objetivo.
+            for (; sesiones < objetivo; sesiones++) {
+                BBDD baseDatos = new BBDD(getContext());
+                creadas.add(baseDatos.crearSesion());
+                TrackBuffer lote = generar(aleatorio);
+                assertTrue(baseDatos.insertarPosiciones(lote));
+                for (int i = 0; i < lote.tamano(); i++)
+                    generados.anadir(lote.getLatitud(i), lote.getLongitud(i), 0, 0, 0);
+            }
+
+            // Con el índice: mismos puntos que filtrando en memoria.
+            long t0 = System.nanoTime();
+            int encontrados = 0;
+            for (int q = 0; q < CONSULTAS; q++) {
+                int n = contar(consulta, rectangulos.get(q));
+                assertEquals(previos[q] + dentro(generados, rectangulos.get(q)), n);
+                encontrados += n;
+            }
+            long nanosIndice = (System.nanoTime() - t0) / CONSULTAS;
+
+            // Sin el índice: la misma condición, recorriendo la tabla entera.
+            SQLiteDatabase db = consulta.getReadableDatabase();
+            t0 = System.nanoTime();
+            for (int q = 0; q < CONSULTAS; q++) {
+                double[] r = rectangulos.get(q);
+                Cursor c = db.rawQuery("SELECT COUNT(*) FROM posiciones NOT INDEXED WHERE latitud BETWEEN ? AND ? " +
+                        "AND longitud BETWEEN ? AND ?", new String[] {Double.toString(r[0]), Double.toString(r[2]),
+                        Double.toString(r[1]), Double.toString(r[3])});
+                c.moveToFirst();
+                c.close();
+            }
+            long nanosTabla = (System.nanoTime() - t0) / CONSULTAS;
+            db.close();
+
+            Log.d("Benchmark", "Zona de 1 km con " + sesiones * PUNTOS_SESION + " puntos guardados: "
+                    + nanosIndice / 1000 + " us con índice, " + nanosTabla / 1000 + " us recorriendo la tabla ("
+                    + encontrados / CONSULTAS + " puntos por consulta)");
+        }
+    }
+
+    /**
+     * Puntos de todas las demás sesiones dentro de un rectángulo, según recorrerArea.
+     */
+    private static int contar(BBDD baseDatos, double[] r) {
+        return baseDatos.recorrerArea(r[0], r[1], r[2], r[3], true, Integer.MAX_VALUE, new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+            }
+        });
+    }
+
+    /**
+     * Puntos generados dentro de un rectángulo, filtrando en memoria.
+     */
+    private static int dentro(TrackBuffer puntos, double[] r) {
+        int n = 0;
+        for (int i = 0; i < puntos.tamano(); i++) {
+            double lat = puntos.getLatitud(i), lon = puntos.getLongitud(i);
+            if (lat >= r[0] && lat <= r[2] && lon >= r[1] && lon <= r[3])
+                n++;
+        }
+        return n;
+    }
+
+    /**
+     * Un entrenamiento: paseo aleatorio de pasos de unos 3 m desde un punto de la región.
+     */
+    private static TrackBuffer generar(Random aleatorio) {
+        TrackBuffer lote = new TrackBuffer();
+        double lat = LAT_REGION + aleatorio.nextDouble() * LADO_REGION;
+        double lon = LON_REGION + aleatorio.nextDouble() * LADO_REGION;
+        double rumbo = aleatorio.nextDouble() * 2 * Math.PI;
+        for (int i = 0; i < PUNTOS_SESION; i++) {
+            rumbo += aleatorio.nextGaussian() * 0.2;
+            lat = Math.max(LAT_REGION, Math.min(LAT_REGION + LADO_REGION, lat + Math.cos(rumbo) * 2.7e-5));
+            lon = Math.max(LON_REGION, Math.min(LON_REGION + LADO_REGION, lon + Math.sin(rumbo) * 3.4e-5));
+            lote.anadir(lat, lon, 3, 10.8f, 1430000000L + i);
+        }
+        return lote;
+    }
+}
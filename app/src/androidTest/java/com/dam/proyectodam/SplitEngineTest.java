@@ -0,0 +1,93 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+/**
+ * Pruebas de SplitEngine: el instante de cada cruce se interpola entre las posiciones, un
+ * salto largo completa varios parciales, las vueltas manuales son independientes de los
+ * parciales, y el estado en curso se conserva al pasar a otra instancia.
+ */
+public class SplitEngineTest extends TestCase {
+
+    private static final long INICIO = 1430000000000L;
+
+    public void testInterpolacion() {
+        SplitEngine parciales = new SplitEngine();
+        parciales.anadir(0, INICIO);
+        // 300 m cada 60 s: la marca de 1000 m se cruza a un tercio del cuarto paso (200 s).
+        int completados = 0;
+        for (int i = 1; i <= 4; i++)
+            completados += parciales.anadir(300, INICIO + i * 60000L);
+        assertEquals(1, completados);
+        assertEquals(1, parciales.getCompletados());
+        assertEquals(SplitEngine.DISTANCIA, parciales.getTipo(0));
+        assertEquals(1, parciales.getNumero(0));
+        assertEquals(1000, parciales.getDistancia(0), 1e-9);
+        assertEquals(200, parciales.getDuracion(0), 1e-6);
+        assertEquals(INICIO / 1000.0 + 200, parciales.getFinal(0), 1e-6);
+
+        // El segundo parcial empieza en el cruce, no en la posición siguiente.
+        for (int i = 5; i <= 8; i++)
+            parciales.anadir(300, INICIO + i * 60000L);
+        assertEquals(2, parciales.getCompletados());
+        assertEquals(200, parciales.getDuracion(1), 1e-6);
+        assertEquals(2400, parciales.getDistanciaTotal(), 1e-6);
+    }
+
+    public void testSaltoLargo() {
+        SplitEngine parciales = new SplitEngine(500);
+        parciales.anadir(0, INICIO);
+        // 1600 m en 160 s: tres parciales de 50 s.
+        assertEquals(3, parciales.anadir(1600, INICIO + 160000));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, parciales.getNumero(i));
+            assertEquals(50, parciales.getDuracion(i), 1e-6);
+        }
+    }
+
+    public void testVueltas() {
+        SplitEngine parciales = new SplitEngine();
+        assertFalse(parciales.marcarVuelta(INICIO));
+        parciales.anadir(0, INICIO);
+        parciales.anadir(700, INICIO + 200000);
+        assertTrue(parciales.marcarVuelta(INICIO + 210000));
+        parciales.anadir(700, INICIO + 400000);
+
+        // Vuelta 1 y después el primer kilómetro, que no se ve afectado por la vuelta.
+        assertEquals(2, parciales.getCompletados());
+        assertEquals(SplitEngine.VUELTA, parciales.getTipo(0));
+        assertEquals(700, parciales.getDistancia(0), 1e-9);
+        assertEquals(210, parciales.getDuracion(0), 1e-6);
+        assertEquals(SplitEngine.DISTANCIA, parciales.getTipo(1));
+        assertEquals(200 + 300.0 / 700 * 200, parciales.getDuracion(1), 1e-6);
+
+        // Una vuelta marcada antes de la última posición termina en ella.
+        assertTrue(parciales.marcarVuelta(INICIO));
+        assertEquals(2, parciales.getNumero(2));
+        assertEquals(700, parciales.getDistancia(2), 1e-9);
+        assertEquals(190, parciales.getDuracion(2), 1e-6);
+    }
+
+    public void testEstado() {
+        SplitEngine antes = new SplitEngine();
+        antes.anadir(0, INICIO);
+        antes.anadir(1500, INICIO + 300000);
+        assertEquals(1, antes.getCompletados());
+        antes.vaciar();
+        assertEquals(0, antes.getCompletados());
+
+        // La nueva instancia sigue con el segundo kilómetro, desde el cruce del primero.
+        SplitEngine despues = new SplitEngine();
+        despues.setEstado(antes.getEstado());
+        despues.anadir(0, INICIO + 320000);
+        assertEquals(1, despues.anadir(500, INICIO + 340000));
+        assertEquals(2, despues.getNumero(0));
+        assertEquals(340 - 200, despues.getDuracion(0), 1e-6);
+    }
+
+    public void testDescribir() {
+        SplitEngine parciales = new SplitEngine();
+        parciales.completar(SplitEngine.DISTANCIA, 3, 1000, 305, 0);
+        assertEquals("Parcial 3: 1.00 km en 5:05 (5:05 min/km)", parciales.describir(0));
+    }
+}
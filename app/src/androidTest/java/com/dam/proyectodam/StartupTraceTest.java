@@ -0,0 +1,39 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+/**
+ * Pruebas de StartupTrace: un arranque templado no sustituye al arranque en frío en curso,
+ * y los puntos se registran en Metrics por tipo de arranque.
+ */
+public class StartupTraceTest extends TestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (StartupTrace.isActivo())
+            StartupTrace.terminar("fin");
+        Metrics.setActivo(false);
+        super.tearDown();
+    }
+
+    public void testArranques() throws InterruptedException {
+        Metrics.setActivo(true);
+        Metrics.reiniciar();
+        assertEquals(-1, StartupTrace.marcar("sin.arranque"));
+
+        // En frío: la pantalla de inicio no empieza otro arranque.
+        StartupTrace.empezar(true);
+        Thread.sleep(20);
+        StartupTrace.empezar(false);
+        assertTrue(StartupTrace.marcar("splash") >= 20);
+        assertTrue(StartupTrace.terminar("interactiva") >= 20);
+        assertFalse(StartupTrace.isActivo());
+        assertEquals(1, Metrics.histograma("arranque.frio.interactiva").getCuenta());
+
+        // Después, templado.
+        StartupTrace.empezar(false);
+        assertTrue(StartupTrace.terminar("interactiva") < 20);
+        assertEquals(1, Metrics.histograma("arranque.templado.interactiva").getCuenta());
+        assertEquals(0, Metrics.histograma("arranque.templado.splash").getCuenta());
+    }
+}
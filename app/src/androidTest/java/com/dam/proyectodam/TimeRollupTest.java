@@ -0,0 +1,57 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Pruebas de TimeRollup: cubos alineados entre niveles, elección de nivel, y juntar los
+ * agregados de varios tramos da lo mismo que añadir todos los puntos a uno solo.
+ */
+public class TimeRollupTest extends TestCase {
+
+    public void testCubos() {
+        assertEquals(143000000, TimeRollup.cubo(1430000009L, 10));
+        assertEquals(-1, TimeRollup.cubo(-1, 10));
+        assertEquals(-1, TimeRollup.cubo(-10, 10));
+        assertEquals(-2, TimeRollup.cubo(-11, 10));
+        // Los cubos de un nivel no cruzan los del siguiente.
+        for (long t = 1430000000L; t < 1430003600L; t++)
+            assertEquals(TimeRollup.cubo(t, 600), TimeRollup.cubo(TimeRollup.cubo(t, 60) * 60, 600));
+    }
+
+    public void testNivelPara() {
+        assertEquals(10, TimeRollup.nivelPara(3600, 1000));
+        assertEquals(60, TimeRollup.nivelPara(36000, 1000));
+        assertEquals(600, TimeRollup.nivelPara(31536000, 1000));
+    }
+
+    public void testJuntar() {
+        Random aleatorio = new Random(24);
+        TimeRollup todos = new TimeRollup();
+        TimeRollup juntos = new TimeRollup();
+        TimeRollup tramo = new TimeRollup();
+        tramo.empezar(60, 0);
+        for (int i = 0; i < 1000; i++) {
+            if (i % 37 == 0) {
+                juntos.juntar(tramo);
+                tramo.empezar(60, i);
+            }
+            double lat = 37 + aleatorio.nextDouble(), lon = -6 + aleatorio.nextDouble();
+            double velocidad = aleatorio.nextDouble() * 30;
+            todos.anadir(lat, lon, 3, velocidad, 1430000000L + i);
+            tramo.anadir(lat, lon, 3, velocidad, 1430000000L + i);
+        }
+        juntos.juntar(tramo);
+
+        assertEquals(todos.getPuntos(), juntos.getPuntos());
+        assertEquals(todos.getDistancia(), juntos.getDistancia(), 1e-6);
+        assertEquals(todos.getVelocidadMedia(), juntos.getVelocidadMedia(), 1e-9);
+        assertEquals(todos.getVelocidadMinima(), juntos.getVelocidadMinima(), 0);
+        assertEquals(todos.getVelocidadMaxima(), juntos.getVelocidadMaxima(), 0);
+        assertEquals(todos.getLatitudMinima(), juntos.getLatitudMinima(), 0);
+        assertEquals(todos.getLongitudMaxima(), juntos.getLongitudMaxima(), 0);
+        assertTrue(todos.getResumen().coincideCon(juntos.getResumen()));
+        assertEquals(999, juntos.getResumen().getDuracion());
+    }
+}
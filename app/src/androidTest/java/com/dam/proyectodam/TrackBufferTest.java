@@ -0,0 +1,76 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+/**
+ * Pruebas de TrackBuffer: lectura de los puntos a través de varios bloques, reutilización
+ * tras vaciar, y memoria reservada por punto según la distribución en bloques (la
+ * comparación medida con una lista de objetos Point está en TrackMemoryBenchmark, en el
+ * módulo benchmark).
+ */
+public class TrackBufferTest extends TestCase {
+
+    // Número de puntos de las pruebas (varios bloques, con el último a medias).
+    private static final int PUNTOS = 200 * TrackBuffer.TAM_BLOQUE + 17;
+
+    public void testLecturaEntreBloques() {
+        TrackBuffer buffer = new TrackBuffer();
+        for (int i = 0; i < PUNTOS; i++)
+            buffer.anadir(37.0 + i * 1e-6, -6.0 - i * 1e-6, i % 7, i % 11, 1000L + i);
+
+        assertEquals(PUNTOS, buffer.tamano());
+        for (int i = 0; i < PUNTOS; i += 997) {
+            assertEquals(37.0 + i * 1e-6, buffer.getLatitud(i), 0);
+            assertEquals(-6.0 - i * 1e-6, buffer.getLongitud(i), 0);
+            assertEquals(i % 7, buffer.getDistancia(i), 0);
+            assertEquals(i % 11, buffer.getVelocidad(i), 0);
+            assertEquals(1000L + i, buffer.getInstante(i));
+        }
+
+        // El recorrido con receptor entrega los mismos puntos, en orden.
+        final long[] suma = new long[2];
+        buffer.recorrer(new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                assertEquals(1000L + suma[0], punto.getInstante());
+                suma[0]++;
+                suma[1] += (long) punto.getDistancia();
+            }
+        });
+        assertEquals(PUNTOS, suma[0]);
+
+        long esperada = 0;
+        for (int i = 0; i < PUNTOS; i++)
+            esperada += i % 7;
+        assertEquals(esperada, suma[1]);
+    }
+
+    public void testVaciarReutilizaBloques() {
+        TrackBuffer buffer = new TrackBuffer();
+        for (int i = 0; i < 3 * TrackBuffer.TAM_BLOQUE; i++)
+            buffer.anadir(0, 0, 0, 0, i);
+        long reservada = buffer.memoriaReservada();
+
+        buffer.vaciar();
+        assertEquals(0, buffer.tamano());
+        for (int i = 0; i < 3 * TrackBuffer.TAM_BLOQUE; i++)
+            buffer.anadir(0, 0, 0, 0, i);
+        assertEquals(reservada, buffer.memoriaReservada());
+    }
+
+    public void testMemoriaPorPunto() {
+        // Cada punto ocupa lo que sus cinco columnas primitivas, sin cabeceras por punto.
+        assertEquals(8 + 8 + 4 + 4 + 8, TrackBuffer.BYTES_POR_PUNTO);
+
+        TrackBuffer buffer = new TrackBuffer();
+        for (int i = 0; i < PUNTOS; i++)
+            buffer.anadir(37.0, -6.0, 1.5f, 10.0f, i);
+
+        // Se reservan bloques enteros: como mucho, uno a medias.
+        int bloques = (PUNTOS + TrackBuffer.TAM_BLOQUE - 1) / TrackBuffer.TAM_BLOQUE;
+        assertEquals((long) bloques * TrackBuffer.TAM_BLOQUE * TrackBuffer.BYTES_POR_PUNTO,
+                buffer.memoriaReservada());
+        assertTrue(buffer.memoriaReservada() - (long) PUNTOS * TrackBuffer.BYTES_POR_PUNTO
+                < (long) TrackBuffer.TAM_BLOQUE * TrackBuffer.BYTES_POR_PUNTO);
+    }
+}
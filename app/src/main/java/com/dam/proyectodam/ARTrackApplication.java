@@ -0,0 +1,65 @@
+package com.dam.proyectodam;
+
+import android.app.Application;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ *
+ * Clase ARTrackApplication.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Clase de la aplicación, que se crea con el proceso, antes que cualquier actividad. Es el
+ * primer punto del arranque en frío, así que aquí se empieza a medir (ver StartupTrace) y
+ * se activan las métricas, para que cubran también el arranque. También guarda la caché de
+ * miniaturas de los recorridos, compartida por todas las actividades.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class ARTrackApplication extends Application {
+
+    // Fracción de la memoria de la máquina virtual para las miniaturas, y bytes en disco.
+    private static final int FRACCION_MEMORIA_MINIATURAS = 16;
+    private static final long MAX_DISCO_MINIATURAS = 4 * 1024 * 1024;
+
+    // Caché de miniaturas (se crea al pedirla por primera vez).
+    private ThumbnailCache miniaturas;
+
+    /**
+     * Método: onCreate
+     * Método ejecutado al crearse el proceso de la aplicación.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Las métricas sólo se toman en las versiones de depuración.
+        Metrics.setActivo(BuildConfig.DEBUG);
+
+        StartupTrace.empezar(true);
+        StartupTrace.marcar("aplicacion");
+        Log.d("Application", "Aplicación creada");
+    }
+
+    /**
+     * Método: getMiniaturas
+     * Devuelve la caché de miniaturas, en memoria y en la carpeta de caché de la aplicación
+     * (que el sistema puede vaciar si le falta espacio).
+     *
+     * @return la caché de miniaturas.
+     */
+    public synchronized ThumbnailCache getMiniaturas() {
+        if (miniaturas == null) {
+            File carpeta = new File(getCacheDir(), "miniaturas");
+            miniaturas = new ThumbnailCache(carpeta, Runtime.getRuntime().maxMemory() / FRACCION_MEMORIA_MINIATURAS,
+                    MAX_DISCO_MINIATURAS);
+            if (miniaturas.getCarpeta() == null)
+                Log.e("Application", "No se pudo crear " + carpeta + "; las miniaturas sólo se guardan en memoria");
+        }
+        return miniaturas;
+    }
+}
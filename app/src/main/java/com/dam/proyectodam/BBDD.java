@@ -3,18 +3,30 @@ package com.dam.proyectodam;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.location.Location;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
  * Clase BBDD.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
  * Clase que conforma la base de datos que se utilizará en la aplicación, con
  * métodos de inserción, modificación, consulta y borrado de puntos.
+ * Cada entrenamiento es una sesión (tabla sesiones), y cada punto guarda la sesión a
+ * la que pertenece. Una instancia de BBDD trabaja sobre una sesión: la indicada en el
+ * constructor o, si no se indica, la última creada.
  *
  * Link del repositorio (GitHub):
  *  https://github.com/ramperher/ProyectoDAM
@@ -23,10 +35,10 @@ import java.util.ArrayList;
  * @version 1.0 final
  *
  */
-public class BBDD extends SQLiteOpenHelper {
+public class BBDD extends SQLiteOpenHelper implements TrackStore {
 
     // Versión de la base de datos.
-    private static final int VERSION_BBDD = 1;
+    private static final int VERSION_BBDD = 9;
 
     // Nombre de la base de datos.
     private static final String NOMBRE_BBDD = "gps.db";
@@ -34,27 +46,253 @@ public class BBDD extends SQLiteOpenHelper {
     /* Sentencia SQL para crear la tabla de posiciones del mapa.
     En la base de datos, se guardará:
     -Identificador, para clave primaria.
+    -Sesión (entrenamiento) a la que pertenece el punto.
     -Latitud y longitud del punto.
     -Velocidad alcanzada en ese punto.
     -Instante de captura de la posición.
-    La distancia de cada intervalo se calcula a partir de estos datos. */
+    -Celda (geohash entero de la posición, ver Geohash), para buscar por zona.
+    La distancia de cada intervalo se calcula a partir de estos datos.
+    Desde la versión 2, las columnas son numéricas (REAL/INTEGER) en lugar de texto, para
+    no tener que convertir a String al escribir ni parsear al leer. */
     private static final String TABLA_LOCALIZACION="CREATE TABLE IF NOT EXISTS posiciones " +
-            "(_id INTEGER PRIMARY key, latitud text, longitud text, distancia text, velocidad text, " +
-            "instante text)";
+            "(_id INTEGER PRIMARY key, sesion INTEGER REFERENCES sesiones(_id), latitud REAL, " +
+            "longitud REAL, distancia REAL, velocidad REAL, instante INTEGER, celda INTEGER)";
 
-    // Sentencia SQL para borrar la tabla de posiciones del mapa.
-    private static final String DROP_LOCALIZACIONES="DROP TABLE IF EXISTS posiciones";
+    /* Sentencia SQL para crear el índice por sesión e instante de captura. Con él, los puntos
+    de una sesión se leen en orden (y se borran) sin recorrer los de las demás. */
+    private static final String INDICE_SESION_INSTANTE="CREATE INDEX IF NOT EXISTS " +
+            "posiciones_sesion_instante ON posiciones (sesion, instante)";
 
-    // Identificador para ir guardando los puntos en orden.
-    private static int id = 1;
+    /* Sentencia SQL para crear el índice por celda. Los puntos de una zona tienen celdas en
+    unos pocos intervalos (ver Geohash.rangos), así que con él se leen sólo esas filas, sean
+    de la sesión que sean. */
+    private static final String INDICE_CELDA="CREATE INDEX IF NOT EXISTS " +
+            "posiciones_celda ON posiciones (celda)";
+
+    /* Sentencia SQL para crear la tabla de sesiones, que guarda además el resumen de cada
+    entrenamiento, actualizado con cada inserción para no tener que recorrer todos los
+    puntos al mostrar los resultados:
+    -Número de puntos.
+    -Distancia total y suma de velocidades (para la velocidad media).
+    -Instantes del primer y el último punto (para la duración).
+    -Tiempo parado (suma de las pausas), que no cuenta como tiempo en movimiento.
+    -Origen, para las sesiones importadas de un fichero GPX (nulo en las grabadas), y si
+    su importación está a medias (ver prepararImportacion). */
+    private static final String TABLA_SESIONES="CREATE TABLE IF NOT EXISTS sesiones " +
+            "(_id INTEGER PRIMARY KEY AUTOINCREMENT, puntos INTEGER DEFAULT 0, distancia REAL DEFAULT 0, " +
+            "velocidad_acumulada REAL DEFAULT 0, instante_inicial INTEGER DEFAULT 0, " +
+            "instante_final INTEGER DEFAULT 0, tiempo_parado INTEGER DEFAULT 0, origen TEXT, " +
+            "importacion_pendiente INTEGER DEFAULT 0)";
+
+    /* Sentencia SQL para crear la tabla de pausas. Cada pausa sustituye a todos los puntos
+    capturados mientras el usuario estaba parado (ver StationaryDetector), y guarda la
+    sesión, los instantes de inicio y fin y la posición donde se produjo. */
+    private static final String TABLA_PAUSAS="CREATE TABLE IF NOT EXISTS pausas " +
+            "(_id INTEGER PRIMARY KEY, sesion INTEGER REFERENCES sesiones(_id), " +
+            "instante_inicial INTEGER, instante_final INTEGER, latitud REAL, longitud REAL)";
+
+    /* Sentencia SQL para crear la tabla de parciales (ver SplitEngine). Cada fila es un
+    parcial por distancia o una vuelta manual ya completados, con su sesión, tipo, número,
+    distancia (m), duración (s) e instante final (s, con decimales, porque se interpola
+    entre dos posiciones). Así se muestran sin volver a recorrer los puntos. */
+    private static final String TABLA_PARCIALES="CREATE TABLE IF NOT EXISTS parciales " +
+            "(_id INTEGER PRIMARY KEY, sesion INTEGER REFERENCES sesiones(_id), tipo INTEGER, " +
+            "numero INTEGER, distancia REAL, duracion REAL, instante_final REAL)";
+
+    /* Sentencia SQL para crear la tabla de agregados (ver TimeRollup). Cada fila resume los
+    puntos de una sesión en un cubo de tiempo de un nivel (10 s, 1 min o 10 min): número de
+    puntos, distancia, velocidades mínima, máxima y acumulada, instantes del primer y el
+    último punto y rectángulo que los contiene. La clave primaria es también el índice con
+    el que se leen los cubos de un intervalo. */
+    private static final String TABLA_AGREGADOS="CREATE TABLE IF NOT EXISTS agregados " +
+            "(sesion INTEGER REFERENCES sesiones(_id), nivel INTEGER, cubo INTEGER, puntos INTEGER, " +
+            "distancia REAL, velocidad_minima REAL, velocidad_maxima REAL, velocidad_acumulada REAL, " +
+            "instante_inicial INTEGER, instante_final INTEGER, latitud_minima REAL, latitud_maxima REAL, " +
+            "longitud_minima REAL, longitud_maxima REAL, PRIMARY KEY (sesion, nivel, cubo))";
+
+    /* Sentencias SQL para sumar un agregado de un lote al de la tabla: la primera crea la fila
+    del cubo si no existe (vacía, pero con los mínimos y máximos del lote para que valgan
+    como punto de partida), y la segunda suma el lote. Así funciona tanto si el cubo es
+    nuevo como si ya tenía puntos de lotes anteriores. */
+    private static final String CREAR_AGREGADO="INSERT OR IGNORE INTO agregados (sesion, nivel, cubo, " +
+            "puntos, distancia, velocidad_acumulada, velocidad_minima, velocidad_maxima, instante_inicial, " +
+            "instante_final, latitud_minima, latitud_maxima, longitud_minima, longitud_maxima) " +
+            "VALUES (?, ?, ?, 0, 0, 0, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SUMAR_AGREGADO="UPDATE agregados SET puntos = puntos + ?, " +
+            "distancia = distancia + ?, velocidad_acumulada = velocidad_acumulada + ?, " +
+            "velocidad_minima = MIN(velocidad_minima, ?), velocidad_maxima = MAX(velocidad_maxima, ?), " +
+            "instante_inicial = MIN(instante_inicial, ?), instante_final = MAX(instante_final, ?), " +
+            "latitud_minima = MIN(latitud_minima, ?), latitud_maxima = MAX(latitud_maxima, ?), " +
+            "longitud_minima = MIN(longitud_minima, ?), longitud_maxima = MAX(longitud_maxima, ?) " +
+            "WHERE sesion = ? AND nivel = ? AND cubo = ?";
+
+    /* Sentencia SQL para calcular los agregados de un nivel a partir de los puntos (al migrar
+    y al borrar un punto suelto), con el nivel en los dos primeros %d y una condición sobre
+    los puntos en el %s. Los instantes son positivos, así que la división entera de SQLite
+    coincide con TimeRollup.cubo. */
+    private static final String RELLENAR_AGREGADOS="INSERT INTO agregados (sesion, nivel, cubo, puntos, " +
+            "distancia, velocidad_acumulada, velocidad_minima, velocidad_maxima, instante_inicial, " +
+            "instante_final, latitud_minima, latitud_maxima, longitud_minima, longitud_maxima) " +
+            "SELECT sesion, %d, instante / %d AS c, COUNT(*), TOTAL(distancia), TOTAL(velocidad), " +
+            "MIN(velocidad), MAX(velocidad), MIN(instante), MAX(instante), MIN(latitud), MAX(latitud), " +
+            "MIN(longitud), MAX(longitud) FROM posiciones WHERE %s GROUP BY sesion, c";
+
+    // Sentencia SQL para sumar los agregados de un nivel dentro de un intervalo de cubos.
+    private static final String SUMAR_INTERVALO="SELECT IFNULL(SUM(puntos), 0), TOTAL(distancia), " +
+            "MIN(velocidad_minima), MAX(velocidad_maxima), TOTAL(velocidad_acumulada), MIN(instante_inicial), " +
+            "MAX(instante_final), MIN(latitud_minima), MAX(latitud_maxima), MIN(longitud_minima), " +
+            "MAX(longitud_maxima) FROM agregados WHERE sesion = ? AND nivel = ? AND cubo BETWEEN ? AND ?";
+
+    // Sentencia SQL para insertar un parcial.
+    private static final String INSERTAR_PARCIAL="INSERT INTO parciales " +
+            "(sesion, tipo, numero, distancia, duracion, instante_final) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Sentencia SQL para insertar una posición, que se compila una vez por lote.
+    private static final String INSERTAR_POSICION="INSERT INTO posiciones " +
+            "(sesion, latitud, longitud, distancia, velocidad, instante, celda) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /* Sentencias SQL para migrar la tabla de la versión 1 (columnas de texto) a la 2: se crea
+    la tabla nueva, se copian las filas convirtiendo cada columna a su tipo, se borra la
+    antigua y se renombra la nueva. */
+    private static final String[] MIGRACION_VERSION_2 = {
+            "CREATE TABLE posiciones_v2 (_id INTEGER PRIMARY key, latitud REAL, longitud REAL, " +
+                    "distancia REAL, velocidad REAL, instante INTEGER)",
+            "INSERT INTO posiciones_v2 (_id, latitud, longitud, distancia, velocidad, instante) " +
+                    "SELECT _id, CAST(latitud AS REAL), CAST(longitud AS REAL), CAST(distancia AS REAL), " +
+                    "CAST(velocidad AS REAL), CAST(instante AS INTEGER) FROM posiciones",
+            "DROP TABLE posiciones",
+            "ALTER TABLE posiciones_v2 RENAME TO posiciones",
+            "CREATE INDEX IF NOT EXISTS posiciones_instante ON posiciones (instante)"
+    };
+
+    /* Sentencias SQL para migrar a la versión 3: tabla resumen con una única fila (_id 1),
+    calculada a partir de los puntos que ya hubiera. */
+    private static final String[] MIGRACION_VERSION_3 = {
+            "CREATE TABLE IF NOT EXISTS resumen (_id INTEGER PRIMARY key, puntos INTEGER, " +
+                    "distancia REAL, velocidad_acumulada REAL, instante_inicial INTEGER, instante_final INTEGER)",
+            "INSERT OR REPLACE INTO resumen (_id, puntos, distancia, velocidad_acumulada, " +
+                    "instante_inicial, instante_final) SELECT 1, COUNT(*), TOTAL(distancia), TOTAL(velocidad), " +
+                    "IFNULL((SELECT instante FROM posiciones ORDER BY _id LIMIT 1), 0), " +
+                    "IFNULL((SELECT instante FROM posiciones ORDER BY _id DESC LIMIT 1), 0) FROM posiciones"
+    };
+
+    /* Sentencias SQL para migrar a la versión 4 (varias sesiones): el entrenamiento guardado,
+    si lo hay, pasa a ser la sesión 1 con el resumen que ya tenía, y sus puntos se asignan
+    a ella. El índice por instante se sustituye por el de sesión e instante. */
+    private static final String[] MIGRACION_VERSION_4 = {
+            "CREATE TABLE sesiones (_id INTEGER PRIMARY KEY AUTOINCREMENT, puntos INTEGER DEFAULT 0, " +
+                    "distancia REAL DEFAULT 0, velocidad_acumulada REAL DEFAULT 0, " +
+                    "instante_inicial INTEGER DEFAULT 0, instante_final INTEGER DEFAULT 0)",
+            "INSERT INTO sesiones (_id, puntos, distancia, velocidad_acumulada, instante_inicial, " +
+                    "instante_final) SELECT 1, puntos, distancia, velocidad_acumulada, instante_inicial, " +
+                    "instante_final FROM resumen WHERE _id = 1 AND puntos > 0",
+            "ALTER TABLE posiciones ADD COLUMN sesion INTEGER REFERENCES sesiones(_id)",
+            "UPDATE posiciones SET sesion = 1",
+            "DROP TABLE resumen",
+            "DROP INDEX IF EXISTS posiciones_instante",
+            "CREATE INDEX posiciones_sesion_instante ON posiciones (sesion, instante)"
+    };
+
+    /* Sentencias SQL para migrar a la versión 5 (pausas): tabla de pausas y tiempo parado
+    en el resumen de cada sesión. Las sesiones anteriores no tienen pausas, así que su
+    tiempo parado es 0. Como en el resto de pasos, las tablas se crean con su SQL de esa
+    versión, no con TABLA_PAUSAS, para que el paso no cambie si la tabla cambia después. */
+    private static final String[] MIGRACION_VERSION_5 = {
+            "CREATE TABLE IF NOT EXISTS pausas (_id INTEGER PRIMARY KEY, sesion INTEGER REFERENCES sesiones(_id), " +
+                    "instante_inicial INTEGER, instante_final INTEGER, latitud REAL, longitud REAL)",
+            "ALTER TABLE sesiones ADD COLUMN tiempo_parado INTEGER DEFAULT 0"
+    };
+
+    /* Sentencias SQL para migrar a la versión 6 (importación de GPX): origen de cada sesión y
+    si su importación está a medias. Las sesiones anteriores son todas grabadas. */
+    private static final String[] MIGRACION_VERSION_6 = {
+            "ALTER TABLE sesiones ADD COLUMN origen TEXT",
+            "ALTER TABLE sesiones ADD COLUMN importacion_pendiente INTEGER DEFAULT 0"
+    };
+
+    /* Sentencias SQL para migrar a la versión 7 (índice por zona): columna de celda. Las celdas
+    de los puntos que ya hubiera se calculan en Java (ver rellenarCeldas) y después se crea
+    el índice, que así se construye de una vez. */
+    private static final String MIGRACION_VERSION_7 = "ALTER TABLE posiciones ADD COLUMN celda INTEGER";
+    private static final String INDICE_VERSION_7 = "CREATE INDEX IF NOT EXISTS posiciones_celda ON posiciones (celda)";
+
+    /* Sentencia SQL para migrar a la versión 8 (parciales): tabla de parciales. Las sesiones
+    anteriores no tienen parciales guardados. */
+    private static final String MIGRACION_VERSION_8 = "CREATE TABLE IF NOT EXISTS parciales " +
+            "(_id INTEGER PRIMARY KEY, sesion INTEGER REFERENCES sesiones(_id), tipo INTEGER, " +
+            "numero INTEGER, distancia REAL, duracion REAL, instante_final REAL)";
+
+    /* Sentencia SQL para migrar a la versión 9 (agregados): tabla de agregados, que después
+    se rellena con los puntos que ya hubiera (ver rellenarAgregados). */
+    private static final String MIGRACION_VERSION_9 = "CREATE TABLE IF NOT EXISTS agregados " +
+            "(sesion INTEGER REFERENCES sesiones(_id), nivel INTEGER, cubo INTEGER, puntos INTEGER, " +
+            "distancia REAL, velocidad_minima REAL, velocidad_maxima REAL, velocidad_acumulada REAL, " +
+            "instante_inicial INTEGER, instante_final INTEGER, latitud_minima REAL, latitud_maxima REAL, " +
+            "longitud_minima REAL, longitud_maxima REAL, PRIMARY KEY (sesion, nivel, cubo))";
+
+    // Sentencia SQL para calcular la celda de un punto existente.
+    private static final String ACTUALIZAR_CELDA="UPDATE posiciones SET celda = ? WHERE _id = ?";
+
+    // Sentencia SQL para sumar una pausa al tiempo parado de una sesión.
+    private static final String ACTUALIZAR_TIEMPO_PARADO="UPDATE sesiones SET " +
+            "tiempo_parado = tiempo_parado + ? WHERE _id = ?";
+
+    // Sentencia SQL para sumar un lote de puntos al resumen de una sesión (los SET usan los valores anteriores).
+    private static final String ACTUALIZAR_RESUMEN="UPDATE sesiones SET " +
+            "instante_inicial = CASE WHEN puntos = 0 THEN ? ELSE instante_inicial END, " +
+            "instante_final = ?, puntos = puntos + ?, distancia = distancia + ?, " +
+            "velocidad_acumulada = velocidad_acumulada + ? WHERE _id = ?";
+
+    /* Sentencia SQL para reconstruir el resumen de una sesión a partir de sus puntos (y el
+    tiempo parado a partir de sus pausas). Los instantes inicial y final se toman del primer
+    y el último punto en el mismo orden en que se recorren (instante, y _id en caso de empate). */
+    private static final String RECONSTRUIR_RESUMEN="UPDATE sesiones SET " +
+            "puntos = (SELECT COUNT(*) FROM posiciones WHERE sesion = sesiones._id), " +
+            "distancia = (SELECT TOTAL(distancia) FROM posiciones WHERE sesion = sesiones._id), " +
+            "velocidad_acumulada = (SELECT TOTAL(velocidad) FROM posiciones WHERE sesion = sesiones._id), " +
+            "instante_inicial = IFNULL((SELECT instante FROM posiciones WHERE sesion = sesiones._id " +
+            "ORDER BY instante, _id LIMIT 1), 0), " +
+            "instante_final = IFNULL((SELECT instante FROM posiciones WHERE sesion = sesiones._id " +
+            "ORDER BY instante DESC, _id DESC LIMIT 1), 0), " +
+            "tiempo_parado = (SELECT IFNULL(SUM(instante_final - instante_inicial), 0) FROM pausas " +
+            "WHERE sesion = sesiones._id) WHERE _id = ?";
+
+    // Métricas: duración de las inserciones y de los recorridos, y filas escritas y leídas.
+    private static final LatencyHistogram TIEMPO_INSERTAR = Metrics.histograma("bbdd.insertar");
+    private static final LatencyHistogram TIEMPO_RECORRER = Metrics.histograma("bbdd.recorrer");
+    private static final LatencyHistogram TIEMPO_AREA = Metrics.histograma("bbdd.area");
+    private static final LatencyHistogram TIEMPO_AGREGADOS = Metrics.histograma("bbdd.agregados");
+    private static final AtomicLong FILAS_INSERTADAS = Metrics.contador("bbdd.filas_insertadas");
+    private static final AtomicLong FILAS_LEIDAS = Metrics.contador("bbdd.filas_leidas");
+    private static final AtomicLong FILAS_ULTIMO_RECORRIDO = Metrics.indicador("bbdd.filas_ultimo_recorrido");
+
+    // Tamaño del buffer (en caracteres) con el que se escriben las exportaciones.
+    private static final int TAMANO_BUFFER_EXPORTACION = 64 * 1024;
+
+    // Valor de sesión que indica "la última sesión creada".
+    public static final long SESION_ULTIMA = -1;
+
+    // Sesión sobre la que trabaja esta instancia (SESION_ULTIMA hasta que se resuelva).
+    private long sesion;
 
     /**
-     * Constructor de la clase BBDD
+     * Constructor de la clase BBDD, que trabaja sobre la última sesión creada.
      *
      * @param context contexto de la base de datos.
      */
     public BBDD (Context context){
+        this(context, SESION_ULTIMA);
+    }
+
+    /**
+     * Constructor de la clase BBDD, que trabaja sobre una sesión concreta.
+     *
+     * @param context contexto de la base de datos.
+     * @param sesion identificador de la sesión (o SESION_ULTIMA).
+     */
+    public BBDD (Context context, long sesion){
         super(context, NOMBRE_BBDD, null, VERSION_BBDD);
+        this.sesion = sesion;
     }
 
     /**
@@ -65,13 +303,22 @@ public class BBDD extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
+        db.execSQL(TABLA_SESIONES);
         db.execSQL(TABLA_LOCALIZACION);
+        db.execSQL(INDICE_SESION_INSTANTE);
+        db.execSQL(INDICE_CELDA);
+        db.execSQL(TABLA_PAUSAS);
+        db.execSQL(TABLA_PARCIALES);
+        db.execSQL(TABLA_AGREGADOS);
         Log.d("BBDD", "Creación de la BBDD");
     }
 
     /**
      * Método: onUpgrade
-     * Actualiza la tabla en la base de datos, borrando y creándola de nuevo.
+     * Actualiza la tabla en la base de datos, migrando las filas que ya existan en lugar
+     * de borrarlas. Cada versión aplica sus cambios sobre la anterior, en orden. Se
+     * ejecuta dentro de la transacción que abre SQLiteOpenHelper, así que si algo falla
+     * la base de datos se queda en la versión antigua.
      *
      * @param db manejador de la base de datos.
      * @param oldVersion antigua versión.
@@ -79,55 +326,476 @@ public class BBDD extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL(DROP_LOCALIZACIONES);
-        db.execSQL(TABLA_LOCALIZACION);
-        Log.d("BBDD", "Actualización de la BBDD");
+        if (oldVersion < 2) {
+            // De texto a columnas numéricas, con índice por instante.
+            for (String sentencia : MIGRACION_VERSION_2)
+                db.execSQL(sentencia);
+            Log.d("BBDD", "Migrada la tabla de posiciones a la versión 2");
+        }
+        if (oldVersion < 3) {
+            // Tabla de resumen, calculada a partir de los puntos que ya hubiera.
+            for (String sentencia : MIGRACION_VERSION_3)
+                db.execSQL(sentencia);
+            Log.d("BBDD", "Creado el resumen del entrenamiento (versión 3)");
+        }
+        if (oldVersion < 4) {
+            // Tabla de sesiones, con el entrenamiento guardado como primera sesión.
+            for (String sentencia : MIGRACION_VERSION_4)
+                db.execSQL(sentencia);
+            Log.d("BBDD", "Creada la tabla de sesiones (versión 4)");
+        }
+        if (oldVersion < 5) {
+            // Tabla de pausas y tiempo parado de cada sesión.
+            for (String sentencia : MIGRACION_VERSION_5)
+                db.execSQL(sentencia);
+            Log.d("BBDD", "Creada la tabla de pausas (versión 5)");
+        }
+        if (oldVersion < 6) {
+            // Origen de las sesiones importadas.
+            for (String sentencia : MIGRACION_VERSION_6)
+                db.execSQL(sentencia);
+            Log.d("BBDD", "Añadido el origen de las sesiones (versión 6)");
+        }
+        if (oldVersion < 7) {
+            // Celda de cada punto, con su índice.
+            db.execSQL(MIGRACION_VERSION_7);
+            rellenarCeldas(db);
+            db.execSQL(INDICE_VERSION_7);
+            Log.d("BBDD", "Creado el índice por zona (versión 7)");
+        }
+        if (oldVersion < 8) {
+            // Parciales y vueltas de cada sesión.
+            db.execSQL(MIGRACION_VERSION_8);
+            Log.d("BBDD", "Creada la tabla de parciales (versión 8)");
+        }
+        if (oldVersion < 9) {
+            // Agregados por cubos de tiempo, a partir de los puntos que ya hubiera.
+            db.execSQL(MIGRACION_VERSION_9);
+            rellenarAgregados(db, "1");
+            Log.d("BBDD", "Creada la tabla de agregados (versión 9)");
+        }
+        Log.d("BBDD", "Actualización de la BBDD de la versión " + oldVersion + " a la " + newVersion);
     }
 
     /**
-     * Método: insertarPosicion
-     * Añade una posición en la base de datos, con sus atributos característicos.
+     * Método: rellenarCeldas
+     * Calcula la celda de todos los puntos guardados (al migrar a la versión 7).
+     *
+     * @param db manejador de la base de datos.
+     */
+    private static void rellenarCeldas(SQLiteDatabase db) {
+        SQLiteStatement sentencia = db.compileStatement(ACTUALIZAR_CELDA);
+        Cursor c = db.query("posiciones", new String[] {"_id", "latitud", "longitud"}, null, null, null, null, null);
+        int puntos = 0;
+        if (c != null) {
+            while (c.moveToNext()) {
+                sentencia.bindLong(1, Geohash.codificar(c.getDouble(1), c.getDouble(2)));
+                sentencia.bindLong(2, c.getLong(0));
+                sentencia.executeUpdateDelete();
+                puntos++;
+            }
+            c.close();
+        }
+        sentencia.close();
+        Log.d("BBDD", "Calculada la celda de " + puntos + " puntos");
+    }
+
+    /**
+     * Método: rellenarAgregados
+     * Calcula los agregados de todos los niveles a partir de los puntos que cumplan una
+     * condición (que no deben tener ya agregados).
+     *
+     * @param db manejador de la base de datos.
+     * @param condicion condición SQL sobre los puntos (sin argumentos; "1" para todos).
+     */
+    private static void rellenarAgregados(SQLiteDatabase db, String condicion) {
+        for (int nivel : TimeRollup.NIVELES)
+            db.execSQL(String.format(Locale.US, RELLENAR_AGREGADOS, nivel, nivel, condicion));
+    }
+
+    /**
+     * Método: crearSesion
+     * Crea una sesión nueva (un entrenamiento vacío) y pasa a trabajar sobre ella.
+     *
+     * @return el identificador de la sesión creada, o SESION_ULTIMA si falla.
+     */
+    public long crearSesion() {
+        SQLiteDatabase db = getWritableDatabase();
+        if (db != null) {
+            sesion = crearSesion(db);
+            Log.d("BBDD", "Creada la sesión " + sesion);
+            db.close();
+        }
+        return sesion;
+    }
+
+    private static long crearSesion(SQLiteDatabase db) {
+        ContentValues valores = new ContentValues();
+        valores.put("puntos", 0);
+        return db.insert("sesiones", null, valores);
+    }
+
+    /**
+     * Método: prepararImportacion
+     * Prepara la importación de un fichero y pasa a trabajar sobre su sesión. Si ese origen
+     * tiene una importación a medias (porque se interrumpió), se continúa en su sesión: como
+     * cada lote de puntos se confirma en su propia transacción junto con el resumen, el número
+     * de puntos del resumen es exactamente el de puntos del fichero ya guardados. Si no, se
+     * crea una sesión nueva marcada como pendiente.
+     *
+     * @param origen identificador del fichero (su nombre o su URI).
+     * @return el número de puntos del fichero ya importados (que hay que saltar), o -1 si el
+     * fichero ya se importó entero o no se pudo crear la sesión.
+     */
+    public long prepararImportacion(String origen) {
+        long importados = -1;
+
+        SQLiteDatabase db = getWritableDatabase();
+        if (db != null) {
+            Cursor c = db.query("sesiones", new String[] {"_id", "puntos", "importacion_pendiente"},
+                    "origen = ?", new String[] {origen}, null, null, "_id DESC");
+            boolean encontrada = c != null && c.moveToFirst();
+            if (encontrada) {
+                if (c.getInt(2) != 0) {
+                    sesion = c.getLong(0);
+                    importados = c.getLong(1);
+                    Log.d("BBDD", "Se continúa la importación de " + origen + " en la sesión " + sesion
+                            + ", con " + importados + " puntos ya guardados");
+                } else {
+                    Log.d("BBDD", origen + " ya se importó en la sesión " + c.getLong(0));
+                }
+            }
+            if (c != null)
+                c.close();
+
+            if (!encontrada) {
+                ContentValues valores = new ContentValues();
+                valores.put("origen", origen);
+                valores.put("importacion_pendiente", 1);
+                long id = db.insert("sesiones", null, valores);
+                if (id > 0) {
+                    sesion = id;
+                    importados = 0;
+                    Log.d("BBDD", "Creada la sesión " + sesion + " para importar " + origen);
+                }
+            }
+            db.close();
+        }
+        return importados;
+    }
+
+    /**
+     * Método: terminarImportacion
+     * Marca como completa la importación de la sesión de esta instancia.
      *
-     * @param localizacion location con la información del punto capturado.
-     * @param distancia distancia al punto anterior.
      * @return un booleano que indica si el proceso se ejecutó correctamente o no.
      */
-    public boolean insertarPosicion(Location localizacion, float distancia) {
-        // Valor de comprobación de operaciones con la base de datos.
+    public boolean terminarImportacion() {
+        int salida = 0;
+        SQLiteDatabase db = getWritableDatabase();
+        if (db != null) {
+            ContentValues valores = new ContentValues();
+            valores.put("importacion_pendiente", 0);
+            salida = db.update("sesiones", valores, "_id = ?", new String[] {Long.toString(resolverSesion(db))});
+            Log.d("BBDD", "Importación completa en la sesión " + sesion);
+            db.close();
+        }
+        return salida > 0;
+    }
+
+    /**
+     * Método: getSesion
+     * Devuelve la sesión sobre la que trabaja esta instancia, buscando la última si
+     * no se indicó ninguna.
+     *
+     * @return el identificador de la sesión, o SESION_ULTIMA si no hay ninguna.
+     */
+    public long getSesion() {
+        if (sesion == SESION_ULTIMA) {
+            SQLiteDatabase db = getReadableDatabase();
+            if (db != null) {
+                resolverSesion(db);
+                db.close();
+            }
+        }
+        return sesion;
+    }
+
+    /**
+     * Método: resolverSesion
+     * Si la instancia trabaja sobre la última sesión, busca cuál es (una sola vez).
+     *
+     * @param db manejador de la base de datos.
+     * @return el identificador de la sesión, o SESION_ULTIMA si no hay ninguna.
+     */
+    private long resolverSesion(SQLiteDatabase db) {
+        if (sesion == SESION_ULTIMA) {
+            SQLiteStatement consulta = db.compileStatement("SELECT IFNULL(MAX(_id), -1) FROM sesiones");
+            sesion = consulta.simpleQueryForLong();
+            consulta.close();
+        }
+        return sesion;
+    }
+
+    /**
+     * Método: resolverSesionEscritura
+     * Igual que resolverSesion, pero si no existe ninguna sesión crea una, para que
+     * los puntos siempre pertenezcan a alguna.
+     *
+     * @param db manejador de la base de datos.
+     * @return el identificador de la sesión.
+     */
+    private long resolverSesionEscritura(SQLiteDatabase db) {
+        if (resolverSesion(db) == SESION_ULTIMA)
+            sesion = crearSesion(db);
+        return sesion;
+    }
+
+    /**
+     * Método: listarSesiones
+     * Devuelve los identificadores de todas las sesiones guardadas, de la más antigua
+     * a la más reciente.
+     *
+     * @return la lista de identificadores.
+     */
+    public ArrayList<Long> listarSesiones() {
+        ArrayList<Long> sesiones = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        if (db != null) {
+            Cursor c = db.query("sesiones", new String[] {"_id"}, null, null, null, null, "_id");
+            if (c != null) {
+                while (c.moveToNext())
+                    sesiones.add(c.getLong(0));
+                c.close();
+            }
+            db.close();
+        }
+        return sesiones;
+    }
+
+    /**
+     * Método: borrarSesion
+     * Borra una sesión con todos sus puntos, pausas, parciales y agregados. Gracias al índice por sesión, sólo se
+     * tocan las filas de esa sesión.
+     *
+     * @param id identificador de la sesión.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    public boolean borrarSesion(long id) {
+        SQLiteDatabase db = getWritableDatabase();
+
         long salida=0;
+        if (db != null) {
+            String[] argumentos = {Long.toString(id)};
+            db.beginTransaction();
+            try {
+                db.delete("posiciones", "sesion = ?", argumentos);
+                db.delete("pausas", "sesion = ?", argumentos);
+                db.delete("parciales", "sesion = ?", argumentos);
+                db.delete("agregados", "sesion = ?", argumentos);
+                salida=db.delete("sesiones", "_id = ?", argumentos);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            Log.d("BBDD", "Borrada la sesión " + id);
+
+            // Si era la sesión de esta instancia, se vuelve a buscar la última.
+            if (id == sesion)
+                sesion = SESION_ULTIMA;
+
+            db.close();
+        }
+        return(salida>0);
+    }
+
+    /**
+     * Método: insertarPosiciones
+     * Añade un lote de posiciones en la base de datos, abriéndola una sola vez y
+     * dentro de una única transacción (se usa desde PointWriter). Los valores ya
+     * vienen convertidos: velocidad en km/h e instante en segundos. El resumen del
+     * entrenamiento se actualiza una sola vez por lote, dentro de la misma transacción, y
+     * los agregados una vez por cubo tocado.
+     *
+     * @param lote puntos a insertar, en orden de captura.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    @Override
+    public boolean insertarPosiciones(TrackBuffer lote) {
+        long inicio = Metrics.inicio();
+
+        // Número de puntos del lote.
+        int n = lote.tamano();
+
+        // Booleano de comprobación, que sólo se pone a true si se confirma la transacción.
+        boolean salida = false;
 
         // Llamamos a la base de datos.
         SQLiteDatabase db = getWritableDatabase();
         if (db != null) {
-            // Insertamos los valores.
+            // Compilamos la sentencia una vez y la reutilizamos para todo el lote.
+            SQLiteStatement sentencia = db.compileStatement(INSERTAR_POSICION);
+            long idSesion = resolverSesionEscritura(db);
+
+            // Acumuladores del lote, para el resumen.
+            double distancia = 0;
+            double velocidad = 0;
+
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < n; i++) {
+                    distancia += lote.getDistancia(i);
+                    velocidad += lote.getVelocidad(i);
+                    sentencia.bindLong(1, idSesion);
+                    sentencia.bindDouble(2, lote.getLatitud(i));
+                    sentencia.bindDouble(3, lote.getLongitud(i));
+                    sentencia.bindDouble(4, lote.getDistancia(i));
+                    sentencia.bindDouble(5, lote.getVelocidad(i));
+                    sentencia.bindLong(6, lote.getInstante(i));
+                    sentencia.bindLong(7, Geohash.codificar(lote.getLatitud(i), lote.getLongitud(i)));
+                    sentencia.executeInsert();
+                }
+                if (n > 0)
+                    actualizarResumen(db, idSesion, n, distancia, velocidad, lote.getInstante(0), lote.getInstante(n-1));
+                actualizarAgregados(db, idSesion, lote);
+                db.setTransactionSuccessful();
+                salida = true;
+            } catch (SQLException e) {
+                // Si falla alguna inserción, la transacción se deshace entera.
+                Log.e("BBDD", "Error al insertar el lote de posiciones", e);
+            } finally {
+                db.endTransaction();
+                sentencia.close();
+            }
+            Log.d("BBDD", "Añadimos un lote de " + n + " valores a la BBDD, en la sesión " + idSesion);
+
+            // Cerramos la base de datos.
+            db.close();
+        }
+        Metrics.registrar(TIEMPO_INSERTAR, inicio);
+        Metrics.contar(FILAS_INSERTADAS, salida ? n : 0);
+        return salida;
+    }
+
+    /**
+     * Método: insertarPausa
+     * Añade una pausa a la sesión y suma su duración al tiempo parado del resumen, en la
+     * misma transacción (se usa desde PointWriter). Los instantes van en segundos.
+     *
+     * @param inicio instante en que empezó la pausa.
+     * @param fin instante en que terminó la pausa.
+     * @param latitud latitud donde se produjo.
+     * @param longitud longitud donde se produjo.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    @Override
+    public boolean insertarPausa(long inicio, long fin, double latitud, double longitud) {
+        long salida=0;
+
+        SQLiteDatabase db = getWritableDatabase();
+        if (db != null) {
+            long idSesion = resolverSesionEscritura(db);
             ContentValues valores = new ContentValues();
-            valores.put("_id", id);
+            valores.put("sesion", idSesion);
+            valores.put("instante_inicial", inicio);
+            valores.put("instante_final", fin);
+            valores.put("latitud", latitud);
+            valores.put("longitud", longitud);
 
-            Log.d("BBDD", String.valueOf(id));
-            Log.d("BBDD", "Nuevo punto: Latitud-> " +String.valueOf(localizacion.getLatitude()) + " Longitud->" + String.valueOf(localizacion.getLongitude())+
-            " Distancia->" + String.valueOf(distancia) + " Velocidad:" +  String.valueOf(localizacion.getSpeed()) + " Tiempo->" + String.valueOf(localizacion.getTime()));
+            db.beginTransaction();
+            try {
+                salida=db.insert("pausas", null, valores);
+                if (salida > 0) {
+                    db.execSQL(ACTUALIZAR_TIEMPO_PARADO, new Object[] {fin - inicio, idSesion});
+                    db.setTransactionSuccessful();
+                }
+            } finally {
+                db.endTransaction();
+            }
+            Log.d("BBDD", "Añadimos una pausa de " + (fin - inicio) + " s a la sesión " + idSesion);
 
-            valores.put("latitud", String.valueOf(localizacion.getLatitude()));
-            valores.put("longitud", String.valueOf(localizacion.getLongitude()));
-            valores.put("distancia", String.valueOf(distancia));
-            valores.put("velocidad", String.valueOf((localizacion.getSpeed()*3.6)));
-            valores.put("instante", String.valueOf((localizacion.getTime()/1000)));
+            db.close();
+        }
+        return(salida>0);
+    }
 
-            salida=db.insert("posiciones", null, valores);
-            Log.d("BBDD", "Añadimos un valor a la BBDD, posición " + id);
+    /**
+     * Método: insertarParciales
+     * Añade a la sesión los parciales completados que tenga el motor de parciales, en una
+     * única transacción. No los vacía: eso lo hace quien llama, si todo fue bien.
+     *
+     * @param parciales motor de parciales con los parciales completados.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    @Override
+    public boolean insertarParciales(SplitEngine parciales) {
+        int n = parciales.getCompletados();
+        if (n == 0)
+            return true;
+
+        boolean salida = false;
+        SQLiteDatabase db = getWritableDatabase();
+        if (db != null) {
+            SQLiteStatement sentencia = db.compileStatement(INSERTAR_PARCIAL);
+            long idSesion = resolverSesionEscritura(db);
+
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < n; i++) {
+                    sentencia.bindLong(1, idSesion);
+                    sentencia.bindLong(2, parciales.getTipo(i));
+                    sentencia.bindLong(3, parciales.getNumero(i));
+                    sentencia.bindDouble(4, parciales.getDistancia(i));
+                    sentencia.bindDouble(5, parciales.getDuracion(i));
+                    sentencia.bindDouble(6, parciales.getFinal(i));
+                    sentencia.executeInsert();
+                }
+                db.setTransactionSuccessful();
+                salida = true;
+            } catch (SQLException e) {
+                Log.e("BBDD", "Error al insertar los parciales", e);
+            } finally {
+                db.endTransaction();
+                sentencia.close();
+            }
+            Log.d("BBDD", "Añadimos " + n + " parciales a la sesión " + idSesion);
 
-            id++;
-            // Cerramos la base de datos y devolvemos el booleano.
             db.close();
+        }
+        return salida;
+    }
+
+    /**
+     * Método: leerParciales
+     * Devuelve los parciales y vueltas guardados de la sesión, en el orden en que se
+     * completaron (no recorre los puntos).
+     *
+     * @return un motor de parciales con ellos como parciales completados.
+     */
+    public SplitEngine leerParciales() {
+        SplitEngine parciales = new SplitEngine();
+
+        SQLiteDatabase db = getReadableDatabase();
+        if (db != null) {
+            Cursor c = db.query("parciales", new String[] {"tipo", "numero", "distancia", "duracion",
+                    "instante_final"}, "sesion = ?", new String[] {Long.toString(resolverSesion(db))},
+                    null, null, "instante_final, _id");
+            if (c != null) {
+                while (c.moveToNext())
+                    parciales.completar(c.getInt(0), c.getInt(1), c.getDouble(2), c.getDouble(3), c.getDouble(4));
+                c.close();
             }
-        return(salida>0);
+            db.close();
+        }
+        return parciales;
     }
 
     /**
      * Método: borrarPosicion
-     * Borra la posición con el id que indiquemos como parámetro de entrada.
-     * Da warning porque no se usa el método (se implementa por si es necesario en
-     * próximas versiones).
+     * Borra la posición con el id que indiquemos como parámetro de entrada, y reconstruye
+     * el resumen y los agregados de la sesión a la que pertenecía, todo en una única
+     * transacción. Da warning porque no se usa el método (se implementa por si es
+     * necesario en próximas versiones).
      *
      * @param id identificador de la posición en la tabla.
      * @return un booleano que indica si el proceso se ejecutó correctamente o no.
@@ -139,9 +807,35 @@ public class BBDD extends SQLiteOpenHelper {
         // Valor a devolver, tras hacer el delete.
         long salida=0;
         if (db != null) {
-            // Borramos la entrada de la tabla.
-            salida=db.delete("posiciones", "_id=" + id, null);
-            Log.d("BBDD", "Borramos un valor de la BBDD, posición " + id);
+            db.beginTransaction();
+            try {
+                // Sesión de la posición, que no tiene por qué ser la actual.
+                long idSesion = SESION_ULTIMA;
+                String[] argumentos = new String[] {Integer.toString(id)};
+                Cursor c = db.rawQuery("SELECT sesion FROM posiciones WHERE _id = ?", argumentos);
+                if (c != null) {
+                    if (c.moveToFirst())
+                        idSesion = c.getLong(0);
+                    c.close();
+                }
+
+                // Borramos la entrada de la tabla.
+                salida=db.delete("posiciones", "_id = ?", argumentos);
+                Log.d("BBDD", "Borramos un valor de la BBDD, posición " + id + " de la sesión " + idSesion);
+
+                // El punto puede ser cualquiera, así que el resumen y los agregados se calculan de nuevo.
+                if (salida > 0) {
+                    db.execSQL(RECONSTRUIR_RESUMEN, new Object[] {idSesion});
+                    db.delete("agregados", "sesion = ?", new String[] {Long.toString(idSesion)});
+                    rellenarAgregados(db, "sesion = " + idSesion);
+                }
+                db.setTransactionSuccessful();
+            } catch (SQLException e) {
+                Log.e("BBDD", "Error al borrar la posición " + id, e);
+                salida = 0;
+            } finally {
+                db.endTransaction();
+            }
 
             // Cerramos la base de datos.
             db.close();
@@ -153,11 +847,12 @@ public class BBDD extends SQLiteOpenHelper {
 
     /**
      * Método: borrarPosiciones
-     * Borra el contenido de la tabla y elimina todas las posiciones guardadas, para
-     * comenzar con un nuevo entrenamiento.
+     * Borra el contenido de la tabla y elimina todas las posiciones (y pausas, parciales y agregados) guardadas,
+     * de todas las sesiones (para borrar un único entrenamiento, usar borrarSesion).
      *
      * @return un booleano que indica si el proceso se ejecutó correctamente o no.
      */
+    @Override
     public boolean borrarPosiciones() {
         // Abrimos la base de datos.
         SQLiteDatabase db = getWritableDatabase();
@@ -166,7 +861,18 @@ public class BBDD extends SQLiteOpenHelper {
         long salida=0;
         if (db != null) {
             // Vaciamos la tabla.
-            salida=db.delete("posiciones", null, null);
+            db.beginTransaction();
+            try {
+                salida=db.delete("posiciones", null, null);
+                db.delete("pausas", null, null);
+                db.delete("parciales", null, null);
+                db.delete("agregados", null, null);
+                db.delete("sesiones", null, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            sesion = SESION_ULTIMA;
             Log.d("BBDD", "Tabla de la BBDD vaciada");
             // Cerramos la base de datos y devolvemos el booleano.
             db.close();
@@ -174,50 +880,556 @@ public class BBDD extends SQLiteOpenHelper {
         return(salida>0);
     }
 
+    /**
+     * Método: actualizarResumen
+     * Suma un lote de puntos al resumen de una sesión. Debe llamarse dentro de la
+     * misma transacción que inserta los puntos.
+     *
+     * @param db manejador de la base de datos.
+     * @param idSesion sesión a la que pertenecen los puntos.
+     * @param puntos número de puntos del lote.
+     * @param distancia distancia total del lote.
+     * @param velocidad suma de las velocidades del lote.
+     * @param instanteInicial instante del primer punto del lote.
+     * @param instanteFinal instante del último punto del lote.
+     */
+    private void actualizarResumen(SQLiteDatabase db, long idSesion, long puntos, double distancia,
+                                   double velocidad, long instanteInicial, long instanteFinal) {
+        db.execSQL(ACTUALIZAR_RESUMEN, new Object[] {instanteInicial, instanteFinal, puntos,
+                distancia, velocidad, idSesion});
+    }
+
+    /**
+     * Método: actualizarAgregados
+     * Suma un lote de puntos a los agregados de una sesión, en todos los niveles. Los
+     * puntos se agrupan primero en memoria por cubos (llegan en orden, así que cada cubo es
+     * un tramo seguido del lote) y se escribe una vez por cubo. Debe llamarse dentro de la
+     * misma transacción que inserta los puntos.
+     *
+     * @param db manejador de la base de datos.
+     * @param idSesion sesión a la que pertenecen los puntos.
+     * @param lote puntos del lote.
+     */
+    private void actualizarAgregados(SQLiteDatabase db, long idSesion, TrackBuffer lote) {
+        int n = lote.tamano();
+        if (n == 0)
+            return;
+
+        SQLiteStatement crear = db.compileStatement(CREAR_AGREGADO);
+        SQLiteStatement sumar = db.compileStatement(SUMAR_AGREGADO);
+        TimeRollup agregado = new TimeRollup();
+        try {
+            for (int nivel : TimeRollup.NIVELES) {
+                agregado.empezar(nivel, TimeRollup.cubo(lote.getInstante(0), nivel));
+                for (int i = 0; i < n; i++) {
+                    long cubo = TimeRollup.cubo(lote.getInstante(i), nivel);
+                    if (cubo != agregado.getCubo()) {
+                        guardarAgregado(crear, sumar, idSesion, agregado);
+                        agregado.empezar(nivel, cubo);
+                    }
+                    agregado.anadir(lote.getLatitud(i), lote.getLongitud(i), lote.getDistancia(i),
+                            lote.getVelocidad(i), lote.getInstante(i));
+                }
+                guardarAgregado(crear, sumar, idSesion, agregado);
+            }
+        } finally {
+            crear.close();
+            sumar.close();
+        }
+    }
+
+    /**
+     * Método: guardarAgregado
+     * Suma el agregado de un cubo al de la tabla, creándolo si no existía.
+     *
+     * @param crear sentencia CREAR_AGREGADO compilada.
+     * @param sumar sentencia SUMAR_AGREGADO compilada.
+     * @param idSesion sesión del agregado.
+     * @param agregado agregado del lote en el cubo.
+     */
+    private static void guardarAgregado(SQLiteStatement crear, SQLiteStatement sumar, long idSesion,
+                                        TimeRollup agregado) {
+        crear.bindLong(1, idSesion);
+        crear.bindLong(2, agregado.getNivel());
+        crear.bindLong(3, agregado.getCubo());
+        crear.bindDouble(4, agregado.getVelocidadMinima());
+        crear.bindDouble(5, agregado.getVelocidadMaxima());
+        crear.bindLong(6, agregado.getInstanteInicial());
+        crear.bindLong(7, agregado.getInstanteFinal());
+        crear.bindDouble(8, agregado.getLatitudMinima());
+        crear.bindDouble(9, agregado.getLatitudMaxima());
+        crear.bindDouble(10, agregado.getLongitudMinima());
+        crear.bindDouble(11, agregado.getLongitudMaxima());
+        crear.executeInsert();
+
+        sumar.bindLong(1, agregado.getPuntos());
+        sumar.bindDouble(2, agregado.getDistancia());
+        sumar.bindDouble(3, agregado.getVelocidadAcumulada());
+        sumar.bindDouble(4, agregado.getVelocidadMinima());
+        sumar.bindDouble(5, agregado.getVelocidadMaxima());
+        sumar.bindLong(6, agregado.getInstanteInicial());
+        sumar.bindLong(7, agregado.getInstanteFinal());
+        sumar.bindDouble(8, agregado.getLatitudMinima());
+        sumar.bindDouble(9, agregado.getLatitudMaxima());
+        sumar.bindDouble(10, agregado.getLongitudMinima());
+        sumar.bindDouble(11, agregado.getLongitudMaxima());
+        sumar.bindLong(12, idSesion);
+        sumar.bindLong(13, agregado.getNivel());
+        sumar.bindLong(14, agregado.getCubo());
+        sumar.executeUpdateDelete();
+    }
+
+    /**
+     * Método: leerAgregados
+     * Devuelve los agregados de la sesión en un nivel, de los cubos que tocan un intervalo,
+     * en orden. Para una gráfica, el nivel se puede elegir con TimeRollup.nivelPara según
+     * cuántos cubos quepan.
+     *
+     * @param nivel duración de los cubos (uno de TimeRollup.NIVELES).
+     * @param desde primer instante del intervalo, en segundos.
+     * @param hasta último instante del intervalo, en segundos.
+     * @return la lista de agregados (sólo los cubos con puntos).
+     */
+    public ArrayList<TimeRollup> leerAgregados(int nivel, long desde, long hasta) {
+        long inicio = Metrics.inicio();
+        ArrayList<TimeRollup> agregados = new ArrayList<>();
+
+        SQLiteDatabase db = getReadableDatabase();
+        if (db != null) {
+            Cursor c = db.query("agregados", new String[] {"cubo", "puntos", "distancia", "velocidad_minima",
+                    "velocidad_maxima", "velocidad_acumulada", "instante_inicial", "instante_final",
+                    "latitud_minima", "latitud_maxima", "longitud_minima", "longitud_maxima"},
+                    "sesion = ? AND nivel = ? AND cubo BETWEEN ? AND ?", new String[] {
+                    Long.toString(resolverSesion(db)), Integer.toString(nivel),
+                    Long.toString(TimeRollup.cubo(desde, nivel)), Long.toString(TimeRollup.cubo(hasta, nivel))},
+                    null, null, "cubo");
+            if (c != null) {
+                while (c.moveToNext())
+                    agregados.add(new TimeRollup(nivel, c.getLong(0), c.getLong(1), c.getDouble(2),
+                            c.getDouble(3), c.getDouble(4), c.getDouble(5), c.getLong(6), c.getLong(7),
+                            c.getDouble(8), c.getDouble(9), c.getDouble(10), c.getDouble(11)));
+                c.close();
+            }
+            db.close();
+        }
+        Metrics.registrar(TIEMPO_AGREGADOS, inicio);
+        return agregados;
+    }
+
+    /**
+     * Método: agregarIntervalo
+     * Resume los puntos de la sesión capturados en un intervalo a partir de los agregados:
+     * la parte central con cubos de 10 minutos y los extremos con cubos de 10 s, así que se
+     * leen como mucho unos cientos de filas aunque el intervalo dure meses. Los extremos se
+     * redondean hacia fuera a cubos de 10 s.
+     *
+     * @param desde primer instante del intervalo, en segundos.
+     * @param hasta último instante del intervalo, en segundos.
+     * @return el agregado del intervalo (vacío si no hay puntos).
+     */
+    public TimeRollup agregarIntervalo(long desde, long hasta) {
+        long inicio = Metrics.inicio();
+        TimeRollup total = new TimeRollup();
+
+        SQLiteDatabase db = getReadableDatabase();
+        if (db != null) {
+            long idSesion = resolverSesion(db);
+            int fino = TimeRollup.NIVELES[0];
+
+            // Los instantes son positivos; así se admiten también Long.MIN_VALUE y Long.MAX_VALUE.
+            desde = Math.max(desde, 0);
+            hasta = Math.min(hasta, Long.MAX_VALUE / 2);
+            int grueso = TimeRollup.NIVELES[TimeRollup.NIVELES.length - 1];
+
+            // Cubos gruesos enteros dentro del intervalo: [primero, ultimo].
+            long primero = TimeRollup.cubo(desde - 1, grueso) + 1;
+            long ultimo = TimeRollup.cubo(hasta + 1, grueso) - 1;
+            if (primero <= ultimo) {
+                total.juntar(sumarCubos(db, idSesion, fino, TimeRollup.cubo(desde, fino),
+                        primero * (grueso / fino) - 1));
+                total.juntar(sumarCubos(db, idSesion, grueso, primero, ultimo));
+                total.juntar(sumarCubos(db, idSesion, fino, (ultimo + 1) * (grueso / fino),
+                        TimeRollup.cubo(hasta, fino)));
+            } else {
+                total.juntar(sumarCubos(db, idSesion, fino, TimeRollup.cubo(desde, fino),
+                        TimeRollup.cubo(hasta, fino)));
+            }
+            db.close();
+        }
+        Metrics.registrar(TIEMPO_AGREGADOS, inicio);
+        return total;
+    }
+
+    /**
+     * Método: sumarCubos
+     * Suma en la base de datos los agregados de un nivel entre dos cubos (ambos incluidos).
+     *
+     * @return la suma (vacía si no hay cubos con puntos).
+     */
+    private static TimeRollup sumarCubos(SQLiteDatabase db, long idSesion, int nivel, long desde, long hasta) {
+        TimeRollup suma = new TimeRollup();
+        if (desde > hasta)
+            return suma;
+        Cursor c = db.rawQuery(SUMAR_INTERVALO, new String[] {Long.toString(idSesion), Integer.toString(nivel),
+                Long.toString(desde), Long.toString(hasta)});
+        if (c != null) {
+            if (c.moveToFirst() && c.getLong(0) > 0)
+                suma = new TimeRollup(nivel, desde, c.getLong(0), c.getDouble(1), c.getDouble(2),
+                        c.getDouble(3), c.getDouble(4), c.getLong(5), c.getLong(6), c.getDouble(7),
+                        c.getDouble(8), c.getDouble(9), c.getDouble(10));
+            c.close();
+        }
+        return suma;
+    }
+
+    /**
+     * Método: cargarHistorial
+     * Carga todas las sesiones con puntos, con su resumen y sus cubos de 10 s, para analizar
+     * el historial (ver HistoryAnalyzer). Los cubos se leen con un único recorrido de la
+     * tabla de agregados, y se guardan en un TrackBuffer por sesión: distancia, velocidad
+     * media y primer instante de cada cubo (la posición no se usa).
+     *
+     * @param destino analizador en el que se añaden las sesiones.
+     * @return el número de sesiones cargadas.
+     */
+    public int cargarHistorial(HistoryAnalyzer destino) {
+        long inicio = Metrics.inicio();
+        int cargadas = 0;
+
+        SQLiteDatabase db = getReadableDatabase();
+        if (db != null) {
+            Cursor sesiones = db.query("sesiones", new String[] {"_id", "puntos", "distancia",
+                    "velocidad_acumulada", "instante_inicial", "instante_final", "tiempo_parado"},
+                    "puntos > 0", null, null, null, "_id");
+            Cursor agregados = db.query("agregados", new String[] {"sesion", "cubo", "distancia",
+                    "velocidad_acumulada", "puntos"}, "nivel = ?",
+                    new String[] {Integer.toString(TimeRollup.NIVELES[0])}, null, null, "sesion, cubo");
+            if (sesiones != null && agregados != null) {
+                boolean hayCubo = agregados.moveToNext();
+                while (sesiones.moveToNext()) {
+                    long id = sesiones.getLong(0);
+                    SessionSummary resumen = new SessionSummary(sesiones.getLong(1), sesiones.getDouble(2),
+                            sesiones.getDouble(3), sesiones.getLong(4), sesiones.getLong(5));
+                    resumen.setTiempoParado(sesiones.getLong(6));
+
+                    // Los dos cursores van ordenados por sesión: se saltan los cubos de sesiones sin resumen.
+                    TrackBuffer cubos = new TrackBuffer();
+                    while (hayCubo && agregados.getLong(0) < id)
+                        hayCubo = agregados.moveToNext();
+                    while (hayCubo && agregados.getLong(0) == id) {
+                        long puntos = agregados.getLong(4);
+                        cubos.anadir(0, 0, (float) agregados.getDouble(2),
+                                (float) (puntos > 0 ? agregados.getDouble(3) / puntos : 0),
+                                agregados.getLong(1) * TimeRollup.NIVELES[0]);
+                        hayCubo = agregados.moveToNext();
+                    }
+                    destino.anadirSesion(id, resumen, cubos);
+                    cargadas++;
+                }
+            }
+            if (sesiones != null)
+                sesiones.close();
+            if (agregados != null)
+                agregados.close();
+            db.close();
+        }
+        Metrics.registrar(TIEMPO_AGREGADOS, inicio);
+        Log.d("BBDD", "Cargadas " + cargadas + " sesiones del historial");
+        return cargadas;
+    }
+
+    /**
+     * Método: leerResumen
+     * Devuelve el resumen del entrenamiento de la sesión, leyendo una única fila (no
+     * depende del número de puntos guardados).
+     *
+     * @return el resumen del entrenamiento (vacío si no hay puntos).
+     */
+    public SessionSummary leerResumen() {
+        // Abrimos la base de datos, en modo lectura.
+        SQLiteDatabase db = getReadableDatabase();
+
+        SessionSummary resumen = new SessionSummary();
+        if (db != null) {
+            Cursor c = db.query("sesiones", new String[] {"puntos", "distancia", "velocidad_acumulada",
+                    "instante_inicial", "instante_final", "tiempo_parado"}, "_id = ?",
+                    new String[] {Long.toString(resolverSesion(db))}, null, null, null);
+            if (c != null) {
+                if (c.moveToFirst()) {
+                    resumen = new SessionSummary(c.getLong(0), c.getDouble(1), c.getDouble(2),
+                            c.getLong(3), c.getLong(4));
+                    resumen.setTiempoParado(c.getLong(5));
+                }
+                c.close();
+            }
+            db.close();
+        }
+        return resumen;
+    }
+
+    /**
+     * Método: reconstruirResumen
+     * Vuelve a calcular el resumen del entrenamiento a partir de todos los puntos
+     * de la sesión y lo guarda. Sirve para corregirlo si dejara de ser consistente.
+     *
+     * @return el resumen reconstruido.
+     */
+    public SessionSummary reconstruirResumen() {
+        SQLiteDatabase db = getWritableDatabase();
+        if (db != null) {
+            db.execSQL(RECONSTRUIR_RESUMEN, new Object[] {resolverSesion(db)});
+            Log.d("BBDD", "Resumen reconstruido a partir de los puntos");
+            db.close();
+        }
+        return leerResumen();
+    }
+
+    /**
+     * Método: comprobarResumen
+     * Comprueba que el resumen guardado coincide con el que resulta de recorrer todos
+     * los puntos de la sesión. Los recorre todos, así que sólo debe usarse como comprobación.
+     *
+     * @return true si el resumen es consistente con los puntos.
+     */
+    public boolean comprobarResumen() {
+        SessionSummary calculado = new SessionSummary();
+        recorrerPosiciones(calculado);
+
+        boolean consistente = leerResumen().coincideCon(calculado);
+        Log.d("BBDD", "Resumen " + (consistente ? "consistente" : "inconsistente") + " con los puntos");
+        return consistente;
+    }
+
+    /**
+     * Método: exportar
+     * Guarda el entrenamiento de la sesión en un fichero GPX o TCX. Los puntos se escriben
+     * según se leen de la base de datos (ver TrackExporter), así que la memoria usada no
+     * depende de la longitud del recorrido.
+     *
+     * @param formato TrackExporter.GPX o TrackExporter.TCX.
+     * @param fichero fichero de destino (se sustituye si existe).
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    public boolean exportar(int formato, File fichero) {
+        Writer escritor = null;
+        try {
+            escritor = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fichero), "UTF-8"),
+                    TAMANO_BUFFER_EXPORTACION);
+            TrackExporter exportador = new TrackExporter(escritor, formato);
+            exportador.empezar(leerResumen());
+            recorrerPosiciones(exportador);
+            exportador.terminar();
+            Log.d("BBDD", exportador.getPuntos() + " puntos exportados a " + fichero);
+            return true;
+        } catch (IOException e) {
+            Log.e("BBDD", "Error al exportar a " + fichero, e);
+            return false;
+        } finally {
+            if (escritor != null) {
+                try {
+                    escritor.close();
+                } catch (IOException e) {
+                    Log.e("BBDD", "Error al cerrar " + fichero, e);
+                }
+            }
+        }
+    }
+
     /**
      * Método: listarPosiciones
      * Recupera todos los puntos de la base de datos con formato en base a la
-     * clase Point.
+     * clase Point. Carga el recorrido entero en memoria, así que para recorridos
+     * largos es preferible recorrerPosiciones.
      *
      * @return una lista con todos los puntos guardados en la base de datos.
      */
     public ArrayList<Point> listarPosiciones() {
+        // Se crea la lista de objetos Point donde se guardarán los datos de la BBDD.
+        final ArrayList<Point> localizaciones = new ArrayList<>();
+
+        // Copiamos cada punto recibido, ya que recorrerPosiciones reutiliza el mismo objeto.
+        recorrerPosiciones(new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                localizaciones.add(new Point(punto.getId(), punto.getLatitud(), punto.getLongitud(),
+                        punto.getDistancia(), punto.getVelocidad(), punto.getInstante()));
+            }
+        });
+
+        return localizaciones;
+    }
+
+    /**
+     * Método: cargarPosiciones
+     * Carga en un TrackBuffer los puntos capturados entre dos instantes (ambos
+     * incluidos, en segundos), para poder recorrerlos varias veces sin volver a
+     * leer la base de datos y sin crear un objeto por punto.
+     *
+     * @param destino buffer en el que se añaden los puntos.
+     * @param desde primer instante a incluir (Long.MIN_VALUE para no limitar).
+     * @param hasta último instante a incluir (Long.MAX_VALUE para no limitar).
+     * @return el número de puntos cargados.
+     */
+    public int cargarPosiciones(final TrackBuffer destino, long desde, long hasta) {
+        return recorrerPosiciones(desde, hasta, new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                destino.anadir(punto.getLatitud(), punto.getLongitud(), punto.getDistancia(),
+                        (float) punto.getVelocidad(), punto.getInstante());
+            }
+        });
+    }
+
+    /**
+     * Método: recorrerArea
+     * Recorre los puntos que caen dentro de un rectángulo, de la sesión de esta instancia
+     * o de todas las demás, ordenados por sesión y, dentro de cada una, en orden de captura.
+     * Gracias al índice por celda sólo se leen las filas de la zona (y de sus alrededores
+     * más próximos), no todas las de la tabla. Como en recorrerPosiciones, se usa un único
+     * objeto Point para todas las filas.
+     *
+     * @param latMin latitud mínima.
+     * @param lonMin longitud mínima (si es mayor que la máxima, el rectángulo cruza el antimeridiano).
+     * @param latMax latitud máxima.
+     * @param lonMax longitud máxima.
+     * @param otrasSesiones false para la sesión de esta instancia, true para todas las demás.
+     * @param limite máximo de puntos a recorrer.
+     * @param receptor receptor de los puntos.
+     * @return el número de puntos recorridos.
+     */
+    public int recorrerArea(double latMin, double lonMin, double latMax, double lonMax, boolean otrasSesiones,
+                            int limite, PointCallback receptor) {
+        long inicio = Metrics.inicio();
+        int indice = 0;
+
+        SQLiteDatabase db = getReadableDatabase();
+        if (db != null) {
+            // Un intervalo de celdas por cada grupo de celdas contiguas que cubren el rectángulo.
+            long[] rangos = Geohash.rangos(latMin, lonMin, latMax, lonMax);
+            StringBuilder consulta = new StringBuilder("SELECT latitud, longitud, distancia, velocidad, " +
+                    "instante FROM posiciones WHERE (");
+            String[] argumentos = new String[rangos.length + 5];
+            for (int i = 0; i < rangos.length; i += 2) {
+                consulta.append(i == 0 ? "" : " OR ").append("celda BETWEEN ? AND ?");
+                argumentos[i] = Long.toString(rangos[i]);
+                argumentos[i+1] = Long.toString(rangos[i+1]);
+            }
+
+            // Las celdas se salen un poco del rectángulo, así que se filtra también por coordenadas.
+            consulta.append(") AND latitud BETWEEN ? AND ? AND longitud ")
+                    .append(lonMin > lonMax ? "NOT BETWEEN ? AND ?" : "BETWEEN ? AND ?")
+                    .append(otrasSesiones ? " AND sesion <> ?" : " AND sesion = ?")
+                    .append(" ORDER BY sesion, instante, _id LIMIT ").append(limite);
+            argumentos[rangos.length] = Double.toString(latMin);
+            argumentos[rangos.length+1] = Double.toString(latMax);
+            // Si cruza el antimeridiano, se excluye la franja entre lonMax y lonMin.
+            argumentos[rangos.length+2] = Double.toString(lonMin > lonMax ? lonMax : lonMin);
+            argumentos[rangos.length+3] = Double.toString(lonMin > lonMax ? lonMin : lonMax);
+            argumentos[rangos.length+4] = Long.toString(resolverSesion(db));
+
+            Cursor c = db.rawQuery(consulta.toString(), argumentos);
+            if (c != null) {
+                Point punto = new Point(0, 0, 0, 0, 0, 0);
+                while (c.moveToNext()) {
+                    indice++;
+                    punto.setId(indice);
+                    punto.setLatitud(c.getDouble(0));
+                    punto.setLongitud(c.getDouble(1));
+                    punto.setDistancia(c.getFloat(2));
+                    punto.setVelocidad(c.getDouble(3));
+                    punto.setInstante(c.getLong(4));
+                    receptor.procesarPunto(punto);
+                }
+                c.close();
+            }
+            Log.d("BBDD", indice + " puntos en el área, con " + rangos.length / 2 + " intervalos de celdas");
+            db.close();
+        }
+
+        Metrics.registrar(TIEMPO_AREA, inicio);
+        Metrics.contar(FILAS_LEIDAS, indice);
+        return indice;
+    }
+
+    /**
+     * Método: recorrerPosiciones
+     * Recorre todos los puntos de la base de datos, en orden de captura, pasándolos
+     * uno a uno al receptor.
+     *
+     * @param receptor receptor de los puntos.
+     * @return el número de puntos recorridos.
+     */
+    @Override
+    public int recorrerPosiciones(PointCallback receptor) {
+        return recorrerPosiciones(Long.MIN_VALUE, Long.MAX_VALUE, receptor);
+    }
+
+    /**
+     * Método: recorrerPosiciones
+     * Recorre los puntos de la sesión capturados entre dos instantes (ambos incluidos,
+     * en segundos), en orden de captura, pasándolos uno a uno al receptor.
+     * Se usa un único objeto Point que se rellena con cada fila, así que la memoria
+     * usada no depende de la longitud del recorrido.
+     *
+     * @param desde primer instante a incluir (Long.MIN_VALUE para no limitar).
+     * @param hasta último instante a incluir (Long.MAX_VALUE para no limitar).
+     * @param receptor receptor de los puntos.
+     * @return el número de puntos recorridos.
+     */
+    @Override
+    public int recorrerPosiciones(long desde, long hasta, PointCallback receptor) {
+        long inicio = Metrics.inicio();
+
         // Abrimos la base de datos, en modo lectura.
         SQLiteDatabase db = getReadableDatabase();
 
-        // Se crea la lista de objetos Point donde se guardarán los datos de la BBDD.
-        ArrayList<Point> localizaciones = new ArrayList<>();
+        // Número de puntos recorridos, que también sirve de identificador del punto.
+        int indice = 0;
 
         // Valores a recuperar de la base de datos.
         String[] valores_recuperar = {"latitud", "longitud", "distancia", "velocidad", "instante"};
 
         if(db!=null) {
-            /* Instanciamos la variable indice, iniciada a 1, para ordenar correctamente la lista
-            de Point (que tienen un id como atributo. */
-            int indice = 1;
-
-            // Devolvemos todas las filas.
-            Cursor c = db.query("posiciones", valores_recuperar, null, null, null, null, null, null);
-
-            /* Y vamos leyendo de principio a fin. Debemos comprobar si el cursor devuelve filas,
-            porque puede ocurrir que se cree y no devuelva ninguna fila (no se guardó ningún
-            punto). */
-            if (c != null && c.getCount() != 0) {
-                c.moveToFirst();
-                do {
-                    localizaciones.add(new Point(indice, Double.valueOf(c.getString(0)), Double.valueOf(c.getString(1)), Float.valueOf(c.getString(2)), Double.valueOf(c.getString(3)), Long.valueOf(c.getString(4))));
-                    Log.d("BBDD", "Punto extraido: Latitud-> " + c.getString(0) + " Longitud->" + c.getString(1) + " Distancia->" + c.getString(2) + " Velocidad->" + c.getString(3) + " Tiempo->" + c.getString(4));
+            /* Filtramos por sesión y, si se pide algún límite, por instante. El orden es el del
+            índice (sesión, instante), así que no hace falta ordenar las filas aparte. */
+            String idSesion = Long.toString(resolverSesion(db));
+            String seleccion = "sesion = ?";
+            String[] argumentos = {idSesion};
+            if (desde != Long.MIN_VALUE || hasta != Long.MAX_VALUE) {
+                seleccion = "sesion = ? AND instante BETWEEN ? AND ?";
+                argumentos = new String[] {idSesion, Long.toString(desde), Long.toString(hasta)};
+            }
+
+            Cursor c = db.query("posiciones", valores_recuperar, seleccion, argumentos, null, null,
+                    "instante, _id");
+
+            /* Vamos leyendo de principio a fin sin preguntar antes por el número de filas
+            (getCount obligaría a recorrer la consulta entera una vez más). */
+            if (c != null) {
+                Point punto = new Point(0, 0, 0, 0, 0, 0);
+                while (c.moveToNext()) {
                     indice++;
-                } while(c.moveToNext());
+                    punto.setId(indice);
+                    punto.setLatitud(c.getDouble(0));
+                    punto.setLongitud(c.getDouble(1));
+                    punto.setDistancia(c.getFloat(2));
+                    punto.setVelocidad(c.getDouble(3));
+                    punto.setInstante(c.getLong(4));
+                    receptor.procesarPunto(punto);
+                }
 
                 c.close();
             }
 
-            Log.d("BBDD", "Puntos devueltos");
+            Log.d("BBDD", indice + " puntos recorridos");
 
             db.close();
         }
 
-        return localizaciones;
+        // La duración incluye lo que haga el receptor con cada punto.
+        Metrics.registrar(TIEMPO_RECORRER, inicio);
+        Metrics.contar(FILAS_LEIDAS, indice);
+        Metrics.fijar(FILAS_ULTIMO_RECORRIDO, indice);
+        return indice;
     }
 }
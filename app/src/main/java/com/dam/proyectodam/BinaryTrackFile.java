@@ -0,0 +1,457 @@
+package com.dam.proyectodam;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ *
+ * Clase BinaryTrackFile.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Almacén de recorridos alternativo a la base de datos: un fichero de solo añadir con
+ * registros binarios de tamaño fijo, escritos y leídos a través de regiones del fichero
+ * proyectadas en memoria (MappedByteBuffer), sin copias intermedias.
+ *
+ * Formato del fichero (little-endian):
+ *  -Cabecera de 16 bytes: número mágico, versión, tamaño de registro y número de
+ *   registros confirmados en la última sincronización.
+ *  -Registros de 40 bytes: latitud y longitud (double), distancia y velocidad (float),
+ *   instante (long), marca de registro (int) y suma de comprobación (int).
+ *
+ * Al abrir el fichero se validan los registros desde el último número confirmado en
+ * adelante, leyéndolos del canal (sin proyectar, para no ampliar el fichero); el primer
+ * registro con marca o suma de comprobación incorrecta, o que no está entero (escritura
+ * cortada por un cierre inesperado), marca el final del recorrido, y el fichero se recorta
+ * justo antes de él. Al cerrar también se recorta, quitando lo que se reservó de más al
+ * proyectar la última región.
+ *
+ * Implementa TrackStore, así que PointWriter puede escribir en él en lugar de en la base
+ * de datos; las pausas y los parciales no se guardan aquí. Sólo debe usarlo un hilo a la
+ * vez. No depende de Android (se prueba en el módulo benchmark): los errores de E/S se
+ * devuelven (false, o ver getError) en lugar de escribirse en el log.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class BinaryTrackFile implements TrackStore {
+
+    // Valores de la cabecera.
+    private static final int MAGIA = 0x4B545241; // "ARTK"
+    private static final int VERSION = 1;
+    public static final int TAM_CABECERA = 16;
+    public static final int TAM_REGISTRO = 40;
+
+    // Posiciones de los campos dentro de cada registro.
+    private static final int POS_LATITUD = 0;
+    private static final int POS_LONGITUD = 8;
+    private static final int POS_DISTANCIA = 16;
+    private static final int POS_VELOCIDAD = 20;
+    private static final int POS_INSTANTE = 24;
+    private static final int POS_MARCA = 32;
+    private static final int POS_SUMA = 36;
+
+    // Marca que llevan todos los registros completos (una zona sin escribir tiene ceros).
+    private static final int MARCA_REGISTRO = 0x21545050; // "PPT!"
+
+    // El fichero se proyecta por regiones con un número entero de registros.
+    private static final int REGISTROS_POR_REGION = 1 << 16;
+    private static final long TAM_REGION = (long) REGISTROS_POR_REGION * TAM_REGISTRO;
+
+    // Fichero, canal y regiones proyectadas.
+    private final File fichero;
+    private final RandomAccessFile acceso;
+    private final FileChannel canal;
+    private final MappedByteBuffer cabecera;
+    private final ArrayList<MappedByteBuffer> regiones = new ArrayList<>();
+
+    // Número de registros válidos.
+    private int registros;
+
+    // Último error de entrada/salida al insertar, vaciar o leer (null si no ha habido).
+    private IOException error;
+
+    // Registros que se leen de una vez al recuperar el fichero.
+    private static final int REGISTROS_RECUPERACION = 1024;
+
+    /**
+     * Constructor de la clase BinaryTrackFile
+     * Abre (o crea) el fichero y recupera los registros válidos.
+     *
+     * @param fichero fichero del recorrido.
+     * @throws IOException si no se puede abrir o no tiene el formato esperado.
+     */
+    public BinaryTrackFile(File fichero) throws IOException {
+        this.fichero = fichero;
+        acceso = new RandomAccessFile(fichero, "rw");
+        canal = acceso.getChannel();
+
+        boolean nuevo = canal.size() < TAM_CABECERA;
+        cabecera = canal.map(FileChannel.MapMode.READ_WRITE, 0, TAM_CABECERA);
+        cabecera.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (nuevo) {
+            cabecera.putInt(0, MAGIA);
+            cabecera.putInt(4, VERSION);
+            cabecera.putInt(8, TAM_REGISTRO);
+            cabecera.putInt(12, 0);
+            registros = 0;
+        } else {
+            if (cabecera.getInt(0) != MAGIA || cabecera.getInt(4) != VERSION
+                    || cabecera.getInt(8) != TAM_REGISTRO) {
+                canal.close();
+                acceso.close();
+                throw new IOException("Formato de fichero de recorrido no válido: " + fichero);
+            }
+            registros = recuperar();
+
+            // Se quita el registro cortado (si lo hay) y el espacio reservado de más.
+            if (canal.size() != TAM_CABECERA + (long) registros * TAM_REGISTRO)
+                canal.truncate(TAM_CABECERA + (long) registros * TAM_REGISTRO);
+            cabecera.putInt(12, registros);
+        }
+    }
+
+    /**
+     * Método: recuperar
+     * Busca el número de registros válidos, partiendo del último número confirmado
+     * (si sigue siendo válido) y avanzando hasta el primer registro incompleto. Los
+     * registros se leen del canal por bloques, sin proyectarlos.
+     *
+     * @return el número de registros válidos.
+     * @throws IOException si falla la lectura del fichero.
+     */
+    private int recuperar() throws IOException {
+        long maximo = (canal.size() - TAM_CABECERA) / TAM_REGISTRO;
+        int n = cabecera.getInt(12);
+        ByteBuffer bloque = ByteBuffer.allocate(REGISTROS_RECUPERACION * TAM_REGISTRO);
+        bloque.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Si el número confirmado no cuadra con el fichero, se valida todo desde el principio.
+        if (n < 0 || n > maximo || (n > 0 && (leer(bloque, n - 1, 1) < 1 || !registroValido(bloque, 0))))
+            n = 0;
+
+        while (n < maximo) {
+            int leidos = leer(bloque, n, (int) Math.min(REGISTROS_RECUPERACION, maximo - n));
+            for (int i = 0; i < leidos; i++) {
+                if (!registroValido(bloque, i * TAM_REGISTRO))
+                    return n;
+                n++;
+            }
+            if (leidos == 0)
+                break;
+        }
+        return n;
+    }
+
+    /**
+     * Método: leer
+     * Lee del canal registros seguidos al principio del bloque.
+     *
+     * @param bloque bloque en el que se leen.
+     * @param primero índice del primer registro.
+     * @param cuantos número de registros a leer (caben en el bloque).
+     * @return el número de registros completos leídos.
+     * @throws IOException si falla la lectura del fichero.
+     */
+    private int leer(ByteBuffer bloque, int primero, int cuantos) throws IOException {
+        bloque.clear();
+        bloque.limit(cuantos * TAM_REGISTRO);
+        long inicio = TAM_CABECERA + (long) primero * TAM_REGISTRO;
+        while (bloque.hasRemaining()) {
+            if (canal.read(bloque, inicio + bloque.position()) < 0)
+                break;
+        }
+        return bloque.position() / TAM_REGISTRO;
+    }
+
+    /**
+     * Método: region
+     * Devuelve la región proyectada que contiene el registro indicado, proyectándola
+     * (y ampliando el fichero si hace falta) la primera vez que se usa.
+     *
+     * @param registro índice del registro.
+     * @return la región que lo contiene.
+     * @throws IOException si no se puede proyectar.
+     */
+    private MappedByteBuffer region(int registro) throws IOException {
+        int r = registro / REGISTROS_POR_REGION;
+        while (regiones.size() <= r) {
+            MappedByteBuffer nueva = canal.map(FileChannel.MapMode.READ_WRITE,
+                    TAM_CABECERA + regiones.size() * TAM_REGION, TAM_REGION);
+            nueva.order(ByteOrder.LITTLE_ENDIAN);
+            regiones.add(nueva);
+        }
+        return regiones.get(r);
+    }
+
+    // Posición del registro dentro de su región.
+    private static int posicion(int registro) {
+        return (registro % REGISTROS_POR_REGION) * TAM_REGISTRO;
+    }
+
+    /**
+     * Método: registroValido
+     * Comprueba la marca y la suma de comprobación de un registro.
+     *
+     * @param b buffer (little-endian) que contiene el registro.
+     * @param p posición del registro en el buffer.
+     * @return true si el registro está completo.
+     */
+    private static boolean registroValido(ByteBuffer b, int p) {
+        return b.getInt(p + POS_MARCA) == MARCA_REGISTRO
+                && b.getInt(p + POS_SUMA) == suma(b.getDouble(p + POS_LATITUD),
+                b.getDouble(p + POS_LONGITUD), b.getFloat(p + POS_DISTANCIA),
+                b.getFloat(p + POS_VELOCIDAD), b.getLong(p + POS_INSTANTE));
+    }
+
+    /**
+     * Método: suma
+     * Suma de comprobación de los campos de un registro (mezcla de sus bits).
+     */
+    private static int suma(double latitud, double longitud, float distancia, float velocidad,
+                            long instante) {
+        long h = 0x9E3779B97F4A7C15L;
+        h = (h ^ Double.doubleToRawLongBits(latitud)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ Double.doubleToRawLongBits(longitud)) * 0x94D049BB133111EBL;
+        h = (h ^ Float.floatToRawIntBits(distancia)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ Float.floatToRawIntBits(velocidad)) * 0x94D049BB133111EBL;
+        h = (h ^ instante) * 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Método: anadir
+     * Añade un registro al final del fichero. La marca y la suma de comprobación se
+     * escriben después de los datos, así que un registro a medias nunca es válido.
+     *
+     * @param latitud latitud del punto.
+     * @param longitud longitud del punto.
+     * @param distancia distancia al punto anterior.
+     * @param velocidad velocidad en el punto (km/h).
+     * @param instante instante de captura (segundos).
+     * @throws IOException si no se puede ampliar el fichero.
+     */
+    public void anadir(double latitud, double longitud, float distancia, float velocidad,
+                       long instante) throws IOException {
+        ByteBuffer b = region(registros);
+        int p = posicion(registros);
+        b.putDouble(p + POS_LATITUD, latitud);
+        b.putDouble(p + POS_LONGITUD, longitud);
+        b.putFloat(p + POS_DISTANCIA, distancia);
+        b.putFloat(p + POS_VELOCIDAD, velocidad);
+        b.putLong(p + POS_INSTANTE, instante);
+        b.putInt(p + POS_SUMA, suma(latitud, longitud, distancia, velocidad, instante));
+        b.putInt(p + POS_MARCA, MARCA_REGISTRO);
+        registros++;
+    }
+
+    /**
+     * Método: insertarPosiciones
+     * Añade un lote de posiciones al final del fichero.
+     *
+     * @param lote puntos a insertar, en orden de captura.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    @Override
+    public boolean insertarPosiciones(TrackBuffer lote) {
+        try {
+            for (int i = 0; i < lote.tamano(); i++)
+                anadir(lote.getLatitud(i), lote.getLongitud(i), lote.getDistancia(i),
+                        lote.getVelocidad(i), lote.getInstante(i));
+            return true;
+        } catch (IOException e) {
+            error = e;
+            return false;
+        }
+    }
+
+    /**
+     * Método: insertarPausa
+     * Las pausas no se guardan en el fichero: se ignora y devuelve true.
+     *
+     * @param inicio instante en que empezó la pausa.
+     * @param fin instante en que terminó la pausa.
+     * @param latitud latitud donde se produjo.
+     * @param longitud longitud donde se produjo.
+     * @return true.
+     */
+    @Override
+    public boolean insertarPausa(long inicio, long fin, double latitud, double longitud) {
+        return true;
+    }
+
+    /**
+     * Método: insertarParciales
+     * Los parciales no se guardan en el fichero: se ignoran y devuelve true.
+     *
+     * @param parciales motor de parciales con los parciales completados.
+     * @return true.
+     */
+    @Override
+    public boolean insertarParciales(SplitEngine parciales) {
+        return true;
+    }
+
+    /**
+     * Método: borrarPosiciones
+     * Elimina todos los registros, recortando el fichero a la cabecera.
+     *
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    @Override
+    public boolean borrarPosiciones() {
+        // Se olvidan las regiones proyectadas antes de recortar, para no volver a usarlas.
+        regiones.clear();
+        registros = 0;
+        cabecera.putInt(12, 0);
+        try {
+            canal.truncate(TAM_CABECERA);
+            return true;
+        } catch (IOException e) {
+            error = e;
+            return false;
+        }
+    }
+
+    /**
+     * Método: recorrerPosiciones
+     * Recorre todos los registros, en orden de captura.
+     *
+     * @param receptor receptor de los puntos.
+     * @return el número de puntos recorridos.
+     */
+    @Override
+    public int recorrerPosiciones(PointCallback receptor) {
+        return recorrerPosiciones(Long.MIN_VALUE, Long.MAX_VALUE, receptor);
+    }
+
+    /**
+     * Método: recorrerPosiciones
+     * Recorre los registros capturados entre dos instantes (ambos incluidos). Como el
+     * fichero está ordenado por instante, el primero se localiza con búsqueda binaria
+     * y el recorrido se detiene al pasar del último. Los campos se leen directamente de
+     * las regiones proyectadas sobre un único objeto Point.
+     *
+     * @param desde primer instante a incluir (Long.MIN_VALUE para no limitar).
+     * @param hasta último instante a incluir (Long.MAX_VALUE para no limitar).
+     * @param receptor receptor de los puntos.
+     * @return el número de puntos recorridos.
+     */
+    @Override
+    public int recorrerPosiciones(long desde, long hasta, PointCallback receptor) {
+        int recorridos = 0;
+        try {
+            Point punto = new Point(0, 0, 0, 0, 0, 0);
+            for (int i = buscarPrimero(desde); i < registros; i++) {
+                ByteBuffer b = region(i);
+                int p = posicion(i);
+                long instante = b.getLong(p + POS_INSTANTE);
+                if (instante > hasta)
+                    break;
+
+                recorridos++;
+                punto.setId(i + 1);
+                punto.setLatitud(b.getDouble(p + POS_LATITUD));
+                punto.setLongitud(b.getDouble(p + POS_LONGITUD));
+                punto.setDistancia(b.getFloat(p + POS_DISTANCIA));
+                punto.setVelocidad(b.getFloat(p + POS_VELOCIDAD));
+                punto.setInstante(instante);
+                receptor.procesarPunto(punto);
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        return recorridos;
+    }
+
+    /**
+     * Método: buscarPrimero
+     * Búsqueda binaria del primer registro con instante mayor o igual que el dado.
+     *
+     * @param desde instante buscado.
+     * @return el índice del primer registro a incluir (registros si no hay ninguno).
+     * @throws IOException si no se puede proyectar alguna región.
+     */
+    private int buscarPrimero(long desde) throws IOException {
+        if (desde == Long.MIN_VALUE)
+            return 0;
+
+        int inf = 0;
+        int sup = registros;
+        while (inf < sup) {
+            int medio = (inf + sup) >>> 1;
+            if (region(medio).getLong(posicion(medio) + POS_INSTANTE) < desde)
+                inf = medio + 1;
+            else
+                sup = medio;
+        }
+        return inf;
+    }
+
+    /**
+     * Método: getRegistros
+     * Devuelve el número de registros válidos del fichero.
+     *
+     * @return el número de registros.
+     */
+    public int getRegistros() {
+        return registros;
+    }
+
+    /**
+     * Método: getError
+     * Devuelve el último error de entrada/salida al insertar, vaciar o leer.
+     *
+     * @return el error, o null si no ha habido ninguno.
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Método: getFichero
+     * Devuelve el fichero del recorrido.
+     *
+     * @return el fichero.
+     */
+    public File getFichero() {
+        return fichero;
+    }
+
+    /**
+     * Método: sincronizar
+     * Fuerza la escritura en disco de las regiones y guarda en la cabecera el número
+     * de registros confirmados, para acelerar la recuperación al abrir.
+     */
+    public void sincronizar() {
+        for (MappedByteBuffer r : regiones)
+            r.force();
+        cabecera.putInt(12, registros);
+        cabecera.force();
+    }
+
+    /**
+     * Método: cerrar
+     * Sincroniza, recorta el fichero a los registros válidos y lo cierra.
+     *
+     * @throws IOException si falla el recorte o el cierre.
+     */
+    public void cerrar() throws IOException {
+        sincronizar();
+        regiones.clear();
+        try {
+            canal.truncate(TAM_CABECERA + (long) registros * TAM_REGISTRO);
+        } finally {
+            canal.close();
+            acceso.close();
+        }
+    }
+}
@@ -6,6 +6,8 @@ import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.v4.app.FragmentActivity;
 import android.util.Log;
 import android.view.View;
@@ -16,6 +18,8 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 
 /**
@@ -44,14 +48,66 @@ public class CalculationActivity extends FragmentActivity {
     un año (luego, si actualizamos cada segundo, el entrenamiento duraría un año). */
     private static final int LIMITE_BBDD = 31536000;
 
+    // Zoom con el que se centra el mapa en la primera posición.
+    private static final float ZOOM_INICIAL = 15;
+
+    /* Intervalo mínimo (en milisegundos) entre dos animaciones de la cámara, que es
+    también lo que dura cada animación. Las posiciones que llegan dentro del intervalo
+    se agrupan en una sola animación hacia la última. */
+    private static final long INTERVALO_CAMARA = 1000;
+
+    /* Margen (fracción del tamaño de la vista, por cada lado) dentro del cual la posición
+    se considera ya visible y no se mueve la cámara. */
+    private static final double MARGEN_VISTA = 0.2;
+
+    /* Modo de cálculo de la distancia entre dos puntos consecutivos. Son saltos cortos (como
+    mucho, lo recorrido en el intervalo máximo de muestreo), así que basta la aproximación
+    rápida. */
+    private static final int MODO_DISTANCIA = Geodesic.RAPIDO;
+
+    /* Métricas: tiempo de tratar cada posición en el listener (hasta dejarla en la cola del
+    escritor, que mide el resto hasta la base de datos) y de actualizar el mapa. */
+    private static final LatencyHistogram TIEMPO_POSICION = Metrics.histograma("posicion.procesado");
+    private static final LatencyHistogram TIEMPO_MAPA = Metrics.histograma("mapa.actualizar");
+
     // Base de datos de la aplicación.
     private BBDD baseDatos;
 
+    // Sesión (entrenamiento) en la que se guardan los puntos.
+    private long sesion;
+
+    // Escritor con buffer, que agrupa las inserciones en la base de datos.
+    private PointWriter escritor;
+
+    /* Compresor del recorrido, entre el listener y el escritor: sólo pasa al escritor los
+    puntos que aportan forma al recorrido. */
+    private TrackCompressor compresor;
+
+    /* Detector de paradas, antes del compresor: los puntos capturados mientras se está
+    parado no se guardan, y cada parada se guarda como una pausa. */
+    private StationaryDetector detector;
+
+    /* Parciales por kilómetro y vueltas manuales, que se calculan con cada punto que sale
+    del detector (así no cuentan la distancia falsa de las paradas). Los completados se
+    pasan al escritor al terminar el recorrido, que los guarda desde su hilo. */
+    private final SplitEngine parciales = new SplitEngine();
+
+    /* Hora (GPS, en ms) de la última posición aceptada por el filtro, o 0 si aún no hay
+    ninguna: las vueltas se marcan con ella, en la misma base de tiempo que los parciales. */
+    private long ultimaHoraGps = 0;
+
     // Tiempo de actualización del GPS, que se modifica en onCreate (por eso no es final).
     private int tiempo_actualizacion = 0;
 
-    // Última localización capturada, para cálculos de estadísticas.
-    private Location ultima_localizacion;
+    /* Filtro de Kalman que suaviza las posiciones del GPS (y descarta las que llegan
+    repetidas o desordenadas), y velocidad filtrada del punto anterior, para el estado
+    de la aceleración. */
+    private final KalmanFilter filtro = new KalmanFilter();
+    private double velocidad_anterior = 0;
+
+    /* Planificador que ajusta el intervalo de muestreo al movimiento (tiempo_actualizacion
+    es el intervalo más corto, el que se usa durante los cambios de ritmo o dirección). */
+    private SamplingScheduler planificador;
 
     // Listener y Manager para gestionar la localización.
     private LocationListener locationListener;
@@ -63,6 +119,35 @@ public class CalculationActivity extends FragmentActivity {
     // Mapa en el que se muestra la posición actual.
     private GoogleMap mapa;
 
+    // Marcador de la posición actual: se crea una sola vez y luego sólo se mueve.
+    private Marker marcador;
+
+    /* Estado de la cámara: si ya se centró en la primera posición, el destino de la
+    próxima animación, si hay una animación programada y cuándo se lanzó la última. */
+    private boolean camaraIniciada = false;
+    private LatLng destinoCamara;
+    private boolean camaraPendiente = false;
+    private long ultimaAnimacion = 0;
+
+    // Handler del hilo principal, para programar las animaciones de la cámara.
+    private final Handler manejador = new Handler();
+
+    // Tarea que lanza la animación de la cámara hacia el último destino.
+    private final Runnable animarCamara = new Runnable() {
+        @Override
+        public void run() {
+            camaraPendiente = false;
+
+            // Si la posición sigue dentro de la vista, no hace falta mover la cámara.
+            if (dentroDeVista(destinoCamara))
+                return;
+
+            mapa.animateCamera(CameraUpdateFactory.newLatLng(destinoCamara),
+                    (int) INTERVALO_CAMARA, null);
+            ultimaAnimacion = SystemClock.uptimeMillis();
+        }
+    };
+
     // TextView en los que mostrar los resultados por cada intervalo.
     private TextView dist;
     private TextView vel;
@@ -71,6 +156,10 @@ public class CalculationActivity extends FragmentActivity {
     // Booleano para saber si ya hemos añadido algún punto a la base de datos.
     private boolean BBDDusada = false;
 
+    /* Si ya se pulsó finalizar: se espera a que el escritor termine (sin bloquear el hilo
+    principal) y se ignoran las posiciones que lleguen mientras tanto. */
+    private boolean finalizando = false;
+
     /* Atributos auxiliares de latitud, longitud, distancia, velocidad y estado
     de aceleración, para mostrarlos en caso de giro de pantalla y otros motivos
     de nueva creación de la actividad. */
@@ -118,11 +207,12 @@ public class CalculationActivity extends FragmentActivity {
             est_aceleracion = savedInstanceState.getString("est_aceleracion");
             tiempo_actualizacion = savedInstanceState.getInt("tiempo_actualizacion");
             puntosGuardados = savedInstanceState.getInt("puntosGuardados");
+            sesion = savedInstanceState.getLong("sesion");
+            parciales.setEstado(savedInstanceState.getDoubleArray("parciales"));
 
             if (puntosGuardados > 0) {
                 // Sólo añadimos el punto si tenemos más de un punto guardado.
-                mapa.clear();
-                mapa.addMarker(new MarkerOptions().position(new LatLng(latitud, longitud)).title("Posición actual"));
+                moverMarcador(new LatLng(latitud, longitud));
             }
 
             dist.setText(distancia);
@@ -132,16 +222,37 @@ public class CalculationActivity extends FragmentActivity {
             Log.d("Calculation", "Atributos recuperados");
         }
 
-        // También se inicia la base de datos.
-        baseDatos=new BBDD(getApplicationContext());
-
-        // Sólo borramos si entramos por primera vez.
+        /* También se inicia la base de datos. Si entramos por primera vez, se crea una
+        sesión nueva para este entrenamiento (los anteriores se conservan); si no, se
+        sigue con la sesión que se estaba usando. */
         if (savedInstanceState == null) {
-            baseDatos.borrarPosiciones();
-            Log.d("Calculation", "Puntos borrados de la base de datos");
+            baseDatos=new BBDD(getApplicationContext());
+            sesion = baseDatos.crearSesion();
+            Log.d("Calculation", "Nueva sesión en la base de datos: " + sesion);
+        } else {
+            baseDatos=new BBDD(getApplicationContext(), sesion);
         }
+        escritor=new PointWriter(baseDatos);
+        compresor=new TrackCompressor(new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                escritor.anadirPosicion(punto.getLatitud(), punto.getLongitud(), punto.getDistancia(),
+                        (float) punto.getVelocidad(), punto.getInstante());
+            }
+        });
+        detector=new StationaryDetector(new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                // Sumamos el punto a los parciales, avisando si se completa alguno.
+                if (parciales.anadir(punto.getDistancia(), punto.getInstante()*1000) > 0)
+                    mostrarParcial();
+                compresor.anadir(punto.getLatitud(), punto.getLongitud(), punto.getDistancia(),
+                        (float) punto.getVelocidad(), punto.getInstante());
+            }
+        });
 
         // E iniciamos la captura de la localización.
+        planificador = new SamplingScheduler(tiempo_actualizacion);
         iniciarGPS();
 
         Log.d("Calculation", "Actividad preparada");
@@ -169,6 +280,8 @@ public class CalculationActivity extends FragmentActivity {
         // Datos extra, aparte de la localización.
         state.putInt("tiempo_actualizacion", tiempo_actualizacion);
         state.putInt("puntosGuardados", puntosGuardados);
+        state.putLong("sesion", sesion);
+        state.putDoubleArray("parciales", parciales.getEstado());
 
         Log.d("Main", "Guardados los valores de la última localización");
     }
@@ -187,6 +300,24 @@ public class CalculationActivity extends FragmentActivity {
     protected void onDestroy() {
         // Desactivamos la actualización de la localización.
         locationManager.removeUpdates(locationListener);
+
+        // Cancelamos la animación de la cámara que pudiera estar programada.
+        manejador.removeCallbacks(animarCamara);
+
+        /* Pasamos al escritor la pausa en curso y el último punto que retenga el compresor,
+        y cerramos el escritor: vuelca los puntos que queden en su cola, para no perderlos,
+        y termina su hilo, sin que lo esperemos aquí. Si se está finalizando, ya se cerró y
+        se espera su aviso para pasar a ResultActivity. */
+        terminarRecorrido();
+        if (!finalizando) {
+            escritor.cerrar(new WriteCallback() {
+                @Override
+                public void escrituraTerminada(boolean correcto) {
+                    if (!correcto)
+                        Log.e("Calculation", "El escritor terminó sin guardar todos los puntos");
+                }
+            });
+        }
         Log.d("Calculation", "La actividad muere");
 
         super.onDestroy();
@@ -208,6 +339,57 @@ public class CalculationActivity extends FragmentActivity {
         Log.d("Calculation", "Pulsado botón de ir atrás");
     }
 
+    /**
+     * Método: terminarRecorrido
+     * Cierra la parada en curso (si la hay), pasa al escritor los puntos que aún
+     * retengan el detector y el compresor, y le pasa también los parciales completados.
+     */
+    private void terminarRecorrido() {
+        if (detector.terminar())
+            guardarPausa();
+        compresor.terminar();
+        if (escritor.anadirParciales(parciales))
+            parciales.vaciar();
+    }
+
+    /**
+     * Método: marcarVuelta
+     * Método ejecutado cuando se pulsa el botón de vuelta: cierra la vuelta en curso en la
+     * hora GPS de la última posición (no con el reloj del terminal, que puede ir adelantado
+     * o atrasado respecto al GPS y alargaría o acortaría la vuelta).
+     *
+     * @param view vista actual.
+     */
+    public void marcarVuelta(View view) {
+        if (parciales.marcarVuelta(ultimaHoraGps)) {
+            mostrarParcial();
+            Log.d("Calculation", "Vuelta marcada");
+        } else {
+            Toast.makeText(getApplicationContext(),
+                    "Aún no hay posición: no se puede marcar la vuelta.", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Método: mostrarParcial
+     * Muestra en un Toast el último parcial (o vuelta) completado.
+     */
+    private void mostrarParcial() {
+        Toast.makeText(getApplicationContext(), parciales.describir(parciales.getCompletados() - 1),
+                Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Método: guardarPausa
+     * Pasa al escritor la última pausa cerrada por el detector de paradas.
+     */
+    private void guardarPausa() {
+        escritor.anadirPausa(detector.getInicioPausa(), detector.getFinPausa(),
+                detector.getLatitudPausa(), detector.getLongitudPausa());
+        Log.d("Calculation", "Pausa de " + (detector.getFinPausa() - detector.getInicioPausa())
+                + " s (" + detector.getDescartados() + " puntos descartados en total)");
+    }
+
     /**
      * Método: finalizarEntrenamiento
      * Método ejecutado cuando se pulsa el botón de esta actividad.
@@ -222,17 +404,120 @@ public class CalculationActivity extends FragmentActivity {
                             "recoger su medalla...", Toast.LENGTH_LONG).show();
         }
 
+        // Si ya se está finalizando (se pulsó dos veces, o se llegó al límite), no hacemos nada.
+        if (finalizando)
+            return;
+        finalizando = true;
+
         Log.d("Calculation", "Paramos actualización de localización");
-        Log.d("Calculation", "Pasamos a ResultActivity");
+        locationManager.removeUpdates(locationListener);
+
+        /* Antes de pasar a ResultActivity, pasamos al escritor los puntos pendientes del
+        detector y del compresor, y lo cerramos: vuelca su cola en su propio hilo, y al terminar
+        nos avisa para pasar a ResultActivity desde el hilo principal. */
+        terminarRecorrido();
+        escritor.cerrar(new WriteCallback() {
+            @Override
+            public void escrituraTerminada(final boolean correcto) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mostrarResultados(correcto);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Método: mostrarResultados
+     * Pasa a ResultActivity cuando el escritor ha terminado. Si no pudo guardar todos los
+     * puntos, se avisa de que los resultados están incompletos.
+     *
+     * @param correcto true si el escritor guardó todo lo añadido.
+     */
+    private void mostrarResultados(boolean correcto) {
+        if (!correcto) {
+            Log.e("Calculation", "No se pudieron guardar todos los puntos del entrenamiento");
+            Toast.makeText(getApplicationContext(),
+                    "No se pudo guardar todo el recorrido: los resultados están incompletos.",
+                    Toast.LENGTH_LONG).show();
+        }
+        Log.d("Calculation", "Pasamos a ResultActivity (" + compresor.getGuardados() + " de "
+                + compresor.getRecibidos() + " puntos guardados)");
 
         // Marcamos el intent con el lanzamiento de la próxima actividad (ResultActivity).
         Intent resultIntent = new Intent(CalculationActivity.this, ResultActivity.class);
+        resultIntent.putExtra("sesion", sesion);
         startActivity(resultIntent);
 
         // Y cerramos la actividad para no volver a ella al pulsar atrás.
         finish();
     }
 
+    /**
+     * Método: moverMarcador
+     * Coloca el marcador de la posición actual. La primera vez lo crea; después sólo
+     * cambia su posición, sin limpiar ni volver a dibujar el resto del mapa.
+     *
+     * @param posicion posición actual.
+     */
+    private void moverMarcador(LatLng posicion) {
+        if (marcador == null)
+            marcador = mapa.addMarker(new MarkerOptions().position(posicion).title("Posición actual"));
+        else
+            marcador.setPosition(posicion);
+    }
+
+    /**
+     * Método: centrarCamara
+     * Lleva la cámara a la posición actual. La primera vez se centra directamente, con
+     * el zoom inicial; después se programa como mucho una animación por intervalo, hacia
+     * la última posición recibida, y se respeta el zoom que haya elegido el usuario.
+     *
+     * @param posicion posición actual.
+     */
+    private void centrarCamara(LatLng posicion) {
+        if (!camaraIniciada) {
+            mapa.moveCamera(CameraUpdateFactory.newLatLngZoom(posicion, ZOOM_INICIAL));
+            camaraIniciada = true;
+            ultimaAnimacion = SystemClock.uptimeMillis();
+            return;
+        }
+
+        // Si ya hay una animación programada, sólo cambiamos su destino.
+        destinoCamara = posicion;
+        if (!camaraPendiente) {
+            camaraPendiente = true;
+            long espera = ultimaAnimacion + INTERVALO_CAMARA - SystemClock.uptimeMillis();
+            manejador.postDelayed(animarCamara, Math.max(0, espera));
+        }
+    }
+
+    /**
+     * Método: dentroDeVista
+     * Indica si una posición está dentro de la zona visible del mapa, dejando un margen
+     * en los bordes para que el marcador no llegue a salirse antes de mover la cámara.
+     *
+     * @param posicion posición a comprobar.
+     * @return un booleano que indica si la posición está dentro de la vista.
+     */
+    private boolean dentroDeVista(LatLng posicion) {
+        LatLngBounds vista = mapa.getProjection().getVisibleRegion().latLngBounds;
+
+        double alto = vista.northeast.latitude - vista.southwest.latitude;
+        double ancho = vista.northeast.longitude - vista.southwest.longitude;
+        if (ancho < 0)
+            ancho += 360;
+
+        LatLngBounds interior = new LatLngBounds(
+                new LatLng(vista.southwest.latitude + alto*MARGEN_VISTA,
+                        vista.southwest.longitude + ancho*MARGEN_VISTA),
+                new LatLng(vista.northeast.latitude - alto*MARGEN_VISTA,
+                        vista.northeast.longitude - ancho*MARGEN_VISTA));
+        return interior.contains(posicion);
+    }
+
     /**
      * Método: iniciarGPS
      * Método que inicia la captura de la localización vía GPS.
@@ -242,23 +527,25 @@ public class CalculationActivity extends FragmentActivity {
          el móvil usará tanto el GPS como las antenas de telefonía para posicionarse. */
         locationManager = (LocationManager) this.getSystemService(Context.LOCATION_SERVICE);
 
-        // Última posición conocida, mientras se busca la actual (ésta no se guarda en la base de datos).
-        ultima_localizacion = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
-
         // Objeto LocationListener, que actuará sólo cuando cambie la posición.
         locationListener = new LocationListener() {
             // Sólo actuaremos cuando cambie la posición.
             @Override
             public void onLocationChanged(Location location) {
-                // Sólo trataremos con localizaciones no nulas.
-                if (location != null) {
-                /* Registraremos el cambio actualizando la posición en el mapa y guardándola en la
-                base de datos, sólo si merece la pena actualizar la posición. Si no, se ignora y
-                se espera a la siguiente. */
+                long inicio = Metrics.inicio();
+
+                // Sólo trataremos con localizaciones no nulas, y mientras no se esté finalizando.
+                if (location != null && !finalizando) {
+                /* Pasamos la posición por el filtro, que la combina con las anteriores según
+                su precisión. Sólo descarta las posiciones que no son posteriores a la última;
+                con el resto, registramos el cambio con la posición filtrada, actualizándola
+                en el mapa y guardándola en la base de datos. */
                     Log.d("Calculation", "Cambio en la localización");
 
-                    if (isBetterLocation(location, ultima_localizacion)) {
-                        Log.d("Calculation", "Cambio significativo en la localización");
+                    if (filtro.actualizar(location.getLatitude(), location.getLongitude(),
+                            location.getAccuracy(), location.getTime())) {
+                        Log.d("Calculation", "Posición filtrada");
+                        ultimaHoraGps = location.getTime();
 
                         // Si es el primer punto, mostramos un Toast diciendo que empieza el entrenamiento.
                         if (puntosGuardados == 0) {
@@ -266,30 +553,30 @@ public class CalculationActivity extends FragmentActivity {
                                     "Comienza el entrenamiento.", Toast.LENGTH_LONG).show();
                         }
 
-                        // Obtenemos latitud y longitud, pasando a LatLng.
-                        latitud = location.getLatitude();
-                        longitud = location.getLongitude();
+                        // Obtenemos latitud y longitud filtradas (guardando las anteriores), pasando a LatLng.
+                        double latitud_anterior = latitud;
+                        double longitud_anterior = longitud;
+                        latitud = filtro.getLatitud();
+                        longitud = filtro.getLongitud();
                         LatLng latLng = new LatLng(latitud, longitud);
 
-                        // Añadimos un marcador, limpiando el que pusimos antes.
-                        mapa.clear();
-                        mapa.addMarker(new MarkerOptions().position(latLng).title("Posición actual"));
-
-                        // Y fijamos el centro del mapa, añadiendo animaciones.
-                        mapa.moveCamera(CameraUpdateFactory.newLatLngZoom(latLng, 15));
-                        mapa.animateCamera(CameraUpdateFactory.zoomIn());
-                        mapa.animateCamera(CameraUpdateFactory.zoomTo(15), 2000, null);
+                        // Movemos el marcador y, si hace falta, la cámara.
+                        long inicioMapa = Metrics.inicio();
+                        moverMarcador(latLng);
+                        centrarCamara(latLng);
+                        Metrics.registrar(TIEMPO_MAPA, inicioMapa);
 
                         // Indicamos los cambios en los TextView, primero con la velocidad.
-                        velocidad = Double.toString(location.getSpeed() * 3.6);
+                        float velocidad_kmh = (float) (filtro.getVelocidad() * 3.6);
+                        velocidad = Float.toString(velocidad_kmh);
                         vel.setText(velocidad);
 
                         /* La posición depende de si es el primer punto tomado o no.
                         Cuidado, porque puede ocurrir que se gire el terminal y se vuelva a entrar
                         aquí, registrando distancia 0 (cuando puede que no sea así). No se va a
-                        guardar el atributo BBDDusada en caso de cambios, porque la distancia
-                        se compararía con la última posición conocida (que se hace fuera del listener),
-                        y no con la última posición con cambios significativos. Por eso, acumulamos
+                        guardar el atributo BBDDusada en caso de cambios, porque el filtro empieza de
+                        nuevo con la actividad y no tiene el punto anterior con el que medir la
+                        distancia. Por eso, acumulamos
                         0 en la distancia. El error será menor conforme menos tarde el GPS en volver a
                         capturar posiciones correctas tras destruirse y crearse de nuevo la
                         actividad, y también conforme más puntos se capturen. */
@@ -297,30 +584,37 @@ public class CalculationActivity extends FragmentActivity {
                             // Distancia a 0.
                             distancia = "0";
 
-                            // Aceleración no calculada porque nos falta ultima_localizacion.
+                            // Aceleración no calculada porque nos falta el punto anterior.
                             est_aceleracion = "Sin datos";
 
                             // Guardamos la posición en la base de datos con distancia 0.
-                            baseDatos.insertarPosicion(location, 0);
+                            if (detector.anadir(latitud, longitud, 0, velocidad_kmh,
+                                    location.getTime()/1000))
+                                guardarPausa();
 
                             // Y actualizamos a true, para que no vuelva a entrar aquí.
                             BBDDusada = true;
                         } else {
-                            // Fijamos la distancia a su valor normal.
-                            distancia = Float.toString(location.distanceTo(ultima_localizacion));
+                            /* Fijamos la distancia a su valor normal: la que hay entre las dos
+                            últimas posiciones filtradas. */
+                            float paso = (float) Geodesic.distancia(MODO_DISTANCIA, latitud_anterior,
+                                    longitud_anterior, latitud, longitud);
+                            distancia = Float.toString(paso);
 
                             // Con esto, se guarda la posición en la base de datos.
-                            baseDatos.insertarPosicion(location, location.distanceTo(ultima_localizacion));
+                            if (detector.anadir(latitud, longitud, paso, velocidad_kmh,
+                                    location.getTime()/1000))
+                                guardarPausa();
 
                             /* El estado de la aceleración puede ser acelerando, decelerando o
                             velocidad constante, dependiendo del resultado de la aceleración
                             (que es vf-vo/tf-to). Aquí obviaremos el tiempo, y nos limitaremos a
                             la diferencia de velocidades (ya que tf-to siempre será >=0).
-                            Además, sólo podremos medir mientras tengamos una última localización
-                            correcta, luego aquí sí actualizamos el valor del texto, y no antes. */
-                            if ((location.getSpeed() - ultima_localizacion.getSpeed()) > 0)
+                            Además, sólo podremos medir mientras tengamos un punto anterior,
+                            luego aquí sí actualizamos el valor del texto, y no antes. */
+                            if ((filtro.getVelocidad() - velocidad_anterior) > 0)
                                 est_aceleracion = "Acelerando";
-                            else if ((location.getSpeed() - ultima_localizacion.getSpeed()) < 0)
+                            else if ((filtro.getVelocidad() - velocidad_anterior) < 0)
                                 est_aceleracion = "Decelerando";
                             else
                                 est_aceleracion = "Velocidad constante";
@@ -338,10 +632,21 @@ public class CalculationActivity extends FragmentActivity {
                             finalizarEntrenamiento(null);
                         }
 
-                        // Y actualizamos la última posición capturada.
-                        ultima_localizacion = location;
+                        // Actualizamos la velocidad del último punto.
+                        velocidad_anterior = filtro.getVelocidad();
+
+                        /* Y, si el movimiento ha cambiado de estado, volvemos a programar las
+                        actualizaciones del GPS con el nuevo intervalo. */
+                        if (!finalizando && planificador.actualizar(filtro.getVelocidad(), filtro.getRumbo(),
+                                location.getTime())) {
+                            locationManager.removeUpdates(this);
+                            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER,
+                                    planificador.getIntervalo(), DISTANCIA_ACTUALIZACION, this);
+                            Log.d("Calculation", "Nuevo intervalo de muestreo: " + planificador.getIntervalo() + " ms");
+                        }
                     }
                 }
+                Metrics.registrar(TIEMPO_POSICION, inicio);
             }
 
             // No hacemos nada en el resto de métodos.
@@ -365,71 +670,4 @@ public class CalculationActivity extends FragmentActivity {
         locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, tiempo_actualizacion,
                 DISTANCIA_ACTUALIZACION, locationListener);
     }
-
-    /**
-     * Método: isBetterLocation
-     * Método que determina si es conveniente usar la nueva localización o esperarse a otra.
-     * Se basa en el tiempo de actualización. Se escribe el código tal y como se obtuvo.
-     *
-     * @param location la nueva localización que se quiere evaluar.
-     * @param currentBestLocation la localización actual con la que se quiere comparar la nueva.
-     */
-    protected boolean isBetterLocation(Location location, Location currentBestLocation) {
-        if (currentBestLocation == null) {
-            // Una localización nueva es siempre mejor que no estar localizado.
-            return true;
-        }
-
-        // Comprueba si la nueva localización es nueva o vieja.
-        long timeDelta = location.getTime() - currentBestLocation.getTime();
-        boolean isSignificantlyNewer = timeDelta > tiempo_actualizacion;
-        boolean isSignificantlyOlder = timeDelta < -tiempo_actualizacion;
-        boolean isNewer = timeDelta > 0;
-
-        /* Si han pasado más de 2 minutos desde la posición actual, se usa la nueva localización
-        porque el usuario debe haberse movido. */
-        if (isSignificantlyNewer) {
-            return true;
-            // Si la nueva posición es más antigua de 2 minutos, debe ser peor.
-        } else if (isSignificantlyOlder) {
-            return false;
-        }
-
-        // Comprobamos si la nueva posición es más o menos exacta.
-        int accuracyDelta = (int) (location.getAccuracy() - currentBestLocation.getAccuracy());
-        boolean isLessAccurate = accuracyDelta > 0;
-        boolean isMoreAccurate = accuracyDelta < 0;
-        boolean isSignificantlyLessAccurate = accuracyDelta > 200;
-
-        // Comprobamos si ambas localizaciones vienen del mismo proveedor.
-        boolean isFromSameProvider = isSameProvider(location.getProvider(),
-                currentBestLocation.getProvider());
-
-        // Determinamos la calidad de la posición usando una combinación de oportunidad y precisión.
-        if (isMoreAccurate) {
-            return true;
-        } else if (isNewer && !isLessAccurate) {
-            return true;
-        } else if (isNewer && !isSignificantlyLessAccurate && isFromSameProvider) {
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * Método: isSameProvider
-     * Comprueba si los dos proveedores pasados como parámetros son iguales.
-     * Se utiliza en el método isBetterLocation.
-     *
-     * @param provider1 primero de los proveedores.
-     * @param provider2 segundo de los proveedores.
-     */
-    private boolean isSameProvider(String provider1, String provider2) {
-        if (provider1 == null) {
-            return provider2 == null;
-        }
-
-        // Comprobamos si los dos proveedores son iguales.
-        return provider1.equals(provider2);
-    }
 }
@@ -0,0 +1,170 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Clase Geodesic.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Cálculo de distancias entre dos posiciones (latitud y longitud en grados), en Java puro
+ * y sin crear objetos, para poder usarlo (y medirlo) fuera del terminal. Hay tres modos,
+ * de más preciso a más rápido:
+ *  - PRECISO: fórmula inversa de Vincenty sobre el elipsoide WGS84 (el del GPS). Error
+ *    por debajo del milímetro. Para puntos casi antípodas no converge, y entonces se
+ *    devuelve la distancia de haversine.
+ *  - HAVERSINE: círculo máximo sobre una esfera de radio medio. Al no tener en cuenta el
+ *    achatamiento de la Tierra, se separa del elipsoide como mucho un 0,6 %.
+ *  - RAPIDO: aproximación equirectangular (proyección plana con la escala de la latitud
+ *    media), sin funciones trigonométricas inversas. Para saltos cortos (menos de 10 km,
+ *    fuera de los polos) se separa de haversine menos de un 0,001 %, así que su error es
+ *    prácticamente el de la esfera; con distancias mayores el error crece rápidamente.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public final class Geodesic {
+
+    // Modos de cálculo.
+    public static final int PRECISO = 0;
+    public static final int HAVERSINE = 1;
+    public static final int RAPIDO = 2;
+
+    // Radio medio de la Tierra, en metros (el de la esfera de haversine y la aproximación rápida).
+    public static final double RADIO_TIERRA = 6371008.8;
+
+    // Semieje mayor, achatamiento y semieje menor del elipsoide WGS84.
+    private static final double SEMIEJE_MAYOR = 6378137.0;
+    private static final double ACHATAMIENTO = 1 / 298.257223563;
+    private static final double SEMIEJE_MENOR = (1 - ACHATAMIENTO) * SEMIEJE_MAYOR;
+
+    // Convergencia de la iteración de Vincenty (en radianes, unos 0,06 mm) y máximo de iteraciones.
+    private static final double CONVERGENCIA = 1e-12;
+    private static final int MAX_ITERACIONES = 200;
+
+    private Geodesic() {
+    }
+
+    /**
+     * Método: distancia
+     * Calcula la distancia entre dos posiciones con el modo indicado.
+     *
+     * @param modo PRECISO, HAVERSINE o RAPIDO.
+     * @param latitud1 latitud de la primera posición, en grados.
+     * @param longitud1 longitud de la primera posición, en grados.
+     * @param latitud2 latitud de la segunda posición, en grados.
+     * @param longitud2 longitud de la segunda posición, en grados.
+     * @return la distancia, en metros.
+     */
+    public static double distancia(int modo, double latitud1, double longitud1,
+                                   double latitud2, double longitud2) {
+        switch (modo) {
+            case PRECISO:
+                return distanciaPrecisa(latitud1, longitud1, latitud2, longitud2);
+            case HAVERSINE:
+                return distanciaHaversine(latitud1, longitud1, latitud2, longitud2);
+            case RAPIDO:
+                return distanciaRapida(latitud1, longitud1, latitud2, longitud2);
+            default:
+                throw new IllegalArgumentException("Modo de distancia desconocido: " + modo);
+        }
+    }
+
+    /**
+     * Método: distanciaPrecisa
+     * Distancia sobre el elipsoide WGS84 (fórmula inversa de Vincenty).
+     *
+     * @param latitud1 latitud de la primera posición, en grados.
+     * @param longitud1 longitud de la primera posición, en grados.
+     * @param latitud2 latitud de la segunda posición, en grados.
+     * @param longitud2 longitud de la segunda posición, en grados.
+     * @return la distancia, en metros.
+     */
+    public static double distanciaPrecisa(double latitud1, double longitud1,
+                                          double latitud2, double longitud2) {
+        double l = Math.toRadians(longitud2 - longitud1);
+
+        // Latitudes reducidas.
+        double u1 = Math.atan((1 - ACHATAMIENTO) * Math.tan(Math.toRadians(latitud1)));
+        double u2 = Math.atan((1 - ACHATAMIENTO) * Math.tan(Math.toRadians(latitud2)));
+        double senU1 = Math.sin(u1), cosU1 = Math.cos(u1);
+        double senU2 = Math.sin(u2), cosU2 = Math.cos(u2);
+
+        double lambda = l;
+        double senSigma, cosSigma, sigma, cos2Alfa, cos2SigmaM;
+        int iteraciones = 0;
+        while (true) {
+            double senLambda = Math.sin(lambda), cosLambda = Math.cos(lambda);
+            double a = cosU2 * senLambda;
+            double b = cosU1 * senU2 - senU1 * cosU2 * cosLambda;
+            senSigma = Math.sqrt(a*a + b*b);
+            if (senSigma == 0)
+                return 0;
+            cosSigma = senU1 * senU2 + cosU1 * cosU2 * cosLambda;
+            sigma = Math.atan2(senSigma, cosSigma);
+            double senAlfa = cosU1 * cosU2 * senLambda / senSigma;
+            cos2Alfa = 1 - senAlfa * senAlfa;
+            // Sobre el ecuador cos2Alfa es 0, y el término no interviene.
+            cos2SigmaM = cos2Alfa != 0 ? cosSigma - 2 * senU1 * senU2 / cos2Alfa : 0;
+            double c = ACHATAMIENTO / 16 * cos2Alfa * (4 + ACHATAMIENTO * (4 - 3 * cos2Alfa));
+            double anterior = lambda;
+            lambda = l + (1 - c) * ACHATAMIENTO * senAlfa * (sigma + c * senSigma
+                    * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+            if (Math.abs(lambda - anterior) < CONVERGENCIA)
+                break;
+            if (++iteraciones == MAX_ITERACIONES)
+                return distanciaHaversine(latitud1, longitud1, latitud2, longitud2);
+        }
+
+        double u2e = cos2Alfa * (SEMIEJE_MAYOR * SEMIEJE_MAYOR - SEMIEJE_MENOR * SEMIEJE_MENOR)
+                / (SEMIEJE_MENOR * SEMIEJE_MENOR);
+        double a = 1 + u2e / 16384 * (4096 + u2e * (-768 + u2e * (320 - 175 * u2e)));
+        double b = u2e / 1024 * (256 + u2e * (-128 + u2e * (74 - 47 * u2e)));
+        double deltaSigma = b * senSigma * (cos2SigmaM + b / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+                - b / 6 * cos2SigmaM * (-3 + 4 * senSigma * senSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return SEMIEJE_MENOR * a * (sigma - deltaSigma);
+    }
+
+    /**
+     * Método: distanciaHaversine
+     * Distancia por el círculo máximo, sobre una esfera de radio medio.
+     *
+     * @param latitud1 latitud de la primera posición, en grados.
+     * @param longitud1 longitud de la primera posición, en grados.
+     * @param latitud2 latitud de la segunda posición, en grados.
+     * @param longitud2 longitud de la segunda posición, en grados.
+     * @return la distancia, en metros.
+     */
+    public static double distanciaHaversine(double latitud1, double longitud1,
+                                            double latitud2, double longitud2) {
+        double senLat = Math.sin(Math.toRadians(latitud2 - latitud1) / 2);
+        double senLon = Math.sin(Math.toRadians(longitud2 - longitud1) / 2);
+        double h = senLat * senLat + Math.cos(Math.toRadians(latitud1)) * Math.cos(Math.toRadians(latitud2))
+                * senLon * senLon;
+        return 2 * RADIO_TIERRA * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /**
+     * Método: distanciaRapida
+     * Aproximación equirectangular, sólo para saltos cortos (ver la cabecera de la clase).
+     *
+     * @param latitud1 latitud de la primera posición, en grados.
+     * @param longitud1 longitud de la primera posición, en grados.
+     * @param latitud2 latitud de la segunda posición, en grados.
+     * @param longitud2 longitud de la segunda posición, en grados.
+     * @return la distancia, en metros.
+     */
+    public static double distanciaRapida(double latitud1, double longitud1,
+                                         double latitud2, double longitud2) {
+        // Diferencia de longitudes en (-180, 180], por si el salto cruza el antimeridiano.
+        double dLon = longitud2 - longitud1;
+        if (dLon > 180)
+            dLon -= 360;
+        else if (dLon < -180)
+            dLon += 360;
+
+        double x = Math.toRadians(dLon) * Math.cos(Math.toRadians((latitud1 + latitud2) / 2));
+        double y = Math.toRadians(latitud2 - latitud1);
+        return RADIO_TIERRA * Math.sqrt(x*x + y*y);
+    }
+}
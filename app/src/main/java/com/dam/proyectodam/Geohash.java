@@ -0,0 +1,158 @@
+package com.dam.proyectodam;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Clase Geohash.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Geohash entero de una posición, para indexar los puntos por zona (columna celda de la
+ * tabla de posiciones, ver BBDD). Se divide la longitud y la latitud en 2^BITS_EJE franjas
+ * cada una y se intercalan los bits de ambas (primero los de longitud, como en el geohash
+ * en texto), así que los puntos de una misma celda, a cualquier nivel, tienen códigos
+ * consecutivos: cada celda es un intervalo de códigos que el índice B-tree de SQLite
+ * recorre sin leer nada de fuera.
+ *
+ * Para buscar los puntos de un rectángulo, rangos lo cubre con unas pocas celdas (como
+ * mucho MAX_CELDAS) del nivel más fino posible y devuelve sus intervalos de códigos,
+ * juntando los contiguos. Las celdas se salen algo del rectángulo, así que después hay
+ * que filtrar por latitud y longitud.
+ *
+ * Con 26 bits por eje, una celda mide unos 0,6 m, y el código cabe en 52 bits.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public final class Geohash {
+
+    // Bits por eje y franjas por eje.
+    public static final int BITS_EJE = 26;
+    private static final int FRANJAS = 1 << BITS_EJE;
+
+    // Máximo de celdas con las que se cubre un rectángulo (y, por tanto, de intervalos).
+    public static final int MAX_CELDAS = 32;
+
+    private Geohash() {
+    }
+
+    /**
+     * Método: codificar
+     * Calcula el geohash entero de una posición.
+     *
+     * @param latitud latitud, en grados.
+     * @param longitud longitud, en grados.
+     * @return el código, entre 0 y 2^(2*BITS_EJE) - 1.
+     */
+    public static long codificar(double latitud, double longitud) {
+        return intercalar(franja(longitud, -180, 360), franja(latitud, -90, 180));
+    }
+
+    /**
+     * Método: rangos
+     * Calcula los intervalos de códigos que cubren un rectángulo. Si la longitud mínima es
+     * mayor que la máxima, el rectángulo cruza el antimeridiano.
+     *
+     * @param latMin latitud mínima.
+     * @param lonMin longitud mínima (oeste).
+     * @param latMax latitud máxima.
+     * @param lonMax longitud máxima (este).
+     * @return los intervalos, ordenados y sin solapes, como pares [inicio, fin] (ambos
+     * incluidos) seguidos en el array.
+     */
+    public static long[] rangos(double latMin, double lonMin, double latMax, double lonMax) {
+        if (lonMin > lonMax) {
+            // Se parte en dos rectángulos, uno a cada lado del antimeridiano.
+            long[] oeste = rangos(latMin, lonMin, latMax, 180);
+            long[] este = rangos(latMin, -180, latMax, lonMax);
+            long[] ambos = Arrays.copyOf(oeste, oeste.length + este.length);
+            System.arraycopy(este, 0, ambos, oeste.length, este.length);
+            return juntar(ambos);
+        }
+
+        int x0 = franja(lonMin, -180, 360), x1 = franja(lonMax, -180, 360);
+        int y0 = franja(latMin, -90, 180), y1 = franja(latMax, -90, 180);
+
+        // Nivel más fino (menos bits descartados) con el que bastan MAX_CELDAS celdas.
+        int descartados = 0;
+        while ((long) ((x1 >> descartados) - (x0 >> descartados) + 1)
+                * ((y1 >> descartados) - (y0 >> descartados) + 1) > MAX_CELDAS)
+            descartados++;
+
+        // Cada celda es el intervalo de códigos que empiezan por su código.
+        long[] rangos = new long[2 * MAX_CELDAS];
+        int n = 0;
+        long ancho = 1L << (2 * descartados);
+        for (int x = x0 >> descartados; x <= x1 >> descartados; x++) {
+            for (int y = y0 >> descartados; y <= y1 >> descartados; y++) {
+                long inicio = intercalar(x, y) << (2 * descartados);
+                rangos[n++] = inicio;
+                rangos[n++] = inicio + ancho - 1;
+            }
+        }
+        return juntar(Arrays.copyOf(rangos, n));
+    }
+
+    /**
+     * Método: juntar
+     * Ordena los intervalos y junta los que se solapan o son contiguos.
+     */
+    private static long[] juntar(long[] rangos) {
+        // Ordenación por inserción de los pares por su inicio (son como mucho 2*MAX_CELDAS).
+        int n = rangos.length / 2;
+        long[] ordenados = rangos.clone();
+        for (int i = 1; i < n; i++) {
+            long inicio = ordenados[2*i], fin = ordenados[2*i+1];
+            int j = i - 1;
+            while (j >= 0 && ordenados[2*j] > inicio) {
+                ordenados[2*j+2] = ordenados[2*j];
+                ordenados[2*j+3] = ordenados[2*j+1];
+                j--;
+            }
+            ordenados[2*j+2] = inicio;
+            ordenados[2*j+3] = fin;
+        }
+
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m > 0 && ordenados[2*i] <= ordenados[2*m-1] + 1) {
+                ordenados[2*m-1] = Math.max(ordenados[2*m-1], ordenados[2*i+1]);
+            } else {
+                ordenados[2*m] = ordenados[2*i];
+                ordenados[2*m+1] = ordenados[2*i+1];
+                m++;
+            }
+        }
+        return Arrays.copyOf(ordenados, 2 * m);
+    }
+
+    /**
+     * Método: franja
+     * Franja de un eje en la que cae un valor (los valores fuera de rango van a la primera
+     * o la última).
+     */
+    private static int franja(double valor, double minimo, double ancho) {
+        long franja = (long) Math.floor((valor - minimo) / ancho * FRANJAS);
+        return (int) Math.max(0, Math.min(FRANJAS - 1, franja));
+    }
+
+    /**
+     * Método: intercalar
+     * Intercala los bits de las franjas de longitud (posiciones impares) y latitud (pares).
+     */
+    private static long intercalar(int x, int y) {
+        return (separar(x) << 1) | separar(y);
+    }
+
+    private static long separar(int valor) {
+        long v = valor & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+}
@@ -0,0 +1,272 @@
+package com.dam.proyectodam;
+
+import android.util.Log;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Clase GpxImporter.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Importación de entrenamientos antiguos desde ficheros GPX. El fichero se lee con un
+ * XmlPullParser, en streaming, y cada trkpt se convierte en un punto como los que se
+ * graban: distancia al punto anterior (con Geodesic), velocidad en km/h e instante en
+ * segundos. Los puntos se guardan por lotes con TrackStore.insertarPosiciones, que usa
+ * una sentencia compilada dentro de una transacción por lote, en lugar de abrir la base
+ * de datos y hacer un insert por punto.
+ *
+ * Cada lote se confirma por separado, así que si la importación se interrumpe los lotes
+ * ya guardados se quedan y se puede continuar: basta con volver a leer el fichero
+ * saltando los puntos ya importados (ver BBDD.prepararImportacion). Los puntos saltados
+ * se leen igualmente, para que la distancia del primer punto nuevo sea la correcta.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class GpxImporter {
+
+    // Puntos por lote (y por transacción).
+    public static final int LOTE = 8192;
+
+    // Forma de calcular la distancia entre puntos, la misma que al grabar.
+    private static final int MODO_DISTANCIA = Geodesic.RAPIDO;
+
+    // Métricas: puntos importados y ritmo de la última importación.
+    private static final AtomicLong PUNTOS_IMPORTADOS = Metrics.contador("importacion.puntos");
+    private static final AtomicLong PUNTOS_POR_SEGUNDO = Metrics.indicador("importacion.puntos_por_segundo");
+
+    // Destino de los puntos.
+    private final TrackStore destino;
+
+    // Lote en construcción.
+    private final TrackBuffer lote = new TrackBuffer();
+
+    // Punto anterior (para la distancia y la velocidad), si lo hay en el segmento actual.
+    private boolean hayAnterior = false;
+    private double latitudAnterior, longitudAnterior;
+    private long instanteAnterior = 0;
+
+    // Puntos leídos del fichero, puntos guardados y duración de la importación.
+    private long leidos = 0;
+    private long importados = 0;
+    private long nanos = 0;
+
+    /**
+     * Constructor de la clase GpxImporter.
+     *
+     * @param destino donde se guardan los puntos (normalmente BBDD, en la sesión preparada).
+     */
+    public GpxImporter(TrackStore destino) {
+        this.destino = destino;
+    }
+
+    /**
+     * Método: importar
+     * Lee un fichero GPX y guarda sus puntos, saltando los primeros que se indiquen.
+     *
+     * @param entrada contenido del fichero (conviene que tenga buffer).
+     * @param saltar número de puntos ya importados en un intento anterior.
+     * @return true si se leyó el fichero entero y se guardaron todos sus puntos.
+     */
+    public boolean importar(InputStream entrada, long saltar) {
+        long inicio = System.nanoTime();
+        boolean correcto = false;
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(entrada, null);
+
+            // Dentro de un trkpt, dentro de su time, y coordenadas e instante del punto.
+            boolean enPunto = false, enInstante = false;
+            double latitud = 0, longitud = 0;
+            long instante = 0;
+
+            correcto = true;
+            int evento = parser.next();
+            while (evento != XmlPullParser.END_DOCUMENT && correcto) {
+                if (evento == XmlPullParser.START_TAG) {
+                    String nombre = parser.getName();
+                    if ("trkpt".equals(nombre)) {
+                        enPunto = true;
+                        latitud = Double.parseDouble(parser.getAttributeValue(null, "lat"));
+                        longitud = Double.parseDouble(parser.getAttributeValue(null, "lon"));
+                        // Sin time, el punto se queda con el instante del anterior.
+                        instante = instanteAnterior;
+                    } else if ("time".equals(nombre)) {
+                        enInstante = enPunto;
+                    } else if ("trkseg".equals(nombre)) {
+                        // Entre segmentos no se ha recorrido nada.
+                        hayAnterior = false;
+                    }
+                } else if (evento == XmlPullParser.TEXT && enInstante) {
+                    long leido = leerInstante(parser.getText());
+                    if (leido != Long.MIN_VALUE)
+                        instante = leido;
+                } else if (evento == XmlPullParser.END_TAG) {
+                    String nombre = parser.getName();
+                    if ("time".equals(nombre)) {
+                        enInstante = false;
+                    } else if ("trkpt".equals(nombre) && enPunto) {
+                        enPunto = false;
+                        correcto = anadirPunto(latitud, longitud, instante, saltar);
+                    }
+                }
+                evento = parser.next();
+            }
+
+            // El último lote, que no llegó a llenarse.
+            if (correcto)
+                correcto = guardarLote();
+        } catch (XmlPullParserException | IOException | RuntimeException e) {
+            // Un fichero mal formado (o una coordenada que no es un número) detiene la importación.
+            Log.e("GpxImporter", "Error al leer el fichero en el punto " + leidos, e);
+            correcto = false;
+        }
+
+        nanos = System.nanoTime() - inicio;
+        Metrics.fijar(PUNTOS_POR_SEGUNDO, (long) getPuntosPorSegundo());
+        Log.d("GpxImporter", (correcto ? "Importación completa: " : "Importación interrumpida: ") + importados
+                + " puntos guardados de " + leidos + " leídos en " + nanos / 1000000 + " ms ("
+                + (long) getPuntosPorSegundo() + " puntos/s)");
+        return correcto;
+    }
+
+    /**
+     * Método: anadirPunto
+     * Calcula la distancia y la velocidad de un punto respecto al anterior y lo añade al
+     * lote (si no hay que saltarlo), guardando el lote cuando se llena.
+     */
+    private boolean anadirPunto(double latitud, double longitud, long instante, long saltar) {
+        float distancia = 0;
+        float velocidad = 0;
+        if (hayAnterior) {
+            distancia = (float) Geodesic.distancia(MODO_DISTANCIA, latitudAnterior, longitudAnterior, latitud, longitud);
+            long intervalo = instante - instanteAnterior;
+            if (intervalo > 0)
+                velocidad = distancia / intervalo * 3.6f;
+        }
+        hayAnterior = true;
+        latitudAnterior = latitud;
+        longitudAnterior = longitud;
+        instanteAnterior = instante;
+
+        leidos++;
+        if (leidos <= saltar)
+            return true;
+        lote.anadir(latitud, longitud, distancia, velocidad, instante);
+        return lote.tamano() < LOTE || guardarLote();
+    }
+
+    /**
+     * Método: guardarLote
+     * Guarda el lote en construcción (en una transacción) y lo vacía.
+     */
+    private boolean guardarLote() {
+        int n = lote.tamano();
+        if (n == 0)
+            return true;
+        if (!destino.insertarPosiciones(lote)) {
+            Log.e("GpxImporter", "No se pudo guardar el lote de " + n + " puntos");
+            return false;
+        }
+        importados += n;
+        Metrics.contar(PUNTOS_IMPORTADOS, n);
+        lote.vaciar();
+        return true;
+    }
+
+    /**
+     * Método: leerInstante
+     * Convierte una fecha ISO 8601 de GPX (aaaa-mm-ddThh:mm:ss, con fracción de segundo y
+     * zona opcionales; sin zona se toma UTC) a segundos desde 1970.
+     *
+     * @param texto la fecha.
+     * @return el instante, o Long.MIN_VALUE si el texto no es una fecha válida.
+     */
+    static long leerInstante(String texto) {
+        String fecha = texto.trim();
+        if (fecha.length() < 19 || fecha.charAt(4) != '-' || fecha.charAt(7) != '-'
+                || fecha.charAt(13) != ':' || fecha.charAt(16) != ':')
+            return Long.MIN_VALUE;
+        int ano = cifras(fecha, 0, 4), mes = cifras(fecha, 5, 2), dia = cifras(fecha, 8, 2);
+        int hora = cifras(fecha, 11, 2), minuto = cifras(fecha, 14, 2), segundo = cifras(fecha, 17, 2);
+        if (ano < 0 || mes < 1 || mes > 12 || dia < 1 || dia > 31 || hora < 0 || minuto < 0 || segundo < 0)
+            return Long.MIN_VALUE;
+
+        // Se salta la fracción de segundo, y se aplica la zona si la hay.
+        int pos = 19;
+        if (pos < fecha.length() && fecha.charAt(pos) == '.') {
+            pos++;
+            while (pos < fecha.length() && Character.isDigit(fecha.charAt(pos)))
+                pos++;
+        }
+        long desfase = 0;
+        if (pos < fecha.length() && (fecha.charAt(pos) == '+' || fecha.charAt(pos) == '-')) {
+            if (fecha.length() < pos + 6)
+                return Long.MIN_VALUE;
+            int horas = cifras(fecha, pos + 1, 2), minutos = cifras(fecha, pos + 4, 2);
+            if (horas < 0 || minutos < 0)
+                return Long.MIN_VALUE;
+            desfase = (horas * 60 + minutos) * 60 * (fecha.charAt(pos) == '+' ? 1 : -1);
+        }
+
+        // Días desde 1970 en el calendario gregoriano (años desde marzo, como en TrackExporter).
+        long a = mes <= 2 ? ano - 1 : ano;
+        long era = (a >= 0 ? a : a - 399) / 400;
+        long anoEra = a - era * 400;
+        long diaAno = (153 * (mes > 2 ? mes - 3 : mes + 9) + 2) / 5 + dia - 1;
+        long diaEra = anoEra * 365 + anoEra/4 - anoEra/100 + diaAno;
+        long dias = era * 146097 + diaEra - 719468;
+
+        return dias * 86400 + hora * 3600 + minuto * 60 + segundo - desfase;
+    }
+
+    private static int cifras(String texto, int desde, int n) {
+        int valor = 0;
+        for (int i = desde; i < desde + n; i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+
+    /**
+     * Método: getLeidos
+     * Devuelve el número de puntos leídos del fichero (incluidos los saltados).
+     *
+     * @return dicho número.
+     */
+    public long getLeidos() {
+        return leidos;
+    }
+
+    /**
+     * Método: getImportados
+     * Devuelve el número de puntos guardados en esta importación.
+     *
+     * @return dicho número.
+     */
+    public long getImportados() {
+        return importados;
+    }
+
+    /**
+     * Método: getPuntosPorSegundo
+     * Devuelve el ritmo de la última importación (puntos leídos por segundo).
+     *
+     * @return dicho ritmo, o 0 si no se ha importado nada.
+     */
+    public double getPuntosPorSegundo() {
+        return nanos > 0 ? leidos * 1e9 / nanos : 0;
+    }
+}
@@ -0,0 +1,159 @@
+package com.dam.proyectodam;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * Clase HistoryAnalyzer.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Cálculo en paralelo de las estadísticas del historial (ver HistoryStats). Se cargan las
+ * sesiones (su resumen y sus cubos de 10 s, ver BBDD.cargarHistorial), se reparten en
+ * partes de trabajo parecido (por número de cubos), cada parte se calcula en un hilo de un
+ * ExecutorService con sus propias estadísticas parciales, y al final se juntan todas.
+ *
+ * Se usa un ExecutorService de tamaño fijo y no un ForkJoinPool porque éste no existe en
+ * Android hasta la API 21 (la aplicación funciona desde la 15). Como las partes no se
+ * vuelven a dividir, no hace falta robo de tareas: basta con hacer PARTES_POR_HILO partes
+ * por hilo, para que un hilo que acabe antes coja otra.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class HistoryAnalyzer {
+
+    // Partes en que se divide el historial por cada hilo.
+    private static final int PARTES_POR_HILO = 4;
+
+    // Métrica: tiempo de cada análisis completo.
+    private static final LatencyHistogram TIEMPO_ANALISIS = Metrics.histograma("historial.analizar");
+
+    // Sesiones cargadas: identificador, resumen y cubos (distancia, velocidad media e inicio).
+    private final ArrayList<Long> ids = new ArrayList<>();
+    private final ArrayList<SessionSummary> resumenes = new ArrayList<>();
+    private final ArrayList<TrackBuffer> cubos = new ArrayList<>();
+    private long totalCubos = 0;
+
+    /**
+     * Método: anadirSesion
+     * Añade una sesión al historial que se va a analizar.
+     *
+     * @param id identificador de la sesión.
+     * @param resumen resumen de la sesión.
+     * @param cubosSesion cubos de 10 s de la sesión, en orden.
+     */
+    public void anadirSesion(long id, SessionSummary resumen, TrackBuffer cubosSesion) {
+        ids.add(id);
+        resumenes.add(resumen);
+        cubos.add(cubosSesion);
+        totalCubos += cubosSesion.tamano();
+    }
+
+    /**
+     * Método: getSesiones
+     * Devuelve el número de sesiones cargadas.
+     *
+     * @return dicho número.
+     */
+    public int getSesiones() {
+        return ids.size();
+    }
+
+    /**
+     * Método: analizar
+     * Calcula las estadísticas con tantos hilos como procesadores.
+     *
+     * @return las estadísticas del historial.
+     */
+    public HistoryStats analizar() {
+        return analizar(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Método: analizar
+     * Calcula las estadísticas repartiendo las sesiones entre varios hilos. Con un hilo, se
+     * calculan en el hilo que llama, sin crear ninguno.
+     *
+     * @param hilos número de hilos.
+     * @return las estadísticas del historial (null si se interrumpe o falla algún hilo).
+     */
+    public HistoryStats analizar(int hilos) {
+        long inicio = Metrics.inicio();
+        if (hilos <= 1) {
+            HistoryStats total = calcular(0, ids.size());
+            Metrics.registrar(TIEMPO_ANALISIS, inicio);
+            return total;
+        }
+
+        // Partes seguidas con un número parecido de cubos (cada sesión entera en una parte).
+        int partes = hilos * PARTES_POR_HILO;
+        ArrayList<int[]> limites = new ArrayList<>();
+        int desde = 0;
+        long acumulados = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            acumulados += cubos.get(i).tamano() + 1;
+            if (acumulados * partes >= (totalCubos + ids.size()) * (limites.size() + 1)) {
+                limites.add(new int[] {desde, i + 1});
+                desde = i + 1;
+            }
+        }
+        if (desde < ids.size())
+            limites.add(new int[] {desde, ids.size()});
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try {
+            ArrayList<Future<HistoryStats>> parciales = new ArrayList<>();
+            for (final int[] limite : limites) {
+                parciales.add(ejecutor.submit(new Callable<HistoryStats>() {
+                    @Override
+                    public HistoryStats call() {
+                        return calcular(limite[0], limite[1]);
+                    }
+                }));
+            }
+
+            // Se juntan en orden, según van estando.
+            HistoryStats total = new HistoryStats();
+            for (Future<HistoryStats> parcial : parciales)
+                total.juntar(parcial.get());
+            Metrics.registrar(TIEMPO_ANALISIS, inicio);
+            Log.d("HistoryAnalyzer", ids.size() + " sesiones analizadas en " + limites.size()
+                    + " partes con " + hilos + " hilos");
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.e("HistoryAnalyzer", "Error al analizar el historial", e);
+            return null;
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Método: calcular
+     * Calcula las estadísticas de un tramo de las sesiones cargadas.
+     *
+     * @param desde primera sesión del tramo.
+     * @param hasta sesión siguiente a la última del tramo.
+     * @return las estadísticas del tramo.
+     */
+    private HistoryStats calcular(int desde, int hasta) {
+        HistoryStats estadisticas = new HistoryStats();
+        for (int i = desde; i < hasta; i++) {
+            estadisticas.anadirSesion(ids.get(i), resumenes.get(i));
+            estadisticas.anadirCubos(cubos.get(i));
+        }
+        return estadisticas;
+    }
+}
@@ -0,0 +1,293 @@
+package com.dam.proyectodam;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ *
+ * Clase HistoryStats.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Estadísticas del historial de entrenamientos: distancia y número de sesiones totales,
+ * distancia por semana, mejor velocidad media, sesión más larga y distribución del tiempo
+ * por velocidades. Son parciales que se pueden juntar: cada hilo de HistoryAnalyzer calcula
+ * las de su parte de las sesiones, y después se juntan todas en una.
+ *
+ * Las semanas empiezan el lunes (en UTC) y se identifican por su número desde 1970. La
+ * distribución de velocidades cuenta cubos de 10 s (ver TimeRollup) por su velocidad
+ * media, en clases de ANCHO_CLASE km/h; la última recoge todo lo que pase de ahí.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class HistoryStats {
+
+    // Clases de la distribución de velocidades: anchura (km/h) y número.
+    public static final double ANCHO_CLASE = 1;
+    public static final int CLASES = 61;
+
+    // Duración mínima (s) para que una sesión cuente como mejor velocidad media.
+    public static final long DURACION_MINIMA = 60;
+
+    // Segundos por semana, y desplazamiento para que empiecen en lunes (el 1/1/1970 fue jueves).
+    private static final int SEMANA = 7 * 86400;
+    private static final long DESPLAZAMIENTO_SEMANA = 3 * 86400;
+
+    // Totales.
+    private int sesiones = 0;
+    private long puntos = 0;
+    private double distancia = 0;
+
+    // Distancia por semana, ordenada.
+    private final TreeMap<Long, Double> semanas = new TreeMap<>();
+
+    // Mejor velocidad media y sesión más larga (-1 si aún no hay ninguna).
+    private double mejorVelocidad = 0;
+    private long sesionMejorVelocidad = -1;
+    private long mayorDuracion = 0;
+    private long sesionMasLarga = -1;
+
+    // Segundos (en cubos de 10 s) en cada clase de velocidad.
+    private final long[] distribucion = new long[CLASES];
+
+    /**
+     * Método: semana
+     * Calcula la semana de un instante.
+     *
+     * @param instante instante, en segundos desde 1970.
+     * @return el número de semana desde 1970.
+     */
+    public static long semana(long instante) {
+        return TimeRollup.cubo(instante + DESPLAZAMIENTO_SEMANA, SEMANA);
+    }
+
+    /**
+     * Método: inicioSemana
+     * Devuelve el primer instante (lunes a las 0:00 UTC) de una semana.
+     *
+     * @param semana número de semana desde 1970.
+     * @return el instante, en segundos desde 1970.
+     */
+    public static long inicioSemana(long semana) {
+        return semana * SEMANA - DESPLAZAMIENTO_SEMANA;
+    }
+
+    /**
+     * Método: anadirSesion
+     * Suma una sesión a los totales y la compara con la mejor y la más larga.
+     *
+     * @param id identificador de la sesión.
+     * @param resumen resumen de la sesión.
+     */
+    public void anadirSesion(long id, SessionSummary resumen) {
+        if (resumen.getPuntos() == 0)
+            return;
+        sesiones++;
+        puntos += resumen.getPuntos();
+        distancia += resumen.getDistancia();
+        if (resumen.getDuracion() >= DURACION_MINIMA)
+            compararVelocidad(id, resumen.getVelocidadMedia());
+        compararDuracion(id, resumen.getDuracion());
+    }
+
+    /**
+     * Método: anadirCubos
+     * Suma los cubos de 10 s de una sesión a la distancia por semana y a la distribución
+     * de velocidades. Los cubos llegan en orden, así que sólo se toca el mapa de semanas
+     * al cambiar de semana.
+     *
+     * @param cubos cubos de la sesión, en orden: distancia, velocidad media e inicio del cubo.
+     */
+    public void anadirCubos(TrackBuffer cubos) {
+        int n = cubos.tamano();
+        if (n == 0)
+            return;
+
+        long semanaActual = semana(cubos.getInstante(0));
+        double distanciaSemana = 0;
+        for (int i = 0; i < n; i++) {
+            long semana = semana(cubos.getInstante(i));
+            if (semana != semanaActual) {
+                sumarSemana(semanaActual, distanciaSemana);
+                semanaActual = semana;
+                distanciaSemana = 0;
+            }
+            distanciaSemana += cubos.getDistancia(i);
+            distribucion[clase(cubos.getVelocidad(i))] += TimeRollup.NIVELES[0];
+        }
+        sumarSemana(semanaActual, distanciaSemana);
+    }
+
+    /**
+     * Método: juntar
+     * Suma a éstas las estadísticas de otra parte del historial.
+     *
+     * @param otras las otras estadísticas.
+     */
+    public void juntar(HistoryStats otras) {
+        sesiones += otras.sesiones;
+        puntos += otras.puntos;
+        distancia += otras.distancia;
+        for (Map.Entry<Long, Double> semana : otras.semanas.entrySet())
+            sumarSemana(semana.getKey(), semana.getValue());
+        if (otras.sesionMejorVelocidad >= 0)
+            compararVelocidad(otras.sesionMejorVelocidad, otras.mejorVelocidad);
+        if (otras.sesionMasLarga >= 0)
+            compararDuracion(otras.sesionMasLarga, otras.mayorDuracion);
+        for (int i = 0; i < CLASES; i++)
+            distribucion[i] += otras.distribucion[i];
+    }
+
+    /* Las comparaciones desempatan por identificador, para que el resultado no dependa del
+    orden en que se juntan las partes. */
+    private void compararVelocidad(long id, double velocidad) {
+        if (sesionMejorVelocidad < 0 || velocidad > mejorVelocidad
+                || (velocidad == mejorVelocidad && id < sesionMejorVelocidad)) {
+            mejorVelocidad = velocidad;
+            sesionMejorVelocidad = id;
+        }
+    }
+
+    private void compararDuracion(long id, long duracion) {
+        if (sesionMasLarga < 0 || duracion > mayorDuracion
+                || (duracion == mayorDuracion && id < sesionMasLarga)) {
+            mayorDuracion = duracion;
+            sesionMasLarga = id;
+        }
+    }
+
+    private void sumarSemana(long semana, double distanciaSemana) {
+        Double anterior = semanas.get(semana);
+        semanas.put(semana, anterior == null ? distanciaSemana : anterior + distanciaSemana);
+    }
+
+    private static int clase(double velocidad) {
+        if (!(velocidad > 0))
+            return 0;
+        return (int) Math.min(CLASES - 1, velocidad / ANCHO_CLASE);
+    }
+
+    public int getSesiones() {
+        return sesiones;
+    }
+
+    public long getPuntos() {
+        return puntos;
+    }
+
+    public double getDistancia() {
+        return distancia;
+    }
+
+    /**
+     * Método: getSemanas
+     * Devuelve la distancia recorrida en cada semana con entrenamientos.
+     *
+     * @return mapa ordenado de número de semana (ver inicioSemana) a distancia, en metros.
+     */
+    public TreeMap<Long, Double> getSemanas() {
+        return semanas;
+    }
+
+    public double getMejorVelocidad() {
+        return mejorVelocidad;
+    }
+
+    public long getSesionMejorVelocidad() {
+        return sesionMejorVelocidad;
+    }
+
+    public long getMayorDuracion() {
+        return mayorDuracion;
+    }
+
+    public long getSesionMasLarga() {
+        return sesionMasLarga;
+    }
+
+    /**
+     * Método: getDistribucion
+     * Devuelve los segundos pasados en cada clase de velocidad.
+     *
+     * @return array de CLASES elementos (la clase i va de i*ANCHO_CLASE a (i+1)*ANCHO_CLASE km/h).
+     */
+    public long[] getDistribucion() {
+        return distribucion;
+    }
+
+    /**
+     * Método: coincideCon
+     * Compara dos estadísticas, con un margen para las sumas en coma flotante (que
+     * dependen del orden en que se juntan las partes).
+     *
+     * @param otras estadísticas con las que comparar.
+     * @return true si coinciden.
+     */
+    public boolean coincideCon(HistoryStats otras) {
+        if (sesiones != otras.sesiones || puntos != otras.puntos
+                || sesionMejorVelocidad != otras.sesionMejorVelocidad || sesionMasLarga != otras.sesionMasLarga
+                || !Arrays.equals(distribucion, otras.distribucion)
+                || !semanas.keySet().equals(otras.semanas.keySet())
+                || Math.abs(distancia - otras.distancia) > 1e-6 * Math.max(1, distancia))
+            return false;
+        for (Map.Entry<Long, Double> semana : semanas.entrySet())
+            if (Math.abs(semana.getValue() - otras.semanas.get(semana.getKey())) > 1e-6 * Math.max(1, semana.getValue()))
+                return false;
+        return true;
+    }
+
+    /**
+     * Método: informe
+     * Texto con las estadísticas, para mostrarlo: totales, récords, las últimas semanas y
+     * las velocidades en las que se ha pasado más tiempo.
+     *
+     * @param semanasMostradas número de semanas (las más recientes) a incluir.
+     * @return el texto.
+     */
+    public String informe(int semanasMostradas) {
+        StringBuilder texto = new StringBuilder();
+        texto.append(String.format(Locale.US, "Sesiones: %d (%d puntos)%nDistancia total: %.2f km%n",
+                sesiones, puntos, distancia / 1000));
+        if (sesionMejorVelocidad >= 0)
+            texto.append(String.format(Locale.US, "Mejor velocidad media: %.1f km/h (sesión %d)%n",
+                    mejorVelocidad, sesionMejorVelocidad));
+        if (sesionMasLarga >= 0)
+            texto.append(String.format(Locale.US, "Sesión más larga: %d min (sesión %d)%n",
+                    mayorDuracion / 60, sesionMasLarga));
+
+        if (!semanas.isEmpty()) {
+            texto.append(String.format(Locale.US, "%nDistancia por semana:%n"));
+            SimpleDateFormat formato = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+            formato.setTimeZone(TimeZone.getTimeZone("UTC"));
+            int mostradas = 0;
+            for (Map.Entry<Long, Double> semana : semanas.descendingMap().entrySet()) {
+                if (mostradas++ == semanasMostradas)
+                    break;
+                texto.append(String.format(Locale.US, "  %s: %.2f km%n",
+                        formato.format(new Date(inicioSemana(semana.getKey()) * 1000)), semana.getValue() / 1000));
+            }
+        }
+
+        long total = 0;
+        for (long segundos : distribucion)
+            total += segundos;
+        if (total > 0) {
+            texto.append(String.format(Locale.US, "%nTiempo por velocidad:%n"));
+            for (int i = 0; i < CLASES; i++) {
+                // Sólo las clases con al menos un 1 % del tiempo.
+                if (distribucion[i] * 100 < total)
+                    continue;
+                texto.append(String.format(Locale.US, "  %s%d km/h: %d %%%n", i == CLASES - 1 ? "≥" : "",
+                        (int) (i * ANCHO_CLASE), distribucion[i] * 100 / total));
+            }
+        }
+        return texto.toString();
+    }
+}
@@ -0,0 +1,234 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Clase KalmanFilter.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Filtro de Kalman de velocidad constante para suavizar las posiciones del GPS. En lugar
+ * de aceptar o descartar cada posición entera, combina la predicción del movimiento con
+ * la medida, dando a cada medida un peso según su precisión (la que indica el propio
+ * Location). Así el ruido de las posiciones no se acumula en la distancia recorrida.
+ *
+ * Las posiciones se proyectan a metros sobre un plano tangente en la primera posición, y
+ * cada eje (este y norte) se filtra por separado, con estado posición y velocidad. Todo
+ * el estado son campos de tipos primitivos: actualizar no crea ningún objeto.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class KalmanFilter {
+
+    // Radio medio de la Tierra, en metros.
+    private static final double RADIO_TIERRA = 6371008.8;
+
+    /* Varianza por defecto de la aceleración (en m²/s⁴) que se admite entre dos medidas.
+    Unos 0,3 m/s² de desviación siguen los cambios de ritmo y las curvas corriendo, sin
+    dejar que el ruido de un GPS parado se convierta en movimiento. */
+    public static final double VARIANZA_ACELERACION = 0.1;
+
+    // Precisión (en metros) que se supone cuando el Location no la indica.
+    public static final float PRECISION_POR_DEFECTO = 10;
+
+    /* Varianza inicial de la velocidad (en m²/s²). No sabemos cómo se mueve el usuario
+    al empezar, así que es enorme y la segunda medida fija directamente la velocidad. */
+    private static final double VARIANZA_VELOCIDAD_INICIAL = 1e6;
+
+    // Varianza de la aceleración usada en la predicción.
+    private final double varianzaAceleracion;
+
+    // Origen de la proyección, en radianes, y escala del eje este.
+    private double lat0;
+    private double lon0;
+    private double escalaX;
+
+    // Estado de cada eje: posición (m) y velocidad (m/s).
+    private double x, vx;
+    private double y, vy;
+
+    /* Covarianza de cada eje (matriz simétrica 2x2: pp, pv y vv). Ambos ejes tienen el
+    mismo modelo y las mismas medidas, así que comparten la covarianza. */
+    private double pp, pv, vv;
+
+    // Instante (en milisegundos) de la última medida aceptada.
+    private long instante;
+
+    // Número de medidas aceptadas y distancia entre las dos últimas posiciones filtradas.
+    private int medidas = 0;
+    private double distanciaPaso = 0;
+
+    /**
+     * Constructor de la clase KalmanFilter, con la varianza de aceleración por defecto.
+     */
+    public KalmanFilter() {
+        this(VARIANZA_ACELERACION);
+    }
+
+    /**
+     * Constructor de la clase KalmanFilter.
+     *
+     * @param varianzaAceleracion varianza de la aceleración (en m²/s⁴) del modelo.
+     */
+    public KalmanFilter(double varianzaAceleracion) {
+        this.varianzaAceleracion = varianzaAceleracion;
+    }
+
+    /**
+     * Método: actualizar
+     * Incorpora una medida del GPS. Las medidas que no son posteriores a la última
+     * aceptada (repetidas o que llegan desordenadas) se descartan.
+     *
+     * @param latitud latitud medida.
+     * @param longitud longitud medida.
+     * @param precision precisión de la medida, en metros (0 si no se conoce).
+     * @param instante instante de la medida, en milisegundos.
+     * @return un booleano que indica si la medida se ha aceptado.
+     */
+    public boolean actualizar(double latitud, double longitud, float precision, long instante) {
+        if (precision <= 0)
+            precision = PRECISION_POR_DEFECTO;
+        double r = (double) precision * precision;
+
+        // La primera medida fija el origen y el estado inicial.
+        if (medidas == 0) {
+            lat0 = Math.toRadians(latitud);
+            lon0 = Math.toRadians(longitud);
+            escalaX = RADIO_TIERRA * Math.cos(lat0);
+            x = 0;
+            y = 0;
+            vx = 0;
+            vy = 0;
+            pp = r;
+            pv = 0;
+            vv = VARIANZA_VELOCIDAD_INICIAL;
+            this.instante = instante;
+            medidas = 1;
+            distanciaPaso = 0;
+            return true;
+        }
+
+        if (instante <= this.instante)
+            return false;
+
+        double dt = (instante - this.instante) / 1000.0;
+        this.instante = instante;
+
+        // Predicción: x' = x + v·dt, con ruido de aceleración blanca.
+        double dt2 = dt * dt;
+        double q = varianzaAceleracion;
+        double npp = pp + 2*dt*pv + dt2*vv + q*dt2*dt2/4;
+        double npv = pv + dt*vv + q*dt2*dt/2;
+        double nvv = vv + q*dt2;
+
+        double xPrevio = x + vx*dt;
+        double yPrevio = y + vy*dt;
+
+        // Corrección con la posición medida (ganancia común a ambos ejes).
+        double s = npp + r;
+        double kp = npp / s;
+        double kv = npv / s;
+
+        double mx = (Math.toRadians(longitud) - lon0) * escalaX;
+        double my = (Math.toRadians(latitud) - lat0) * RADIO_TIERRA;
+
+        double ex = mx - xPrevio;
+        double ey = my - yPrevio;
+        double nx = xPrevio + kp*ex;
+        double ny = yPrevio + kp*ey;
+        vx += kv*ex;
+        vy += kv*ey;
+
+        pp = (1 - kp) * npp;
+        pv = (1 - kp) * npv;
+        vv = nvv - kv*npv;
+
+        double dx = nx - x;
+        double dy = ny - y;
+        distanciaPaso = Math.sqrt(dx*dx + dy*dy);
+        x = nx;
+        y = ny;
+        medidas++;
+        return true;
+    }
+
+    /**
+     * Método: reiniciar
+     * Olvida el estado, de modo que la siguiente medida empieza de nuevo el filtro.
+     */
+    public void reiniciar() {
+        medidas = 0;
+        distanciaPaso = 0;
+    }
+
+    /**
+     * Método: getLatitud
+     * Devuelve la latitud filtrada.
+     *
+     * @return la latitud, en grados.
+     */
+    public double getLatitud() {
+        return Math.toDegrees(lat0 + y / RADIO_TIERRA);
+    }
+
+    /**
+     * Método: getLongitud
+     * Devuelve la longitud filtrada.
+     *
+     * @return la longitud, en grados.
+     */
+    public double getLongitud() {
+        return Math.toDegrees(lon0 + x / escalaX);
+    }
+
+    /**
+     * Método: getVelocidad
+     * Devuelve el módulo de la velocidad filtrada.
+     *
+     * @return la velocidad, en m/s.
+     */
+    public double getVelocidad() {
+        return Math.sqrt(vx*vx + vy*vy);
+    }
+
+    /**
+     * Método: getRumbo
+     * Devuelve la dirección de la velocidad filtrada.
+     *
+     * @return el rumbo, en grados desde el norte en sentido horario (entre -180 y 180).
+     */
+    public double getRumbo() {
+        return Math.toDegrees(Math.atan2(vx, vy));
+    }
+
+    /**
+     * Método: getDistanciaPaso
+     * Devuelve la distancia entre las dos últimas posiciones filtradas.
+     *
+     * @return la distancia, en metros (0 tras la primera medida).
+     */
+    public double getDistanciaPaso() {
+        return distanciaPaso;
+    }
+
+    /**
+     * Método: getPrecision
+     * Devuelve la desviación típica estimada de la posición filtrada, en cada eje.
+     *
+     * @return dicha desviación, en metros.
+     */
+    public double getPrecision() {
+        return Math.sqrt(pp);
+    }
+
+    /**
+     * Método: getMedidas
+     * Devuelve el número de medidas aceptadas desde el inicio (o el último reinicio).
+     *
+     * @return el número de medidas.
+     */
+    public int getMedidas() {
+        return medidas;
+    }
+}
@@ -0,0 +1,183 @@
+package com.dam.proyectodam;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * Clase LatencyHistogram.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Histograma de latencias (en nanosegundos) con cubetas fijas, al estilo de HdrHistogram:
+ * cada potencia de dos se divide en SUBCUBETAS cubetas iguales, así que el error relativo
+ * de cualquier valor (y de los percentiles) está acotado por 1/SUBCUBETAS, sea cual sea
+ * su magnitud. Registrar un valor es calcular un índice con desplazamientos de bits e
+ * incrementar un contador atómico, sin crear objetos ni bloquear, así que se puede
+ * registrar desde varios hilos a la vez.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class LatencyHistogram {
+
+    // Subcubetas por potencia de dos (error relativo por debajo del 6,25 %), y su logaritmo.
+    private static final int BITS_SUBCUBETA = 4;
+    public static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+
+    // Número de cubetas, suficiente para cualquier long positivo.
+    private static final int CUBETAS = (64 - BITS_SUBCUBETA) * SUBCUBETAS;
+
+    // Nombre del histograma.
+    private final String nombre;
+
+    // Contadores de cada cubeta, y totales.
+    private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+    private final AtomicLong cuenta = new AtomicLong();
+    private final AtomicLong suma = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Constructor de la clase LatencyHistogram.
+     *
+     * @param nombre nombre del histograma (para el informe).
+     */
+    public LatencyHistogram(String nombre) {
+        this.nombre = nombre;
+    }
+
+    /**
+     * Método: registrar
+     * Añade un valor al histograma. Los negativos cuentan como 0.
+     *
+     * @param nanos el valor, en nanosegundos.
+     */
+    public void registrar(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        cubetas.incrementAndGet(indice(nanos));
+        cuenta.incrementAndGet();
+        suma.addAndGet(nanos);
+
+        long actual = maximo.get();
+        while (nanos > actual && !maximo.compareAndSet(actual, nanos))
+            actual = maximo.get();
+    }
+
+    /**
+     * Método: indice
+     * Cubeta de un valor: los menores que SUBCUBETAS tienen la suya propia; el resto se
+     * colocan por su potencia de dos y los BITS_SUBCUBETA bits siguientes al más alto.
+     */
+    static int indice(long valor) {
+        if (valor < SUBCUBETAS)
+            return (int) valor;
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBCUBETA;
+        return (desplazamiento + 1) * SUBCUBETAS + (int) (valor >>> desplazamiento) - SUBCUBETAS;
+    }
+
+    /**
+     * Método: limiteSuperior
+     * Mayor valor que cae en una cubeta.
+     */
+    static long limiteSuperior(int indice) {
+        if (indice < SUBCUBETAS)
+            return indice;
+        int desplazamiento = indice / SUBCUBETAS - 1;
+        long base = (long) (SUBCUBETAS + indice % SUBCUBETAS) << desplazamiento;
+        return base + (1L << desplazamiento) - 1;
+    }
+
+    /**
+     * Método: percentil
+     * Devuelve el valor por debajo del cual queda el porcentaje indicado de los valores
+     * registrados (el límite superior de su cubeta, sin pasar del máximo registrado).
+     *
+     * @param porcentaje porcentaje, entre 0 y 100.
+     * @return el percentil, en nanosegundos (0 si no hay valores).
+     */
+    public long percentil(double porcentaje) {
+        long total = cuenta.get();
+        if (total == 0)
+            return 0;
+        long objetivo = Math.max(1, (long) Math.ceil(total * porcentaje / 100));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += cubetas.get(i);
+            if (acumulado >= objetivo)
+                return Math.min(limiteSuperior(i), maximo.get());
+        }
+        return maximo.get();
+    }
+
+    /**
+     * Método: getCuenta
+     * Devuelve el número de valores registrados.
+     *
+     * @return dicho número.
+     */
+    public long getCuenta() {
+        return cuenta.get();
+    }
+
+    /**
+     * Método: getMedia
+     * Devuelve la media de los valores registrados.
+     *
+     * @return la media, en nanosegundos (0 si no hay valores).
+     */
+    public double getMedia() {
+        long total = cuenta.get();
+        return total > 0 ? (double) suma.get() / total : 0;
+    }
+
+    /**
+     * Método: getMaximo
+     * Devuelve el mayor valor registrado.
+     *
+     * @return el máximo, en nanosegundos.
+     */
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Método: getNombre
+     * Devuelve el nombre del histograma.
+     *
+     * @return el nombre.
+     */
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Método: reiniciar
+     * Borra todos los valores registrados.
+     */
+    public void reiniciar() {
+        for (int i = 0; i < CUBETAS; i++)
+            cubetas.set(i, 0);
+        cuenta.set(0);
+        suma.set(0);
+        maximo.set(0);
+    }
+
+    /**
+     * Método: toString
+     * Resumen del histograma en una línea, con los tiempos en milisegundos.
+     *
+     * @return el resumen.
+     */
+    @Override
+    public String toString() {
+        return nombre + ": n=" + getCuenta() + " media=" + ms(getMedia()) + " p50=" + ms(percentil(50))
+                + " p90=" + ms(percentil(90)) + " p99=" + ms(percentil(99)) + " max=" + ms(getMaximo()) + " ms";
+    }
+
+    private static String ms(double nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1e6);
+    }
+}
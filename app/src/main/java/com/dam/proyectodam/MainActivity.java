@@ -6,6 +6,7 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.location.LocationManager;
+import android.net.Uri;
 import android.os.Bundle;
 import android.support.v7.app.ActionBarActivity;
 import android.util.Log;
@@ -14,6 +15,12 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
 import android.widget.NumberPicker;
+import android.widget.Toast;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 
 
 /**
@@ -37,6 +44,12 @@ public class MainActivity extends ActionBarActivity {
     pertinentes al volver a esta actividad. */
     private final static int ENTRENAMIENTO = 0;
 
+    // Identificador del intent lanzado para elegir el fichero GPX a importar.
+    private final static int IMPORTACION = 1;
+
+    // Semanas (las más recientes) que se muestran en las estadísticas del historial.
+    private final static int SEMANAS_HISTORIAL = 8;
+
     // Tiempos mínimo y máximo de actualización del GPS (límites que tendremos para elegir).
     private final static int MIN_T_ACT = 1;
     private final static int MAX_T_ACT = 60;
@@ -64,10 +77,25 @@ public class MainActivity extends ActionBarActivity {
 
         // Mostramos el layout de la actividad.
         setContentView(R.layout.activity_main);
+        StartupTrace.marcar("main");
 
         Log.d("Main", "Actividad principal desplegada");
     }
 
+    /**
+     * Método: onWindowFocusChanged
+     * Método ejecutado cuando la ventana gana o pierde el foco. La primera vez que lo gana,
+     * la actividad ya está dibujada y responde al usuario: ahí termina el arranque.
+     *
+     * @param hasFocus true si la ventana tiene el foco.
+     */
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        super.onWindowFocusChanged(hasFocus);
+        if (hasFocus && StartupTrace.isActivo())
+            Log.d("Main", "Arranque completado en " + StartupTrace.terminar("interactiva") + " ms");
+    }
+
     /**
      * Método: onCreateOptionsMenu
      * Método que lanza la barra de menú en la parte superior de la pantalla.
@@ -105,8 +133,8 @@ public class MainActivity extends ActionBarActivity {
     /**
      * Método: onOptionsItemSelected
      * Método que realiza una acción u otra en función de la opción seleccionada
-     * en el menú superior. En este caso, sólo actúa con la única opción implementada,
-     * que es la modificación del tiempo de actualización.
+     * en el menú superior: la modificación del tiempo de actualización, la importación de
+     * un fichero GPX, las estadísticas del historial o el informe de métricas.
      *
      * @param item opción seleccionada del menú.
      * @return true en caso de ir bien, false en caso contrario.
@@ -115,9 +143,7 @@ public class MainActivity extends ActionBarActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         boolean completado = false; // De partida, suponemos que no se realiza la acción.
 
-        /* Se comprueba si hemos pulsado tiempo, por si se añaden más opciones en el futuro
-        (se extendería a un switch). */
-
+        // Se comprueba qué opción hemos pulsado: tiempo, importar, historial o métricas.
         if (item.getItemId() == R.id.tiempo) {
             Log.d("Main", "Pulsamos el botón de tiempo");
 
@@ -126,11 +152,132 @@ public class MainActivity extends ActionBarActivity {
 
             // Fue bien: actualizamos a true.
             completado = true;
+        } else if (item.getItemId() == R.id.importar) {
+            Log.d("Main", "Pulsamos el botón de importar");
+
+            // Se elige el fichero con el selector del sistema; la importación sigue en onActivityResult.
+            Intent selector = new Intent(Intent.ACTION_GET_CONTENT);
+            selector.setType("*/*");
+            selector.addCategory(Intent.CATEGORY_OPENABLE);
+            startActivityForResult(selector, IMPORTACION);
+            completado = true;
+        } else if (item.getItemId() == R.id.historial) {
+            Log.d("Main", "Pulsamos el botón de historial");
+            mostrarHistorial();
+            completado = true;
+        } else if (item.getItemId() == R.id.metricas) {
+            Log.d("Main", "Pulsamos el botón de métricas");
+            mostrarMetricas();
+            completado = true;
         }
 
         return completado;
     }
 
+    /**
+     * Método: mostrarMetricas
+     * Método que muestra el informe de métricas en un diálogo y lo guarda en un fichero
+     * de la aplicación (Metrics.FICHERO, en su directorio privado).
+     */
+    public void mostrarMetricas() {
+        File fichero = new File(getFilesDir(), Metrics.FICHERO);
+        if (Metrics.volcar(fichero))
+            Toast.makeText(getApplicationContext(), "Métricas guardadas en " + fichero,
+                    Toast.LENGTH_LONG).show();
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.metricas);
+        builder.setMessage(Metrics.informe());
+        builder.setPositiveButton("Cerrar", null);
+        builder.show();
+    }
+
+    /**
+     * Método: mostrarHistorial
+     * Calcula las estadísticas de todos los entrenamientos guardados en un hilo aparte (el
+     * análisis se reparte a su vez entre varios hilos, ver HistoryAnalyzer) y las muestra
+     * en un diálogo.
+     */
+    public void mostrarHistorial() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                HistoryAnalyzer analizador = new HistoryAnalyzer();
+                new BBDD(getApplicationContext()).cargarHistorial(analizador);
+                HistoryStats estadisticas = analizador.analizar();
+                final String informe = estadisticas == null ? "No se pudo analizar el historial"
+                        : estadisticas.informe(SEMANAS_HISTORIAL);
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isFinishing())
+                            return;
+                        AlertDialog.Builder builder = new AlertDialog.Builder(MainActivity.this);
+                        builder.setTitle(R.string.historial);
+                        builder.setMessage(informe);
+                        builder.setPositiveButton("Cerrar", null);
+                        builder.show();
+                    }
+                });
+            }
+        }, "Historial").start();
+    }
+
+    /**
+     * Método: importarGpx
+     * Importa un fichero GPX como una sesión nueva, en un hilo aparte, y avisa con un Toast
+     * al terminar. Si una importación anterior del mismo fichero se interrumpió, se continúa
+     * donde se quedó (ver BBDD.prepararImportacion).
+     *
+     * @param fichero URI del fichero elegido.
+     */
+    public void importarGpx(final Uri fichero) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String mensaje;
+                BBDD baseDatos = new BBDD(getApplicationContext());
+                long importados = baseDatos.prepararImportacion(fichero.toString());
+                if (importados < 0) {
+                    mensaje = "Este fichero ya está importado";
+                } else {
+                    InputStream entrada = null;
+                    try {
+                        entrada = new BufferedInputStream(getContentResolver().openInputStream(fichero));
+                        GpxImporter importador = new GpxImporter(baseDatos);
+                        if (importador.importar(entrada, importados)) {
+                            baseDatos.terminarImportacion();
+                            mensaje = "Importados " + importador.getLeidos() + " puntos ("
+                                    + (long) importador.getPuntosPorSegundo() + " puntos/s)";
+                        } else {
+                            mensaje = "Importación interrumpida; vuelva a elegir el fichero para continuarla";
+                        }
+                    } catch (IOException e) {
+                        Log.e("Main", "Error al abrir " + fichero, e);
+                        mensaje = "No se pudo abrir el fichero";
+                    } finally {
+                        if (entrada != null) {
+                            try {
+                                entrada.close();
+                            } catch (IOException e) {
+                                Log.e("Main", "Error al cerrar " + fichero, e);
+                            }
+                        }
+                    }
+                }
+
+                final String aviso = mensaje;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(getApplicationContext(), aviso, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, "Importador").start();
+    }
+
     /**
      * Método: mostrarNumberPicker
      * Método que pide al usuario cambiar el tiempo de actualización del GPS a través
@@ -278,8 +425,9 @@ public class MainActivity extends ActionBarActivity {
 
     /**
      * Método: onActivityResult
-     * Método ejecutado cuando se vuelve a esta actividad. Su misión es borrar la base
-     * de datos para empezar un nuevo entrenamiento.
+     * Método ejecutado cuando se vuelve a esta actividad. El entrenamiento queda guardado
+     * como una sesión de la base de datos, y el siguiente creará la suya, así que ya no
+     * hace falta borrar nada. Si se vuelve del selector de ficheros, se importa el elegido.
      *
      * @param requestCode código que identifica a la actividad por la que se vuelve.
      * @param resultCode código que indica el resultado final.
@@ -288,12 +436,10 @@ public class MainActivity extends ActionBarActivity {
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         // Comprobamos el único caso posible y definido (podría extenderse de meter más opciones)
         if (requestCode == ENTRENAMIENTO) {
-            Log.d("Main", "Hemos vuelto de la actividad lanzada");
-
-             // Se reinicia la base de datos.
-             BBDD baseDatos = new BBDD(getApplicationContext());
-             baseDatos.borrarPosiciones();
-             Log.d("Main", "Tabla en BBDD borrada al volver de actividad");
+            Log.d("Main", "Hemos vuelto de la actividad lanzada; entrenamiento guardado");
+        } else if (requestCode == IMPORTACION && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            Log.d("Main", "Fichero elegido para importar: " + data.getData());
+            importarGpx(data.getData());
         }
     }
 }
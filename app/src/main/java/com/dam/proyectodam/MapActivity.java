@@ -2,13 +2,17 @@ package com.dam.proyectodam;
 
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.FragmentActivity;
 import android.util.Log;
 
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 
 import java.util.ArrayList;
@@ -16,7 +20,11 @@ import java.util.ArrayList;
 /**
  *
  * Clase MapActivity.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
- * Muestra el recorrido seguido durante el entrenamiento en un mapa.
+ * Muestra el recorrido seguido durante el entrenamiento en un mapa. Con suficiente zoom,
+ * muestra también en gris los otros entrenamientos que pasan por la zona visible, que se
+ * buscan con el índice por zona de la base de datos (BBDD.recorrerArea), así que no
+ * depende de cuántos entrenamientos haya guardados. La búsqueda se hace en un hilo aparte
+ * cuando la cámara lleva un momento quieta, y sólo se dibuja la de la última zona.
  * Aquí no importa girar el terminal, ya que lo único que se hará es reconstruir el mapa
  * de nuevo.
  *
@@ -31,12 +39,63 @@ public class MapActivity extends FragmentActivity {
     // Mapa en el que mostrar las líneas del recorrido.
     private GoogleMap googleMap;
 
-    // Polilínea a mostrar en el mapa.
+    // Máximo de vértices de la polilínea en pantalla, sea cual sea la longitud del recorrido.
+    private static final int MAX_VERTICES = 2000;
+
+    // Tolerancia de la simplificación, en píxeles de pantalla.
+    private static final double PIXELES_TOLERANCIA = 1.0;
+
+    // Zoom inicial del mapa.
+    private static final int ZOOM_INICIAL = 15;
+
+    // Zoom mínimo para mostrar otros entrenamientos, y máximo de puntos a leer para ellos.
+    private static final int ZOOM_OTRAS_SESIONES = 12;
+    private static final int MAX_PUNTOS_OTRAS_SESIONES = 5000;
+
+    /* Separación máxima (en segundos) entre dos puntos seguidos de otros entrenamientos para
+    unirlos con una línea: si es mayor, o el instante retrocede, es otro entrenamiento o un
+    tramo que sale de la zona visible. */
+    private static final long SALTO_MAXIMO = 120;
+
+    // Tiempo (en ms) que tiene que estar quieta la cámara para buscar otros entrenamientos.
+    private static final long ESPERA_CAMARA = 300;
+
+    // Métrica: tiempo de preparar los puntos de la polilínea para un nivel de zoom.
+    private static final LatencyHistogram TIEMPO_POLILINEA = Metrics.histograma("mapa.polilinea");
+
+    // Opciones de la polilínea a mostrar en el mapa, y la polilínea ya añadida.
     PolylineOptions polilinea;
+    private Polyline linea;
 
     // Punto de partida, para el zoom.
     LatLng puntoInicial;
 
+    // Recorrido completo y su simplificación por niveles de detalle.
+    private TrackBuffer recorrido;
+    private PolylineSimplifier simplificador;
+
+    // Nivel de zoom (entero) con el que se calculó la polilínea mostrada.
+    private int nivelActual = -1;
+
+    // Base de datos, y líneas de los otros entrenamientos que pasan por la zona visible.
+    private BBDD baseDatos;
+    private final ArrayList<Polyline> otrasSesiones = new ArrayList<>();
+
+    /* Número de la última búsqueda de otros entrenamientos pedida (sólo se toca en el hilo
+    principal): al terminar una búsqueda, si ya se pidió otra, su resultado se descarta. */
+    private int busqueda = 0;
+
+    // Handler del hilo principal, para esperar a que la cámara se quede quieta.
+    private final Handler manejador = new Handler();
+
+    // Tarea que busca los otros entrenamientos de la zona visible.
+    private final Runnable buscarOtrasSesiones = new Runnable() {
+        @Override
+        public void run() {
+            mostrarOtrasSesiones((int) googleMap.getCameraPosition().zoom);
+        }
+    };
+
     /**
      * Método: onCreate
      * Método ejecutado cuando se llama a la actividad.
@@ -48,10 +107,10 @@ public class MapActivity extends FragmentActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_map);
 
-        /* Se inicia la base de datos y se devuelve el listado de puntos, para construir
-        la polilínea. */
-        BBDD baseDatos = new BBDD(getApplicationContext());
-        construirPolyline(baseDatos.listarPosiciones());
+        // Se inicia la base de datos, de la que se leen los puntos para construir la polilínea.
+        baseDatos = new BBDD(getApplicationContext(),
+                getIntent().getLongExtra("sesion", BBDD.SESION_ULTIMA));
+        construirPolyline(baseDatos);
 
         // Y construimos el mapa, si no lo estaba ya.
         setUpMapIfNeeded();
@@ -59,25 +118,41 @@ public class MapActivity extends FragmentActivity {
         Log.d("Map", "Polilínea y mapa construidos");
     }
 
+    /**
+     * Método: onDestroy
+     * Método ejecutado al destruir la actividad. Cancelamos la búsqueda de otros
+     * entrenamientos programada, y descartamos la que esté en curso.
+     */
+    @Override
+    protected void onDestroy() {
+        manejador.removeCallbacks(buscarOtrasSesiones);
+        busqueda++;
+        super.onDestroy();
+    }
+
     /**
      * Método: construirPolyline
-     * Método que construye una polilínea a partir de una lista de Point.
+     * Método que carga el recorrido de la base de datos, calcula su simplificación por
+     * niveles de detalle y prepara la polilínea con el nivel del zoom inicial.
      *
-     * @param puntos la lista de puntos del mapa.
+     * @param baseDatos base de datos de la que se leen los puntos.
      */
-    private void construirPolyline(ArrayList<Point> puntos) {
-        if (puntos.size() > 0) {
-            // Instanciamos la polilínea.
-            polilinea = new PolylineOptions();
-
-            // Y vamos añadiendo latitud y longitud, conforme leemos la lista de puntos.
-            for (int i = 0; i < puntos.size(); i++) {
-                polilinea.add(new LatLng(puntos.get(i).getLatitud(), puntos.get(i).getLongitud()));
-
-                // Si es el primer punto, lo añadimos a puntoInicial, para hacer el zoom en el mapa.
-                if (i == 0)
-                    puntoInicial = new LatLng(puntos.get(i).getLatitud(), puntos.get(i).getLongitud());
-            }
+    private void construirPolyline(BBDD baseDatos) {
+        // Cargamos los puntos en arrays de tipos primitivos (sin un objeto por punto).
+        recorrido = new TrackBuffer();
+        int puntos = baseDatos.cargarPosiciones(recorrido, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        if (puntos > 0) {
+            // La importancia de cada punto se calcula una sola vez, para todos los niveles.
+            simplificador = new PolylineSimplifier(recorrido);
+
+            // Añadimos el primer punto a puntoInicial, para hacer el zoom en el mapa.
+            puntoInicial = new LatLng(recorrido.getLatitud(0), recorrido.getLongitud(0));
+
+            // Instanciamos la polilínea con los puntos del zoom inicial.
+            nivelActual = ZOOM_INICIAL;
+            polilinea = new PolylineOptions().addAll(puntosNivel(nivelActual));
+
             // Y añadimos otros atributos (grosor, color y marcar como geodésica).
             polilinea = polilinea.width(5);
             polilinea = polilinea.color(Color.BLUE);
@@ -87,6 +162,31 @@ public class MapActivity extends FragmentActivity {
         }
     }
 
+    /**
+     * Método: puntosNivel
+     * Devuelve los puntos de la polilínea para un nivel de zoom: los que se apartan
+     * más de PIXELES_TOLERANCIA píxeles del recorrido simplificado, sin pasar nunca de
+     * MAX_VERTICES.
+     *
+     * @param nivel nivel de zoom del mapa.
+     * @return la lista de puntos a mostrar.
+     */
+    private ArrayList<LatLng> puntosNivel(int nivel) {
+        long inicio = Metrics.inicio();
+        double tolerancia = Math.max(
+                PolylineSimplifier.toleranciaParaZoom(nivel, puntoInicial.latitude, PIXELES_TOLERANCIA),
+                simplificador.toleranciaParaVertices(MAX_VERTICES));
+
+        int[] indices = simplificador.simplificar(tolerancia);
+        ArrayList<LatLng> puntos = new ArrayList<>(indices.length);
+        for (int i : indices)
+            puntos.add(new LatLng(recorrido.getLatitud(i), recorrido.getLongitud(i)));
+
+        Log.d("Map", "Nivel " + nivel + ": " + indices.length + " de " + recorrido.tamano() + " puntos");
+        Metrics.registrar(TIEMPO_POLILINEA, inicio);
+        return puntos;
+    }
+
     /**
      * Método: setUpMapIfNeeded
      * Método que establece el mapa si es necesario (si ya está creado, no se hace nada).
@@ -104,17 +204,107 @@ public class MapActivity extends FragmentActivity {
 
     /**
      * Método: addLines
-     * Método que añade las líneas al mapa a partir de los puntos de la base de datos.
+     * Método que añade las líneas al mapa a partir de los puntos de la base de datos, y
+     * cambia su nivel de detalle cuando cambia el zoom.
      */
     private void addLines() {
         if (polilinea != null && puntoInicial != null) {
             // Añadimos las líneas al mapa.
-            googleMap.addPolyline(polilinea);
+            linea = googleMap.addPolyline(polilinea);
 
             // Y con moveCamera, hacemos zoom en el punto inicial del recorrido.
-            googleMap.moveCamera(CameraUpdateFactory.newLatLngZoom(puntoInicial, 15));
+            googleMap.moveCamera(CameraUpdateFactory.newLatLngZoom(puntoInicial, ZOOM_INICIAL));
+
+            /* Sólo se recalcula la polilínea cuando cambia el nivel de zoom entero; los otros
+            entrenamientos se buscan cuando la cámara lleva ESPERA_CAMARA ms sin moverse. */
+            googleMap.setOnCameraChangeListener(new GoogleMap.OnCameraChangeListener() {
+                @Override
+                public void onCameraChange(CameraPosition posicion) {
+                    int nivel = (int) posicion.zoom;
+                    if (nivel != nivelActual) {
+                        nivelActual = nivel;
+                        linea.setPoints(puntosNivel(nivel));
+                    }
+                    manejador.removeCallbacks(buscarOtrasSesiones);
+                    manejador.postDelayed(buscarOtrasSesiones, ESPERA_CAMARA);
+                }
+            });
 
             Log.d("Map", "Mapa con líneas añadidas");
         }
     }
+
+    /**
+     * Método: mostrarOtrasSesiones
+     * Método que busca en un hilo aparte los otros entrenamientos que pasan por la zona
+     * visible del mapa, y los dibuja en gris en el hilo principal en lugar de los que se
+     * dibujaron antes. Con poco zoom la zona es demasiado grande y no se dibuja ninguno.
+     *
+     * @param nivel nivel de zoom del mapa.
+     */
+    private void mostrarOtrasSesiones(int nivel) {
+        final int numero = ++busqueda;
+        if (nivel < ZOOM_OTRAS_SESIONES) {
+            dibujarOtrasSesiones(new ArrayList<ArrayList<LatLng>>());
+            return;
+        }
+
+        final LatLngBounds zona = googleMap.getProjection().getVisibleRegion().latLngBounds;
+        final long sesion = getIntent().getLongExtra("sesion", BBDD.SESION_ULTIMA);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // Los puntos se separan en tramos fuera del hilo principal.
+                final ArrayList<ArrayList<LatLng>> tramos = new ArrayList<>();
+                PointCallback receptor = new PointCallback() {
+                    // Tramo en curso e instante del punto anterior.
+                    private ArrayList<LatLng> tramo = new ArrayList<>();
+                    private long anterior = Long.MIN_VALUE;
+
+                    @Override
+                    public void procesarPunto(Point punto) {
+                        if (punto.getInstante() <= anterior || punto.getInstante() - anterior > SALTO_MAXIMO) {
+                            tramo = new ArrayList<>();
+                            tramos.add(tramo);
+                        }
+                        tramo.add(new LatLng(punto.getLatitud(), punto.getLongitud()));
+                        anterior = punto.getInstante();
+                    }
+                };
+                /* Cada búsqueda abre su propia conexión, para que una que aún no haya terminado
+                no cierre la base de datos a la siguiente. */
+                final int puntos = new BBDD(getApplicationContext(), sesion).recorrerArea(zona.southwest.latitude, zona.southwest.longitude,
+                        zona.northeast.latitude, zona.northeast.longitude, true, MAX_PUNTOS_OTRAS_SESIONES, receptor);
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Si ya se pidió otra búsqueda (o se cerró el mapa), ésta ya no vale.
+                        if (numero != busqueda || isFinishing())
+                            return;
+                        dibujarOtrasSesiones(tramos);
+                        Log.d("Map", "Otros entrenamientos en la zona: " + puntos + " puntos en "
+                                + otrasSesiones.size() + " tramos");
+                    }
+                });
+            }
+        }, "OtrasSesiones").start();
+    }
+
+    /**
+     * Método: dibujarOtrasSesiones
+     * Método que quita del mapa los otros entrenamientos dibujados y dibuja los tramos
+     * dados (los que tengan al menos dos puntos).
+     *
+     * @param tramos puntos de cada tramo.
+     */
+    private void dibujarOtrasSesiones(ArrayList<ArrayList<LatLng>> tramos) {
+        for (Polyline otra : otrasSesiones)
+            otra.remove();
+        otrasSesiones.clear();
+        for (ArrayList<LatLng> tramo : tramos) {
+            if (tramo.size() >= 2)
+                otrasSesiones.add(googleMap.addPolyline(new PolylineOptions().addAll(tramo).width(3).color(Color.GRAY)));
+        }
+    }
 }
@@ -0,0 +1,222 @@
+package com.dam.proyectodam;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Clase Metrics.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Registro de métricas de la aplicación, dentro del propio proceso: contadores,
+ * indicadores (el último valor de algo) e histogramas de latencia (LatencyHistogram).
+ * Cada clase pide sus métricas una sola vez, por nombre, y las guarda en constantes; al
+ * medir sólo se usan esas referencias.
+ *
+ * Las métricas se pueden desactivar: entonces inicio() no lee el reloj y registrar,
+ * contar y fijar vuelven tras comprobar un booleano, así que medir no cuesta nada
+ * apreciable. Por defecto sólo están activas en las versiones de depuración (ver
+ * ARTrackApplication). El informe se puede ver en pantalla y guardar en un fichero desde el
+ * menú de la actividad principal.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public final class Metrics {
+
+    // Nombre del fichero en el que se vuelca el informe.
+    public static final String FICHERO = "metricas.txt";
+
+    // Indica si se están tomando medidas.
+    private static volatile boolean activo = false;
+
+    // Métricas registradas, por nombre y en orden de registro (protegidas por el monitor de la clase).
+    private static final Map<String, LatencyHistogram> histogramas = new LinkedHashMap<>();
+    private static final Map<String, AtomicLong> contadores = new LinkedHashMap<>();
+    private static final Map<String, AtomicLong> indicadores = new LinkedHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Método: setActivo
+     * Activa o desactiva la toma de medidas.
+     *
+     * @param valor true para activarla.
+     */
+    public static void setActivo(boolean valor) {
+        activo = valor;
+        Log.d("Metrics", "Métricas " + (valor ? "activadas" : "desactivadas"));
+    }
+
+    /**
+     * Método: isActivo
+     * Indica si se están tomando medidas.
+     *
+     * @return true si están activas.
+     */
+    public static boolean isActivo() {
+        return activo;
+    }
+
+    /**
+     * Método: histograma
+     * Devuelve el histograma de latencia con ese nombre, creándolo si no existe.
+     *
+     * @param nombre nombre de la métrica.
+     * @return el histograma.
+     */
+    public static synchronized LatencyHistogram histograma(String nombre) {
+        LatencyHistogram histograma = histogramas.get(nombre);
+        if (histograma == null) {
+            histograma = new LatencyHistogram(nombre);
+            histogramas.put(nombre, histograma);
+        }
+        return histograma;
+    }
+
+    /**
+     * Método: contador
+     * Devuelve el contador con ese nombre, creándolo si no existe.
+     *
+     * @param nombre nombre de la métrica.
+     * @return el contador.
+     */
+    public static synchronized AtomicLong contador(String nombre) {
+        return buscar(contadores, nombre);
+    }
+
+    /**
+     * Método: indicador
+     * Devuelve el indicador con ese nombre, creándolo si no existe.
+     *
+     * @param nombre nombre de la métrica.
+     * @return el indicador.
+     */
+    public static synchronized AtomicLong indicador(String nombre) {
+        return buscar(indicadores, nombre);
+    }
+
+    private static AtomicLong buscar(Map<String, AtomicLong> metricas, String nombre) {
+        AtomicLong metrica = metricas.get(nombre);
+        if (metrica == null) {
+            metrica = new AtomicLong();
+            metricas.put(nombre, metrica);
+        }
+        return metrica;
+    }
+
+    /**
+     * Método: inicio
+     * Instante de inicio de una medida de latencia.
+     *
+     * @return el reloj en nanosegundos, o 0 si las métricas están desactivadas.
+     */
+    public static long inicio() {
+        return activo ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Método: registrar
+     * Registra en el histograma el tiempo transcurrido desde inicio (si las métricas
+     * estaban activas cuando se tomó).
+     *
+     * @param histograma histograma en el que se registra.
+     * @param inicio valor devuelto por inicio().
+     */
+    public static void registrar(LatencyHistogram histograma, long inicio) {
+        if (activo && inicio != 0)
+            histograma.registrar(System.nanoTime() - inicio);
+    }
+
+    /**
+     * Método: contar
+     * Suma una cantidad a un contador.
+     *
+     * @param contador el contador.
+     * @param cantidad la cantidad a sumar.
+     */
+    public static void contar(AtomicLong contador, long cantidad) {
+        if (activo)
+            contador.addAndGet(cantidad);
+    }
+
+    /**
+     * Método: fijar
+     * Cambia el valor de un indicador.
+     *
+     * @param indicador el indicador.
+     * @param valor el nuevo valor.
+     */
+    public static void fijar(AtomicLong indicador, long valor) {
+        if (activo)
+            indicador.set(valor);
+    }
+
+    /**
+     * Método: informe
+     * Devuelve todas las métricas en texto, una por línea.
+     *
+     * @return el informe.
+     */
+    public static synchronized String informe() {
+        StringBuilder texto = new StringBuilder();
+        texto.append("Métricas ").append(activo ? "activas" : "desactivadas").append('\n');
+        for (Map.Entry<String, AtomicLong> contador : contadores.entrySet())
+            texto.append(contador.getKey()).append(": ").append(contador.getValue().get()).append('\n');
+        for (Map.Entry<String, AtomicLong> indicador : indicadores.entrySet())
+            texto.append(indicador.getKey()).append(" = ").append(indicador.getValue().get()).append('\n');
+        for (LatencyHistogram histograma : histogramas.values())
+            texto.append(histograma).append('\n');
+        return texto.toString();
+    }
+
+    /**
+     * Método: volcar
+     * Escribe el informe en un fichero (sustituyendo el anterior).
+     *
+     * @param fichero fichero de destino.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    public static boolean volcar(File fichero) {
+        FileWriter escritor = null;
+        try {
+            escritor = new FileWriter(fichero);
+            escritor.write(informe());
+            Log.d("Metrics", "Métricas volcadas en " + fichero);
+            return true;
+        } catch (IOException e) {
+            Log.e("Metrics", "Error al volcar las métricas en " + fichero, e);
+            return false;
+        } finally {
+            if (escritor != null) {
+                try {
+                    escritor.close();
+                } catch (IOException e) {
+                    Log.e("Metrics", "Error al cerrar " + fichero, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Método: reiniciar
+     * Pone a cero todas las métricas (siguen registradas).
+     */
+    public static synchronized void reiniciar() {
+        for (AtomicLong contador : contadores.values())
+            contador.set(0);
+        for (AtomicLong indicador : indicadores.values())
+            indicador.set(0);
+        for (LatencyHistogram histograma : histogramas.values())
+            histograma.reiniciar();
+    }
+}
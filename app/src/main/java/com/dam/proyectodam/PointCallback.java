@@ -0,0 +1,28 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Interfaz PointCallback.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Receptor de los puntos leídos de la base de datos uno a uno (ver
+ * BBDD.recorrerPosiciones), para procesar recorridos de cualquier longitud sin
+ * cargarlos enteros en memoria.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public interface PointCallback {
+
+    /**
+     * Método: procesarPunto
+     * Recibe el siguiente punto del recorrido. El objeto Point se reutiliza para todos
+     * los puntos, así que no debe guardarse la referencia: si hace falta conservar algún
+     * valor, hay que copiarlo.
+     *
+     * @param punto el punto leído (válido sólo durante esta llamada).
+     */
+    void procesarPunto(Point punto);
+}
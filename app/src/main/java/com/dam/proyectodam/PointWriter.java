@@ -0,0 +1,655 @@
+package com.dam.proyectodam;
+
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Clase PointWriter.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Escritor con buffer para la base de datos. En lugar de abrir, insertar y cerrar la
+ * base de datos por cada posición capturada, acumula los puntos en memoria y los vuelca
+ * todos juntos en una única transacción, cuando se llena el lote o cuando pasa un
+ * tiempo máximo desde el primer punto pendiente.
+ *
+ * Las escrituras se hacen en un hilo propio, para que el hilo principal (desde el que
+ * llegan las posiciones) nunca espere al disco. Los puntos pasan al hilo escritor por
+ * una cola guardada por columnas en arrays de tipos primitivos. anadirPosicion se llama
+ * desde el hilo principal, así que nunca espera: si la cola se llena (el disco va más
+ * lento que el GPS durante mucho tiempo), se amplía al doble, hasta MAX_CAPACIDAD_COLA
+ * puntos; a partir de ahí los puntos se descartan y se cuentan.
+ *
+ * Las pausas (ver StationaryDetector) pasan por una segunda cola, que también crece si
+ * hace falta; cada una provoca un volcado inmediato, de modo que se escribe detrás de los
+ * puntos capturados antes de que terminara. Los parciales completados (ver SplitEngine) se
+ * copian a una tercera cola y se escriben igual, detrás de las pausas; así toda escritura
+ * en la base de datos durante el entrenamiento se hace desde el hilo escritor.
+ *
+ * Si falla la escritura de un lote (el almacén devuelve false o lanza una excepción, como
+ * SQLiteException), el lote no se pierde: se queda en el hilo escritor y se vuelve a
+ * intentar pasado REINTENTO, o antes si se pide un volcado, sin sacar más puntos de la cola
+ * mientras tanto. volcar y cerrar sólo devuelven true si todo lo añadido está ya en el
+ * almacén y no se ha descartado ningún punto. Como volcar y cerrar esperan al hilo escritor,
+ * desde el hilo principal se usa cerrar(WriteCallback), que no espera: avisa al terminar.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class PointWriter {
+
+    // Número de puntos por defecto que se acumulan antes de volcarlos.
+    public static final int MAX_PUNTOS = 30;
+
+    // Tiempo máximo por defecto (en milisegundos) que un punto puede estar sin volcar.
+    public static final long MAX_ESPERA = 30000;
+
+    // Capacidad inicial por defecto de la cola (más de una hora de puntos a uno por segundo).
+    public static final int CAPACIDAD_COLA = 4096;
+
+    // Capacidad máxima de la cola (unas 72 horas de puntos a uno por segundo, 10 MB).
+    public static final int MAX_CAPACIDAD_COLA = 1 << 18;
+
+    // Capacidad inicial de la cola de pausas.
+    private static final int CAPACIDAD_PAUSAS = 16;
+
+    // Tiempo (en milisegundos) hasta reintentar un lote que no se pudo escribir.
+    public static final long REINTENTO = 5000;
+
+    // Almacén (normalmente la base de datos) en el que se vuelcan los puntos.
+    private final TrackStore baseDatos;
+
+    // Límites de volcado: por número de puntos y por tiempo.
+    private final int maxPuntos;
+    private final long maxEspera;
+
+    /* Cola circular de puntos pendientes, por columnas. Todos los campos de la cola se
+    protegen con el monitor del propio objeto. */
+    private double[] latitudes;
+    private double[] longitudes;
+    private float[] distancias;
+    private float[] velocidades;
+    private long[] instantes;
+
+    // Momento (reloj de Metrics) en que entró cada punto, o 0 si las métricas no están activas.
+    private long[] llegadas;
+    private int cabeza = 0;
+    private int pendientes = 0;
+
+    // Cola de pausas pendientes (inicio, fin y posición), que también protege el monitor.
+    private long[] iniciosPausa = new long[CAPACIDAD_PAUSAS];
+    private long[] finesPausa = new long[CAPACIDAD_PAUSAS];
+    private double[] latitudesPausa = new double[CAPACIDAD_PAUSAS];
+    private double[] longitudesPausa = new double[CAPACIDAD_PAUSAS];
+    private int pausasPendientes = 0;
+
+    // Cola de parciales pendientes, que también protege el monitor.
+    private final SplitEngine parcialesPendientes = new SplitEngine();
+
+    // Momento (reloj del sistema) en que entró el primer punto pendiente.
+    private long inicioEspera = 0;
+
+    // Puntos (pausas y parciales) que el hilo escritor ha sacado de la cola y aún está escribiendo.
+    private int enEscritura = 0;
+
+    /* Puntos, pausas y parciales de un lote que falló y espera a reintentarse, instante (reloj del
+    sistema) del próximo intento, e intentos de escritura hechos. */
+    private int retenidos = 0;
+    private long proximoReintento = 0;
+    private long intentos = 0;
+
+    // Peticiones de volcado inmediato y de cierre.
+    private boolean volcadoPedido = false;
+    private boolean cerrado = false;
+
+    // Receptor del final del hilo escritor, y si éste ya terminó.
+    private WriteCallback alTerminar;
+    private boolean terminado = false;
+
+    // Lotes fallidos, veces que se amplió la cola y puntos descartados con la cola al máximo.
+    private int fallos = 0;
+    private int ampliacionesCola = 0;
+    private int descartados = 0;
+
+    /* Lote que el hilo escritor pasa al almacén, y copia de las pausas y de los parciales
+    (sólo los usa ese hilo). Si falla, se conservan hasta que se escriben. */
+    private final TrackBuffer lote = new TrackBuffer();
+    private long[] loteIniciosPausa = new long[CAPACIDAD_PAUSAS];
+    private long[] loteFinesPausa = new long[CAPACIDAD_PAUSAS];
+    private double[] loteLatitudesPausa = new double[CAPACIDAD_PAUSAS];
+    private double[] loteLongitudesPausa = new double[CAPACIDAD_PAUSAS];
+    private int pausasLote = 0;
+    private final SplitEngine parcialesLote = new SplitEngine();
+    private long[] loteLlegadas;
+
+    /* Métricas: tiempo desde que un punto entra en la cola hasta que está en el almacén,
+    lotes fallidos y puntos descartados. */
+    private static final LatencyHistogram TIEMPO_PERSISTENCIA = Metrics.histograma("posicion.persistencia");
+    private static final AtomicLong LOTES_FALLIDOS = Metrics.contador("escritor.lotes_fallidos");
+    private static final AtomicLong PUNTOS_DESCARTADOS = Metrics.contador("escritor.puntos_descartados");
+
+    // Hilo escritor.
+    private final Thread hilo;
+
+    /**
+     * Constructor de la clase PointWriter, con los límites por defecto.
+     *
+     * @param baseDatos almacén en el que se volcarán los puntos.
+     */
+    public PointWriter(TrackStore baseDatos) {
+        this(baseDatos, MAX_PUNTOS, MAX_ESPERA);
+    }
+
+    /**
+     * Constructor de la clase PointWriter, con la capacidad de cola por defecto.
+     *
+     * @param baseDatos almacén en el que se volcarán los puntos.
+     * @param maxPuntos número de puntos que provoca un volcado.
+     * @param maxEspera tiempo máximo (en milisegundos) que un punto puede estar sin volcar.
+     */
+    public PointWriter(TrackStore baseDatos, int maxPuntos, long maxEspera) {
+        this(baseDatos, maxPuntos, maxEspera, CAPACIDAD_COLA);
+    }
+
+    /**
+     * Constructor de la clase PointWriter. Arranca el hilo escritor.
+     *
+     * @param baseDatos almacén en el que se volcarán los puntos.
+     * @param maxPuntos número de puntos que provoca un volcado.
+     * @param maxEspera tiempo máximo (en milisegundos) que un punto puede estar sin volcar.
+     * @param capacidad número de puntos que caben en la cola al empezar.
+     */
+    public PointWriter(TrackStore baseDatos, int maxPuntos, long maxEspera, int capacidad) {
+        this.baseDatos = baseDatos;
+        this.maxPuntos = Math.min(maxPuntos, MAX_CAPACIDAD_COLA);
+        this.maxEspera = maxEspera;
+
+        latitudes = new double[capacidad];
+        longitudes = new double[capacidad];
+        distancias = new float[capacidad];
+        velocidades = new float[capacidad];
+        instantes = new long[capacidad];
+        llegadas = new long[capacidad];
+        loteLlegadas = new long[capacidad];
+
+        hilo = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                escribir();
+                avisarFinal();
+            }
+        }, "PointWriter");
+        hilo.start();
+    }
+
+    /**
+     * Método: anadirPosicion
+     * Añade una posición a la cola, convertida como se guarda en la base de datos
+     * (velocidad en km/h e instante en segundos).
+     *
+     * @param localizacion location con la información del punto capturado.
+     * @param distancia distancia al punto anterior.
+     * @return un booleano que indica si el punto se aceptó (false si ya se cerró el escritor
+     * o si se descartó con la cola al máximo).
+     */
+    public boolean anadirPosicion(Location localizacion, float distancia) {
+        return anadirPosicion(localizacion.getLatitude(), localizacion.getLongitude(), distancia,
+                localizacion.getSpeed()*3.6f, localizacion.getTime()/1000);
+    }
+
+    /**
+     * Método: anadirPosicion
+     * Añade un punto, ya convertido, a la cola. Si se alcanza alguno de los límites
+     * de volcado, se avisa al hilo escritor. Nunca espera: si la cola está llena, se
+     * amplía, y si ya tiene la capacidad máxima, el punto se descarta.
+     *
+     * @param latitud latitud del punto.
+     * @param longitud longitud del punto.
+     * @param distancia distancia al punto anterior.
+     * @param velocidad velocidad en km/h.
+     * @param instante instante de captura, en segundos.
+     * @return un booleano que indica si el punto se aceptó (false si ya se cerró el escritor
+     * o si se descartó con la cola al máximo).
+     */
+    public synchronized boolean anadirPosicion(double latitud, double longitud, float distancia,
+                                               float velocidad, long instante) {
+        if (cerrado)
+            return false;
+        if (pendientes == latitudes.length) {
+            if (latitudes.length >= MAX_CAPACIDAD_COLA) {
+                if (descartados++ == 0)
+                    Log.e("PointWriter", "Cola al máximo: se descartan puntos");
+                Metrics.contar(PUNTOS_DESCARTADOS, 1);
+                return false;
+            }
+            ampliarCola();
+        }
+
+        // Si es el primer punto pendiente, empezamos a contar el tiempo de espera.
+        if (pendientes == 0)
+            inicioEspera = SystemClock.elapsedRealtime();
+
+        int pos = (cabeza + pendientes) % latitudes.length;
+        latitudes[pos] = latitud;
+        longitudes[pos] = longitud;
+        distancias[pos] = distancia;
+        velocidades[pos] = velocidad;
+        instantes[pos] = instante;
+        llegadas[pos] = Metrics.inicio();
+        pendientes++;
+
+        /* Despertamos al hilo escritor con el primer punto (para que empiece a contar el
+        tiempo de espera) y cuando hay un lote completo, no con cada punto. */
+        if (pendientes == 1 || pendientes >= maxPuntos)
+            notifyAll();
+
+        return true;
+    }
+
+    /**
+     * Método: ampliarCola
+     * Duplica la capacidad de la cola de puntos (sin pasar de la máxima), dejando los
+     * pendientes al principio. Se llama con el monitor tomado.
+     */
+    private void ampliarCola() {
+        int capacidad = Math.min(2 * latitudes.length, MAX_CAPACIDAD_COLA);
+        double[] nuevasLatitudes = new double[capacidad];
+        double[] nuevasLongitudes = new double[capacidad];
+        float[] nuevasDistancias = new float[capacidad];
+        float[] nuevasVelocidades = new float[capacidad];
+        long[] nuevosInstantes = new long[capacidad];
+        long[] nuevasLlegadas = new long[capacidad];
+        desenrollar(latitudes, nuevasLatitudes);
+        desenrollar(longitudes, nuevasLongitudes);
+        desenrollar(distancias, nuevasDistancias);
+        desenrollar(velocidades, nuevasVelocidades);
+        desenrollar(instantes, nuevosInstantes);
+        desenrollar(llegadas, nuevasLlegadas);
+        latitudes = nuevasLatitudes;
+        longitudes = nuevasLongitudes;
+        distancias = nuevasDistancias;
+        velocidades = nuevasVelocidades;
+        instantes = nuevosInstantes;
+        llegadas = nuevasLlegadas;
+        cabeza = 0;
+
+        ampliacionesCola++;
+        Log.d("PointWriter", "Cola llena: ampliada a " + capacidad + " puntos");
+    }
+
+    // Copia los puntos pendientes de una columna de la cola, en orden, al principio de otra.
+    private void desenrollar(Object columna, Object nueva) {
+        int primeros = Math.min(pendientes, latitudes.length - cabeza);
+        System.arraycopy(columna, cabeza, nueva, 0, primeros);
+        System.arraycopy(columna, 0, nueva, primeros, pendientes - primeros);
+    }
+
+    /**
+     * Método: anadirPausa
+     * Añade una pausa a su cola y pide un volcado inmediato, para que se escriba junto
+     * con los puntos anteriores. Nunca espera: si la cola de pausas está llena, se amplía.
+     *
+     * @param inicio instante en que empezó la pausa, en segundos.
+     * @param fin instante en que terminó la pausa, en segundos.
+     * @param latitud latitud donde se produjo.
+     * @param longitud longitud donde se produjo.
+     * @return un booleano que indica si la pausa se aceptó (false si ya se cerró el escritor).
+     */
+    public synchronized boolean anadirPausa(long inicio, long fin, double latitud, double longitud) {
+        if (cerrado)
+            return false;
+        if (pausasPendientes == iniciosPausa.length) {
+            int capacidad = 2 * iniciosPausa.length;
+            iniciosPausa = Arrays.copyOf(iniciosPausa, capacidad);
+            finesPausa = Arrays.copyOf(finesPausa, capacidad);
+            latitudesPausa = Arrays.copyOf(latitudesPausa, capacidad);
+            longitudesPausa = Arrays.copyOf(longitudesPausa, capacidad);
+        }
+
+        iniciosPausa[pausasPendientes] = inicio;
+        finesPausa[pausasPendientes] = fin;
+        latitudesPausa[pausasPendientes] = latitud;
+        longitudesPausa[pausasPendientes] = longitud;
+        pausasPendientes++;
+
+        volcadoPedido = true;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Método: anadirParciales
+     * Copia a su cola los parciales completados del motor (que se puede vaciar en cuanto
+     * vuelve) y pide un volcado inmediato, para que se escriban detrás de los puntos y
+     * pausas anteriores. Nunca espera.
+     *
+     * @param parciales motor de parciales con los parciales completados.
+     * @return un booleano que indica si los parciales se aceptaron (false si ya se cerró el
+     * escritor).
+     */
+    public synchronized boolean anadirParciales(SplitEngine parciales) {
+        if (cerrado)
+            return false;
+        if (parciales.getCompletados() == 0)
+            return true;
+
+        parcialesPendientes.anadirCompletados(parciales);
+        volcadoPedido = true;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Método: escribir
+     * Bucle del hilo escritor: espera a que haya un lote (por número de puntos, por
+     * tiempo o porque se pida un volcado), lo copia fuera de la cola y lo escribe en
+     * el almacén sin retener el monitor, para no bloquear a anadirPosicion mientras
+     * tanto. Si el lote anterior falló, antes de sacar nada más de la cola se reintenta
+     * ése; tras cerrar, si vuelve a fallar se abandona.
+     */
+    private void escribir() {
+        while (true) {
+            int n;
+            synchronized (this) {
+                try {
+                    while (!hayLote()) {
+                        if (cerrado && pendientes == 0 && pausasPendientes == 0
+                                && parcialesPendientes.getCompletados() == 0 && retenidos == 0)
+                            return;
+                        long ahora = SystemClock.elapsedRealtime();
+                        if (retenidos > 0)
+                            wait(Math.max(1, proximoReintento - ahora));
+                        else if (pendientes > 0)
+                            wait(Math.max(1, inicioEspera + maxEspera - ahora));
+                        else
+                            wait();
+                    }
+                } catch (InterruptedException e) {
+                    Log.e("PointWriter", "Hilo escritor interrumpido con " + (pendientes + retenidos)
+                            + " puntos sin escribir");
+                    return;
+                }
+
+                if (retenidos == 0) {
+                    // Sacamos todos los pendientes de una vez.
+                    n = pendientes;
+                    if (loteLlegadas.length < n)
+                        loteLlegadas = new long[latitudes.length];
+                    for (int i = 0; i < n; i++) {
+                        int pos = (cabeza + i) % latitudes.length;
+                        lote.anadir(latitudes[pos], longitudes[pos], distancias[pos],
+                                velocidades[pos], instantes[pos]);
+                        loteLlegadas[i] = llegadas[pos];
+                    }
+                    cabeza = (cabeza + n) % latitudes.length;
+                    pendientes = 0;
+
+                    // Y las pausas y los parciales, que se escriben después de los puntos.
+                    sacarPausas();
+                    parcialesLote.anadirCompletados(parcialesPendientes);
+                    parcialesPendientes.vaciar();
+                } else {
+                    n = lote.tamano();
+                }
+
+                enEscritura = n + pausasLote + parcialesLote.getCompletados();
+                retenidos = 0;
+                volcadoPedido = false;
+
+                // Puede haber alguien esperando a que se vacíe la cola.
+                notifyAll();
+            }
+
+            /* Se escriben los puntos, después las pausas y por último los parciales, y se quita
+            del lote lo que se escribe. */
+            int p = pausasLote;
+            int s = parcialesLote.getCompletados();
+            boolean salida = true;
+            int pausasEscritas = 0;
+            try {
+                if (n > 0) {
+                    salida = baseDatos.insertarPosiciones(lote);
+                    if (salida) {
+                        lote.vaciar();
+                        for (int i = 0; i < n; i++)
+                            Metrics.registrar(TIEMPO_PERSISTENCIA, loteLlegadas[i]);
+                    }
+                }
+                while (salida && pausasEscritas < pausasLote) {
+                    salida = baseDatos.insertarPausa(loteIniciosPausa[pausasEscritas], loteFinesPausa[pausasEscritas],
+                            loteLatitudesPausa[pausasEscritas], loteLongitudesPausa[pausasEscritas]);
+                    if (salida)
+                        pausasEscritas++;
+                }
+                if (salida && s > 0) {
+                    salida = baseDatos.insertarParciales(parcialesLote);
+                    if (salida)
+                        parcialesLote.vaciar();
+                }
+            } catch (RuntimeException e) {
+                Log.e("PointWriter", "Error al escribir el lote en el almacén", e);
+                salida = false;
+            }
+            quitarPausas(pausasEscritas);
+            Log.d("PointWriter", (salida ? "Volcados " : "No se pudieron volcar ") + n + " puntos, "
+                    + p + " pausas y " + s + " parciales a la BBDD");
+
+            synchronized (this) {
+                enEscritura = 0;
+                retenidos = lote.tamano() + pausasLote + parcialesLote.getCompletados();
+                intentos++;
+                if (!salida) {
+                    fallos++;
+                    Metrics.contar(LOTES_FALLIDOS, 1);
+                    proximoReintento = SystemClock.elapsedRealtime() + REINTENTO;
+                }
+                notifyAll();
+                if (!salida && cerrado) {
+                    Log.e("PointWriter", "Escritor cerrado con " + (retenidos + pendientes)
+                            + " puntos, pausas y parciales sin escribir");
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Método: avisarFinal
+     * Marca el hilo escritor como terminado y avisa al receptor, si ya se había pedido el
+     * cierre con uno (se llama fuera del monitor).
+     */
+    private void avisarFinal() {
+        WriteCallback receptor;
+        boolean correcto;
+        synchronized (this) {
+            terminado = true;
+            receptor = alTerminar;
+            correcto = todoEscrito();
+        }
+        if (receptor != null)
+            receptor.escrituraTerminada(correcto);
+    }
+
+    /**
+     * Método: sacarPausas
+     * Pasa las pausas de la cola al lote, detrás de las que éste ya tuviera. Se llama con
+     * el monitor tomado.
+     */
+    private void sacarPausas() {
+        int total = pausasLote + pausasPendientes;
+        if (total > loteIniciosPausa.length) {
+            loteIniciosPausa = Arrays.copyOf(loteIniciosPausa, total);
+            loteFinesPausa = Arrays.copyOf(loteFinesPausa, total);
+            loteLatitudesPausa = Arrays.copyOf(loteLatitudesPausa, total);
+            loteLongitudesPausa = Arrays.copyOf(loteLongitudesPausa, total);
+        }
+        System.arraycopy(iniciosPausa, 0, loteIniciosPausa, pausasLote, pausasPendientes);
+        System.arraycopy(finesPausa, 0, loteFinesPausa, pausasLote, pausasPendientes);
+        System.arraycopy(latitudesPausa, 0, loteLatitudesPausa, pausasLote, pausasPendientes);
+        System.arraycopy(longitudesPausa, 0, loteLongitudesPausa, pausasLote, pausasPendientes);
+        pausasLote = total;
+        pausasPendientes = 0;
+    }
+
+    /**
+     * Método: quitarPausas
+     * Quita del lote las primeras pausas, ya escritas, y deja las demás al principio.
+     *
+     * @param escritas número de pausas escritas.
+     */
+    private void quitarPausas(int escritas) {
+        int quedan = pausasLote - escritas;
+        System.arraycopy(loteIniciosPausa, escritas, loteIniciosPausa, 0, quedan);
+        System.arraycopy(loteFinesPausa, escritas, loteFinesPausa, 0, quedan);
+        System.arraycopy(loteLatitudesPausa, escritas, loteLatitudesPausa, 0, quedan);
+        System.arraycopy(loteLongitudesPausa, escritas, loteLongitudesPausa, 0, quedan);
+        pausasLote = quedan;
+    }
+
+    /**
+     * Método: hayLote
+     * Indica si el hilo escritor debe volcar ya la cola (o reintentar el lote que falló).
+     * Se llama con el monitor tomado.
+     *
+     * @return un booleano que indica si hay que volcar.
+     */
+    private boolean hayLote() {
+        if (retenidos > 0)
+            return volcadoPedido || cerrado || SystemClock.elapsedRealtime() >= proximoReintento;
+        if (pausasPendientes > 0 || parcialesPendientes.getCompletados() > 0)
+            return true;
+        if (pendientes == 0)
+            return false;
+        return pendientes >= maxPuntos || volcadoPedido || cerrado
+                || SystemClock.elapsedRealtime() - inicioEspera >= maxEspera;
+    }
+
+    /**
+     * Método: volcar
+     * Pide al hilo escritor que escriba todos los puntos (pausas y parciales) pendientes y espera a que
+     * termine. Debe llamarse antes de leer la base de datos, para que estén todos los
+     * puntos añadidos hasta el momento. Si hay un lote que falló, se reintenta en el
+     * momento; si vuelve a fallar, no se espera más (se seguirá reintentando después).
+     *
+     * @return un booleano que indica si todo lo añadido está ya en el almacén, sin descartes.
+     */
+    public synchronized boolean volcar() {
+        // El intento en curso (o el siguiente) es el último que se espera si algo falla.
+        long objetivo = intentos + 1;
+        try {
+            while ((pendientes > 0 || pausasPendientes > 0 || parcialesPendientes.getCompletados() > 0
+                    || retenidos > 0 || enEscritura > 0) && hilo.isAlive()) {
+                if (retenidos > 0 && intentos >= objetivo)
+                    break;
+                /* Si hay un intento en curso, se espera a su resultado sin pedir otro, o un
+                fallo se reintentaría en el acto sin que lo viéramos. */
+                if (enEscritura == 0) {
+                    volcadoPedido = true;
+                    notifyAll();
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return todoEscrito();
+    }
+
+    /**
+     * Método: cerrar
+     * Vuelca los puntos pendientes y termina el hilo escritor. Después de cerrar, el
+     * escritor ya no acepta más puntos.
+     *
+     * @return un booleano que indica si todo lo añadido está ya en el almacén, sin descartes.
+     */
+    public boolean cerrar() {
+        synchronized (this) {
+            cerrado = true;
+            notifyAll();
+        }
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        synchronized (this) {
+            return todoEscrito();
+        }
+    }
+
+    /**
+     * Método: cerrar
+     * Como cerrar(), pero sin esperar: el hilo escritor vuelca lo pendiente y termina, y
+     * después avisa al receptor desde ese hilo (o en el momento, si ya había terminado).
+     * Es la forma de cerrar desde el hilo principal, que nunca debe esperar al disco.
+     *
+     * @param receptor receptor del final de las escrituras.
+     */
+    public void cerrar(WriteCallback receptor) {
+        boolean correcto;
+        synchronized (this) {
+            cerrado = true;
+            notifyAll();
+            if (!terminado) {
+                alTerminar = receptor;
+                return;
+            }
+            correcto = todoEscrito();
+        }
+        receptor.escrituraTerminada(correcto);
+    }
+
+    // Indica si no queda nada sin escribir ni se ha descartado nada. Con el monitor tomado.
+    private boolean todoEscrito() {
+        return pendientes == 0 && pausasPendientes == 0 && parcialesPendientes.getCompletados() == 0
+                && retenidos == 0 && enEscritura == 0 && descartados == 0;
+    }
+
+    /**
+     * Método: getPendientes
+     * Devuelve el número de puntos que aún no se han escrito en la base de datos.
+     *
+     * @return el número de puntos pendientes.
+     */
+    public synchronized int getPendientes() {
+        return pendientes + enEscritura + retenidos;
+    }
+
+    /**
+     * Método: getAmpliacionesCola
+     * Devuelve cuántas veces se ha ampliado la cola por encontrarla llena.
+     *
+     * @return dicho número de veces.
+     */
+    public synchronized int getAmpliacionesCola() {
+        return ampliacionesCola;
+    }
+
+    /**
+     * Método: getDescartados
+     * Devuelve el número de puntos descartados por llegar con la cola al máximo.
+     *
+     * @return dicho número.
+     */
+    public synchronized int getDescartados() {
+        return descartados;
+    }
+
+    /**
+     * Método: getFallos
+     * Devuelve el número de intentos de escritura que han fallado.
+     *
+     * @return dicho número.
+     */
+    public synchronized int getFallos() {
+        return fallos;
+    }
+}
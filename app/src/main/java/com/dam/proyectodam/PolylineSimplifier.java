@@ -0,0 +1,255 @@
+package com.dam.proyectodam;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Clase PolylineSimplifier.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Simplificación de recorridos por niveles de detalle, con el algoritmo de
+ * Douglas-Peucker. En lugar de simplificar de nuevo para cada tolerancia, se calcula una
+ * sola vez la "importancia" de cada punto: la mayor tolerancia (en metros) con la que
+ * Douglas-Peucker todavía lo conservaría. Así, el recorrido simplificado para cualquier
+ * tolerancia t son los puntos con importancia mayor que t, y cada punto descartado está
+ * a menos de t metros del segmento simplificado que lo sustituye.
+ *
+ * Las distancias se miden sobre una proyección equirectangular centrada en el recorrido,
+ * suficiente para las escalas de un entrenamiento.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class PolylineSimplifier {
+
+    // Radio medio de la Tierra, en metros.
+    private static final double RADIO_TIERRA = 6371008.8;
+
+    // Metros por píxel en el ecuador con zoom 0 (proyección de Google Maps, teselas de 256 px).
+    private static final double METROS_PIXEL_ZOOM_0 = 156543.03392;
+
+    // Coordenadas proyectadas (en metros) de cada punto.
+    private final double[] x;
+    private final double[] y;
+
+    // Importancia de cada punto (los extremos se conservan siempre).
+    private final float[] importancia;
+
+    // Importancias ordenadas de mayor a menor, para acotar el número de vértices.
+    private float[] ordenadas;
+
+    /**
+     * Constructor de la clase PolylineSimplifier
+     * Proyecta el recorrido y calcula la importancia de cada punto.
+     *
+     * @param recorrido puntos del recorrido, en orden.
+     */
+    public PolylineSimplifier(TrackBuffer recorrido) {
+        int n = recorrido.tamano();
+        x = new double[n];
+        y = new double[n];
+        importancia = new float[n];
+
+        if (n > 0) {
+            // Centro de la proyección: el primer punto.
+            double lat0 = Math.toRadians(recorrido.getLatitud(0));
+            double lon0 = Math.toRadians(recorrido.getLongitud(0));
+            double escalaX = RADIO_TIERRA * Math.cos(lat0);
+            for (int i = 0; i < n; i++) {
+                x[i] = (Math.toRadians(recorrido.getLongitud(i)) - lon0) * escalaX;
+                y[i] = (Math.toRadians(recorrido.getLatitud(i)) - lat0) * RADIO_TIERRA;
+            }
+            calcularImportancias();
+        }
+    }
+
+    /**
+     * Método: calcularImportancias
+     * Douglas-Peucker sin recursión (con una pila de tramos pendientes, para no
+     * desbordar la pila con recorridos largos). Cada tramo parte por su punto más
+     * alejado; la importancia de ese punto es su distancia al tramo, limitada por la
+     * importancia del tramo padre, ya que un tramo sólo se parte si se partió su padre.
+     */
+    private void calcularImportancias() {
+        int n = x.length;
+        importancia[0] = Float.POSITIVE_INFINITY;
+        importancia[n-1] = Float.POSITIVE_INFINITY;
+
+        // Pila de tramos: inicio, fin e importancia del padre.
+        int[] tramos = new int[64];
+        float[] padres = new float[32];
+        int cima = 0;
+
+        if (n > 2) {
+            tramos[0] = 0;
+            tramos[1] = n - 1;
+            padres[0] = Float.POSITIVE_INFINITY;
+            cima = 1;
+        }
+
+        while (cima > 0) {
+            cima--;
+            int inicio = tramos[2*cima];
+            int fin = tramos[2*cima+1];
+            float padre = padres[cima];
+
+            // Buscamos el punto más alejado del segmento inicio-fin.
+            int maximo = -1;
+            double dMaxima = -1;
+            for (int i = inicio + 1; i < fin; i++) {
+                double d = distanciaSegmento2(i, inicio, fin);
+                if (d > dMaxima) {
+                    dMaxima = d;
+                    maximo = i;
+                }
+            }
+
+            float valor = (float) Math.min(Math.sqrt(dMaxima), padre);
+            importancia[maximo] = valor;
+
+            // Apilamos los dos subtramos que tengan puntos intermedios.
+            if (cima + 2 > padres.length) {
+                tramos = Arrays.copyOf(tramos, tramos.length * 2);
+                padres = Arrays.copyOf(padres, padres.length * 2);
+            }
+            if (maximo - inicio > 1) {
+                tramos[2*cima] = inicio;
+                tramos[2*cima+1] = maximo;
+                padres[cima] = valor;
+                cima++;
+            }
+            if (fin - maximo > 1) {
+                tramos[2*cima] = maximo;
+                tramos[2*cima+1] = fin;
+                padres[cima] = valor;
+                cima++;
+            }
+        }
+    }
+
+    /**
+     * Método: distanciaSegmento2
+     * Cuadrado de la distancia del punto i al segmento a-b.
+     */
+    private double distanciaSegmento2(int i, int a, int b) {
+        double dx = x[b] - x[a];
+        double dy = y[b] - y[a];
+        double px = x[i] - x[a];
+        double py = y[i] - y[a];
+        double longitud2 = dx*dx + dy*dy;
+
+        if (longitud2 > 0) {
+            double t = (px*dx + py*dy) / longitud2;
+            if (t > 1) {
+                px = x[i] - x[b];
+                py = y[i] - y[b];
+            } else if (t > 0) {
+                px -= t*dx;
+                py -= t*dy;
+            }
+        }
+        return px*px + py*py;
+    }
+
+    /**
+     * Método: distanciaSegmento
+     * Distancia (en metros) del punto i al segmento entre los puntos a y b.
+     *
+     * @param i índice del punto.
+     * @param a índice del inicio del segmento.
+     * @param b índice del final del segmento.
+     * @return la distancia en metros.
+     */
+    public double distanciaSegmento(int i, int a, int b) {
+        return Math.sqrt(distanciaSegmento2(i, a, b));
+    }
+
+    /**
+     * Método: tamano
+     * Devuelve el número de puntos del recorrido original.
+     *
+     * @return el número de puntos.
+     */
+    public int tamano() {
+        return x.length;
+    }
+
+    /**
+     * Método: getImportancia
+     * Devuelve la importancia del punto i-ésimo.
+     *
+     * @param i índice del punto.
+     * @return la importancia, en metros (infinito para los extremos).
+     */
+    public float getImportancia(int i) {
+        return importancia[i];
+    }
+
+    /**
+     * Método: contarVertices
+     * Devuelve el número de puntos que quedan al simplificar con una tolerancia.
+     *
+     * @param tolerancia tolerancia en metros.
+     * @return el número de puntos conservados.
+     */
+    public int contarVertices(double tolerancia) {
+        int n = 0;
+        for (float imp : importancia)
+            if (imp > tolerancia)
+                n++;
+        return n;
+    }
+
+    /**
+     * Método: simplificar
+     * Devuelve los índices de los puntos conservados con una tolerancia, en orden.
+     *
+     * @param tolerancia tolerancia en metros.
+     * @return los índices de los puntos conservados.
+     */
+    public int[] simplificar(double tolerancia) {
+        int[] indices = new int[contarVertices(tolerancia)];
+        int j = 0;
+        for (int i = 0; i < importancia.length; i++)
+            if (importancia[i] > tolerancia)
+                indices[j++] = i;
+        return indices;
+    }
+
+    /**
+     * Método: toleranciaParaVertices
+     * Devuelve la menor tolerancia con la que el recorrido simplificado no pasa de un
+     * número máximo de vértices. La primera llamada ordena las importancias.
+     *
+     * @param maxVertices número máximo de vértices (al menos 2).
+     * @return la tolerancia en metros (0 si el recorrido ya cabe entero).
+     */
+    public double toleranciaParaVertices(int maxVertices) {
+        if (importancia.length <= maxVertices)
+            return 0;
+
+        if (ordenadas == null) {
+            ordenadas = importancia.clone();
+            Arrays.sort(ordenadas);
+        }
+
+        // Se conservan los puntos con importancia estrictamente mayor que la devuelta.
+        return ordenadas[ordenadas.length - maxVertices];
+    }
+
+    /**
+     * Método: toleranciaParaZoom
+     * Tolerancia equivalente a un número de píxeles en pantalla, para un nivel de zoom
+     * del mapa y una latitud (la escala de la proyección de Google Maps depende de ambos).
+     *
+     * @param zoom nivel de zoom del mapa.
+     * @param latitud latitud en la que se mide.
+     * @param pixeles número de píxeles de tolerancia.
+     * @return la tolerancia en metros.
+     */
+    public static double toleranciaParaZoom(float zoom, double latitud, double pixeles) {
+        return pixeles * METROS_PIXEL_ZOOM_0 * Math.cos(Math.toRadians(latitud)) / Math.pow(2, zoom);
+    }
+}
@@ -2,18 +2,26 @@ package com.dam.proyectodam;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.text.method.ScrollingMovementMethod;
 import android.util.Log;
 import android.view.View;
+import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
  * Clase ResultActivity.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
  * Muestra los resultados finales del entrenamiento, y da la opción de volver a MainActivity
- * para un nuevo entrenamiento o mostrar el recorrido en un mapa.
+ * para un nuevo entrenamiento, mostrar el recorrido en un mapa o exportarlo a GPX o TCX.
+ * Debajo se listan los parciales por kilómetro y las vueltas, ya calculados durante el
+ * entrenamiento (ver SplitEngine), y arriba una miniatura del recorrido (ver TrackRenderer),
+ * que se dibuja sin mapa y se guarda en la caché de miniaturas.
  * Sólo cuenta con un layout para orientación horizontal y vertical, y no salva
  * ningún valor (se recalculan de nuevo al crearse de nuevo la actividad).
  *
@@ -26,10 +34,25 @@ import java.util.ArrayList;
  */
 public class ResultActivity extends Activity {
 
+    // Lado de la miniatura del recorrido, en píxeles.
+    private static final int LADO_MINIATURA = 192;
+
+    // Métricas: aciertos en memoria y en disco, y fallos, de la caché de miniaturas.
+    private static final AtomicLong MINIATURAS_MEMORIA = Metrics.indicador("miniaturas.aciertos_memoria");
+    private static final AtomicLong MINIATURAS_DISCO = Metrics.indicador("miniaturas.aciertos_disco");
+    private static final AtomicLong MINIATURAS_FALLOS = Metrics.indicador("miniaturas.fallos");
+
+    // Sesión (entrenamiento) cuyos resultados se muestran.
+    private long sesion;
+
     // TextView en los que mostrar los resultados finales.
     private TextView dist_rec;
     private TextView vel_media;
     private TextView duracion;
+    private TextView parciales;
+
+    // Miniatura del recorrido.
+    private ImageView miniatura;
 
     /**
      * Método: onCreate
@@ -45,11 +68,16 @@ public class ResultActivity extends Activity {
         dist_rec = (TextView) findViewById(R.id.textorelleno4);
         vel_media = (TextView) findViewById(R.id.textorelleno5);
         duracion = (TextView) findViewById(R.id.textorelleno6);
+        parciales = (TextView) findViewById(R.id.parciales);
+        parciales.setMovementMethod(new ScrollingMovementMethod());
+        miniatura = (ImageView) findViewById(R.id.miniatura);
 
-        /* Se inicia la base de datos y se devuelve el listado de puntos, que se
-        pasa a mostrarDatos. */
-        BBDD baseDatos = new BBDD(getApplicationContext());
-        mostrarDatos(baseDatos.listarPosiciones());
+        // Se inicia la base de datos con la sesión recibida y se pasa su resumen a mostrarDatos.
+        sesion = getIntent().getLongExtra("sesion", BBDD.SESION_ULTIMA);
+        BBDD baseDatos = new BBDD(getApplicationContext(), sesion);
+        mostrarDatos(baseDatos.leerResumen());
+        mostrarParciales(baseDatos.leerParciales());
+        mostrarMiniatura(baseDatos);
 
         Log.d("Result", "Actividad preparada y datos mostrados");
     }
@@ -57,44 +85,84 @@ public class ResultActivity extends Activity {
     /**
      * Método: mostrarDatos
      * Actualiza los valores de distancia recorrida y velocidad media mostrados por pantalla.
+     * Se leen del resumen que la base de datos mantiene con cada inserción, así que no hay
+     * que recorrer los puntos (ni al crear la actividad ni al girar la pantalla).
      *
-     * @param listado array de objetos Point a partir del cual se realizan los cálculos.
+     * @param resumen resumen del entrenamiento.
      */
-    public void mostrarDatos(ArrayList<Point> listado){
-        // Declaramos los acumuladores.
-        double d_recorrida = 0;
-        double v_acumulada = 0;
-
-        // También la velocidad media y duración del entrenamiento.
-        double v_media;
-        long duracion = 0;
-
-        // Mostraremos resultados si hay algún punto en la lista.
-        if (listado.size()>0) {
-            for (int i = 0; i < listado.size(); i++) {
-                d_recorrida += listado.get(i).getDistancia();
-                v_acumulada += listado.get(i).getVelocidad();
-
-                // Cálculo del tiempo: instante final-inicial.
-                if (i == 0)
-                    duracion = -listado.get(i).getInstante();
-                if (i == listado.size()-1)
-                    duracion += listado.get(i).getInstante();
-
-            }
-            /* La distancia sí es la suma, pero la velocidad es media; luego dividimos
-            entre el número de puntos. */
-            v_media = v_acumulada/listado.size();
-
-            // Y los mostramos en los TextView.
-            dist_rec.setText(Double.toString(d_recorrida));
-            vel_media.setText(Double.toString(v_media));
-            this.duracion.setText(Long.toString(duracion));
+    public void mostrarDatos(SessionSummary resumen){
+        // Mostraremos resultados si hay algún punto.
+        if (resumen.getPuntos()>0) {
+            dist_rec.setText(Double.toString(resumen.getDistancia()));
+            vel_media.setText(Double.toString(resumen.getVelocidadMedia()));
+            duracion.setText(Long.toString(resumen.getTiempoEnMovimiento()));
         }
 
         Log.d("Result", "Datos calculados y mostrados");
     }
 
+    /**
+     * Método: mostrarParciales
+     * Muestra los parciales y vueltas guardados, uno por línea. Son pocas filas de su
+     * propia tabla, así que tampoco hay que recorrer los puntos.
+     *
+     * @param guardados parciales del entrenamiento.
+     */
+    public void mostrarParciales(SplitEngine guardados) {
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < guardados.getCompletados(); i++) {
+            if (i > 0)
+                texto.append('\n');
+            texto.append(guardados.describir(i));
+        }
+        parciales.setText(texto);
+
+        Log.d("Result", guardados.getCompletados() + " parciales mostrados");
+    }
+
+    /**
+     * Método: mostrarMiniatura
+     * Muestra la miniatura del recorrido. Se busca en la caché y, si no está (o la sesión
+     * ha cambiado desde que se dibujó), se cargan los puntos y se dibuja; todo ello en un
+     * hilo aparte, porque un recorrido largo tarda en leerse.
+     *
+     * @param baseDatos base de datos de la sesión.
+     */
+    private void mostrarMiniatura(final BBDD baseDatos) {
+        final ThumbnailCache cache = ((ARTrackApplication) getApplication()).getMiniaturas();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long id = baseDatos.getSesion();
+                long puntos = baseDatos.leerResumen().getPuntos();
+                if (puntos == 0)
+                    return;
+
+                int[] pixeles = cache.obtener(id, LADO_MINIATURA, LADO_MINIATURA, puntos);
+                if (pixeles == null) {
+                    TrackBuffer recorrido = new TrackBuffer();
+                    baseDatos.cargarPosiciones(recorrido, Long.MIN_VALUE, Long.MAX_VALUE);
+                    pixeles = new TrackRenderer(LADO_MINIATURA, LADO_MINIATURA).renderizar(recorrido);
+                    if (!cache.guardar(id, LADO_MINIATURA, LADO_MINIATURA, puntos, pixeles))
+                        Log.e("Result", "No se pudo guardar en disco la miniatura de la sesión " + id);
+                    Log.d("Result", "Miniatura dibujada con " + recorrido.tamano() + " puntos");
+                }
+                Metrics.fijar(MINIATURAS_MEMORIA, cache.getAciertosMemoria());
+                Metrics.fijar(MINIATURAS_DISCO, cache.getAciertosDisco());
+                Metrics.fijar(MINIATURAS_FALLOS, cache.getFallos());
+
+                final Bitmap imagen = Bitmap.createBitmap(pixeles, LADO_MINIATURA, LADO_MINIATURA,
+                        Bitmap.Config.ARGB_8888);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        miniatura.setImageBitmap(imagen);
+                    }
+                });
+            }
+        }, "Miniatura").start();
+    }
+
     /**
      * Método: mostrarMapa
      * Método ejecutado cuando se pulsa el primer botón de esta actividad.
@@ -106,10 +174,64 @@ public class ResultActivity extends Activity {
 
         // Marcamos el intent con el lanzamiento de la próxima actividad (MapActivity).
         Intent mapIntent = new Intent(ResultActivity.this, MapActivity.class);
+        mapIntent.putExtra("sesion", sesion);
 
         startActivity(mapIntent);
     }
 
+    /**
+     * Método: exportarGpx
+     * Método ejecutado cuando se pulsa el botón de exportar a GPX.
+     *
+     * @param view vista actual.
+     */
+    public void exportarGpx(View view) {
+        exportar(TrackExporter.GPX, ".gpx");
+    }
+
+    /**
+     * Método: exportarTcx
+     * Método ejecutado cuando se pulsa el botón de exportar a TCX.
+     *
+     * @param view vista actual.
+     */
+    public void exportarTcx(View view) {
+        exportar(TrackExporter.TCX, ".tcx");
+    }
+
+    /**
+     * Método: exportar
+     * Exporta el entrenamiento en un hilo aparte (un recorrido largo tarda varios segundos)
+     * y avisa con un Toast al terminar. El fichero se guarda en la carpeta de la aplicación
+     * en el almacenamiento externo, o en la interna si aquél no está disponible.
+     *
+     * @param formato TrackExporter.GPX o TrackExporter.TCX.
+     * @param extension extensión del fichero.
+     */
+    private void exportar(final int formato, String extension) {
+        File carpeta = getExternalFilesDir(null);
+        if (carpeta == null)
+            carpeta = getFilesDir();
+        final File fichero = new File(carpeta, "artrack_" +
+                (sesion == BBDD.SESION_ULTIMA ? "ultima" : Long.toString(sesion)) + extension);
+        final BBDD baseDatos = new BBDD(getApplicationContext(), sesion);
+
+        Log.d("Result", "Exportando a " + fichero);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final boolean correcto = baseDatos.exportar(formato, fichero);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(getApplicationContext(), correcto ? "Recorrido exportado a "
+                                + fichero : "Error al exportar el recorrido", Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, "Exportador").start();
+    }
+
     /**
      * Método: volverMain
      * Método ejecutado cuando se pulsa el segundo botón de esta actividad.
@@ -0,0 +1,166 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Clase SamplingScheduler.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Planificador del intervalo de muestreo del GPS según el movimiento. Con el usuario parado
+ * o moviéndose de forma constante, la trayectoria se reconstruye bien con pocos puntos y
+ * se muestrea despacio; durante cambios de velocidad o de dirección se muestrea con el
+ * intervalo elegido por el usuario, para no perder la forma del recorrido.
+ *
+ * Para que el intervalo no cambie a cada punto, hay histéresis: un cambio de movimiento
+ * pasa a muestreo rápido inmediatamente, pero para volver a muestreo lento hacen falta
+ * varios puntos seguidos sin cambios, y para estar parado hay umbrales de velocidad
+ * distintos para entrar y para salir.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class SamplingScheduler {
+
+    // Estados del movimiento.
+    public static final int PARADO = 0;
+    public static final int CONSTANTE = 1;
+    public static final int CAMBIANDO = 2;
+
+    // Multiplicador del intervalo base en movimiento constante y parado, y tope (ms).
+    private static final int MULTIPLICADOR_CONSTANTE = 4;
+    private static final int MULTIPLICADOR_PARADO = 5;
+    private static final long INTERVALO_MAXIMO = 60000;
+
+    // Velocidades (m/s) por debajo de la cual se entra en parado y por encima de la cual se sale.
+    private static final double VELOCIDAD_PARADO = 0.5;
+    private static final double VELOCIDAD_ARRANQUE = 1.0;
+
+    // Aceleración (m/s²) y giro (grados/s) a partir de los cuales el movimiento está cambiando.
+    private static final double UMBRAL_ACELERACION = 0.15;
+    private static final double UMBRAL_GIRO = 4;
+
+    // Puntos seguidos sin cambios necesarios para volver del muestreo rápido.
+    private static final int PUNTOS_CALMA = 3;
+
+    // Intervalos (en milisegundos) de cada estado.
+    private final long intervaloRapido;
+    private final long intervaloConstante;
+    private final long intervaloParado;
+
+    // Estado actual, puntos seguidos sin cambios y puntos seguidos por debajo de VELOCIDAD_PARADO.
+    private int estado = CAMBIANDO;
+    private int puntosCalma = 0;
+    private int puntosLentos = 0;
+
+    // Velocidad, rumbo e instante del punto anterior (instante -1 si no lo hay).
+    private double velocidadAnterior;
+    private double rumboAnterior;
+    private long instanteAnterior = -1;
+
+    /**
+     * Constructor de la clase SamplingScheduler.
+     *
+     * @param intervaloBase intervalo (en milisegundos) elegido por el usuario, que es el
+     *                      que se usa durante los cambios de movimiento.
+     */
+    public SamplingScheduler(long intervaloBase) {
+        intervaloRapido = intervaloBase;
+        intervaloConstante = Math.max(intervaloBase, Math.min(intervaloBase * MULTIPLICADOR_CONSTANTE, INTERVALO_MAXIMO));
+        intervaloParado = Math.max(intervaloBase, Math.min(intervaloBase * MULTIPLICADOR_PARADO, INTERVALO_MAXIMO));
+    }
+
+    /**
+     * Método: actualizar
+     * Incorpora un nuevo punto (normalmente ya filtrado) y recalcula el estado.
+     *
+     * @param velocidad velocidad en el punto, en m/s.
+     * @param rumbo rumbo en el punto, en grados.
+     * @param instante instante del punto, en milisegundos.
+     * @return un booleano que indica si ha cambiado el intervalo de muestreo.
+     */
+    public boolean actualizar(double velocidad, double rumbo, long instante) {
+        long intervaloPrevio = getIntervalo();
+
+        if (instanteAnterior >= 0 && instante > instanteAnterior) {
+            double dt = (instante - instanteAnterior) / 1000.0;
+
+            if (estado == PARADO) {
+                // Sólo salimos de parado al superar la velocidad de arranque.
+                if (velocidad > VELOCIDAD_ARRANQUE) {
+                    estado = CAMBIANDO;
+                    puntosCalma = 0;
+                }
+            } else if (velocidad < VELOCIDAD_PARADO) {
+                // Parado sólo tras varios puntos lentos seguidos.
+                if (++puntosLentos >= PUNTOS_CALMA) {
+                    estado = PARADO;
+                    puntosLentos = 0;
+                }
+            } else {
+                puntosLentos = 0;
+
+                double aceleracion = Math.abs(velocidad - velocidadAnterior) / dt;
+                double giro = Math.abs(diferenciaRumbo(rumbo, rumboAnterior)) / dt;
+
+                if (aceleracion > UMBRAL_ACELERACION || giro > UMBRAL_GIRO) {
+                    estado = CAMBIANDO;
+                    puntosCalma = 0;
+                } else if (estado == CAMBIANDO && ++puntosCalma >= PUNTOS_CALMA) {
+                    estado = CONSTANTE;
+                    puntosCalma = 0;
+                }
+            }
+        }
+
+        velocidadAnterior = velocidad;
+        rumboAnterior = rumbo;
+        instanteAnterior = instante;
+
+        return getIntervalo() != intervaloPrevio;
+    }
+
+    /**
+     * Método: diferenciaRumbo
+     * Diferencia entre dos rumbos, por el camino más corto.
+     *
+     * @param a primer rumbo, en grados.
+     * @param b segundo rumbo, en grados.
+     * @return a-b, entre -180 y 180 grados.
+     */
+    static double diferenciaRumbo(double a, double b) {
+        double d = (a - b) % 360;
+        if (d > 180)
+            d -= 360;
+        else if (d < -180)
+            d += 360;
+        return d;
+    }
+
+    /**
+     * Método: getEstado
+     * Devuelve el estado actual del movimiento (PARADO, CONSTANTE o CAMBIANDO).
+     *
+     * @return el estado.
+     */
+    public int getEstado() {
+        return estado;
+    }
+
+    /**
+     * Método: getIntervalo
+     * Devuelve el intervalo de muestreo que corresponde al estado actual.
+     *
+     * @return el intervalo, en milisegundos.
+     */
+    public long getIntervalo() {
+        switch (estado) {
+            case PARADO:
+                return intervaloParado;
+            case CONSTANTE:
+                return intervaloConstante;
+            default:
+                return intervaloRapido;
+        }
+    }
+}
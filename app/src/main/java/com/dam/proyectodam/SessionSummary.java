@@ -0,0 +1,194 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Clase SessionSummary.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Resumen de un entrenamiento: número de puntos, distancia total, velocidad acumulada
+ * (para la media), instantes del primer y último punto y tiempo parado (la suma de las
+ * pausas, que no cuenta como tiempo en movimiento). La base de datos lo mantiene
+ * actualizado con cada inserción (en la fila de la sesión, en la tabla sesiones), y
+ * también puede calcularse recorriendo los puntos, ya que implementa PointCallback.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class SessionSummary implements PointCallback {
+
+    // Acumuladores del resumen.
+    private long puntos;
+    private double distancia;
+    private double velocidadAcumulada;
+    private long instanteInicial;
+    private long instanteFinal;
+    private long tiempoParado;
+
+    /**
+     * Constructor de la clase SessionSummary, para un resumen vacío.
+     */
+    public SessionSummary() {
+        this(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Constructor de la clase SessionSummary
+     *
+     * @param puntos número de puntos.
+     * @param distancia distancia total recorrida.
+     * @param velocidadAcumulada suma de las velocidades de todos los puntos.
+     * @param instanteInicial instante del primer punto.
+     * @param instanteFinal instante del último punto.
+     */
+    public SessionSummary(long puntos, double distancia, double velocidadAcumulada,
+                          long instanteInicial, long instanteFinal) {
+        this.puntos = puntos;
+        this.distancia = distancia;
+        this.velocidadAcumulada = velocidadAcumulada;
+        this.instanteInicial = instanteInicial;
+        this.instanteFinal = instanteFinal;
+    }
+
+    /**
+     * Método: procesarPunto
+     * Acumula un punto más en el resumen (los puntos deben llegar en orden de captura).
+     *
+     * @param punto el punto a acumular.
+     */
+    @Override
+    public void procesarPunto(Point punto) {
+        if (puntos == 0)
+            instanteInicial = punto.getInstante();
+        instanteFinal = punto.getInstante();
+
+        distancia += punto.getDistancia();
+        velocidadAcumulada += punto.getVelocidad();
+        puntos++;
+    }
+
+    /**
+     * Método: getPuntos
+     * Devuelve el número de puntos del entrenamiento.
+     *
+     * @return el número de puntos.
+     */
+    public long getPuntos() {
+        return puntos;
+    }
+
+    /**
+     * Método: getDistancia
+     * Devuelve la distancia total recorrida.
+     *
+     * @return la distancia total.
+     */
+    public double getDistancia() {
+        return distancia;
+    }
+
+    /**
+     * Método: getVelocidadAcumulada
+     * Devuelve la suma de las velocidades de todos los puntos.
+     *
+     * @return la velocidad acumulada.
+     */
+    public double getVelocidadAcumulada() {
+        return velocidadAcumulada;
+    }
+
+    /**
+     * Método: getVelocidadMedia
+     * Devuelve la velocidad media, en km/h. Como los puntos no se toman a intervalos fijos
+     * (el muestreo se adapta al movimiento y el recorrido se guarda comprimido), la media
+     * de las velocidades de los puntos no pesaría igual cada tramo: se usa la distancia
+     * entre el tiempo en movimiento. Sólo si éste es 0 se recurre a la media por puntos.
+     *
+     * @return la velocidad media, o 0 si no hay puntos.
+     */
+    public double getVelocidadMedia() {
+        if (getTiempoEnMovimiento() > 0)
+            return distancia / getTiempoEnMovimiento() * 3.6;
+        return puntos > 0 ? velocidadAcumulada/puntos : 0;
+    }
+
+    /**
+     * Método: getInstanteInicial
+     * Devuelve el instante del primer punto.
+     *
+     * @return dicho instante.
+     */
+    public long getInstanteInicial() {
+        return instanteInicial;
+    }
+
+    /**
+     * Método: getInstanteFinal
+     * Devuelve el instante del último punto.
+     *
+     * @return dicho instante.
+     */
+    public long getInstanteFinal() {
+        return instanteFinal;
+    }
+
+    /**
+     * Método: getDuracion
+     * Devuelve la duración del entrenamiento (instante final menos inicial).
+     *
+     * @return la duración.
+     */
+    public long getDuracion() {
+        return instanteFinal - instanteInicial;
+    }
+
+    /**
+     * Método: getTiempoParado
+     * Devuelve el tiempo parado (la suma de la duración de las pausas).
+     *
+     * @return el tiempo parado.
+     */
+    public long getTiempoParado() {
+        return tiempoParado;
+    }
+
+    /**
+     * Método: setTiempoParado
+     * Cambia el tiempo parado del resumen (no se puede calcular a partir de los puntos).
+     *
+     * @param tiempoParado el tiempo parado.
+     */
+    public void setTiempoParado(long tiempoParado) {
+        this.tiempoParado = tiempoParado;
+    }
+
+    /**
+     * Método: getTiempoEnMovimiento
+     * Devuelve la duración del entrenamiento sin contar el tiempo parado.
+     *
+     * @return el tiempo en movimiento.
+     */
+    public long getTiempoEnMovimiento() {
+        return Math.max(0, getDuracion() - tiempoParado);
+    }
+
+    /**
+     * Método: coincideCon
+     * Compara dos resúmenes, con un margen para las sumas en coma flotante. Se usa
+     * para comprobar que el resumen mantenido en la base de datos es consistente con
+     * el calculado a partir de los puntos, así que no compara el tiempo parado (que
+     * sale de las pausas, no de los puntos).
+     *
+     * @param otro resumen con el que comparar.
+     * @return true si ambos resúmenes coinciden.
+     */
+    public boolean coincideCon(SessionSummary otro) {
+        return puntos == otro.puntos
+                && instanteInicial == otro.instanteInicial
+                && instanteFinal == otro.instanteFinal
+                && Math.abs(distancia - otro.distancia) <= 1e-6 * Math.max(1, Math.abs(distancia))
+                && Math.abs(velocidadAcumulada - otro.velocidadAcumulada)
+                    <= 1e-6 * Math.max(1, Math.abs(velocidadAcumulada));
+    }
+}
@@ -1,7 +1,7 @@
 package com.dam.proyectodam;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
@@ -9,11 +9,20 @@ import android.os.Bundle;
 import android.util.Log;
 import android.view.Window;
 
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GooglePlayServicesUtil;
+import com.google.android.gms.maps.MapsInitializer;
+
 /**
  *
  * Clase SplashScreenActivity.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
  * Clase inicial de la aplicación, que muestra un Splash Screen (o pantalla de inicio de la
  * aplicación) cuando accedemos a ella.
+ * Mientras se muestra, se prepara en paralelo lo que después tarda en cargarse: la base de
+ * datos (se abre, y se actualiza si hace falta, y se lee el resumen de la última sesión),
+ * los mapas y Google Play Services. Se pasa a MainActivity en cuanto termina todo, sin
+ * bajar de TIEMPO_MINIMO (para que la pantalla no sea un parpadeo) ni pasar de
+ * TIEMPO_MAXIMO (por si alguna tarea se queda bloqueada).
  *
  * Link del repositorio (GitHub):
  *  https://github.com/ramperher/ProyectoDAM
@@ -24,8 +33,9 @@ import android.view.Window;
  */
 public class SplashScreenActivity extends Activity {
 
-    // Duración del Splash, en milisegundos.
-    private static final long SPLASH_SCREEN_DELAY = 5000;
+    // Tiempos mínimo y máximo del Splash, en milisegundos.
+    private static final long TIEMPO_MINIMO = 500;
+    private static final long TIEMPO_MAXIMO = 5000;
 
     /**
      * Método: onCreate
@@ -37,30 +47,112 @@ public class SplashScreenActivity extends Activity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        // Si el proceso ya existía, es un arranque templado (en frío ya se empezó a medir).
+        StartupTrace.empezar(false);
+        final long inicio = System.currentTimeMillis();
+
         // Establece orientación vertical obligatoria.
         setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
         // Elimina la barra superior.
         requestWindowFeature(Window.FEATURE_NO_TITLE);
         // Fija el layout.
         setContentView(R.layout.splash_screen);
-        // Lanza a MainActivity tras pasar el tiempo.
-        TimerTask task = new TimerTask() {
+        StartupTrace.marcar("splash");
+
+        // Lanzamos las tareas de preparación, cada una en su hilo.
+        final CountDownLatch pendientes = new CountDownLatch(3);
+        lanzar("bbdd", pendientes, new Runnable() {
             @Override
             public void run() {
-                Log.d("Splash", "Pasamos a MainActivity");
+                // Abrir la base de datos la crea o la actualiza; el resumen deja sus páginas en caché.
+                BBDD baseDatos = new BBDD(getApplicationContext());
+                baseDatos.getWritableDatabase().close();
+                StartupTrace.marcar("bbdd.abierta");
+                baseDatos.leerResumen();
+            }
+        });
+        lanzar("mapas", pendientes, new Runnable() {
+            @Override
+            public void run() {
+                MapsInitializer.initialize(getApplicationContext());
+            }
+        });
+        lanzar("servicios", pendientes, new Runnable() {
+            @Override
+            public void run() {
+                int estado = GooglePlayServicesUtil.isGooglePlayServicesAvailable(getApplicationContext());
+                if (estado != ConnectionResult.SUCCESS)
+                    Log.d("Splash", "Google Play Services no disponible: " + estado);
+            }
+        });
 
-                // Marcamos el intent con el lanzamiento de la próxima actividad (MainActivity).
-                Intent mainIntent = new Intent(SplashScreenActivity.this, MainActivity.class);
-                startActivity(mainIntent);
+        // Y esperamos a que terminen todas (con los límites de tiempo) para pasar a MainActivity.
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!pendientes.await(TIEMPO_MAXIMO, TimeUnit.MILLISECONDS))
+                        Log.d("Splash", "La preparación no terminó a tiempo; seguimos sin esperarla");
+                    StartupTrace.marcar("preparacion");
+                    long restante = TIEMPO_MINIMO - (System.currentTimeMillis() - inicio);
+                    if (restante > 0)
+                        Thread.sleep(restante);
+                } catch (InterruptedException e) {
+                    Log.e("Splash", "Espera interrumpida", e);
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        pasarAMain();
+                    }
+                });
+            }
+        }, "Splash").start();
+        Log.d("Splash", "Splash programado");
+    }
 
-                // Cerramos esta actividad para que el usuario no pueda volver a ella pulsando atrás.
-                finish();
+    /**
+     * Método: lanzar
+     * Ejecuta una tarea de preparación en un hilo propio, marca su fin en la traza del
+     * arranque y la descuenta de las pendientes (aunque falle: es sólo una preparación).
+     *
+     * @param nombre nombre de la tarea (punto de traza).
+     * @param pendientes tareas que quedan por terminar.
+     * @param tarea la tarea.
+     */
+    private static void lanzar(final String nombre, final CountDownLatch pendientes, final Runnable tarea) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tarea.run();
+                } catch (RuntimeException e) {
+                    Log.e("Splash", "Error en la preparación de " + nombre, e);
+                } finally {
+                    StartupTrace.marcar(nombre);
+                    pendientes.countDown();
+                }
             }
-        };
+        }, "Splash-" + nombre).start();
+    }
 
-        // Programamos el proceso de carga al iniciarse la aplicación.
-        Timer timer = new Timer();
-        timer.schedule(task, SPLASH_SCREEN_DELAY);
-        Log.d("Splash", "Splash programado");
+    /**
+     * Método: pasarAMain
+     * Lanza MainActivity y cierra esta actividad, salvo que el usuario ya la haya cerrado
+     * (entonces el arranque se da por terminado aquí).
+     */
+    private void pasarAMain() {
+        if (isFinishing()) {
+            StartupTrace.terminar("cancelado");
+            return;
+        }
+        Log.d("Splash", "Pasamos a MainActivity");
+
+        // Marcamos el intent con el lanzamiento de la próxima actividad (MainActivity).
+        Intent mainIntent = new Intent(SplashScreenActivity.this, MainActivity.class);
+        startActivity(mainIntent);
+
+        // Cerramos esta actividad para que el usuario no pueda volver a ella pulsando atrás.
+        finish();
     }
 }
@@ -0,0 +1,302 @@
+package com.dam.proyectodam;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ *
+ * Clase SplitEngine.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Cálculo de parciales (por cada LONGITUD metros, un kilómetro por defecto) y de vueltas
+ * manuales según llegan las posiciones, sin volver a recorrer el entrenamiento. Con cada
+ * posición sólo se suma su distancia y se comprueba si se ha cruzado la siguiente marca;
+ * el instante del cruce se interpola entre las dos posiciones, suponiendo velocidad
+ * constante entre ellas. Sólo se guardan los parciales completados.
+ *
+ * Los parciales completados se quedan aquí hasta que se pasan al escritor (ver
+ * PointWriter.anadirParciales), que los guarda en la base de datos, y se vacían. El estado del parcial en curso se puede sacar y
+ * volver a poner (getEstado, setEstado) para conservarlo al recrear la actividad.
+ * BBDD.leerParciales también devuelve un SplitEngine, con los parciales de una sesión.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class SplitEngine {
+
+    // Tipos de parcial: por distancia o vuelta manual.
+    public static final int DISTANCIA = 0;
+    public static final int VUELTA = 1;
+
+    // Longitud por defecto de los parciales por distancia, en metros.
+    public static final double KILOMETRO = 1000;
+
+    // Longitud de los parciales por distancia.
+    private final double longitud;
+
+    // Parciales completados: tipo, número, distancia (m), duración y final (s desde 1970).
+    private int[] tipos = new int[8];
+    private int[] numeros = new int[8];
+    private double[] distancias = new double[8];
+    private double[] duraciones = new double[8];
+    private double[] finales = new double[8];
+    private int completados = 0;
+
+    /* Estado en curso: si ya llegó alguna posición, distancia total e instante (s) de la
+    última, y comienzo (distancia e instante) y número del parcial y de la vuelta en curso. */
+    private boolean iniciado = false;
+    private double distanciaTotal = 0;
+    private double ultimoInstante = 0;
+    private double inicioDistanciaParcial = 0, inicioInstanteParcial = 0;
+    private double inicioDistanciaVuelta = 0, inicioInstanteVuelta = 0;
+    private int numeroParcial = 1, numeroVuelta = 1;
+
+    /**
+     * Constructor de la clase SplitEngine, con parciales de un kilómetro.
+     */
+    public SplitEngine() {
+        this(KILOMETRO);
+    }
+
+    /**
+     * Constructor de la clase SplitEngine.
+     *
+     * @param longitud longitud de los parciales por distancia, en metros.
+     */
+    public SplitEngine(double longitud) {
+        if (longitud <= 0)
+            throw new IllegalArgumentException("La longitud de los parciales debe ser positiva: " + longitud);
+        this.longitud = longitud;
+    }
+
+    /**
+     * Método: anadir
+     * Suma una posición. La primera sólo marca el comienzo.
+     *
+     * @param distancia distancia desde la posición anterior, en metros.
+     * @param instante instante de la posición, en milisegundos desde 1970.
+     * @return el número de parciales por distancia completados con esta posición
+     * (normalmente 0 o 1).
+     */
+    public int anadir(float distancia, long instante) {
+        double t = instante / 1000.0;
+        if (!iniciado) {
+            iniciado = true;
+            ultimoInstante = inicioInstanteParcial = inicioInstanteVuelta = t;
+            inicioDistanciaParcial = inicioDistanciaVuelta = distanciaTotal;
+            return 0;
+        }
+
+        int nuevos = 0;
+        double anterior = distanciaTotal;
+        distanciaTotal += distancia;
+
+        // Puede cruzarse más de una marca si el salto es largo (p. ej., tras perder la señal).
+        double marca = inicioDistanciaParcial + longitud;
+        while (distancia > 0 && distanciaTotal >= marca) {
+            double cruce = ultimoInstante + (marca - anterior) / distancia * (t - ultimoInstante);
+            completar(DISTANCIA, numeroParcial++, longitud, cruce - inicioInstanteParcial, cruce);
+            inicioDistanciaParcial = marca;
+            inicioInstanteParcial = cruce;
+            marca += longitud;
+            nuevos++;
+        }
+        ultimoInstante = Math.max(ultimoInstante, t);
+        return nuevos;
+    }
+
+    /**
+     * Método: marcarVuelta
+     * Cierra la vuelta manual en curso con la distancia recorrida hasta la última posición.
+     *
+     * @param instante instante en que se marca, en milisegundos desde 1970 y con el mismo
+     * reloj que las posiciones (el del GPS); si es anterior a la última posición, se usa
+     * el de ésta.
+     * @return true si se cerró una vuelta (hace falta haber recibido alguna posición).
+     */
+    public boolean marcarVuelta(long instante) {
+        if (!iniciado)
+            return false;
+        double t = Math.max(ultimoInstante, instante / 1000.0);
+        completar(VUELTA, numeroVuelta++, distanciaTotal - inicioDistanciaVuelta, t - inicioInstanteVuelta, t);
+        inicioDistanciaVuelta = distanciaTotal;
+        inicioInstanteVuelta = t;
+        return true;
+    }
+
+    /**
+     * Método: completar
+     * Añade un parcial completado (se usa también al leerlos de la base de datos).
+     *
+     * @param tipo DISTANCIA o VUELTA.
+     * @param numero número del parcial dentro de su tipo.
+     * @param distancia distancia, en metros.
+     * @param duracion duración, en segundos.
+     * @param fin instante final, en segundos desde 1970.
+     */
+    void completar(int tipo, int numero, double distancia, double duracion, double fin) {
+        if (completados == tipos.length) {
+            int capacidad = 2 * completados;
+            tipos = Arrays.copyOf(tipos, capacidad);
+            numeros = Arrays.copyOf(numeros, capacidad);
+            distancias = Arrays.copyOf(distancias, capacidad);
+            duraciones = Arrays.copyOf(duraciones, capacidad);
+            finales = Arrays.copyOf(finales, capacidad);
+        }
+        tipos[completados] = tipo;
+        numeros[completados] = numero;
+        distancias[completados] = distancia;
+        duraciones[completados] = duracion;
+        finales[completados] = fin;
+        completados++;
+    }
+
+    /**
+     * Método: anadirCompletados
+     * Añade, detrás de los que ya haya, los parciales completados de otro motor.
+     *
+     * @param origen motor del que se copian los parciales completados.
+     */
+    void anadirCompletados(SplitEngine origen) {
+        for (int i = 0; i < origen.completados; i++)
+            completar(origen.tipos[i], origen.numeros[i], origen.distancias[i], origen.duraciones[i],
+                    origen.finales[i]);
+    }
+
+    /**
+     * Método: vaciar
+     * Olvida los parciales completados (una vez guardados), sin tocar el estado en curso.
+     */
+    public void vaciar() {
+        completados = 0;
+    }
+
+    /**
+     * Método: getEstado
+     * Devuelve el estado del parcial y la vuelta en curso (no los completados), para
+     * poder seguir con él en otra instancia.
+     *
+     * @return el estado.
+     */
+    public double[] getEstado() {
+        return new double[] {iniciado ? 1 : 0, distanciaTotal, ultimoInstante, inicioDistanciaParcial,
+                inicioInstanteParcial, inicioDistanciaVuelta, inicioInstanteVuelta, numeroParcial, numeroVuelta};
+    }
+
+    /**
+     * Método: setEstado
+     * Recupera el estado devuelto por getEstado.
+     *
+     * @param estado el estado (si es null, no se cambia nada).
+     */
+    public void setEstado(double[] estado) {
+        if (estado == null || estado.length < 9)
+            return;
+        iniciado = estado[0] != 0;
+        distanciaTotal = estado[1];
+        ultimoInstante = estado[2];
+        inicioDistanciaParcial = estado[3];
+        inicioInstanteParcial = estado[4];
+        inicioDistanciaVuelta = estado[5];
+        inicioInstanteVuelta = estado[6];
+        numeroParcial = (int) estado[7];
+        numeroVuelta = (int) estado[8];
+    }
+
+    /**
+     * Método: getCompletados
+     * Devuelve el número de parciales completados (y no vaciados).
+     *
+     * @return dicho número.
+     */
+    public int getCompletados() {
+        return completados;
+    }
+
+    /**
+     * Método: getTipo
+     * Devuelve el tipo de un parcial completado.
+     *
+     * @param i índice del parcial (de 0 a getCompletados() - 1).
+     * @return DISTANCIA o VUELTA.
+     */
+    public int getTipo(int i) {
+        return tipos[i];
+    }
+
+    /**
+     * Método: getNumero
+     * Devuelve el número de un parcial completado, dentro de su tipo.
+     *
+     * @param i índice del parcial (de 0 a getCompletados() - 1).
+     * @return el número.
+     */
+    public int getNumero(int i) {
+        return numeros[i];
+    }
+
+    /**
+     * Método: getDistancia
+     * Devuelve la distancia de un parcial completado.
+     *
+     * @param i índice del parcial (de 0 a getCompletados() - 1).
+     * @return la distancia, en metros.
+     */
+    public double getDistancia(int i) {
+        return distancias[i];
+    }
+
+    /**
+     * Método: getDuracion
+     * Devuelve la duración de un parcial completado.
+     *
+     * @param i índice del parcial (de 0 a getCompletados() - 1).
+     * @return la duración, en segundos.
+     */
+    public double getDuracion(int i) {
+        return duraciones[i];
+    }
+
+    /**
+     * Método: getFinal
+     * Devuelve el instante final de un parcial completado.
+     *
+     * @param i índice del parcial (de 0 a getCompletados() - 1).
+     * @return el instante, en segundos desde 1970.
+     */
+    public double getFinal(int i) {
+        return finales[i];
+    }
+
+    /**
+     * Método: getDistanciaTotal
+     * Devuelve la distancia total recibida.
+     *
+     * @return la distancia, en metros.
+     */
+    public double getDistanciaTotal() {
+        return distanciaTotal;
+    }
+
+    /**
+     * Método: describir
+     * Texto de un parcial completado, para mostrarlo: número, distancia, duración
+     * (minutos:segundos) y ritmo (minutos por kilómetro).
+     *
+     * @param i índice del parcial.
+     * @return el texto.
+     */
+    public String describir(int i) {
+        double ritmo = distancias[i] > 0 ? duraciones[i] / distancias[i] * 1000 : 0;
+        return String.format(Locale.US, "%s %d: %.2f km en %s (%s min/km)",
+                tipos[i] == DISTANCIA ? "Parcial" : "Vuelta", numeros[i], distancias[i] / 1000,
+                minutos(duraciones[i]), minutos(ritmo));
+    }
+
+    private static String minutos(double segundos) {
+        long redondeados = Math.round(segundos);
+        return String.format(Locale.US, "%d:%02d", redondeados / 60, redondeados % 60);
+    }
+}
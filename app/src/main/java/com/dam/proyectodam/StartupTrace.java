@@ -0,0 +1,92 @@
+package com.dam.proyectodam;
+
+import android.util.Log;
+
+/**
+ *
+ * Clase StartupTrace.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Puntos de traza del arranque de la aplicación, para medir cuánto tarda en estar lista.
+ * Cada arranque empieza en empezar y acaba en terminar (cuando MainActivity ya es
+ * interactiva); entre medias, marcar anota el tiempo transcurrido hasta cada punto.
+ *
+ * Un arranque es en frío si empieza con el proceso (desde ARTrackApplication) y templado
+ * si el proceso ya existía y sólo se vuelve a crear la pantalla de inicio. Cada punto se
+ * escribe en el log con la etiqueta "Startup" y se registra en Metrics, en un histograma
+ * por tipo de arranque y punto (arranque.frio.main, arranque.templado.interactiva...).
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public final class StartupTrace {
+
+    // Instante de inicio del arranque en curso (en nanosegundos), y si hay uno en curso.
+    private static long inicio;
+    private static boolean activo = false;
+
+    // Prefijo de las métricas del arranque en curso (según sea en frío o templado).
+    private static String prefijo;
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Método: empezar
+     * Empieza a medir un arranque, salvo que ya haya uno en curso (la pantalla de inicio
+     * de un arranque en frío no empieza otro templado).
+     *
+     * @param frio true si el arranque empieza con el proceso.
+     */
+    public static synchronized void empezar(boolean frio) {
+        if (activo)
+            return;
+        inicio = System.nanoTime();
+        activo = true;
+        prefijo = frio ? "arranque.frio." : "arranque.templado.";
+        Log.d("Startup", "Arranque " + (frio ? "en frío" : "templado"));
+    }
+
+    /**
+     * Método: marcar
+     * Anota el tiempo transcurrido desde el inicio del arranque en curso hasta un punto.
+     * Se puede llamar desde cualquier hilo; si no hay un arranque en curso, no hace nada.
+     *
+     * @param punto nombre del punto de traza.
+     * @return el tiempo transcurrido, en milisegundos (-1 si no hay arranque en curso).
+     */
+    public static synchronized long marcar(String punto) {
+        if (!activo)
+            return -1;
+        long nanos = System.nanoTime() - inicio;
+        if (Metrics.isActivo())
+            Metrics.histograma(prefijo + punto).registrar(nanos);
+        Log.d("Startup", punto + ": " + nanos / 1000000 + " ms");
+        return nanos / 1000000;
+    }
+
+    /**
+     * Método: terminar
+     * Anota el último punto y da por terminado el arranque en curso.
+     *
+     * @param punto nombre del punto de traza.
+     * @return el tiempo total del arranque, en milisegundos (-1 si no había arranque en curso).
+     */
+    public static synchronized long terminar(String punto) {
+        long total = marcar(punto);
+        activo = false;
+        return total;
+    }
+
+    /**
+     * Método: isActivo
+     * Indica si hay un arranque en curso.
+     *
+     * @return true si lo hay.
+     */
+    public static synchronized boolean isActivo() {
+        return activo;
+    }
+}
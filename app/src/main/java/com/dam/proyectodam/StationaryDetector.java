@@ -0,0 +1,307 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Clase StationaryDetector.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Detector de paradas (semáforos, descansos) a la entrada de los puntos. Mientras el
+ * usuario está parado, el GPS sigue dando posiciones que bailan unos metros alrededor
+ * del sitio real, y cada una sumaría una fila y un poco de distancia falsa. Con una
+ * banda muerta (un radio alrededor del punto donde se paró) se reconocen esas paradas y
+ * se sustituyen por un único registro de pausa, que además no cuenta como tiempo en
+ * movimiento.
+ *
+ * Funcionamiento: cada punto lento abre (o continúa) una parada candidata, anclada en
+ * ese punto, que sí se pasa al receptor. Los siguientes puntos lentos y dentro del radio
+ * se retienen. Si la parada dura al menos el tiempo mínimo, se confirma y los retenidos
+ * se descartan (con su distancia, que sólo era ruido); si no, se pasan al receptor tal
+ * cual. Para salir de una parada confirmada hay que alejarse más que el radio de entrada
+ * (histéresis), o superar la velocidad máxima.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class StationaryDetector {
+
+    // Radio (en metros) de la banda muerta, y factor del radio para salir de una parada.
+    public static final double RADIO = 10;
+    private static final double FACTOR_SALIDA = 1.5;
+
+    // Velocidad (en km/h, como se guarda) por encima de la cual no se está parado.
+    public static final float VELOCIDAD_MAXIMA = 3.6f;
+
+    // Tiempo mínimo (en segundos) para confirmar una parada.
+    public static final long TIEMPO_MINIMO = 15;
+
+    // Puntos que se pueden retener mientras la parada es candidata.
+    private static final int MAX_RETENIDOS = 64;
+
+    // Receptor de los puntos que deben guardarse.
+    private final PointCallback destino;
+
+    // Parámetros de la detección.
+    private final double radio;
+    private final long tiempoMinimo;
+
+    // Estado: sin parada, parada candidata o parada confirmada.
+    private static final int MOVIMIENTO = 0;
+    private static final int CANDIDATA = 1;
+    private static final int PARADO = 2;
+    private int estado = MOVIMIENTO;
+
+    // Ancla de la parada (primer punto lento): posición e instante.
+    private double anclaLatitud, anclaLongitud;
+    private long anclaInstante;
+
+    // Puntos retenidos de la parada candidata, por columnas.
+    private final double[] latitudes = new double[MAX_RETENIDOS];
+    private final double[] longitudes = new double[MAX_RETENIDOS];
+    private final float[] distancias = new float[MAX_RETENIDOS];
+    private final float[] velocidades = new float[MAX_RETENIDOS];
+    private final long[] instantes = new long[MAX_RETENIDOS];
+    private int retenidos = 0;
+
+    // Último punto de la parada (para cerrarla) y pausa cerrada más reciente.
+    private double ultimaLatitud, ultimaLongitud;
+    private long ultimoInstante;
+    private long pausaInicio, pausaFin;
+    private double pausaLatitud, pausaLongitud;
+
+    // Punto reutilizado para pasar los puntos al receptor.
+    private final Point punto = new Point(0, 0, 0, 0, 0, 0);
+
+    // Contadores: puntos descartados y tiempo parado acumulado (segundos).
+    private int descartados = 0;
+    private long tiempoParado = 0;
+
+    /**
+     * Constructor de la clase StationaryDetector, con los parámetros por defecto.
+     *
+     * @param destino receptor de los puntos que deben guardarse.
+     */
+    public StationaryDetector(PointCallback destino) {
+        this(destino, RADIO, TIEMPO_MINIMO);
+    }
+
+    /**
+     * Constructor de la clase StationaryDetector.
+     *
+     * @param destino receptor de los puntos que deben guardarse.
+     * @param radio radio (en metros) de la banda muerta.
+     * @param tiempoMinimo tiempo mínimo (en segundos) para confirmar una parada.
+     */
+    public StationaryDetector(PointCallback destino, double radio, long tiempoMinimo) {
+        this.destino = destino;
+        this.radio = radio;
+        this.tiempoMinimo = tiempoMinimo;
+    }
+
+    /**
+     * Método: anadir
+     * Recibe el siguiente punto (con las mismas unidades que se guardan en la base de
+     * datos: velocidad en km/h e instante en segundos).
+     *
+     * @param latitud latitud del punto.
+     * @param longitud longitud del punto.
+     * @param distancia distancia desde el punto anterior.
+     * @param velocidad velocidad en el punto.
+     * @param instante instante del punto.
+     * @return true si con este punto termina una pausa (ver getInicioPausa y getFinPausa).
+     */
+    public boolean anadir(double latitud, double longitud, float distancia, float velocidad, long instante) {
+        boolean lento = velocidad <= VELOCIDAD_MAXIMA;
+        boolean finPausa = false;
+
+        switch (estado) {
+            case PARADO:
+                // Seguimos parados mientras no nos alejemos del ancla (con histéresis).
+                if (lento && distanciaAncla(latitud, longitud) <= radio * FACTOR_SALIDA) {
+                    recordarUltimo(latitud, longitud, instante);
+                    descartados++;
+                    return false;
+                }
+                cerrarPausa();
+                estado = MOVIMIENTO;
+                finPausa = true;
+                break;
+
+            case CANDIDATA:
+                if (lento && distanciaAncla(latitud, longitud) <= radio) {
+                    if (instante - anclaInstante >= tiempoMinimo) {
+                        // Parada confirmada: los retenidos (y este punto) no se guardan.
+                        descartados += retenidos + 1;
+                        retenidos = 0;
+                        recordarUltimo(latitud, longitud, instante);
+                        estado = PARADO;
+                    } else if (retenidos < MAX_RETENIDOS) {
+                        retener(latitud, longitud, distancia, velocidad, instante);
+                    } else {
+                        // Demasiados puntos para una parada candidata: no lo era.
+                        liberar();
+                        estado = MOVIMIENTO;
+                        emitir(latitud, longitud, distancia, velocidad, instante);
+                    }
+                    return false;
+                }
+
+                // La parada candidata no se confirma: pasamos los retenidos y seguimos.
+                liberar();
+                estado = MOVIMIENTO;
+                break;
+
+            default:
+                break;
+        }
+
+        // En movimiento: un punto lento abre una parada candidata anclada en él.
+        emitir(latitud, longitud, distancia, velocidad, instante);
+        if (lento) {
+            anclaLatitud = latitud;
+            anclaLongitud = longitud;
+            anclaInstante = instante;
+            estado = CANDIDATA;
+        }
+        return finPausa;
+    }
+
+    /**
+     * Método: terminar
+     * Cierra el detector al acabar el entrenamiento: pasa los puntos retenidos o, si se
+     * estaba parado, el último punto de la parada (con distancia 0, para que la duración
+     * del entrenamiento llegue hasta el final) y cierra la pausa.
+     *
+     * @return true si se ha cerrado una pausa (ver getInicioPausa y getFinPausa).
+     */
+    public boolean terminar() {
+        if (estado == CANDIDATA) {
+            liberar();
+        } else if (estado == PARADO) {
+            emitir(ultimaLatitud, ultimaLongitud, 0, 0, ultimoInstante);
+            cerrarPausa();
+            estado = MOVIMIENTO;
+            return true;
+        }
+        estado = MOVIMIENTO;
+        return false;
+    }
+
+    private void cerrarPausa() {
+        pausaInicio = anclaInstante;
+        pausaFin = ultimoInstante;
+        pausaLatitud = anclaLatitud;
+        pausaLongitud = anclaLongitud;
+        tiempoParado += pausaFin - pausaInicio;
+    }
+
+    private void recordarUltimo(double latitud, double longitud, long instante) {
+        ultimaLatitud = latitud;
+        ultimaLongitud = longitud;
+        ultimoInstante = instante;
+    }
+
+    private void retener(double latitud, double longitud, float distancia, float velocidad, long instante) {
+        latitudes[retenidos] = latitud;
+        longitudes[retenidos] = longitud;
+        distancias[retenidos] = distancia;
+        velocidades[retenidos] = velocidad;
+        instantes[retenidos] = instante;
+        retenidos++;
+    }
+
+    private void liberar() {
+        for (int i = 0; i < retenidos; i++)
+            emitir(latitudes[i], longitudes[i], distancias[i], velocidades[i], instantes[i]);
+        retenidos = 0;
+    }
+
+    private void emitir(double latitud, double longitud, float distancia, float velocidad, long instante) {
+        punto.setLatitud(latitud);
+        punto.setLongitud(longitud);
+        punto.setDistancia(distancia);
+        punto.setVelocidad(velocidad);
+        punto.setInstante(instante);
+        destino.procesarPunto(punto);
+    }
+
+    /**
+     * Método: distanciaAncla
+     * Distancia aproximada (equirectangular, suficiente dentro de la banda muerta) de una
+     * posición al ancla.
+     */
+    private double distanciaAncla(double latitud, double longitud) {
+        return Geodesic.distanciaRapida(anclaLatitud, anclaLongitud, latitud, longitud);
+    }
+
+    /**
+     * Método: getInicioPausa
+     * Devuelve el instante de inicio de la última pausa cerrada.
+     *
+     * @return dicho instante, en segundos.
+     */
+    public long getInicioPausa() {
+        return pausaInicio;
+    }
+
+    /**
+     * Método: getFinPausa
+     * Devuelve el instante final de la última pausa cerrada.
+     *
+     * @return dicho instante, en segundos.
+     */
+    public long getFinPausa() {
+        return pausaFin;
+    }
+
+    /**
+     * Método: getLatitudPausa
+     * Devuelve la latitud en la que empezó la última pausa.
+     *
+     * @return la latitud.
+     */
+    public double getLatitudPausa() {
+        return pausaLatitud;
+    }
+
+    /**
+     * Método: getLongitudPausa
+     * Devuelve la longitud en la que empezó la última pausa.
+     *
+     * @return la longitud.
+     */
+    public double getLongitudPausa() {
+        return pausaLongitud;
+    }
+
+    /**
+     * Método: isParado
+     * Indica si hay una parada confirmada en curso.
+     *
+     * @return true si el usuario está parado.
+     */
+    public boolean isParado() {
+        return estado == PARADO;
+    }
+
+    /**
+     * Método: getDescartados
+     * Devuelve el número de puntos descartados por estar parado.
+     *
+     * @return dicho número.
+     */
+    public int getDescartados() {
+        return descartados;
+    }
+
+    /**
+     * Método: getTiempoParado
+     * Devuelve el tiempo total de las pausas cerradas.
+     *
+     * @return el tiempo, en segundos.
+     */
+    public long getTiempoParado() {
+        return tiempoParado;
+    }
+}
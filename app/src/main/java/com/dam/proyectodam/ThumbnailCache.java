@@ -0,0 +1,328 @@
+package com.dam.proyectodam;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ *
+ * Clase ThumbnailCache.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Caché de miniaturas de recorridos (ver TrackRenderer), por sesión y tamaño, en dos
+ * niveles: en memoria, una LRU limitada por bytes (la menos usada sale primero cuando se
+ * pasa del límite), y en disco, un fichero comprimido por miniatura en una carpeta propia,
+ * también limitada por bytes (sale el fichero más antiguo).
+ *
+ * Cada miniatura guarda el número de puntos de la sesión cuando se dibujó: si la sesión
+ * tiene otro número de puntos (se ha seguido grabando o se ha borrado algún punto), la
+ * miniatura ya no vale y se trata como si no estuviera.
+ *
+ * Los ficheros son GZIP con: MAGICO, ancho, alto, puntos y los píxeles ARGB. Se escriben
+ * en un fichero temporal que después se renombra, para no dejar nunca uno a medias.
+ *
+ * No depende de Android (se prueba y se mide en el módulo benchmark): en lugar de escribir
+ * en el log, los errores se devuelven (guardar, getCarpeta) y los aciertos y fallos se
+ * cuentan aquí, para que quien la use los pase a Metrics.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class ThumbnailCache {
+
+    // Identificador del formato de los ficheros de miniaturas.
+    private static final int MAGICO = 0x41525431;
+
+    // Extensión de los ficheros de miniaturas.
+    private static final String EXTENSION = ".mini";
+
+    // Contadores: aciertos en memoria y en disco, y fallos.
+    private final AtomicLong aciertosMemoria = new AtomicLong();
+    private final AtomicLong aciertosDisco = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+
+    // Miniatura en memoria: número de puntos de la sesión al dibujarla y píxeles.
+    private static class Entrada {
+        final long puntos;
+        final int[] pixeles;
+
+        Entrada(long puntos, int[] pixeles) {
+            this.puntos = puntos;
+            this.pixeles = pixeles;
+        }
+    }
+
+    // Miniaturas en memoria, en orden de uso (la primera, la menos usada), y bytes que ocupan.
+    private final LinkedHashMap<String, Entrada> memoria = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesMemoria = 0;
+    private final long maxMemoria;
+
+    // Carpeta de las miniaturas en disco (null para usar sólo memoria) y su límite en bytes.
+    private final File carpeta;
+    private final long maxDisco;
+
+    /**
+     * Constructor de la clase ThumbnailCache.
+     *
+     * @param carpeta carpeta de las miniaturas en disco (se crea si no existe; null para no
+     *                usar disco). Si no se puede crear, sólo se usa la memoria (ver getCarpeta).
+     * @param maxMemoria bytes máximos de las miniaturas en memoria.
+     * @param maxDisco bytes máximos de los ficheros de miniaturas.
+     */
+    public ThumbnailCache(File carpeta, long maxMemoria, long maxDisco) {
+        this.maxMemoria = maxMemoria;
+        this.maxDisco = maxDisco;
+        this.carpeta = carpeta != null && (carpeta.isDirectory() || carpeta.mkdirs()) ? carpeta : null;
+    }
+
+    /**
+     * Método: obtener
+     * Busca una miniatura, primero en memoria y después en disco (si está en disco, pasa
+     * también a memoria).
+     *
+     * @param sesion sesión de la miniatura.
+     * @param ancho ancho, en píxeles.
+     * @param alto alto, en píxeles.
+     * @param puntos número de puntos que tiene ahora la sesión.
+     * @return los píxeles, o null si no está o ya no vale.
+     */
+    public synchronized int[] obtener(long sesion, int ancho, int alto, long puntos) {
+        String clave = clave(sesion, ancho, alto);
+        Entrada entrada = memoria.get(clave);
+        if (entrada != null && entrada.puntos == puntos) {
+            aciertosMemoria.incrementAndGet();
+            return entrada.pixeles;
+        }
+
+        int[] pixeles = leer(clave, ancho, alto, puntos);
+        if (pixeles != null) {
+            anadirAMemoria(clave, new Entrada(puntos, pixeles));
+            aciertosDisco.incrementAndGet();
+            return pixeles;
+        }
+        fallos.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Método: guardar
+     * Guarda una miniatura en memoria y en disco.
+     *
+     * @param sesion sesión de la miniatura.
+     * @param ancho ancho, en píxeles.
+     * @param alto alto, en píxeles.
+     * @param puntos número de puntos de la sesión al dibujarla.
+     * @param pixeles píxeles ARGB (ancho*alto).
+     * @return un booleano que indica si se pudo guardar en disco (siempre true sin disco).
+     */
+    public synchronized boolean guardar(long sesion, int ancho, int alto, long puntos, int[] pixeles) {
+        if (pixeles.length != ancho * alto)
+            throw new IllegalArgumentException("La miniatura no mide " + ancho + "x" + alto);
+        String clave = clave(sesion, ancho, alto);
+        anadirAMemoria(clave, new Entrada(puntos, pixeles));
+        return escribir(clave, ancho, alto, puntos, pixeles);
+    }
+
+    /**
+     * Método: anadirAMemoria
+     * Añade una miniatura a la LRU en memoria y saca las menos usadas hasta volver al límite
+     * (la recién añadida se queda aunque pase ella sola del límite).
+     */
+    private void anadirAMemoria(String clave, Entrada entrada) {
+        Entrada anterior = memoria.put(clave, entrada);
+        if (anterior != null)
+            bytesMemoria -= 4L * anterior.pixeles.length;
+        bytesMemoria += 4L * entrada.pixeles.length;
+
+        Iterator<Map.Entry<String, Entrada>> it = memoria.entrySet().iterator();
+        while (bytesMemoria > maxMemoria && memoria.size() > 1) {
+            Map.Entry<String, Entrada> menosUsada = it.next();
+            bytesMemoria -= 4L * menosUsada.getValue().pixeles.length;
+            it.remove();
+        }
+    }
+
+    /**
+     * Método: leer
+     * Lee una miniatura del disco, si existe, es del tamaño pedido y tiene el número de
+     * puntos actual de la sesión. Un fichero que no se pueda leer cuenta como si no estuviera.
+     */
+    private int[] leer(String clave, int ancho, int alto, long puntos) {
+        if (carpeta == null)
+            return null;
+        File fichero = new File(carpeta, clave + EXTENSION);
+        if (!fichero.isFile())
+            return null;
+
+        DataInputStream entrada = null;
+        try {
+            entrada = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(fichero))));
+            if (entrada.readInt() != MAGICO || entrada.readInt() != ancho || entrada.readInt() != alto
+                    || entrada.readLong() != puntos)
+                return null;
+            int[] pixeles = new int[ancho * alto];
+            for (int i = 0; i < pixeles.length; i++)
+                pixeles[i] = entrada.readInt();
+
+            // Se marca como usado, para que sea de los últimos en salir del disco.
+            fichero.setLastModified(System.currentTimeMillis());
+            return pixeles;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            cerrar(entrada);
+        }
+    }
+
+    /**
+     * Método: escribir
+     * Escribe una miniatura en disco y, si se pasa del límite, borra las más antiguas.
+     */
+    private boolean escribir(String clave, int ancho, int alto, long puntos, int[] pixeles) {
+        if (carpeta == null)
+            return true;
+        File temporal = new File(carpeta, clave + ".tmp");
+        File fichero = new File(carpeta, clave + EXTENSION);
+
+        DataOutputStream salida = null;
+        boolean correcto = false;
+        try {
+            salida = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporal))));
+            salida.writeInt(MAGICO);
+            salida.writeInt(ancho);
+            salida.writeInt(alto);
+            salida.writeLong(puntos);
+            for (int pixel : pixeles)
+                salida.writeInt(pixel);
+            salida.close();
+            salida = null;
+            correcto = temporal.renameTo(fichero);
+        } catch (IOException e) {
+            // No se pudo escribir: se borra el temporal y se devuelve false.
+        } finally {
+            cerrar(salida);
+            if (!correcto)
+                temporal.delete();
+        }
+        if (correcto)
+            recortarDisco();
+        return correcto;
+    }
+
+    /**
+     * Método: recortarDisco
+     * Borra las miniaturas en disco más antiguas hasta no pasar del límite.
+     */
+    private void recortarDisco() {
+        File[] ficheros = carpeta.listFiles();
+        if (ficheros == null)
+            return;
+        long total = 0;
+        for (File fichero : ficheros)
+            total += fichero.length();
+        while (total > maxDisco) {
+            File masAntiguo = null;
+            for (File fichero : ficheros)
+                if (fichero != null && (masAntiguo == null || fichero.lastModified() < masAntiguo.lastModified()))
+                    masAntiguo = fichero;
+            if (masAntiguo == null)
+                return;
+            total -= masAntiguo.length();
+            if (!masAntiguo.delete())
+                return;
+            for (int i = 0; i < ficheros.length; i++)
+                if (ficheros[i] == masAntiguo)
+                    ficheros[i] = null;
+        }
+    }
+
+    // Cierra un fichero sin lanzar excepciones (si falla al escribir, ya lo indica escribir).
+    private static void cerrar(Closeable flujo) {
+        if (flujo != null) {
+            try {
+                flujo.close();
+            } catch (IOException e) {
+                // No queda nada que hacer con el fichero.
+            }
+        }
+    }
+
+    private static String clave(long sesion, int ancho, int alto) {
+        return String.format(Locale.US, "sesion_%d_%dx%d", sesion, ancho, alto);
+    }
+
+    /**
+     * Método: getBytesMemoria
+     * Devuelve los bytes que ocupan las miniaturas en memoria.
+     *
+     * @return dichos bytes.
+     */
+    public synchronized long getBytesMemoria() {
+        return bytesMemoria;
+    }
+
+    /**
+     * Método: getEnMemoria
+     * Devuelve el número de miniaturas en memoria.
+     *
+     * @return dicho número.
+     */
+    public synchronized int getEnMemoria() {
+        return memoria.size();
+    }
+
+    /**
+     * Método: getCarpeta
+     * Devuelve la carpeta de las miniaturas en disco.
+     *
+     * @return la carpeta, o null si sólo se usa la memoria.
+     */
+    public File getCarpeta() {
+        return carpeta;
+    }
+
+    /**
+     * Método: getAciertosMemoria
+     * Devuelve el número de miniaturas encontradas en memoria.
+     *
+     * @return dicho número.
+     */
+    public long getAciertosMemoria() {
+        return aciertosMemoria.get();
+    }
+
+    /**
+     * Método: getAciertosDisco
+     * Devuelve el número de miniaturas encontradas en disco (y no en memoria).
+     *
+     * @return dicho número.
+     */
+    public long getAciertosDisco() {
+        return aciertosDisco.get();
+    }
+
+    /**
+     * Método: getFallos
+     * Devuelve el número de miniaturas buscadas que no estaban o ya no valían.
+     *
+     * @return dicho número.
+     */
+    public long getFallos() {
+        return fallos.get();
+    }
+}
@@ -0,0 +1,265 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Clase TimeRollup.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Agregado de los puntos de una sesión capturados en un intervalo fijo de tiempo (un cubo):
+ * número de puntos, distancia, velocidad mínima, máxima y acumulada (para la media),
+ * instantes del primer y el último punto y rectángulo que los contiene. Se guardan en la
+ * tabla de agregados (ver BBDD) para cada uno de los NIVELES (10 s, 1 min y 10 min), y se
+ * actualizan con cada lote insertado, así que las consultas sobre intervalos largos leen
+ * unos pocos miles de agregados en lugar de millones de puntos.
+ *
+ * El cubo de un instante es instante / nivel (redondeando hacia abajo), así que los cubos
+ * de un nivel están alineados con los del nivel siguiente.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class TimeRollup {
+
+    // Duración (en segundos) de los cubos de cada nivel, de más fino a más grueso.
+    public static final int[] NIVELES = {10, 60, 600};
+
+    // Nivel y cubo del agregado.
+    private int nivel;
+    private long cubo;
+
+    // Valores agregados.
+    private long puntos;
+    private double distancia;
+    private double velocidadMinima, velocidadMaxima, velocidadAcumulada;
+    private long instanteInicial, instanteFinal;
+    private double latitudMinima, latitudMaxima, longitudMinima, longitudMaxima;
+
+    /**
+     * Constructor de la clase TimeRollup, vacío.
+     */
+    public TimeRollup() {
+    }
+
+    /**
+     * Constructor de la clase TimeRollup, con valores ya agregados (al leerlo de la base
+     * de datos).
+     */
+    public TimeRollup(int nivel, long cubo, long puntos, double distancia, double velocidadMinima,
+                      double velocidadMaxima, double velocidadAcumulada, long instanteInicial,
+                      long instanteFinal, double latitudMinima, double latitudMaxima,
+                      double longitudMinima, double longitudMaxima) {
+        this.nivel = nivel;
+        this.cubo = cubo;
+        this.puntos = puntos;
+        this.distancia = distancia;
+        this.velocidadMinima = velocidadMinima;
+        this.velocidadMaxima = velocidadMaxima;
+        this.velocidadAcumulada = velocidadAcumulada;
+        this.instanteInicial = instanteInicial;
+        this.instanteFinal = instanteFinal;
+        this.latitudMinima = latitudMinima;
+        this.latitudMaxima = latitudMaxima;
+        this.longitudMinima = longitudMinima;
+        this.longitudMaxima = longitudMaxima;
+    }
+
+    /**
+     * Método: cubo
+     * Calcula el cubo al que pertenece un instante en un nivel.
+     *
+     * @param instante instante, en segundos.
+     * @param nivel duración de los cubos, en segundos.
+     * @return el cubo (redondeando hacia abajo también para instantes negativos).
+     */
+    public static long cubo(long instante, int nivel) {
+        long cubo = instante / nivel;
+        if (instante % nivel < 0)
+            cubo--;
+        return cubo;
+    }
+
+    /**
+     * Método: nivelPara
+     * Elige el nivel más fino con el que un intervalo no pasa de un número de cubos.
+     *
+     * @param duracion duración del intervalo, en segundos.
+     * @param maxCubos número máximo de cubos.
+     * @return la duración de los cubos del nivel (el más grueso si ninguno basta).
+     */
+    public static int nivelPara(long duracion, int maxCubos) {
+        for (int nivel : NIVELES)
+            if (duracion / nivel < maxCubos)
+                return nivel;
+        return NIVELES[NIVELES.length - 1];
+    }
+
+    /**
+     * Método: empezar
+     * Vacía el agregado y lo asigna a un cubo, para reutilizarlo.
+     *
+     * @param nivel duración de los cubos, en segundos.
+     * @param cubo cubo del agregado.
+     */
+    public void empezar(int nivel, long cubo) {
+        this.nivel = nivel;
+        this.cubo = cubo;
+        puntos = 0;
+        distancia = velocidadAcumulada = 0;
+    }
+
+    /**
+     * Método: anadir
+     * Suma un punto al agregado.
+     *
+     * @param latitud latitud del punto.
+     * @param longitud longitud del punto.
+     * @param distancia distancia al punto anterior.
+     * @param velocidad velocidad, en km/h.
+     * @param instante instante, en segundos.
+     */
+    public void anadir(double latitud, double longitud, double distancia, double velocidad, long instante) {
+        if (puntos == 0) {
+            velocidadMinima = velocidadMaxima = velocidad;
+            instanteInicial = instanteFinal = instante;
+            latitudMinima = latitudMaxima = latitud;
+            longitudMinima = longitudMaxima = longitud;
+        } else {
+            velocidadMinima = Math.min(velocidadMinima, velocidad);
+            velocidadMaxima = Math.max(velocidadMaxima, velocidad);
+            instanteInicial = Math.min(instanteInicial, instante);
+            instanteFinal = Math.max(instanteFinal, instante);
+            latitudMinima = Math.min(latitudMinima, latitud);
+            latitudMaxima = Math.max(latitudMaxima, latitud);
+            longitudMinima = Math.min(longitudMinima, longitud);
+            longitudMaxima = Math.max(longitudMaxima, longitud);
+        }
+        puntos++;
+        this.distancia += distancia;
+        velocidadAcumulada += velocidad;
+    }
+
+    /**
+     * Método: juntar
+     * Suma otro agregado (normalmente, de un intervalo contiguo) a éste.
+     *
+     * @param otro el otro agregado.
+     */
+    public void juntar(TimeRollup otro) {
+        if (otro.puntos == 0)
+            return;
+        if (puntos == 0) {
+            velocidadMinima = otro.velocidadMinima;
+            velocidadMaxima = otro.velocidadMaxima;
+            instanteInicial = otro.instanteInicial;
+            instanteFinal = otro.instanteFinal;
+            latitudMinima = otro.latitudMinima;
+            latitudMaxima = otro.latitudMaxima;
+            longitudMinima = otro.longitudMinima;
+            longitudMaxima = otro.longitudMaxima;
+        } else {
+            velocidadMinima = Math.min(velocidadMinima, otro.velocidadMinima);
+            velocidadMaxima = Math.max(velocidadMaxima, otro.velocidadMaxima);
+            instanteInicial = Math.min(instanteInicial, otro.instanteInicial);
+            instanteFinal = Math.max(instanteFinal, otro.instanteFinal);
+            latitudMinima = Math.min(latitudMinima, otro.latitudMinima);
+            latitudMaxima = Math.max(latitudMaxima, otro.latitudMaxima);
+            longitudMinima = Math.min(longitudMinima, otro.longitudMinima);
+            longitudMaxima = Math.max(longitudMaxima, otro.longitudMaxima);
+        }
+        puntos += otro.puntos;
+        distancia += otro.distancia;
+        velocidadAcumulada += otro.velocidadAcumulada;
+    }
+
+    /**
+     * Método: getResumen
+     * Convierte el agregado en un resumen de entrenamiento (sin tiempo parado).
+     *
+     * @return el resumen.
+     */
+    public SessionSummary getResumen() {
+        if (puntos == 0)
+            return new SessionSummary();
+        return new SessionSummary(puntos, distancia, velocidadAcumulada, instanteInicial, instanteFinal);
+    }
+
+    /**
+     * Método: getNivel
+     * Devuelve el nivel del agregado: la duración de sus cubos.
+     *
+     * @return el nivel, en segundos (uno de NIVELES).
+     */
+    public int getNivel() {
+        return nivel;
+    }
+
+    public long getCubo() {
+        return cubo;
+    }
+
+    /**
+     * Método: getInicio
+     * Devuelve el primer instante del cubo.
+     *
+     * @return dicho instante, en segundos.
+     */
+    public long getInicio() {
+        return cubo * nivel;
+    }
+
+    public long getPuntos() {
+        return puntos;
+    }
+
+    public double getDistancia() {
+        return distancia;
+    }
+
+    public double getVelocidadMinima() {
+        return velocidadMinima;
+    }
+
+    public double getVelocidadMaxima() {
+        return velocidadMaxima;
+    }
+
+    public double getVelocidadAcumulada() {
+        return velocidadAcumulada;
+    }
+
+    /**
+     * Método: getVelocidadMedia
+     * Devuelve la velocidad media de los puntos del agregado.
+     *
+     * @return la velocidad media, en km/h (0 si no hay puntos).
+     */
+    public double getVelocidadMedia() {
+        return puntos > 0 ? velocidadAcumulada / puntos : 0;
+    }
+
+    public long getInstanteInicial() {
+        return instanteInicial;
+    }
+
+    public long getInstanteFinal() {
+        return instanteFinal;
+    }
+
+    public double getLatitudMinima() {
+        return latitudMinima;
+    }
+
+    public double getLatitudMaxima() {
+        return latitudMaxima;
+    }
+
+    public double getLongitudMinima() {
+        return longitudMinima;
+    }
+
+    public double getLongitudMaxima() {
+        return longitudMaxima;
+    }
+}
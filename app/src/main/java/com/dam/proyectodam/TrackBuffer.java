@@ -0,0 +1,207 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Clase TrackBuffer.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Almacén en memoria de un recorrido, guardado por columnas en arrays de tipos
+ * primitivos (latitud, longitud, distancia, velocidad e instante) en lugar de una
+ * lista de objetos Point. Crece por bloques de tamaño fijo, de modo que añadir puntos
+ * nunca copia los ya guardados, y recorrerlo no crea ningún objeto por punto.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class TrackBuffer {
+
+    // Tamaño de cada bloque (potencia de 2, para calcular bloque y posición con desplazamientos).
+    private static final int BITS_BLOQUE = 10;
+    public static final int TAM_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA_BLOQUE = TAM_BLOQUE - 1;
+
+    // Bytes que ocupa cada punto: 2 double, 2 float y 1 long.
+    public static final int BYTES_POR_PUNTO = 8 + 8 + 4 + 4 + 8;
+
+    // Bloques de cada columna.
+    private double[][] latitudes = new double[4][];
+    private double[][] longitudes = new double[4][];
+    private float[][] distancias = new float[4][];
+    private float[][] velocidades = new float[4][];
+    private long[][] instantes = new long[4][];
+
+    // Número de bloques reservados y número de puntos guardados.
+    private int bloques = 0;
+    private int tamano = 0;
+
+    /**
+     * Método: anadir
+     * Añade un punto al final del recorrido.
+     *
+     * @param latitud latitud del punto.
+     * @param longitud longitud del punto.
+     * @param distancia distancia recorrida desde el punto anterior.
+     * @param velocidad velocidad en el punto.
+     * @param instante instante de captura del punto.
+     */
+    public void anadir(double latitud, double longitud, float distancia, float velocidad, long instante) {
+        int bloque = tamano >>> BITS_BLOQUE;
+        int pos = tamano & MASCARA_BLOQUE;
+
+        // Si se ha llenado el último bloque, reservamos otro.
+        if (bloque == bloques)
+            reservarBloque();
+
+        latitudes[bloque][pos] = latitud;
+        longitudes[bloque][pos] = longitud;
+        distancias[bloque][pos] = distancia;
+        velocidades[bloque][pos] = velocidad;
+        instantes[bloque][pos] = instante;
+        tamano++;
+    }
+
+    /**
+     * Método: reservarBloque
+     * Reserva un bloque nuevo para cada columna. Sólo se copian los arrays de
+     * referencias a bloques (cuando se llenan), nunca los puntos.
+     */
+    private void reservarBloque() {
+        if (bloques == latitudes.length) {
+            int nuevos = bloques * 2;
+            latitudes = copiar(latitudes, new double[nuevos][]);
+            longitudes = copiar(longitudes, new double[nuevos][]);
+            distancias = copiar(distancias, new float[nuevos][]);
+            velocidades = copiar(velocidades, new float[nuevos][]);
+            instantes = copiar(instantes, new long[nuevos][]);
+        }
+
+        latitudes[bloques] = new double[TAM_BLOQUE];
+        longitudes[bloques] = new double[TAM_BLOQUE];
+        distancias[bloques] = new float[TAM_BLOQUE];
+        velocidades[bloques] = new float[TAM_BLOQUE];
+        instantes[bloques] = new long[TAM_BLOQUE];
+        bloques++;
+    }
+
+    private static <T> T[] copiar(T[] origen, T[] destino) {
+        System.arraycopy(origen, 0, destino, 0, origen.length);
+        return destino;
+    }
+
+    /**
+     * Método: vaciar
+     * Deja el recorrido sin puntos, conservando los bloques ya reservados para
+     * reutilizarlos.
+     */
+    public void vaciar() {
+        tamano = 0;
+    }
+
+    /**
+     * Método: tamano
+     * Devuelve el número de puntos guardados.
+     *
+     * @return el número de puntos.
+     */
+    public int tamano() {
+        return tamano;
+    }
+
+    /**
+     * Método: getLatitud
+     * Devuelve la latitud del punto i-ésimo.
+     *
+     * @param i índice del punto (desde 0).
+     * @return la latitud del punto.
+     */
+    public double getLatitud(int i) {
+        return latitudes[i >>> BITS_BLOQUE][i & MASCARA_BLOQUE];
+    }
+
+    /**
+     * Método: getLongitud
+     * Devuelve la longitud del punto i-ésimo.
+     *
+     * @param i índice del punto (desde 0).
+     * @return la longitud del punto.
+     */
+    public double getLongitud(int i) {
+        return longitudes[i >>> BITS_BLOQUE][i & MASCARA_BLOQUE];
+    }
+
+    /**
+     * Método: getDistancia
+     * Devuelve la distancia del punto i-ésimo al anterior.
+     *
+     * @param i índice del punto (desde 0).
+     * @return dicha distancia.
+     */
+    public float getDistancia(int i) {
+        return distancias[i >>> BITS_BLOQUE][i & MASCARA_BLOQUE];
+    }
+
+    /**
+     * Método: getVelocidad
+     * Devuelve la velocidad en el punto i-ésimo.
+     *
+     * @param i índice del punto (desde 0).
+     * @return dicha velocidad.
+     */
+    public float getVelocidad(int i) {
+        return velocidades[i >>> BITS_BLOQUE][i & MASCARA_BLOQUE];
+    }
+
+    /**
+     * Método: getInstante
+     * Devuelve el instante de captura del punto i-ésimo.
+     *
+     * @param i índice del punto (desde 0).
+     * @return dicho instante.
+     */
+    public long getInstante(int i) {
+        return instantes[i >>> BITS_BLOQUE][i & MASCARA_BLOQUE];
+    }
+
+    /**
+     * Método: recorrer
+     * Pasa todos los puntos, en orden, a un receptor, reutilizando un único objeto
+     * Point (igual que BBDD.recorrerPosiciones). El recorrido se hace bloque a bloque,
+     * leyendo cada columna de forma secuencial.
+     *
+     * @param receptor receptor de los puntos.
+     */
+    public void recorrer(PointCallback receptor) {
+        Point punto = new Point(0, 0, 0, 0, 0, 0);
+        int restantes = tamano;
+        for (int b = 0; restantes > 0; b++) {
+            int n = Math.min(restantes, TAM_BLOQUE);
+            double[] lat = latitudes[b];
+            double[] lon = longitudes[b];
+            float[] dist = distancias[b];
+            float[] vel = velocidades[b];
+            long[] inst = instantes[b];
+            for (int j = 0; j < n; j++) {
+                punto.setId((b << BITS_BLOQUE) + j + 1);
+                punto.setLatitud(lat[j]);
+                punto.setLongitud(lon[j]);
+                punto.setDistancia(dist[j]);
+                punto.setVelocidad(vel[j]);
+                punto.setInstante(inst[j]);
+                receptor.procesarPunto(punto);
+            }
+            restantes -= n;
+        }
+    }
+
+    /**
+     * Método: memoriaReservada
+     * Devuelve los bytes reservados para los datos (sin contar cabeceras de los arrays).
+     *
+     * @return los bytes reservados.
+     */
+    public long memoriaReservada() {
+        return (long) bloques * TAM_BLOQUE * BYTES_POR_PUNTO;
+    }
+}
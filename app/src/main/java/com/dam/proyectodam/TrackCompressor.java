@@ -0,0 +1,231 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Clase TrackCompressor.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Compresión del recorrido mientras se graba, con el algoritmo de ventana abierta
+ * (opening window) y la distancia euclídea sincronizada: cada punto descartado está a
+ * menos de la tolerancia de la posición que le corresponde, en su mismo instante, sobre
+ * el segmento guardado que lo sustituye. Así sólo se guardan los puntos que aportan forma
+ * (o ritmo) al recorrido, y los tramos rectos a velocidad constante se quedan en sus
+ * extremos.
+ *
+ * Garantías sobre el resumen del entrenamiento:
+ *  - Distancia total: cada punto guardado lleva como distancia la suma de los tramos que
+ *    representa, así que la suma de la columna distancia es la misma que sin comprimir
+ *    (salvo redondeo de float).
+ *  - Duración: el primer y el último punto se guardan siempre, así que es exacta.
+ *  - Ningún hueco entre dos puntos guardados supera maxIntervalo.
+ *
+ * La ventana está acotada: si se llena, se guarda su último punto y empieza otra, de modo
+ * que la memoria y el coste por punto no dependen de la longitud del recorrido.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class TrackCompressor {
+
+    // Radio medio de la Tierra, en metros.
+    private static final double RADIO_TIERRA = 6371008.8;
+
+    // Tolerancia por defecto (en metros), por debajo de la precisión habitual del GPS.
+    public static final double TOLERANCIA = 3;
+
+    // Hueco máximo por defecto (en segundos) entre dos puntos guardados.
+    public static final long MAX_INTERVALO = 60;
+
+    // Tamaño por defecto de la ventana.
+    public static final int MAX_VENTANA = 256;
+
+    // Receptor de los puntos que se guardan.
+    private final PointCallback destino;
+
+    // Parámetros de la compresión.
+    private final double tolerancia2;
+    private final long maxIntervalo;
+
+    /* Ventana: puntos recibidos desde el último guardado (el ancla), en columnas. Las
+    coordenadas están proyectadas a metros; la distancia es la acumulada desde el ancla. */
+    private final double[] x, y, latitudes, longitudes, distancias;
+    private final float[] velocidades;
+    private final long[] instantes;
+    private int tamano = 0;
+
+    // Ancla: último punto guardado.
+    private boolean hayAncla = false;
+    private double anclaX, anclaY;
+    private long anclaInstante;
+
+    // Origen de la proyección (primer punto), en radianes, y escala del eje este.
+    private double lat0, lon0, escalaX;
+
+    // Punto reutilizado para pasar los puntos guardados al receptor.
+    private final Point punto = new Point(0, 0, 0, 0, 0, 0);
+
+    // Contadores de puntos recibidos y guardados.
+    private int recibidos = 0;
+    private int guardados = 0;
+
+    /**
+     * Constructor de la clase TrackCompressor, con los parámetros por defecto.
+     *
+     * @param destino receptor de los puntos que se guardan.
+     */
+    public TrackCompressor(PointCallback destino) {
+        this(destino, TOLERANCIA, MAX_INTERVALO, MAX_VENTANA);
+    }
+
+    /**
+     * Constructor de la clase TrackCompressor.
+     *
+     * @param destino receptor de los puntos que se guardan.
+     * @param tolerancia error máximo (en metros) de los puntos descartados.
+     * @param maxIntervalo hueco máximo (en segundos) entre dos puntos guardados.
+     * @param maxVentana número máximo de puntos en la ventana.
+     */
+    public TrackCompressor(PointCallback destino, double tolerancia, long maxIntervalo, int maxVentana) {
+        this.destino = destino;
+        this.tolerancia2 = tolerancia * tolerancia;
+        this.maxIntervalo = maxIntervalo;
+
+        x = new double[maxVentana];
+        y = new double[maxVentana];
+        latitudes = new double[maxVentana];
+        longitudes = new double[maxVentana];
+        distancias = new double[maxVentana];
+        velocidades = new float[maxVentana];
+        instantes = new long[maxVentana];
+    }
+
+    /**
+     * Método: anadir
+     * Recibe el siguiente punto del recorrido (con las mismas unidades que se guardan en
+     * la base de datos). Puede provocar que se guarde algún punto anterior.
+     *
+     * @param latitud latitud del punto.
+     * @param longitud longitud del punto.
+     * @param distancia distancia desde el punto recibido anterior.
+     * @param velocidad velocidad en el punto.
+     * @param instante instante del punto, en segundos.
+     */
+    public void anadir(double latitud, double longitud, float distancia, float velocidad, long instante) {
+        recibidos++;
+
+        // El primer punto fija la proyección y se guarda siempre.
+        if (!hayAncla) {
+            lat0 = Math.toRadians(latitud);
+            lon0 = Math.toRadians(longitud);
+            escalaX = RADIO_TIERRA * Math.cos(lat0);
+            anclar(proyectarX(longitud), proyectarY(latitud), instante);
+            emitir(latitud, longitud, distancia, velocidad, instante);
+            return;
+        }
+
+        double px = proyectarX(longitud);
+        double py = proyectarY(latitud);
+        double acumulada = (tamano > 0 ? distancias[tamano-1] : 0) + distancia;
+
+        /* Si el segmento ancla-punto nuevo no representa bien a la ventana (o se pasaría
+        del hueco máximo, o la ventana está llena), guardamos el último punto de la
+        ventana, que pasa a ser el ancla. */
+        if (tamano > 0 && (tamano == x.length || instante - anclaInstante > maxIntervalo
+                || !representa(px, py, instante))) {
+            int u = tamano - 1;
+            emitir(latitudes[u], longitudes[u], (float) distancias[u], velocidades[u], instantes[u]);
+            anclar(x[u], y[u], instantes[u]);
+            acumulada = distancia;
+        }
+
+        int i = tamano++;
+        x[i] = px;
+        y[i] = py;
+        latitudes[i] = latitud;
+        longitudes[i] = longitud;
+        distancias[i] = acumulada;
+        velocidades[i] = velocidad;
+        instantes[i] = instante;
+    }
+
+    /**
+     * Método: representa
+     * Comprueba si todos los puntos de la ventana están a menos de la tolerancia de su
+     * posición sincronizada sobre el segmento entre el ancla y un punto nuevo.
+     */
+    private boolean representa(double px, double py, long instante) {
+        double dx = px - anclaX;
+        double dy = py - anclaY;
+        double dt = instante - anclaInstante;
+        for (int i = 0; i < tamano; i++) {
+            double f = dt > 0 ? (instantes[i] - anclaInstante) / dt : 0;
+            double ex = anclaX + f*dx - x[i];
+            double ey = anclaY + f*dy - y[i];
+            if (ex*ex + ey*ey > tolerancia2)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Método: terminar
+     * Guarda el último punto recibido (si no se ha guardado ya). Debe llamarse al acabar
+     * el entrenamiento, o antes de destruir la actividad, para no perder el final.
+     */
+    public void terminar() {
+        if (tamano > 0) {
+            int u = tamano - 1;
+            emitir(latitudes[u], longitudes[u], (float) distancias[u], velocidades[u], instantes[u]);
+            anclar(x[u], y[u], instantes[u]);
+        }
+    }
+
+    private void anclar(double ax, double ay, long instante) {
+        anclaX = ax;
+        anclaY = ay;
+        anclaInstante = instante;
+        hayAncla = true;
+        tamano = 0;
+    }
+
+    private void emitir(double latitud, double longitud, float distancia, float velocidad, long instante) {
+        guardados++;
+        punto.setId(guardados);
+        punto.setLatitud(latitud);
+        punto.setLongitud(longitud);
+        punto.setDistancia(distancia);
+        punto.setVelocidad(velocidad);
+        punto.setInstante(instante);
+        destino.procesarPunto(punto);
+    }
+
+    private double proyectarX(double longitud) {
+        return (Math.toRadians(longitud) - lon0) * escalaX;
+    }
+
+    private double proyectarY(double latitud) {
+        return (Math.toRadians(latitud) - lat0) * RADIO_TIERRA;
+    }
+
+    /**
+     * Método: getRecibidos
+     * Devuelve el número de puntos recibidos.
+     *
+     * @return dicho número.
+     */
+    public int getRecibidos() {
+        return recibidos;
+    }
+
+    /**
+     * Método: getGuardados
+     * Devuelve el número de puntos guardados (pasados al receptor).
+     *
+     * @return dicho número.
+     */
+    public int getGuardados() {
+        return guardados;
+    }
+}
@@ -0,0 +1,270 @@
+package com.dam.proyectodam;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ *
+ * Clase TrackExporter.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Exportación de un entrenamiento a GPX 1.1 o a TCX (Garmin Training Center v2). Es un
+ * PointCallback: se le pasan los puntos según se leen de la base de datos (ver
+ * BBDD.exportar) y cada uno se escribe en el momento, así que la memoria usada no
+ * depende de la longitud del recorrido.
+ *
+ * Los números y las fechas se escriben dígito a dígito en un array de caracteres
+ * reutilizado, sin crear un String por campo. Las coordenadas se escriben con 7
+ * decimales (alrededor de 1 cm) y las distancias con 1.
+ *
+ * Uso: empezar (con el resumen, que da los totales que TCX pide al principio), un
+ * procesarPunto por punto en orden de captura, y terminar. Como procesarPunto no puede
+ * lanzar excepciones, el primer error de escritura se guarda, los puntos siguientes se
+ * ignoran y terminar lo lanza.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class TrackExporter implements PointCallback {
+
+    // Formatos de exportación.
+    public static final int GPX = 0;
+    public static final int TCX = 1;
+
+    // Decimales de las coordenadas y de las distancias.
+    private static final int DECIMALES_COORDENADA = 7;
+    private static final int DECIMALES_DISTANCIA = 1;
+
+    // Cabeceras y etiquetas de GPX.
+    private static final String GPX_INICIO = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<gpx version=\"1.1\" creator=\"ARTrack\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n" +
+            "<trk><name>ARTrack</name><trkseg>\n";
+    private static final String GPX_FIN = "</trkseg></trk>\n</gpx>\n";
+
+    // Cabeceras y etiquetas de TCX.
+    private static final String TCX_INICIO = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<TrainingCenterDatabase xmlns=\"http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2\">\n" +
+            "<Activities><Activity Sport=\"Other\"><Id>";
+    private static final String TCX_FIN = "</Track></Lap></Activity></Activities>\n</TrainingCenterDatabase>\n";
+
+    // Días desde el 1 de marzo del año 0 hasta el 1 de enero de 1970 (para las fechas).
+    private static final long DIAS_HASTA_1970 = 719468;
+
+    // Destino y formato.
+    private final Writer destino;
+    private final int formato;
+
+    // Caracteres reutilizados para escribir un número, y la fecha del último día escrito.
+    private final char[] cifras = new char[24];
+    private final char[] fecha = "0000-00-00T".toCharArray();
+    private long ultimoDia = Long.MIN_VALUE;
+
+    // Distancia acumulada (TCX la pide en cada punto) y puntos escritos.
+    private double distancia = 0;
+    private long puntos = 0;
+
+    // Primer error de escritura, si lo hay.
+    private IOException error;
+
+    /**
+     * Constructor de la clase TrackExporter.
+     *
+     * @param destino donde se escribe (conviene que tenga buffer, p. ej. BufferedWriter).
+     * @param formato GPX o TCX.
+     */
+    public TrackExporter(Writer destino, int formato) {
+        if (formato != GPX && formato != TCX)
+            throw new IllegalArgumentException("Formato de exportación desconocido: " + formato);
+        this.destino = destino;
+        this.formato = formato;
+    }
+
+    /**
+     * Método: empezar
+     * Escribe la cabecera del fichero.
+     *
+     * @param resumen resumen del entrenamiento (TCX necesita su duración y distancia).
+     * @throws IOException si falla la escritura.
+     */
+    public void empezar(SessionSummary resumen) throws IOException {
+        if (formato == GPX) {
+            destino.write(GPX_INICIO);
+            return;
+        }
+        destino.write(TCX_INICIO);
+        escribirFecha(resumen.getInstanteInicial());
+        destino.write("</Id>\n<Lap StartTime=\"");
+        escribirFecha(resumen.getInstanteInicial());
+        destino.write("\"><TotalTimeSeconds>");
+        escribirEntero(resumen.getDuracion());
+        destino.write("</TotalTimeSeconds><DistanceMeters>");
+        escribirDecimal(resumen.getDistancia(), DECIMALES_DISTANCIA);
+        destino.write("</DistanceMeters><Calories>0</Calories><Intensity>Active</Intensity>" +
+                "<TriggerMethod>Manual</TriggerMethod>\n<Track>\n");
+    }
+
+    /**
+     * Método: procesarPunto
+     * Escribe un punto.
+     *
+     * @param punto el punto a escribir.
+     */
+    @Override
+    public void procesarPunto(Point punto) {
+        if (error != null)
+            return;
+        try {
+            distancia += punto.getDistancia();
+            if (formato == GPX) {
+                destino.write("<trkpt lat=\"");
+                escribirDecimal(punto.getLatitud(), DECIMALES_COORDENADA);
+                destino.write("\" lon=\"");
+                escribirDecimal(punto.getLongitud(), DECIMALES_COORDENADA);
+                destino.write("\"><time>");
+                escribirFecha(punto.getInstante());
+                destino.write("</time></trkpt>\n");
+            } else {
+                destino.write("<Trackpoint><Time>");
+                escribirFecha(punto.getInstante());
+                destino.write("</Time><Position><LatitudeDegrees>");
+                escribirDecimal(punto.getLatitud(), DECIMALES_COORDENADA);
+                destino.write("</LatitudeDegrees><LongitudeDegrees>");
+                escribirDecimal(punto.getLongitud(), DECIMALES_COORDENADA);
+                destino.write("</LongitudeDegrees></Position><DistanceMeters>");
+                escribirDecimal(distancia, DECIMALES_DISTANCIA);
+                destino.write("</DistanceMeters></Trackpoint>\n");
+            }
+            puntos++;
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Método: terminar
+     * Escribe el final del fichero y vacía el buffer del destino (no lo cierra).
+     *
+     * @throws IOException si falló la escritura de algún punto o la del final.
+     */
+    public void terminar() throws IOException {
+        if (error != null)
+            throw error;
+        destino.write(formato == GPX ? GPX_FIN : TCX_FIN);
+        destino.flush();
+    }
+
+    /**
+     * Método: getPuntos
+     * Devuelve el número de puntos escritos.
+     *
+     * @return dicho número.
+     */
+    public long getPuntos() {
+        return puntos;
+    }
+
+    /**
+     * Método: escribirEntero
+     * Escribe un entero, con signo si es negativo.
+     */
+    private void escribirEntero(long valor) throws IOException {
+        int pos = cifras.length;
+        boolean negativo = valor < 0;
+        // Trabajamos con el valor negativo para que Long.MIN_VALUE no desborde.
+        long resto = negativo ? valor : -valor;
+        do {
+            cifras[--pos] = (char) ('0' - resto % 10);
+            resto /= 10;
+        } while (resto != 0);
+        if (negativo)
+            cifras[--pos] = '-';
+        destino.write(cifras, pos, cifras.length - pos);
+    }
+
+    /**
+     * Método: escribirDecimal
+     * Escribe un número con un número fijo de decimales, redondeando al más cercano.
+     */
+    private void escribirDecimal(double valor, int decimales) throws IOException {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            escribirEntero(0);
+            return;
+        }
+        long escala = 1;
+        for (int i = 0; i < decimales; i++)
+            escala *= 10;
+        long escalado = Math.round(Math.abs(valor) * escala);
+
+        // Decimales, de derecha a izquierda, y después la parte entera.
+        int pos = cifras.length;
+        for (int i = 0; i < decimales; i++) {
+            cifras[--pos] = (char) ('0' + escalado % 10);
+            escalado /= 10;
+        }
+        if (decimales > 0)
+            cifras[--pos] = '.';
+        do {
+            cifras[--pos] = (char) ('0' + escalado % 10);
+            escalado /= 10;
+        } while (escalado != 0);
+
+        // El signo sólo si el valor redondeado no es 0.
+        if (valor < 0 && !soloCeros(pos))
+            cifras[--pos] = '-';
+        destino.write(cifras, pos, cifras.length - pos);
+    }
+
+    private boolean soloCeros(int desde) {
+        for (int i = desde; i < cifras.length; i++)
+            if (cifras[i] != '0' && cifras[i] != '.')
+                return false;
+        return true;
+    }
+
+    /**
+     * Método: escribirFecha
+     * Escribe un instante (en segundos desde 1970, UTC) en formato ISO 8601
+     * (aaaa-mm-ddThh:mm:ssZ). La parte de la fecha sólo se calcula al cambiar de día.
+     */
+    private void escribirFecha(long instante) throws IOException {
+        long dia = instante / 86400;
+        if (instante % 86400 < 0)
+            dia--;
+        long segundos = instante - dia * 86400;
+
+        if (dia != ultimoDia) {
+            // Del número de días al año, mes y día del calendario gregoriano (años desde marzo).
+            long z = dia + DIAS_HASTA_1970;
+            long era = (z >= 0 ? z : z - 146096) / 146097;
+            long diaEra = z - era * 146097;
+            long anoEra = (diaEra - diaEra/1460 + diaEra/36524 - diaEra/146096) / 365;
+            long diaAno = diaEra - (365*anoEra + anoEra/4 - anoEra/100);
+            long mesMarzo = (5*diaAno + 2) / 153;
+            int diaMes = (int) (diaAno - (153*mesMarzo + 2)/5 + 1);
+            int mes = (int) (mesMarzo < 10 ? mesMarzo + 3 : mesMarzo - 9);
+            long ano = anoEra + era * 400 + (mes <= 2 ? 1 : 0);
+
+            dosCifras(fecha, 0, (int) (ano / 100));
+            dosCifras(fecha, 2, (int) (ano % 100));
+            dosCifras(fecha, 5, mes);
+            dosCifras(fecha, 8, diaMes);
+            ultimoDia = dia;
+        }
+        destino.write(fecha, 0, fecha.length);
+
+        dosCifras(cifras, 0, (int) (segundos / 3600));
+        cifras[2] = ':';
+        dosCifras(cifras, 3, (int) (segundos / 60 % 60));
+        cifras[5] = ':';
+        dosCifras(cifras, 6, (int) (segundos % 60));
+        cifras[8] = 'Z';
+        destino.write(cifras, 0, 9);
+    }
+
+    private static void dosCifras(char[] destino, int pos, int valor) {
+        destino[pos] = (char) ('0' + valor / 10);
+        destino[pos+1] = (char) ('0' + valor % 10);
+    }
+}
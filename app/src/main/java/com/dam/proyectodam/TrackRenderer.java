@@ -0,0 +1,196 @@
+package com.dam.proyectodam;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Clase TrackRenderer.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Dibuja una miniatura del recorrido en un array de píxeles ARGB (fila a fila, como los
+ * usa Bitmap.createBitmap), sin mapa de fondo ni GoogleMap: el recorrido se proyecta con
+ * la misma proyección equirectangular que PolylineSimplifier, se escala para que quepa con
+ * un margen (sin deformarlo) y se simplifica con una tolerancia de medio píxel, así que
+ * sólo se dibujan los vértices que se notan. Los segmentos se trazan con Bresenham y un
+ * pincel cuadrado de GROSOR píxeles, y el inicio y el final se marcan con un punto verde
+ * y uno rojo.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public class TrackRenderer {
+
+    // Colores (ARGB) del fondo, del recorrido y de los puntos de inicio y final.
+    public static final int FONDO = 0xFFFFFFFF;
+    public static final int COLOR_RECORRIDO = 0xFF0000FF;
+    public static final int COLOR_INICIO = 0xFF00A000;
+    public static final int COLOR_FINAL = 0xFFD00000;
+
+    // Grosor del recorrido y radio de los puntos de inicio y final, en píxeles.
+    private static final int GROSOR = 2;
+    private static final int RADIO_EXTREMOS = 3;
+
+    // Margen alrededor del recorrido, en fracción del lado menor.
+    private static final double MARGEN = 0.08;
+
+    // Tolerancia de la simplificación, en píxeles.
+    private static final double TOLERANCIA_PIXELES = 0.5;
+
+    // Radio medio de la Tierra, en metros.
+    private static final double RADIO_TIERRA = 6371008.8;
+
+    // Tamaño de la miniatura.
+    private final int ancho;
+    private final int alto;
+
+    // Vértices dibujados en la última miniatura.
+    private int vertices = 0;
+
+    /**
+     * Constructor de la clase TrackRenderer.
+     *
+     * @param ancho ancho de las miniaturas, en píxeles.
+     * @param alto alto de las miniaturas, en píxeles.
+     */
+    public TrackRenderer(int ancho, int alto) {
+        if (ancho <= 0 || alto <= 0)
+            throw new IllegalArgumentException("Tamaño de miniatura no válido: " + ancho + "x" + alto);
+        this.ancho = ancho;
+        this.alto = alto;
+    }
+
+    /**
+     * Método: renderizar
+     * Dibuja la miniatura de un recorrido.
+     *
+     * @param recorrido puntos del recorrido, en orden.
+     * @return los píxeles (ancho*alto, ARGB, fila a fila); sólo fondo si no hay puntos.
+     */
+    public int[] renderizar(TrackBuffer recorrido) {
+        int[] pixeles = new int[ancho * alto];
+        Arrays.fill(pixeles, FONDO);
+        vertices = 0;
+
+        int n = recorrido.tamano();
+        if (n == 0)
+            return pixeles;
+
+        // Proyección (en metros) centrada en el primer punto, y rectángulo que ocupa.
+        double lat0 = Math.toRadians(recorrido.getLatitud(0));
+        double lon0 = Math.toRadians(recorrido.getLongitud(0));
+        double escalaX = RADIO_TIERRA * Math.cos(lat0);
+        double xMin = Double.POSITIVE_INFINITY, xMax = Double.NEGATIVE_INFINITY;
+        double yMin = Double.POSITIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double x = x(recorrido, i, lon0, escalaX);
+            double y = y(recorrido, i, lat0);
+            xMin = Math.min(xMin, x);
+            xMax = Math.max(xMax, x);
+            yMin = Math.min(yMin, y);
+            yMax = Math.max(yMax, y);
+        }
+
+        // Escala (píxeles por metro) con la que cabe el recorrido con su margen, centrado.
+        double margen = MARGEN * Math.min(ancho, alto);
+        double escala = Math.min((ancho - 2*margen) / Math.max(xMax - xMin, 1e-9),
+                (alto - 2*margen) / Math.max(yMax - yMin, 1e-9));
+        double origenX = ancho / 2.0 - (xMin + xMax) / 2 * escala;
+        double origenY = alto / 2.0 + (yMin + yMax) / 2 * escala;
+
+        // Sólo los vértices que se separan más de medio píxel del recorrido simplificado.
+        int[] indices;
+        if (n > 2)
+            indices = new PolylineSimplifier(recorrido).simplificar(TOLERANCIA_PIXELES / escala);
+        else
+            indices = n == 1 ? new int[] {0} : new int[] {0, 1};
+        vertices = indices.length;
+
+        int xAnterior = 0, yAnterior = 0;
+        for (int k = 0; k < indices.length; k++) {
+            int i = indices[k];
+            int px = (int) Math.round(origenX + x(recorrido, i, lon0, escalaX) * escala);
+            int py = (int) Math.round(origenY - y(recorrido, i, lat0) * escala);
+            if (k > 0)
+                linea(pixeles, xAnterior, yAnterior, px, py);
+            xAnterior = px;
+            yAnterior = py;
+        }
+
+        // Inicio y final, encima del recorrido.
+        circulo(pixeles, (int) Math.round(origenX + x(recorrido, 0, lon0, escalaX) * escala),
+                (int) Math.round(origenY - y(recorrido, 0, lat0) * escala), COLOR_INICIO);
+        circulo(pixeles, xAnterior, yAnterior, COLOR_FINAL);
+        return pixeles;
+    }
+
+    private static double x(TrackBuffer recorrido, int i, double lon0, double escalaX) {
+        return (Math.toRadians(recorrido.getLongitud(i)) - lon0) * escalaX;
+    }
+
+    private static double y(TrackBuffer recorrido, int i, double lat0) {
+        return (Math.toRadians(recorrido.getLatitud(i)) - lat0) * RADIO_TIERRA;
+    }
+
+    /**
+     * Método: linea
+     * Traza un segmento con el algoritmo de Bresenham, pintando un cuadrado de GROSOR
+     * píxeles en cada paso.
+     */
+    private void linea(int[] pixeles, int x0, int y0, int x1, int y1) {
+        int dx = Math.abs(x1 - x0), dy = -Math.abs(y1 - y0);
+        int sx = x0 < x1 ? 1 : -1, sy = y0 < y1 ? 1 : -1;
+        int error = dx + dy;
+        while (true) {
+            pincel(pixeles, x0, y0);
+            if (x0 == x1 && y0 == y1)
+                return;
+            int doble = 2 * error;
+            if (doble >= dy) {
+                error += dy;
+                x0 += sx;
+            }
+            if (doble <= dx) {
+                error += dx;
+                y0 += sy;
+            }
+        }
+    }
+
+    private void pincel(int[] pixeles, int x, int y) {
+        for (int j = y; j < y + GROSOR; j++)
+            for (int i = x; i < x + GROSOR; i++)
+                pintar(pixeles, i, j, COLOR_RECORRIDO);
+    }
+
+    private void circulo(int[] pixeles, int x, int y, int color) {
+        for (int j = -RADIO_EXTREMOS; j <= RADIO_EXTREMOS; j++)
+            for (int i = -RADIO_EXTREMOS; i <= RADIO_EXTREMOS; i++)
+                if (i*i + j*j <= RADIO_EXTREMOS * RADIO_EXTREMOS)
+                    pintar(pixeles, x + i, y + j, color);
+    }
+
+    private void pintar(int[] pixeles, int x, int y, int color) {
+        if (x >= 0 && x < ancho && y >= 0 && y < alto)
+            pixeles[y * ancho + x] = color;
+    }
+
+    public int getAncho() {
+        return ancho;
+    }
+
+    public int getAlto() {
+        return alto;
+    }
+
+    /**
+     * Método: getVertices
+     * Devuelve el número de vértices dibujados en la última miniatura (tras simplificar).
+     *
+     * @return dicho número.
+     */
+    public int getVertices() {
+        return vertices;
+    }
+}
@@ -0,0 +1,83 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Interfaz TrackStore.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Operaciones comunes a los almacenes de recorridos: inserción de lotes de puntos, de
+ * pausas y de parciales, borrado de todos ellos y recorrido en orden de captura. La
+ * implementan la base de datos (BBDD) y el fichero binario de registros (BinaryTrackFile);
+ * PointWriter y GpxImporter sólo dependen de esta interfaz, de modo que pueden escribir en
+ * cualquiera de los dos y sus pruebas pueden usar un almacén en memoria.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public interface TrackStore {
+
+    /**
+     * Método: insertarPosiciones
+     * Añade un lote de posiciones al almacén, con la velocidad en km/h y el
+     * instante en segundos.
+     *
+     * @param lote puntos a insertar, en orden de captura.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    boolean insertarPosiciones(TrackBuffer lote);
+
+    /**
+     * Método: insertarPausa
+     * Añade una pausa (un periodo parado, que sustituye a todos los puntos capturados
+     * durante él), con los instantes en segundos. Un almacén que no guarde pausas debe
+     * ignorarla y devolver true: PointWriter trata false como un lote fallido y lo reintenta.
+     *
+     * @param inicio instante en que empezó la pausa.
+     * @param fin instante en que terminó la pausa.
+     * @param latitud latitud donde se produjo.
+     * @param longitud longitud donde se produjo.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    boolean insertarPausa(long inicio, long fin, double latitud, double longitud);
+
+    /**
+     * Método: insertarParciales
+     * Añade los parciales completados que tenga el motor de parciales, sin vaciarlo. Un
+     * almacén que no guarde parciales debe ignorarlos y devolver true, como con las pausas.
+     *
+     * @param parciales motor de parciales con los parciales completados.
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    boolean insertarParciales(SplitEngine parciales);
+
+    /**
+     * Método: borrarPosiciones
+     * Elimina todas las posiciones guardadas.
+     *
+     * @return un booleano que indica si el proceso se ejecutó correctamente o no.
+     */
+    boolean borrarPosiciones();
+
+    /**
+     * Método: recorrerPosiciones
+     * Recorre todos los puntos guardados, en orden de captura.
+     *
+     * @param receptor receptor de los puntos.
+     * @return el número de puntos recorridos.
+     */
+    int recorrerPosiciones(PointCallback receptor);
+
+    /**
+     * Método: recorrerPosiciones
+     * Recorre los puntos capturados entre dos instantes (ambos incluidos, en
+     * segundos), en orden de captura.
+     *
+     * @param desde primer instante a incluir (Long.MIN_VALUE para no limitar).
+     * @param hasta último instante a incluir (Long.MAX_VALUE para no limitar).
+     * @param receptor receptor de los puntos.
+     * @return el número de puntos recorridos.
+     */
+    int recorrerPosiciones(long desde, long hasta, PointCallback receptor);
+}
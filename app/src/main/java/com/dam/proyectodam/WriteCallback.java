@@ -0,0 +1,26 @@
+package com.dam.proyectodam;
+
+/**
+ *
+ * Interfaz WriteCallback.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Receptor del final de las escrituras de PointWriter (ver PointWriter.cerrar), para no
+ * tener que esperar a que termine su hilo desde el hilo principal.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public interface WriteCallback {
+
+    /**
+     * Método: escrituraTerminada
+     * Se llama una sola vez, desde el hilo escritor, cuando éste termina. Para tocar la
+     * interfaz hay que pasar al hilo principal (p. ej., con runOnUiThread).
+     *
+     * @param correcto true si todo lo añadido está en el almacén, sin descartes.
+     */
+    void escrituraTerminada(boolean correcto);
+}
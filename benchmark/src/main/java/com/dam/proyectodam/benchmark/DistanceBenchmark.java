@@ -0,0 +1,71 @@
+package com.dam.proyectodam.benchmark;
+
+import com.dam.proyectodam.Geodesic;
+import com.dam.proyectodam.TrackBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Clase DistanceBenchmark.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Cálculo de la distancia de un recorrido (suma de los tramos entre puntos consecutivos)
+ * con cada modo de Geodesic.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DistanceBenchmark {
+
+    // Número de puntos del recorrido.
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int puntos;
+
+    // Modo de cálculo.
+    @Param({"PRECISO", "HAVERSINE", "RAPIDO"})
+    public String modo;
+
+    private TrackBuffer recorrido;
+    private int modoGeodesic;
+
+    @Setup
+    public void preparar() {
+        recorrido = TrackGenerator.generar(puntos, 17);
+        if (modo.equals("PRECISO"))
+            modoGeodesic = Geodesic.PRECISO;
+        else if (modo.equals("HAVERSINE"))
+            modoGeodesic = Geodesic.HAVERSINE;
+        else
+            modoGeodesic = Geodesic.RAPIDO;
+    }
+
+    @Benchmark
+    public double distanciaTotal() {
+        double total = 0;
+        for (int i = 1; i < recorrido.tamano(); i++)
+            total += Geodesic.distancia(modoGeodesic, recorrido.getLatitud(i-1), recorrido.getLongitud(i-1),
+                    recorrido.getLatitud(i), recorrido.getLongitud(i));
+        return total;
+    }
+}
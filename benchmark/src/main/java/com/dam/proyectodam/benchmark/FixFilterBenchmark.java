@@ -0,0 +1,67 @@
+package com.dam.proyectodam.benchmark;
+
+import com.dam.proyectodam.KalmanFilter;
+import com.dam.proyectodam.TrackBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Clase FixFilterBenchmark.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Aceptación de posiciones: cada posición del GPS pasa por KalmanFilter, que descarta las
+ * repetidas o desordenadas y suaviza el resto (sustituye a la antigua comparación
+ * isBetterLocation). Se mide el tiempo de filtrar un recorrido entero; dividido entre el
+ * número de puntos, es el tiempo por medida (y su inversa, las medidas por segundo). La
+ * reproducción de recorridos con ruido que comprueba la precisión está en KalmanFilterTest.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FixFilterBenchmark {
+
+    // Número de puntos del recorrido.
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int puntos;
+
+    private TrackBuffer recorrido;
+    private final KalmanFilter filtro = new KalmanFilter();
+
+    @Setup
+    public void preparar() {
+        recorrido = TrackGenerator.generar(puntos, 16);
+    }
+
+    @Benchmark
+    public double filtrar() {
+        filtro.reiniciar();
+        double total = 0;
+        for (int i = 0; i < recorrido.tamano(); i++) {
+            if (filtro.actualizar(recorrido.getLatitud(i), recorrido.getLongitud(i),
+                    (float) TrackGenerator.RUIDO, recorrido.getInstante(i) * 1000))
+                total += filtro.getDistanciaPaso();
+        }
+        return total;
+    }
+}
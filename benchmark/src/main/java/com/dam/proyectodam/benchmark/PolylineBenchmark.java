@@ -0,0 +1,74 @@
+package com.dam.proyectodam.benchmark;
+
+import com.dam.proyectodam.PolylineSimplifier;
+import com.dam.proyectodam.TrackBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Clase PolylineBenchmark.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Construcción de la polilínea del mapa, como en MapActivity.construirPolyline y
+ * puntosNivel: cálculo de la importancia de cada punto y selección de los vértices del
+ * zoom inicial, con los mismos parámetros que la actividad. En lugar de un LatLng por
+ * vértice (que es de Google Play Services), se rellenan arrays de coordenadas.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PolylineBenchmark {
+
+    // Parámetros de MapActivity.
+    private static final int MAX_VERTICES = 2000;
+    private static final double PIXELES_TOLERANCIA = 1.0;
+    private static final int ZOOM_INICIAL = 15;
+
+    // Número de puntos del recorrido.
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int puntos;
+
+    private TrackBuffer recorrido;
+
+    @Setup
+    public void preparar() {
+        recorrido = TrackGenerator.generar(puntos, 20);
+    }
+
+    @Benchmark
+    public double[] construir() {
+        PolylineSimplifier simplificador = new PolylineSimplifier(recorrido);
+        double tolerancia = Math.max(
+                PolylineSimplifier.toleranciaParaZoom(ZOOM_INICIAL, recorrido.getLatitud(0), PIXELES_TOLERANCIA),
+                simplificador.toleranciaParaVertices(MAX_VERTICES));
+
+        int[] indices = simplificador.simplificar(tolerancia);
+        double[] vertices = new double[2 * indices.length];
+        for (int j = 0; j < indices.length; j++) {
+            vertices[2*j] = recorrido.getLatitud(indices[j]);
+            vertices[2*j+1] = recorrido.getLongitud(indices[j]);
+        }
+        return vertices;
+    }
+}
@@ -0,0 +1,76 @@
+package com.dam.proyectodam.benchmark;
+
+import com.dam.proyectodam.TrackBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Clase StorageEncodingBenchmark.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Conversión de los valores de cada punto al guardarlos y al leerlos. Hasta la versión 2
+ * de la base de datos las columnas eran de texto (String.valueOf al escribir y
+ * Double.parseDouble al leer); ahora son numéricas y se leen a un TrackBuffer sin
+ * conversiones. Se miden las dos formas, para comprobar que la diferencia se mantiene.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class StorageEncodingBenchmark {
+
+    // Número de puntos del recorrido.
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int puntos;
+
+    private TrackBuffer recorrido;
+    private final TrackBuffer destino = new TrackBuffer();
+
+    @Setup
+    public void preparar() {
+        recorrido = TrackGenerator.generar(puntos, 18);
+    }
+
+    @Benchmark
+    public void texto(Blackhole agujero) {
+        // Cada fila pasa a texto y vuelve a número, columna a columna, como en la versión 1.
+        for (int i = 0; i < recorrido.tamano(); i++) {
+            agujero.consume(Double.parseDouble(String.valueOf(recorrido.getLatitud(i))));
+            agujero.consume(Double.parseDouble(String.valueOf(recorrido.getLongitud(i))));
+            agujero.consume(Double.parseDouble(String.valueOf(recorrido.getDistancia(i))));
+            agujero.consume(Double.parseDouble(String.valueOf(recorrido.getVelocidad(i))));
+            agujero.consume(Long.parseLong(String.valueOf(recorrido.getInstante(i))));
+        }
+    }
+
+    @Benchmark
+    public int columnas() {
+        // Los valores se copian tal cual al buffer por columnas.
+        destino.vaciar();
+        for (int i = 0; i < recorrido.tamano(); i++)
+            destino.anadir(recorrido.getLatitud(i), recorrido.getLongitud(i), recorrido.getDistancia(i),
+                    recorrido.getVelocidad(i), recorrido.getInstante(i));
+        return destino.tamano();
+    }
+}
@@ -0,0 +1,60 @@
+package com.dam.proyectodam.benchmark;
+
+import com.dam.proyectodam.SessionSummary;
+import com.dam.proyectodam.TrackBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Clase SummaryBenchmark.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Cálculo de los resultados de un entrenamiento (distancia, velocidad media y duración)
+ * recorriendo todos sus puntos con SessionSummary, como hacía ResultActivity.mostrarDatos
+ * antes de que la base de datos mantuviera el resumen (y como hace aún
+ * BBDD.comprobarResumen).
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SummaryBenchmark {
+
+    // Número de puntos del recorrido.
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int puntos;
+
+    private TrackBuffer recorrido;
+
+    @Setup
+    public void preparar() {
+        recorrido = TrackGenerator.generar(puntos, 19);
+    }
+
+    @Benchmark
+    public double resumir() {
+        SessionSummary resumen = new SessionSummary();
+        recorrido.recorrer(resumen);
+        return resumen.getVelocidadMedia() + resumen.getDistancia() + resumen.getDuracion();
+    }
+}
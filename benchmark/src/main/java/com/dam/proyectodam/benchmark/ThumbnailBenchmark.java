@@ -0,0 +1,90 @@
+package com.dam.proyectodam.benchmark;
+
+import com.dam.proyectodam.ThumbnailCache;
+import com.dam.proyectodam.TrackBuffer;
+import com.dam.proyectodam.TrackRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Clase ThumbnailBenchmark.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Miniatura de un recorrido (LADO x LADO píxeles): dibujarla con TrackRenderer frente a
+ * leerla de la caché en disco (ThumbnailCache), que es lo que se ahorra la pantalla de
+ * resultados cuando la miniatura ya está hecha. Para la lectura se crea una caché nueva en
+ * cada operación, sin memoria, de modo que siempre se lee el fichero.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThumbnailBenchmark {
+
+    // Lado de la miniatura, en píxeles (el de ResultActivity).
+    private static final int LADO = 192;
+
+    // Número de puntos del recorrido.
+    @Param({"10000", "100000"})
+    public int puntos;
+
+    private TrackBuffer recorrido;
+    private TrackRenderer renderer;
+
+    // Carpeta temporal con la miniatura ya guardada.
+    private File carpeta;
+
+    @Setup
+    public void preparar() throws IOException {
+        recorrido = TrackGenerator.generar(puntos, 27);
+        renderer = new TrackRenderer(LADO, LADO);
+
+        carpeta = File.createTempFile("miniaturas", "");
+        if (!carpeta.delete() || !carpeta.mkdirs())
+            throw new IOException("No se pudo crear " + carpeta);
+        if (!new ThumbnailCache(carpeta, 0, Long.MAX_VALUE).guardar(1, LADO, LADO, puntos, renderer.renderizar(recorrido)))
+            throw new IOException("No se pudo guardar la miniatura en " + carpeta);
+    }
+
+    @TearDown
+    public void terminar() {
+        File[] ficheros = carpeta.listFiles();
+        if (ficheros != null)
+            for (File fichero : ficheros)
+                fichero.delete();
+        carpeta.delete();
+    }
+
+    @Benchmark
+    public int[] dibujar() {
+        return renderer.renderizar(recorrido);
+    }
+
+    @Benchmark
+    public int[] leerDisco() {
+        return new ThumbnailCache(carpeta, 0, Long.MAX_VALUE).obtener(1, LADO, LADO, puntos);
+    }
+}
@@ -0,0 +1,61 @@
+package com.dam.proyectodam.benchmark;
+
+import com.dam.proyectodam.TrackBuffer;
+
+import java.util.Random;
+
+/**
+ *
+ * Clase TrackGenerator.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Recorridos sintéticos para los benchmarks: una posición por segundo, corriendo a unos
+ * 3 m/s con giros aleatorios, y con el ruido típico del GPS (5 m de desviación típica).
+ * Con la misma semilla se obtiene siempre el mismo recorrido, para poder comparar
+ * ejecuciones.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+public final class TrackGenerator {
+
+    // Metros por grado de latitud.
+    private static final double METROS_GRADO = 111195.0;
+
+    // Ruido del GPS (desviación típica, en metros) y velocidad media (m/s).
+    public static final double RUIDO = 5;
+    private static final double VELOCIDAD = 3;
+
+    private TrackGenerator() {
+    }
+
+    /**
+     * Método: generar
+     * Genera un recorrido sintético.
+     *
+     * @param puntos número de puntos.
+     * @param semilla semilla del generador aleatorio.
+     * @return el recorrido, con la distancia real de cada tramo, la velocidad en km/h y
+     * el instante en segundos.
+     */
+    public static TrackBuffer generar(int puntos, long semilla) {
+        Random aleatorio = new Random(semilla);
+        TrackBuffer recorrido = new TrackBuffer();
+        double lat = 37.3891, lon = -5.9845, rumbo = 0;
+        for (int i = 0; i < puntos; i++) {
+            double velocidad = VELOCIDAD + 0.5 * Math.sin(i / 300.0);
+            if (aleatorio.nextInt(60) == 0)
+                rumbo += aleatorio.nextGaussian();
+            lat += velocidad * Math.cos(rumbo) / METROS_GRADO;
+            lon += velocidad * Math.sin(rumbo) / (METROS_GRADO * Math.cos(Math.toRadians(lat)));
+
+            double escalaLon = METROS_GRADO * Math.cos(Math.toRadians(lat));
+            recorrido.anadir(lat + aleatorio.nextGaussian() * RUIDO / METROS_GRADO,
+                    lon + aleatorio.nextGaussian() * RUIDO / escalaLon,
+                    i == 0 ? 0 : (float) velocidad, (float) (velocidad * 3.6), 1430000000L + i);
+        }
+        return recorrido;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dam.proyectodam.benchmark;
+
+import com.dam.proyectodam.Point;
+import com.dam.proyectodam.TrackBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Clase TrackMemoryBenchmark.java. Proyecto ARTrack. Diseño de Aplicaciones Móviles. 4º GITT.
+ * Memoria por punto de un recorrido guardado en un TrackBuffer frente a una lista de
+ * objetos Point, como se guardaba antes. Cada operación construye el recorrido entero, así
+ * que los bytes reservados por operación, divididos entre el número de puntos, son los
+ * bytes por punto de cada estructura. Se leen con el perfilador de memoria de JMH:
+ *
+ *     gradlew :benchmark:jmh -PjmhArgs="TrackMemoryBenchmark -prof gc"
+ *
+ * (la métrica gc.alloc.rate.norm, en bytes por operación). La lista se crea ya con su
+ * capacidad final, para no contar las copias al crecer.
+ *
+ * Link del repositorio (GitHub):
+ *  https://github.com/ramperher/ProyectoDAM
+ *
+ * @author Ramón Pérez, Alberto Rodríguez
+ * @version 1.0 final
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class TrackMemoryBenchmark {
+
+    // Número de puntos del recorrido.
+    @Param({"100000", "1000000"})
+    public int puntos;
+
+    private TrackBuffer recorrido;
+
+    @Setup
+    public void preparar() {
+        recorrido = TrackGenerator.generar(puntos, 19);
+    }
+
+    @Benchmark
+    public TrackBuffer columnas() {
+        TrackBuffer buffer = new TrackBuffer();
+        for (int i = 0; i < recorrido.tamano(); i++)
+            buffer.anadir(recorrido.getLatitud(i), recorrido.getLongitud(i), recorrido.getDistancia(i),
+                    recorrido.getVelocidad(i), recorrido.getInstante(i));
+        return buffer;
+    }
+
+    @Benchmark
+    public ArrayList<Point> objetos() {
+        ArrayList<Point> lista = new ArrayList<>(recorrido.tamano());
+        for (int i = 0; i < recorrido.tamano(); i++)
+            lista.add(new Point(i + 1, recorrido.getLatitud(i), recorrido.getLongitud(i), recorrido.getDistancia(i),
+                    recorrido.getVelocidad(i), recorrido.getInstante(i)));
+        return lista;
+    }
+}
@@ -0,0 +1,196 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * Pruebas de BinaryTrackFile: ida y vuelta de los registros, consultas por instante,
+ * persistencia al reabrir y recuperación tras una escritura cortada (el fichero se recorta
+ * al último registro entero).
+ */
+public class BinaryTrackFileTest extends TestCase {
+
+    // Puntos de las pruebas (más de una región proyectada).
+    private static final int PUNTOS = 70000;
+
+    private File fichero;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        fichero = File.createTempFile("recorrido", ".trk");
+        assertTrue(fichero.delete());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        fichero.delete();
+        super.tearDown();
+    }
+
+    public void testIdaYVuelta() throws IOException {
+        BinaryTrackFile almacen = new BinaryTrackFile(fichero);
+        assertTrue(almacen.insertarPosiciones(recorrido(PUNTOS)));
+        assertEquals(PUNTOS, almacen.getRegistros());
+        comprobar(almacen, PUNTOS);
+        almacen.cerrar();
+
+        // Al reabrir, se conservan todos los registros.
+        almacen = new BinaryTrackFile(fichero);
+        assertEquals(PUNTOS, almacen.getRegistros());
+        comprobar(almacen, PUNTOS);
+        almacen.cerrar();
+    }
+
+    public void testRecorridoPorInstantes() throws IOException {
+        BinaryTrackFile almacen = new BinaryTrackFile(fichero);
+        almacen.insertarPosiciones(recorrido(PUNTOS));
+
+        final long[] primero = {-1};
+        int n = almacen.recorrerPosiciones(1000 + 500, 1000 + 599, new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                if (primero[0] < 0)
+                    primero[0] = punto.getInstante();
+            }
+        });
+        assertEquals(100, n);
+        assertEquals(1500, primero[0]);
+
+        assertEquals(0, almacen.recorrerPosiciones(0, 999, new Contador()));
+        almacen.cerrar();
+    }
+
+    public void testRecuperacionTrasEscrituraCortada() throws IOException {
+        BinaryTrackFile almacen = new BinaryTrackFile(fichero);
+        almacen.insertarPosiciones(recorrido(PUNTOS));
+        almacen.cerrar();
+
+        // Simulamos que el último registro se quedó a medias: datos cambiados sin la suma nueva.
+        RandomAccessFile raf = new RandomAccessFile(fichero, "rw");
+        raf.seek(BinaryTrackFile.TAM_CABECERA + (long) (PUNTOS - 1) * BinaryTrackFile.TAM_REGISTRO + 8);
+        raf.writeLong(0x1234567890L);
+        raf.close();
+
+        // La cabecera dice PUNTOS confirmados, pero el último no es válido: se valida desde 0.
+        almacen = new BinaryTrackFile(fichero);
+        assertEquals(PUNTOS - 1, almacen.getRegistros());
+        assertEquals(longitudFichero(PUNTOS - 1), fichero.length());
+        comprobar(almacen, PUNTOS - 1);
+
+        // La siguiente inserción sobrescribe el registro cortado.
+        TrackBuffer ultimo = new TrackBuffer();
+        ultimo.anadir(latitud(PUNTOS - 1), longitud(PUNTOS - 1), 1.5f, 10f, 1000 + PUNTOS - 1);
+        almacen.insertarPosiciones(ultimo);
+        comprobar(almacen, PUNTOS);
+        almacen.cerrar();
+    }
+
+    public void testRegistroIncompleto() throws IOException {
+        BinaryTrackFile almacen = new BinaryTrackFile(fichero);
+        almacen.insertarPosiciones(recorrido(1000));
+        almacen.cerrar();
+
+        // El fichero termina a mitad del último registro.
+        RandomAccessFile raf = new RandomAccessFile(fichero, "rw");
+        raf.setLength(longitudFichero(1000) - 7);
+        raf.close();
+
+        almacen = new BinaryTrackFile(fichero);
+        assertEquals(999, almacen.getRegistros());
+        assertEquals(longitudFichero(999), fichero.length());
+        comprobar(almacen, 999);
+        almacen.cerrar();
+    }
+
+    public void testRecuperacionSinSincronizar() throws IOException {
+        /* Se escribe sin cerrar ni sincronizar (la cabecera sigue a 0 registros confirmados y
+        la región tiene espacio reservado de más), y se copia el fichero tal como está, como
+        si la aplicación muriera en ese momento. */
+        BinaryTrackFile almacen = new BinaryTrackFile(fichero);
+        almacen.insertarPosiciones(recorrido(1000));
+        File copia = File.createTempFile("copia", ".trk");
+        copiar(fichero, copia);
+        almacen.cerrar();
+        assertTrue(copia.length() > longitudFichero(1000));
+
+        BinaryTrackFile reabierto = new BinaryTrackFile(copia);
+        assertEquals(1000, reabierto.getRegistros());
+        assertEquals(longitudFichero(1000), copia.length());
+        comprobar(reabierto, 1000);
+        reabierto.cerrar();
+        assertTrue(copia.delete());
+    }
+
+    public void testBorrar() throws IOException {
+        BinaryTrackFile almacen = new BinaryTrackFile(fichero);
+        almacen.insertarPosiciones(recorrido(PUNTOS));
+        assertTrue(almacen.borrarPosiciones());
+        assertEquals(0, almacen.recorrerPosiciones(new Contador()));
+
+        almacen.insertarPosiciones(recorrido(10));
+        almacen.cerrar();
+
+        almacen = new BinaryTrackFile(fichero);
+        assertEquals(10, almacen.getRegistros());
+        almacen.cerrar();
+    }
+
+    private static long longitudFichero(int registros) {
+        return BinaryTrackFile.TAM_CABECERA + (long) registros * BinaryTrackFile.TAM_REGISTRO;
+    }
+
+    private static void copiar(File origen, File destino) throws IOException {
+        RandomAccessFile entrada = new RandomAccessFile(origen, "r");
+        RandomAccessFile salida = new RandomAccessFile(destino, "rw");
+        try {
+            FileChannel canal = entrada.getChannel();
+            long copiados = 0;
+            while (copiados < canal.size())
+                copiados += canal.transferTo(copiados, canal.size() - copiados, salida.getChannel());
+        } finally {
+            entrada.close();
+            salida.close();
+        }
+    }
+
+    private static TrackBuffer recorrido(int n) {
+        TrackBuffer buffer = new TrackBuffer();
+        for (int i = 0; i < n; i++)
+            buffer.anadir(latitud(i), longitud(i), 1.5f, 10f, 1000 + i);
+        return buffer;
+    }
+
+    private static double latitud(int i) {
+        return 37.3891 + i * 1e-6;
+    }
+
+    private static double longitud(int i) {
+        return -5.9845 - i * 1e-6;
+    }
+
+    private static void comprobar(TrackStore almacen, int n) {
+        final int[] i = {0};
+        assertEquals(n, almacen.recorrerPosiciones(new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                assertEquals(latitud(i[0]), punto.getLatitud(), 0);
+                assertEquals(longitud(i[0]), punto.getLongitud(), 0);
+                assertEquals(1.5f, punto.getDistancia(), 0);
+                assertEquals(10.0, punto.getVelocidad(), 0);
+                assertEquals(1000 + i[0], punto.getInstante());
+                i[0]++;
+            }
+        }));
+    }
+
+    private static class Contador implements PointCallback {
+        @Override
+        public void procesarPunto(Point punto) {
+        }
+    }
+}
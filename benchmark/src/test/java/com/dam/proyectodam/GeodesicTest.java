@@ -0,0 +1,85 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Pruebas de Geodesic: valor de referencia de Vincenty, cotas de error de cada modo
+ * (comparando con el modo preciso) y coste por llamada de cada uno, que va en el mensaje
+ * de las comprobaciones.
+ */
+public class GeodesicTest extends TestCase {
+
+    private static final int PARES = 100000;
+
+    public void testReferenciaVincenty() {
+        // Flinders Peak - Buninyong, el ejemplo del artículo de Vincenty: 54972,271 m.
+        double d = Geodesic.distanciaPrecisa(-(37 + 57 / 60.0 + 3.7203 / 3600), 144 + 25 / 60.0 + 29.5244 / 3600,
+                -(37 + 39 / 60.0 + 10.1561 / 3600), 143 + 55 / 60.0 + 35.3839 / 3600);
+        assertEquals(54972.271, d, 1e-3);
+
+        // Un cuarto de meridiano del elipsoide WGS84.
+        assertEquals(10001965.729, Geodesic.distanciaPrecisa(0, 0, 90, 0), 1e-3);
+
+        // Casos límite: mismo punto, ecuador y antípodas (sin convergencia, recurre a haversine).
+        assertEquals(0, Geodesic.distanciaPrecisa(37.3891, -5.9845, 37.3891, -5.9845), 0);
+        assertEquals(Geodesic.distanciaPrecisa(0, 0, 0, 1), 111319.491, 1e-3);
+        assertEquals(Math.PI * Geodesic.RADIO_TIERRA, Geodesic.distanciaPrecisa(0, 0, 0, 180), 1e-3);
+    }
+
+    public void testCotasDeError() {
+        Random aleatorio = new Random(15);
+        double errorHaversine = 0, errorRapido = 0;
+        for (int i = 0; i < PARES; i++) {
+            // Saltos cortos (hasta unos 10 km) fuera de los polos.
+            double lat = (aleatorio.nextDouble() * 2 - 1) * 80;
+            double lon = (aleatorio.nextDouble() * 2 - 1) * 180;
+            double lat2 = lat + (aleatorio.nextDouble() * 2 - 1) * 0.06;
+            double lon2 = lon + (aleatorio.nextDouble() * 2 - 1) * 0.06;
+
+            double preciso = Geodesic.distanciaPrecisa(lat, lon, lat2, lon2);
+            double haversine = Geodesic.distanciaHaversine(lat, lon, lat2, lon2);
+            double rapido = Geodesic.distanciaRapida(lat, lon, lat2, lon2);
+            errorHaversine = Math.max(errorHaversine, Math.abs(haversine - preciso) / preciso);
+            errorRapido = Math.max(errorRapido, Math.abs(rapido - haversine) / haversine);
+        }
+        String errores = "Error relativo máximo: haversine " + errorHaversine + ", rápido frente a haversine "
+                + errorRapido;
+        assertTrue(errores, errorHaversine < 0.006);
+        assertTrue(errores, errorRapido < 0.00001);
+
+        // El modo rápido tiene en cuenta el antimeridiano.
+        assertEquals(Geodesic.distanciaHaversine(0, 179.9995, 0, -179.9995),
+                Geodesic.distanciaRapida(0, 179.9995, 0, -179.9995), 1e-6);
+    }
+
+    public void testCosteDeCadaModo() {
+        Random aleatorio = new Random(16);
+        double[] coordenadas = new double[4 * PARES];
+        for (int i = 0; i < coordenadas.length; i += 4) {
+            coordenadas[i] = 37 + aleatorio.nextDouble();
+            coordenadas[i+1] = -6 + aleatorio.nextDouble();
+            coordenadas[i+2] = coordenadas[i] + aleatorio.nextDouble() * 1e-3;
+            coordenadas[i+3] = coordenadas[i+1] + aleatorio.nextDouble() * 1e-3;
+        }
+
+        String[] nombres = {"Preciso", "Haversine", "Rápido"};
+        int[] modos = {Geodesic.PRECISO, Geodesic.HAVERSINE, Geodesic.RAPIDO};
+        for (int m = 0; m < modos.length; m++) {
+            // Primera pasada de calentamiento, y después la medida.
+            double total = sumar(modos[m], coordenadas);
+            long t0 = System.nanoTime();
+            total += sumar(modos[m], coordenadas);
+            long nanos = System.nanoTime() - t0;
+            assertTrue(nombres[m] + ": " + nanos / PARES + " ns por distancia", total > 0);
+        }
+    }
+
+    private static double sumar(int modo, double[] coordenadas) {
+        double total = 0;
+        for (int i = 0; i < coordenadas.length; i += 4)
+            total += Geodesic.distancia(modo, coordenadas[i], coordenadas[i+1], coordenadas[i+2], coordenadas[i+3]);
+        return total;
+    }
+}
@@ -0,0 +1,71 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Pruebas de Geohash: todo punto de un rectángulo cae en alguno de sus intervalos (también
+ * cruzando el antimeridiano), los intervalos no pasan de MAX_CELDAS, y las celdas no se
+ * salen mucho del rectángulo.
+ */
+public class GeohashTest extends TestCase {
+
+    public void testCodigos() {
+        assertEquals(0, Geohash.codificar(-90, -180));
+        assertEquals((1L << (2 * Geohash.BITS_EJE)) - 1, Geohash.codificar(90, 180));
+        // El primer bit es el de longitud: el hemisferio este está por encima del oeste.
+        assertTrue(Geohash.codificar(-90, 0.0001) > Geohash.codificar(90, -0.0001));
+    }
+
+    public void testRectangulos() {
+        Random aleatorio = new Random(21);
+        for (int r = 0; r < 2000; r++) {
+            // Rectángulos de entre unos metros y unos 100 km, y algunos sobre el antimeridiano.
+            double alto = Math.pow(10, -4 + aleatorio.nextDouble() * 3);
+            double ancho = Math.pow(10, -4 + aleatorio.nextDouble() * 3);
+            double latMin = (aleatorio.nextDouble() * 2 - 1) * 80;
+            double lonMin = r % 10 == 0 ? 180 - ancho / 2 : (aleatorio.nextDouble() * 2 - 1) * 179;
+            double latMax = latMin + alto;
+            double lonMax = lonMin + ancho > 180 ? lonMin + ancho - 360 : lonMin + ancho;
+
+            long[] rangos = Geohash.rangos(latMin, lonMin, latMax, lonMax);
+            assertTrue(rangos.length / 2 <= 2 * Geohash.MAX_CELDAS);
+            for (int i = 2; i < rangos.length; i += 2)
+                assertTrue(rangos[i] > rangos[i-1] + 1);
+
+            for (int p = 0; p < 50; p++) {
+                double lat = latMin + aleatorio.nextDouble() * alto;
+                double lon = lonMin + aleatorio.nextDouble() * ancho;
+                if (lon > 180)
+                    lon -= 360;
+                assertTrue(dentro(rangos, Geohash.codificar(lat, lon)));
+            }
+        }
+    }
+
+    public void testCobertura() {
+        // Un rectángulo de 1 km: las celdas cubren como mucho unas pocas veces su superficie.
+        double latMin = 37.38, lonMin = -5.99, alto = 0.009, ancho = 0.0113;
+        long[] rangos = Geohash.rangos(latMin, lonMin, latMin + alto, lonMin + ancho);
+        Random aleatorio = new Random(22);
+        int dentroCeldas = 0, dentroRectangulo = 0;
+        for (int i = 0; i < 200000; i++) {
+            double lat = latMin - alto + aleatorio.nextDouble() * 3 * alto;
+            double lon = lonMin - ancho + aleatorio.nextDouble() * 3 * ancho;
+            if (dentro(rangos, Geohash.codificar(lat, lon)))
+                dentroCeldas++;
+            if (lat >= latMin && lat <= latMin + alto && lon >= lonMin && lon <= lonMin + ancho)
+                dentroRectangulo++;
+        }
+        assertTrue(dentroCeldas >= dentroRectangulo);
+        assertTrue(dentroCeldas < 4 * dentroRectangulo);
+    }
+
+    private static boolean dentro(long[] rangos, long codigo) {
+        for (int i = 0; i < rangos.length; i += 2)
+            if (codigo >= rangos[i] && codigo <= rangos[i+1])
+                return true;
+        return false;
+    }
+}
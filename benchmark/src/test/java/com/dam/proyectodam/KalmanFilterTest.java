@@ -0,0 +1,131 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Pruebas de KalmanFilter: se reproducen recorridos (un TrackBuffer, como los que se
+ * guardan en la base de datos) con ruido sintético, y se compara la distancia recorrida
+ * con la real, sumando las posiciones sin filtrar y las filtradas.
+ */
+public class KalmanFilterTest extends TestCase {
+
+    // Desviación típica del ruido añadido a cada eje, y precisión que indica el "GPS".
+    private static final double RUIDO = 6;
+    private static final float PRECISION = 8;
+
+    private static final double METROS_GRADO = 111195.0;
+
+    public void testMenosErrorDeDistanciaCorriendo() {
+        // Una hora a 3 m/s, con cambios de rumbo.
+        TrackBuffer real = new TrackBuffer();
+        Random aleatorio = new Random(11);
+        double lat = 37.3891;
+        double lon = -5.9845;
+        double rumbo = 0;
+        for (int i = 0; i < 3600; i++) {
+            if (aleatorio.nextInt(60) == 0)
+                rumbo += aleatorio.nextGaussian();
+            real.anadir(lat, lon, 3, 10.8f, 1430000000L + i);
+            lat += 3 * Math.cos(rumbo) / METROS_GRADO;
+            lon += 3 * Math.sin(rumbo) / (METROS_GRADO * Math.cos(Math.toRadians(lat)));
+        }
+        TrackBuffer medido = conRuido(real, 12);
+
+        double distanciaReal = distanciaSinFiltrar(real);
+        double errorBruto = Math.abs(distanciaSinFiltrar(medido) - distanciaReal);
+        double errorFiltrado = Math.abs(distanciaFiltrada(medido, new KalmanFilter()) - distanciaReal);
+
+        assertTrue("bruto " + errorBruto + " filtrado " + errorFiltrado, errorFiltrado < errorBruto / 10);
+        assertTrue("filtrado " + errorFiltrado + " real " + distanciaReal, errorFiltrado < 0.2 * distanciaReal);
+    }
+
+    public void testParadoNoAcumulaDistancia() {
+        TrackBuffer real = new TrackBuffer();
+        for (int i = 0; i < 600; i++)
+            real.anadir(37.3891, -5.9845, 0, 0, 1430000000L + i);
+        TrackBuffer medido = conRuido(real, 13);
+
+        double bruta = distanciaSinFiltrar(medido);
+        double filtrada = distanciaFiltrada(medido, new KalmanFilter());
+
+        assertTrue(bruta > 2000);
+        assertTrue("filtrada " + filtrada, filtrada < bruta / 5);
+    }
+
+    public void testPosicionYVelocidad() {
+        KalmanFilter filtro = new KalmanFilter();
+        Random aleatorio = new Random(14);
+
+        // Hacia el norte a 3 m/s durante 5 minutos.
+        for (int i = 0; i < 300; i++) {
+            double lat = 37.0 + (3.0 * i + aleatorio.nextGaussian() * RUIDO) / METROS_GRADO;
+            double lon = -5.0 + aleatorio.nextGaussian() * RUIDO / (METROS_GRADO * Math.cos(Math.toRadians(37)));
+            assertTrue(filtro.actualizar(lat, lon, PRECISION, i * 1000L));
+        }
+
+        assertEquals(3.0, filtro.getVelocidad(), 0.5);
+        assertEquals(37.0 + 3.0 * 299 / METROS_GRADO, filtro.getLatitud(), 5 / METROS_GRADO);
+        assertTrue(filtro.getPrecision() < PRECISION);
+    }
+
+    public void testDescartaMedidasAntiguas() {
+        KalmanFilter filtro = new KalmanFilter();
+        assertTrue(filtro.actualizar(37, -5, 5, 2000));
+        assertFalse(filtro.actualizar(37.001, -5, 5, 2000));
+        assertFalse(filtro.actualizar(37.001, -5, 5, 1000));
+        assertEquals(1, filtro.getMedidas());
+
+        // Sin precisión se usa la de por defecto, y tras reiniciar vuelve a empezar.
+        assertTrue(filtro.actualizar(37.0001, -5, 0, 3000));
+        filtro.reiniciar();
+        assertTrue(filtro.actualizar(40, 3, 5, 0));
+        assertEquals(40, filtro.getLatitud(), 1e-9);
+        assertEquals(3, filtro.getLongitud(), 1e-9);
+    }
+
+    /**
+     * Copia un recorrido añadiendo ruido gaussiano a cada posición.
+     */
+    private static TrackBuffer conRuido(TrackBuffer real, long semilla) {
+        Random aleatorio = new Random(semilla);
+        TrackBuffer medido = new TrackBuffer();
+        for (int i = 0; i < real.tamano(); i++) {
+            double lat = real.getLatitud(i);
+            medido.anadir(lat + aleatorio.nextGaussian() * RUIDO / METROS_GRADO,
+                    real.getLongitud(i) + aleatorio.nextGaussian() * RUIDO / (METROS_GRADO * Math.cos(Math.toRadians(lat))),
+                    real.getDistancia(i), real.getVelocidad(i), real.getInstante(i));
+        }
+        return medido;
+    }
+
+    /**
+     * Reproduce un recorrido a través del filtro (instantes en segundos, como en la base
+     * de datos) y suma las distancias entre posiciones filtradas.
+     */
+    static double distanciaFiltrada(TrackBuffer recorrido, KalmanFilter filtro) {
+        double total = 0;
+        for (int i = 0; i < recorrido.tamano(); i++) {
+            if (filtro.actualizar(recorrido.getLatitud(i), recorrido.getLongitud(i), PRECISION,
+                    recorrido.getInstante(i) * 1000))
+                total += filtro.getDistanciaPaso();
+        }
+        return total;
+    }
+
+    /**
+     * Suma las distancias entre posiciones consecutivas, sin filtrar.
+     */
+    static double distanciaSinFiltrar(TrackBuffer recorrido) {
+        double total = 0;
+        for (int i = 1; i < recorrido.tamano(); i++) {
+            double lat = Math.toRadians(recorrido.getLatitud(i));
+            double dy = (lat - Math.toRadians(recorrido.getLatitud(i-1))) * 6371008.8;
+            double dx = Math.toRadians(recorrido.getLongitud(i) - recorrido.getLongitud(i-1))
+                    * 6371008.8 * Math.cos(lat);
+            total += Math.sqrt(dx*dx + dy*dy);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,87 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Pruebas de PolylineSimplifier: cota de error de cada nivel, número de vértices acotado,
+ * y tiempo de cálculo con un recorrido sintético de un millón de puntos.
+ */
+public class PolylineSimplifierTest extends TestCase {
+
+    public void testCotaDeError() {
+        PolylineSimplifier simplificador = new PolylineSimplifier(recorrido(20000, 1));
+
+        for (double tolerancia : new double[] {0.5, 2, 10, 50, 250}) {
+            int[] indices = simplificador.simplificar(tolerancia);
+            assertEquals(0, indices[0]);
+            assertEquals(simplificador.tamano() - 1, indices[indices.length - 1]);
+
+            // Cada punto descartado está a menos de la tolerancia del segmento que lo sustituye.
+            for (int k = 0; k + 1 < indices.length; k++)
+                for (int i = indices[k] + 1; i < indices[k + 1]; i++)
+                    assertTrue("Punto " + i + " fuera de la tolerancia " + tolerancia,
+                            simplificador.distanciaSegmento(i, indices[k], indices[k + 1]) <= tolerancia + 1e-6);
+        }
+    }
+
+    public void testNivelesAnidados() {
+        PolylineSimplifier simplificador = new PolylineSimplifier(recorrido(20000, 2));
+
+        // Con más tolerancia nunca aparecen puntos nuevos.
+        int anterior = Integer.MAX_VALUE;
+        for (double tolerancia = 0.25; tolerancia < 1000; tolerancia *= 2) {
+            int n = simplificador.contarVertices(tolerancia);
+            assertTrue(n <= anterior);
+            anterior = n;
+        }
+    }
+
+    public void testVerticesAcotados() {
+        PolylineSimplifier simplificador = new PolylineSimplifier(recorrido(20000, 3));
+        for (int maximo : new int[] {2, 10, 500, 5000}) {
+            double tolerancia = simplificador.toleranciaParaVertices(maximo);
+            assertTrue(simplificador.contarVertices(tolerancia) <= maximo);
+        }
+        assertEquals(0, simplificador.toleranciaParaVertices(20000), 0);
+    }
+
+    public void testMillonDePuntos() {
+        TrackBuffer recorrido = recorrido(1000000, 4);
+
+        long t0 = System.nanoTime();
+        PolylineSimplifier simplificador = new PolylineSimplifier(recorrido);
+        long calculo = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        double tolerancia = simplificador.toleranciaParaVertices(2000);
+        int[] indices = simplificador.simplificar(tolerancia);
+        long nivel = System.nanoTime() - t0;
+
+        assertTrue("PolylineSimplifier 1M puntos: importancias " + calculo / 1000000
+                + " ms, nivel de " + indices.length + " vértices " + nivel / 1000000 + " ms",
+                indices.length <= 2000);
+    }
+
+    /**
+     * Recorrido sintético: avance de unos 3 m por punto con cambios de rumbo aleatorios
+     * y ruido de GPS de alrededor de un metro.
+     */
+    static TrackBuffer recorrido(int n, long semilla) {
+        Random aleatorio = new Random(semilla);
+        TrackBuffer buffer = new TrackBuffer();
+        double lat = 37.3891;
+        double lon = -5.9845;
+        double rumbo = 0;
+        for (int i = 0; i < n; i++) {
+            if (aleatorio.nextInt(50) == 0)
+                rumbo += aleatorio.nextGaussian();
+            lat += 3 * Math.cos(rumbo) / 111195.0;
+            lon += 3 * Math.sin(rumbo) / (111195.0 * Math.cos(Math.toRadians(lat)));
+            buffer.anadir(lat + aleatorio.nextGaussian() * 1e-5, lon + aleatorio.nextGaussian() * 1e-5,
+                    3, 10.8f, 1430000000L + i);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,173 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+/**
+ * Simulación de SamplingScheduler sobre un entrenamiento sintético (parado, arranque,
+ * rectas, giros, eslalon y parada final), muestreado a 1 s de referencia. Se compara el
+ * número de puntos y el error de la trayectoria reconstruida (interpolando en el tiempo
+ * entre los puntos tomados) con el muestreo fijo. Los resultados van en el mensaje de
+ * las comprobaciones.
+ */
+public class SamplingSchedulerTest extends TestCase {
+
+    private static final long INTERVALO_BASE = 1000;
+
+    // Trayectoria real, segundo a segundo: posición (m), velocidad (m/s) y rumbo (grados).
+    private double[] x, y, v, rumbo;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        int n = 1800;
+        x = new double[n];
+        y = new double[n];
+        v = new double[n];
+        rumbo = new double[n];
+
+        for (int t = 1; t < n; t++) {
+            double vel, rum = rumbo[t-1];
+
+            // Parado, arranque, semáforo a mitad y parada final (rampas de 10 s).
+            if (t < 180)
+                vel = 0;
+            else if (t < 190)
+                vel = 0.3 * (t - 180);
+            else if (t >= 890 && t < 900)
+                vel = 3 - 0.3 * (t - 890);
+            else if (t >= 900 && t < 960)
+                vel = 0;
+            else if (t >= 960 && t < 970)
+                vel = 0.3 * (t - 960);
+            else if (t >= 1500 && t < 1510)
+                vel = 3 - 0.3 * (t - 1500);
+            else if (t >= 1510)
+                vel = 0;
+            else
+                vel = 3;
+
+            // Dos esquinas (90 grados en 5 s) y un tramo de curvas.
+            if (t >= 600 && t < 605)
+                rum += 18;
+            else if (t >= 1200 && t < 1205)
+                rum -= 18;
+            else if (t >= 1300 && t < 1500)
+                rum = 30 * Math.sin(2 * Math.PI * (t - 1300) / 40.0);
+
+            v[t] = vel;
+            rumbo[t] = rum;
+            x[t] = x[t-1] + vel * Math.sin(Math.toRadians(rum));
+            y[t] = y[t-1] + vel * Math.cos(Math.toRadians(rum));
+        }
+    }
+
+    public void testMenosPuntosSinPerderForma() {
+        int[] adaptativo = muestrear(new SamplingScheduler(INTERVALO_BASE), 0);
+        int puntosFijo = x.length;
+
+        // Muestreo fijo con (como mucho) el mismo número de puntos que el adaptativo.
+        int intervaloEquivalente = (int) Math.ceil((double) x.length / adaptativo.length);
+        int[] fijo = muestrear(null, intervaloEquivalente);
+
+        double[] errorAdaptativo = error(adaptativo);
+        double[] errorFijo = error(fijo);
+
+        String resultados = "Fijo a 1 s: " + puntosFijo + " puntos, error 0 m. Adaptativo: "
+                + adaptativo.length + " puntos, error medio " + errorAdaptativo[0] + " m, máximo "
+                + errorAdaptativo[1] + " m. Fijo a " + intervaloEquivalente + " s: " + fijo.length
+                + " puntos, error medio " + errorFijo[0] + " m, máximo " + errorFijo[1] + " m";
+
+        // Menos de un tercio de los puntos, con un error muy por debajo de la precisión del GPS.
+        assertTrue(resultados, adaptativo.length < puntosFijo / 3);
+        assertTrue(resultados, fijo.length <= adaptativo.length);
+        assertTrue(resultados, errorAdaptativo[0] < errorFijo[0]);
+        assertTrue(resultados, errorAdaptativo[1] < 2);
+    }
+
+    public void testHisteresis() {
+        SamplingScheduler planificador = new SamplingScheduler(INTERVALO_BASE);
+        int cambios = 0;
+
+        // Velocidad oscilando alrededor del umbral de parado: no debe cambiar a cada punto.
+        for (int t = 0; t < 300; t++) {
+            double vel = 0.75 + 0.2 * ((t % 2 == 0) ? 1 : -1);
+            if (planificador.actualizar(vel, 0, t * 1000L))
+                cambios++;
+        }
+        assertTrue("cambios " + cambios, cambios <= 2);
+    }
+
+    public void testIntervalos() {
+        SamplingScheduler planificador = new SamplingScheduler(INTERVALO_BASE);
+        assertEquals(SamplingScheduler.CAMBIANDO, planificador.getEstado());
+        assertEquals(INTERVALO_BASE, planificador.getIntervalo());
+
+        long t = 0;
+        for (int i = 0; i < 5; i++, t += 1000)
+            planificador.actualizar(3, 0, t);
+        assertEquals(SamplingScheduler.CONSTANTE, planificador.getEstado());
+        assertEquals(4 * INTERVALO_BASE, planificador.getIntervalo());
+
+        // Un giro brusco vuelve al muestreo rápido de inmediato.
+        assertTrue(planificador.actualizar(3, 60, t));
+        assertEquals(SamplingScheduler.CAMBIANDO, planificador.getEstado());
+
+        for (int i = 0; i < 5; i++)
+            planificador.actualizar(0, 60, t += 1000);
+        assertEquals(SamplingScheduler.PARADO, planificador.getEstado());
+        assertEquals(5 * INTERVALO_BASE, planificador.getIntervalo());
+
+        // Con un intervalo base grande, se respeta el tope (pero nunca baja del base).
+        planificador = new SamplingScheduler(30000);
+        for (int i = 0; i < 5; i++)
+            planificador.actualizar(0, 0, i * 30000L);
+        assertEquals(60000, planificador.getIntervalo());
+        assertEquals(60000, new SamplingScheduler(60000).getIntervalo());
+        assertEquals(-170, SamplingScheduler.diferenciaRumbo(175, -15), 1e-9);
+    }
+
+    /**
+     * Muestrea la trayectoria real con el planificador (o con un intervalo fijo, en
+     * segundos, si no hay planificador) y devuelve los segundos en que se tomó cada punto.
+     */
+    private int[] muestrear(SamplingScheduler planificador, int intervaloFijo) {
+        int[] tomados = new int[x.length];
+        int n = 0;
+        int t = 0;
+        while (t < x.length) {
+            tomados[n++] = t;
+            if (planificador == null) {
+                t += intervaloFijo;
+            } else {
+                planificador.actualizar(v[t], rumbo[t], t * 1000L);
+                t += (int) (planificador.getIntervalo() / 1000);
+            }
+        }
+        int[] salida = new int[n];
+        System.arraycopy(tomados, 0, salida, 0, n);
+        return salida;
+    }
+
+    /**
+     * Error medio y máximo (en metros) entre la trayectoria real y la reconstruida
+     * interpolando linealmente en el tiempo entre los puntos tomados.
+     */
+    private double[] error(int[] tomados) {
+        double suma = 0, maximo = 0;
+        int j = 0;
+        int ultimo = tomados[tomados.length - 1];
+        for (int t = 0; t <= ultimo; t++) {
+            while (tomados[j+1 < tomados.length ? j+1 : j] < t)
+                j++;
+            int a = tomados[j];
+            int b = tomados[Math.min(j+1, tomados.length-1)];
+            double f = (b == a) ? 0 : (double) (t - a) / (b - a);
+            double dx = x[a] + f * (x[b] - x[a]) - x[t];
+            double dy = y[a] + f * (y[b] - y[a]) - y[t];
+            double d = Math.sqrt(dx*dx + dy*dy);
+            suma += d;
+            maximo = Math.max(maximo, d);
+        }
+        return new double[] {suma / (ultimo + 1), maximo};
+    }
+}
@@ -0,0 +1,140 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Pruebas de StationaryDetector sobre secuencias de posiciones reproducidas: parada en un
+ * semáforo con el GPS bailando alrededor, parada demasiado corta, histéresis a la salida
+ * y fin del entrenamiento estando parado.
+ */
+public class StationaryDetectorTest extends TestCase {
+
+    private static final double METROS_GRADO = 111195.0;
+    private static final double LATITUD = 37.3891;
+    private static final double LONGITUD = -5.9845;
+
+    // Puntos que salen del detector.
+    private TrackBuffer guardados;
+    private StationaryDetector detector;
+
+    // Posición (en metros hacia el norte) y distancia del último punto reproducido.
+    private double norte;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        guardados = new TrackBuffer();
+        detector = new StationaryDetector(new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                guardados.anadir(punto.getLatitud(), punto.getLongitud(), punto.getDistancia(),
+                        (float) punto.getVelocidad(), punto.getInstante());
+            }
+        });
+        norte = 0;
+    }
+
+    public void testSemaforo() {
+        Random aleatorio = new Random(14);
+        int pausas = 0;
+        long t = 0;
+
+        // 60 s andando, 90 s parado con el GPS bailando unos metros, y 60 s andando.
+        for (; t < 60; t++)
+            pausas += reproducir(norte + 1.5, 5.4f, t);
+        for (; t < 150; t++)
+            pausas += reproducir(90 + aleatorio.nextGaussian() * 2, (float) Math.abs(aleatorio.nextGaussian()), t);
+        for (; t < 210; t++)
+            pausas += reproducir(norte + 1.5, 5.4f, t);
+        pausas += detector.terminar() ? 1 : 0;
+
+        // Una única pausa, que cubre casi toda la parada.
+        assertEquals(1, pausas);
+        assertTrue(detector.getInicioPausa() <= 61);
+        assertTrue(detector.getFinPausa() >= 148);
+        assertEquals(detector.getFinPausa() - detector.getInicioPausa(), detector.getTiempoParado());
+
+        // Casi ningún punto de la parada se guarda, y el baile no suma distancia.
+        assertTrue(guardados.tamano() < 130);
+        assertEquals(210 - guardados.tamano(), detector.getDescartados());
+        assertTrue("distancia " + sumaDistancias(), sumaDistancias() < 200);
+
+        // El primer y el último punto se guardan siempre.
+        assertEquals(0, guardados.getInstante(0));
+        assertEquals(209, guardados.getInstante(guardados.tamano()-1));
+    }
+
+    public void testParadaCorta() {
+        // Una parada de menos del tiempo mínimo no es una pausa: se guardan todos los puntos.
+        long t = 0;
+        int pausas = 0;
+        for (; t < 30; t++)
+            pausas += reproducir(norte + 1.5, 5.4f, t);
+        for (; t < 30 + StationaryDetector.TIEMPO_MINIMO - 2; t++)
+            pausas += reproducir(norte, 0, t);
+        for (; t < 80; t++)
+            pausas += reproducir(norte + 1.5, 5.4f, t);
+        pausas += detector.terminar() ? 1 : 0;
+
+        assertEquals(0, pausas);
+        assertEquals(80, guardados.tamano());
+        assertEquals(0, detector.getDescartados());
+        for (int i = 1; i < guardados.tamano(); i++)
+            assertTrue(guardados.getInstante(i) > guardados.getInstante(i-1));
+    }
+
+    public void testHisteresis() {
+        // Confirmamos una parada.
+        long t = 0;
+        for (; t <= StationaryDetector.TIEMPO_MINIMO; t++)
+            assertEquals(0, reproducir(0, 0, t));
+        assertTrue(detector.isParado());
+
+        // Un salto algo mayor que el radio (pero dentro de la banda de salida) no la termina.
+        assertEquals(0, reproducir(StationaryDetector.RADIO * 1.2, 1, t++));
+        assertTrue(detector.isParado());
+
+        // Moverse rápido sí, aunque sea dentro del radio.
+        assertEquals(1, reproducir(2, 10, t++));
+        assertFalse(detector.isParado());
+        assertEquals(0, detector.getInicioPausa());
+        assertEquals(t - 2, detector.getFinPausa());
+    }
+
+    public void testTerminarParado() {
+        long t = 0;
+        for (; t < 10; t++)
+            reproducir(norte + 1.5, 5.4f, t);
+        for (; t < 100; t++)
+            reproducir(norte, 0, t);
+        assertTrue(detector.isParado());
+
+        // Al terminar, se cierra la pausa y se guarda el último punto para la duración.
+        assertTrue(detector.terminar());
+        assertFalse(detector.terminar());
+        assertEquals(99, guardados.getInstante(guardados.tamano()-1));
+        assertEquals(0, guardados.getDistancia(guardados.tamano()-1), 0);
+        assertEquals(10, detector.getInicioPausa());
+        assertEquals(99, detector.getFinPausa());
+    }
+
+    /**
+     * Pasa al detector un punto a cierta distancia (en metros) al norte del origen, con la
+     * distancia al anterior, y devuelve 1 si con él termina una pausa.
+     */
+    private int reproducir(double metrosNorte, float velocidad, long instante) {
+        float paso = (float) Math.abs(metrosNorte - norte);
+        norte = metrosNorte;
+        return detector.anadir(LATITUD + metrosNorte / METROS_GRADO, LONGITUD, paso, velocidad,
+                instante) ? 1 : 0;
+    }
+
+    private double sumaDistancias() {
+        double total = 0;
+        for (int i = 0; i < guardados.tamano(); i++)
+            total += guardados.getDistancia(i);
+        return total;
+    }
+}
@@ -0,0 +1,98 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Pruebas de ThumbnailCache: la LRU en memoria saca la menos usada al pasar del límite,
+ * las miniaturas se recuperan del disco, dejan de valer si cambia el número de puntos de
+ * la sesión, y el disco no pasa de su límite.
+ */
+public class ThumbnailCacheTest extends TestCase {
+
+    private File carpeta;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        carpeta = carpetaTemporal();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        borrar(carpeta);
+        super.tearDown();
+    }
+
+    public void testLruMemoria() {
+        // Caben dos miniaturas de 10x10 (400 bytes cada una).
+        ThumbnailCache cache = new ThumbnailCache(null, 800, 0);
+        cache.guardar(1, 10, 10, 5, miniatura(10, 10, 1));
+        cache.guardar(2, 10, 10, 5, miniatura(10, 10, 2));
+        assertNotNull(cache.obtener(1, 10, 10, 5));
+        cache.guardar(3, 10, 10, 5, miniatura(10, 10, 3));
+
+        // La 2 era la menos usada.
+        assertEquals(2, cache.getEnMemoria());
+        assertEquals(800, cache.getBytesMemoria());
+        assertNull(cache.obtener(2, 10, 10, 5));
+        assertNotNull(cache.obtener(1, 10, 10, 5));
+        assertNotNull(cache.obtener(3, 10, 10, 5));
+        // Mismo tamaño en píxeles, pero otra forma: es otra miniatura.
+        assertNull(cache.obtener(1, 20, 5, 5));
+    }
+
+    public void testDisco() {
+        int[] pixeles = miniatura(32, 16, 7);
+        new ThumbnailCache(carpeta, 1 << 20, 1 << 20).guardar(4, 32, 16, 1000, pixeles);
+
+        // Otra caché (como tras reiniciar la aplicación) la encuentra en disco.
+        ThumbnailCache cache = new ThumbnailCache(carpeta, 1 << 20, 1 << 20);
+        assertTrue(Arrays.equals(pixeles, cache.obtener(4, 32, 16, 1000)));
+        // Si la sesión tiene más puntos, ya no vale.
+        assertNull(new ThumbnailCache(carpeta, 1 << 20, 1 << 20).obtener(4, 32, 16, 1001));
+        assertNull(cache.obtener(4, 32, 16, 1001));
+    }
+
+    public void testLimiteDisco() {
+        // Miniaturas de ruido (no se comprimen), de unos 16 KB cada una, con límite de 40 KB.
+        ThumbnailCache cache = new ThumbnailCache(carpeta, 0, 40 * 1024);
+        for (int s = 1; s <= 5; s++) {
+            assertTrue(cache.guardar(s, 64, 64, 1, miniatura(64, 64, s)));
+            assertTrue(new File(carpeta, "sesion_" + s + "_64x64.mini").setLastModified(1000L * s));
+        }
+        long total = 0;
+        for (File fichero : carpeta.listFiles())
+            total += fichero.length();
+        assertTrue(total <= 40 * 1024);
+        assertNotNull(new ThumbnailCache(carpeta, 0, 40 * 1024).obtener(5, 64, 64, 1));
+        assertNull(new ThumbnailCache(carpeta, 0, 40 * 1024).obtener(1, 64, 64, 1));
+    }
+
+    private static int[] miniatura(int ancho, int alto, long semilla) {
+        Random aleatorio = new Random(semilla);
+        int[] pixeles = new int[ancho * alto];
+        for (int i = 0; i < pixeles.length; i++)
+            pixeles[i] = aleatorio.nextInt();
+        return pixeles;
+    }
+
+    static File carpetaTemporal() throws IOException {
+        File carpeta = File.createTempFile("miniaturas", "");
+        assertTrue(carpeta.delete());
+        assertTrue(carpeta.mkdirs());
+        return carpeta;
+    }
+
+    static void borrar(File carpeta) {
+        File[] ficheros = carpeta.listFiles();
+        if (ficheros != null)
+            for (File fichero : ficheros)
+                assertTrue(fichero.delete());
+        assertTrue(carpeta.delete());
+    }
+}
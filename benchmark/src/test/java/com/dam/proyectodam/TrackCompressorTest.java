@@ -0,0 +1,149 @@
+package com.dam.proyectodam;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Pruebas de TrackCompressor: cota de error de los puntos descartados, conservación de la
+ * distancia y la duración, y reducción de puntos guardados en recorridos sintéticos a pie
+ * y en bicicleta (con ruido de GPS, pasados por KalmanFilter como en la aplicación). La
+ * reducción va en el mensaje de las comprobaciones.
+ */
+public class TrackCompressorTest extends TestCase {
+
+    private static final double METROS_GRADO = 111195.0;
+
+    public void testCotaDeErrorYTotales() {
+        TrackBuffer original = recorrido(7200, 3.0, 0.5, 31);
+        TrackBuffer comprimido = comprimir(original, TrackCompressor.TOLERANCIA, TrackCompressor.MAX_INTERVALO);
+
+        // Distancia total igual (salvo redondeo) y duración exacta.
+        assertEquals(sumaDistancias(original), sumaDistancias(comprimido), 1e-6 * sumaDistancias(original));
+        assertEquals(original.getInstante(0), comprimido.getInstante(0));
+        assertEquals(original.getInstante(original.tamano()-1), comprimido.getInstante(comprimido.tamano()-1));
+
+        // Huecos acotados y error sincronizado dentro de la tolerancia.
+        for (int j = 1; j < comprimido.tamano(); j++)
+            assertTrue(comprimido.getInstante(j) - comprimido.getInstante(j-1) <= TrackCompressor.MAX_INTERVALO);
+        assertTrue(errorMaximo(original, comprimido) <= TrackCompressor.TOLERANCIA + 1e-6);
+    }
+
+    public void testReduccionCarrera() {
+        TrackBuffer original = recorrido(3600, 3.0, 0.5, 32);
+        TrackBuffer comprimido = comprimir(original, TrackCompressor.TOLERANCIA, TrackCompressor.MAX_INTERVALO);
+        assertTrue(resumen("Carrera", original, comprimido), comprimido.tamano() < original.tamano() / 3);
+    }
+
+    public void testReduccionBicicleta() {
+        TrackBuffer original = recorrido(7200, 8.0, 2.0, 33);
+        TrackBuffer comprimido = comprimir(original, TrackCompressor.TOLERANCIA, TrackCompressor.MAX_INTERVALO);
+        assertTrue(resumen("Bicicleta", original, comprimido), comprimido.tamano() < original.tamano() / 2);
+    }
+
+    public void testVentanaAcotada() {
+        // Línea recta a velocidad constante: sólo se guarda por ventana llena o por hueco máximo.
+        TrackBuffer original = new TrackBuffer();
+        for (int i = 0; i < 10000; i++)
+            original.anadir(37 + 3.0 * i / METROS_GRADO, -5, i == 0 ? 0 : 3, 10.8f, i);
+
+        final TrackBuffer comprimido = new TrackBuffer();
+        TrackCompressor compresor = new TrackCompressor(receptor(comprimido), 3, 1000000, 16);
+        for (int i = 0; i < original.tamano(); i++)
+            compresor.anadir(original.getLatitud(i), original.getLongitud(i), original.getDistancia(i),
+                    original.getVelocidad(i), original.getInstante(i));
+        compresor.terminar();
+        compresor.terminar();
+
+        assertEquals(1 + (10000 - 1 + 15) / 16, comprimido.tamano());
+        assertEquals(comprimido.tamano(), compresor.getGuardados());
+        assertEquals(10000, compresor.getRecibidos());
+        assertEquals(3.0 * 9999, sumaDistancias(comprimido), 1e-3);
+    }
+
+    /**
+     * Recorrido sintético a 1 Hz, con ruido de GPS de 5 m filtrado por KalmanFilter. La
+     * velocidad varía lentamente alrededor de la media y el rumbo cambia en curvas suaves.
+     */
+    static TrackBuffer recorrido(int n, double velocidadMedia, double variacion, long semilla) {
+        Random aleatorio = new Random(semilla);
+        KalmanFilter filtro = new KalmanFilter();
+        TrackBuffer buffer = new TrackBuffer();
+        double lat = 37.3891, lon = -5.9845, rumbo = 0, giro = 0;
+        for (int i = 0; i < n; i++) {
+            double velocidad = velocidadMedia + variacion * Math.sin(i / 300.0);
+            if (aleatorio.nextInt(90) == 0)
+                giro = aleatorio.nextGaussian() * 3;
+            else if (aleatorio.nextInt(20) == 0)
+                giro = 0;
+            rumbo += giro;
+            lat += velocidad * Math.cos(Math.toRadians(rumbo)) / METROS_GRADO;
+            lon += velocidad * Math.sin(Math.toRadians(rumbo)) / (METROS_GRADO * Math.cos(Math.toRadians(lat)));
+
+            filtro.actualizar(lat + aleatorio.nextGaussian() * 5 / METROS_GRADO,
+                    lon + aleatorio.nextGaussian() * 5 / (METROS_GRADO * Math.cos(Math.toRadians(lat))),
+                    5, 1430000000000L + i * 1000L);
+            buffer.anadir(filtro.getLatitud(), filtro.getLongitud(), (float) filtro.getDistanciaPaso(),
+                    (float) (filtro.getVelocidad() * 3.6), 1430000000L + i);
+        }
+        return buffer;
+    }
+
+    static TrackBuffer comprimir(TrackBuffer original, double tolerancia, long maxIntervalo) {
+        TrackBuffer comprimido = new TrackBuffer();
+        TrackCompressor compresor = new TrackCompressor(receptor(comprimido), tolerancia, maxIntervalo,
+                TrackCompressor.MAX_VENTANA);
+        for (int i = 0; i < original.tamano(); i++)
+            compresor.anadir(original.getLatitud(i), original.getLongitud(i), original.getDistancia(i),
+                    original.getVelocidad(i), original.getInstante(i));
+        compresor.terminar();
+        return comprimido;
+    }
+
+    private static PointCallback receptor(final TrackBuffer destino) {
+        return new PointCallback() {
+            @Override
+            public void procesarPunto(Point punto) {
+                destino.anadir(punto.getLatitud(), punto.getLongitud(), punto.getDistancia(),
+                        (float) punto.getVelocidad(), punto.getInstante());
+            }
+        };
+    }
+
+    private static double sumaDistancias(TrackBuffer recorrido) {
+        double total = 0;
+        for (int i = 0; i < recorrido.tamano(); i++)
+            total += recorrido.getDistancia(i);
+        return total;
+    }
+
+    /**
+     * Mayor distancia (en metros) entre cada punto original y la posición interpolada en
+     * su instante sobre el recorrido comprimido.
+     */
+    private static double errorMaximo(TrackBuffer original, TrackBuffer comprimido) {
+        double escalaX = METROS_GRADO * Math.cos(Math.toRadians(original.getLatitud(0)));
+        double maximo = 0;
+        int j = 0;
+        for (int i = 0; i < original.tamano(); i++) {
+            long t = original.getInstante(i);
+            while (j + 1 < comprimido.tamano() && comprimido.getInstante(j+1) < t)
+                j++;
+            int b = Math.min(j + 1, comprimido.tamano() - 1);
+            long ta = comprimido.getInstante(j), tb = comprimido.getInstante(b);
+            double f = tb > ta ? (double) (t - ta) / (tb - ta) : 0;
+            double lat = comprimido.getLatitud(j) + f * (comprimido.getLatitud(b) - comprimido.getLatitud(j));
+            double lon = comprimido.getLongitud(j) + f * (comprimido.getLongitud(b) - comprimido.getLongitud(j));
+            double dy = (lat - original.getLatitud(i)) * METROS_GRADO;
+            double dx = (lon - original.getLongitud(i)) * escalaX;
+            maximo = Math.max(maximo, Math.sqrt(dx*dx + dy*dy));
+        }
+        return maximo;
+    }
+
+    private static String resumen(String nombre, TrackBuffer original, TrackBuffer comprimido) {
+        return nombre + ": " + comprimido.tamano() + " de " + original.tamano()
+                + " puntos guardados (" + (100 - 100 * comprimido.tamano() / original.tamano())
+                + "% menos), error máximo " + errorMaximo(original, comprimido) + " m";
+    }
+}
@@ -0,0 +1,177 @@
+package com.dam.proyectodam;
+
+import com.sun.management.ThreadMXBean;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Pruebas de TrackExporter: contenido de un GPX y un TCX pequeños, formato de las fechas
+ * frente a SimpleDateFormat, propagación de los errores de escritura, y exportación de un
+ * recorrido sintético de 5 millones de puntos en memoria constante. Para esta última se
+ * cuentan los bytes que reserva el hilo durante la exportación (en HotSpot, con
+ * com.sun.management.ThreadMXBean), que no dependen de cuándo pase el recolector; el
+ * tiempo y la memoria se escriben en la salida estándar.
+ */
+public class TrackExporterTest extends TestCase {
+
+    private static final int PUNTOS_LARGO = 5000000;
+
+    public void testGpx() throws IOException {
+        StringWriter texto = new StringWriter();
+        TrackExporter exportador = new TrackExporter(texto, TrackExporter.GPX);
+        exportador.empezar(new SessionSummary());
+        exportador.procesarPunto(new Point(1, 37.3891, -5.9845, 0, 0, 1445000000));
+        // Redondeos: sin signo para un cero negativo, y con acarreo hasta la parte entera.
+        exportador.procesarPunto(new Point(2, -0.00000001, 89.99999999, 3, 0, 0));
+        exportador.terminar();
+
+        assertEquals(2, exportador.getPuntos());
+        assertTrue(texto.toString().contains("<gpx version=\"1.1\""));
+        assertTrue(texto.toString().endsWith("<trkseg>\n"
+                + "<trkpt lat=\"37.3891000\" lon=\"-5.9845000\"><time>2015-10-16T12:53:20Z</time></trkpt>\n"
+                + "<trkpt lat=\"0.0000000\" lon=\"90.0000000\"><time>1970-01-01T00:00:00Z</time></trkpt>\n"
+                + "</trkseg></trk>\n</gpx>\n"));
+    }
+
+    public void testTcx() throws IOException {
+        StringWriter texto = new StringWriter();
+        TrackExporter exportador = new TrackExporter(texto, TrackExporter.TCX);
+        exportador.empezar(new SessionSummary(2, 12.25, 0, 1445000000, 1445000030));
+        exportador.procesarPunto(new Point(1, 37.3891, -5.9845, 0, 0, 1445000000));
+        exportador.procesarPunto(new Point(2, 37.38921, -5.98449, 12.25f, 0, 1445000030));
+        exportador.terminar();
+
+        String resultado = texto.toString();
+        assertTrue(resultado.contains("<Id>2015-10-16T12:53:20Z</Id>"));
+        assertTrue(resultado.contains("<TotalTimeSeconds>30</TotalTimeSeconds><DistanceMeters>12.3</DistanceMeters>"));
+        assertTrue(resultado.contains("<Time>2015-10-16T12:53:50Z</Time><Position><LatitudeDegrees>37.3892100"
+                + "</LatitudeDegrees><LongitudeDegrees>-5.9844900</LongitudeDegrees></Position>"
+                + "<DistanceMeters>12.3</DistanceMeters>"));
+        assertTrue(resultado.endsWith("</TrainingCenterDatabase>\n"));
+    }
+
+    public void testFechas() throws IOException {
+        SimpleDateFormat referencia = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        referencia.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // Instantes desordenados (para no aprovechar siempre el día anterior), de 1900 a 2100.
+        Random aleatorio = new Random(18);
+        for (int i = 0; i < 10000; i++) {
+            long instante = (long) ((aleatorio.nextDouble() * 2 - 1) * 4102444800L);
+            StringWriter texto = new StringWriter();
+            TrackExporter exportador = new TrackExporter(texto, TrackExporter.GPX);
+            exportador.procesarPunto(new Point(1, 0, 0, 0, 0, instante));
+            exportador.procesarPunto(new Point(2, 0, 0, 0, 0, instante + 1));
+            String esperado = "<time>" + referencia.format(new Date(instante * 1000)) + "</time></trkpt>\n"
+                    + "<trkpt lat=\"0.0000000\" lon=\"0.0000000\"><time>"
+                    + referencia.format(new Date((instante + 1) * 1000)) + "</time>";
+            assertTrue(Long.toString(instante), texto.toString().contains(esperado));
+        }
+    }
+
+    public void testErrorDeEscritura() {
+        TrackExporter exportador = new TrackExporter(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("Disco lleno");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        }, TrackExporter.GPX);
+
+        exportador.procesarPunto(new Point(1, 0, 0, 0, 0, 0));
+        exportador.procesarPunto(new Point(2, 0, 0, 0, 0, 0));
+        assertEquals(0, exportador.getPuntos());
+        try {
+            exportador.terminar();
+            fail("terminar debe lanzar el error de escritura");
+        } catch (IOException e) {
+            assertEquals("Disco lleno", e.getMessage());
+        }
+    }
+
+    public void testMemoriaConstante() throws IOException {
+        ContadorCaracteres destino = new ContadorCaracteres();
+        TrackExporter exportador = new TrackExporter(destino, TrackExporter.TCX);
+        Point punto = new Point(0, 0, 0, 0, 0, 0);
+
+        long memoriaInicial = memoriaReservada();
+        long t0 = System.nanoTime();
+        exportador.empezar(new SessionSummary(PUNTOS_LARGO, PUNTOS_LARGO * 2.5, 0, 1445000000,
+                1445000000 + PUNTOS_LARGO));
+        for (int i = 0; i < PUNTOS_LARGO; i++) {
+            punto.setId(i + 1);
+            punto.setLatitud(37.3891 + i * 1e-7);
+            punto.setLongitud(-5.9845 - i * 1e-7);
+            punto.setDistancia(2.5f);
+            punto.setInstante(1445000000 + i);
+            exportador.procesarPunto(punto);
+        }
+        exportador.terminar();
+        long nanos = System.nanoTime() - t0;
+        long reservada = memoriaReservada() - memoriaInicial;
+
+        String medida = "Exportación TCX de " + PUNTOS_LARGO + " puntos: " + nanos / 1000000 + " ms, "
+                + destino.caracteres / PUNTOS_LARGO + " caracteres por punto, "
+                + (memoriaInicial < 0 ? "memoria no medida" : reservada / 1024 + " KiB reservados");
+        assertEquals(PUNTOS_LARGO, exportador.getPuntos());
+        assertTrue(medida, destino.caracteres > PUNTOS_LARGO * 150L);
+        // Lo reservado no crece con los puntos: menos de un byte por cada 50.
+        if (memoriaInicial >= 0)
+            assertTrue(medida, reservada < PUNTOS_LARGO / 50);
+        assertTrue(medida, nanos < 120 * 1000000000L);
+    }
+
+    /**
+     * Bytes reservados hasta ahora por el hilo actual, o -1 si la JVM no los cuenta.
+     */
+    private static long memoriaReservada() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean))
+            return -1;
+        ThreadMXBean hilos = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!hilos.isThreadAllocatedMemorySupported() || !hilos.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return hilos.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Destino que sólo cuenta los caracteres escritos (para no medir el disco).
+     */
+    private static class ContadorCaracteres extends Writer {
+        long caracteres = 0;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            caracteres += len;
+        }
+
+        @Override
+        public void write(String str) {
+            caracteres += str.length();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.dam.proyectodam;
+
+import com.dam.proyectodam.benchmark.TrackGenerator;
+
+import junit.framework.TestCase;
+
+/**
+ * Pruebas de TrackRenderer: un recorrido vacío deja sólo el fondo, una recta se dibuja de
+ * esquina a esquina (dentro del margen) con el inicio y el final marcados, y un recorrido
+ * largo se simplifica a los vértices que se notan en la miniatura.
+ */
+public class TrackRendererTest extends TestCase {
+
+    public void testVacio() {
+        int[] pixeles = new TrackRenderer(16, 8).renderizar(new TrackBuffer());
+        assertEquals(16 * 8, pixeles.length);
+        for (int pixel : pixeles)
+            assertEquals(TrackRenderer.FONDO, pixel);
+    }
+
+    public void testDiagonal() {
+        // De suroeste a noreste, en un cuadrado (en metros) de unos 1,1 km.
+        TrackBuffer recorrido = new TrackBuffer();
+        for (int i = 0; i <= 100; i++)
+            recorrido.anadir(37.0 + i * 1e-4, -6.0 + i * 1e-4 / Math.cos(Math.toRadians(37)), 0, 0, i);
+        TrackRenderer renderer = new TrackRenderer(100, 100);
+        int[] pixeles = renderer.renderizar(recorrido);
+
+        // Una recta se queda en sus dos extremos.
+        assertEquals(2, renderer.getVertices());
+        assertEquals(TrackRenderer.COLOR_INICIO, pixeles[92 * 100 + 8]);
+        assertEquals(TrackRenderer.COLOR_FINAL, pixeles[8 * 100 + 92]);
+        assertEquals(TrackRenderer.COLOR_RECORRIDO, pixeles[50 * 100 + 50]);
+        assertEquals(TrackRenderer.FONDO, pixeles[8 * 100 + 8]);
+        assertEquals(TrackRenderer.FONDO, pixeles[92 * 100 + 92]);
+    }
+
+    public void testSimplificacion() {
+        TrackBuffer recorrido = TrackGenerator.generar(20000, 25);
+        TrackRenderer renderer = new TrackRenderer(128, 128);
+        int[] pixeles = renderer.renderizar(recorrido);
+        assertTrue(renderer.getVertices() > 2);
+        assertTrue(renderer.getVertices() < recorrido.tamano() / 4);
+
+        int pintados = 0;
+        for (int pixel : pixeles)
+            if (pixel == TrackRenderer.COLOR_RECORRIDO)
+                pintados++;
+        assertTrue(pintados > 128);
+    }
+}